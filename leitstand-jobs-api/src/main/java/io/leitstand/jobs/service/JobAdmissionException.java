@@ -0,0 +1,52 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.service;
+
+import io.leitstand.commons.ConflictException;
+import io.leitstand.commons.Reason;
+
+/**
+ * Signals that a job cannot be committed, because the job scheduler is saturated.
+ * <p>
+ * The exception conveys a hint when to retry the commit.
+ * </p>
+ */
+public class JobAdmissionException extends ConflictException {
+
+	private static final long serialVersionUID = 1L;
+	
+	private final long retryAfter;
+	
+	/**
+	 * Creates a <code>JobAdmissionException</code>.
+	 * @param reason the reason code
+	 * @param retryAfter the number of seconds to wait before retrying the commit
+	 * @param arguments the message arguments
+	 */
+	public JobAdmissionException(Reason reason, long retryAfter, Object... arguments) {
+		super(reason,arguments);
+		this.retryAfter = retryAfter;
+	}
+	
+	/**
+	 * Returns the number of seconds to wait before retrying the commit.
+	 * @return the retry delay in seconds.
+	 */
+	public long getRetryAfter() {
+		return retryAfter;
+	}
+	
+}
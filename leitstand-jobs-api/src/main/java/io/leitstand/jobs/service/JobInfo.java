@@ -21,6 +21,8 @@ import static java.util.Collections.unmodifiableList;
 import java.util.LinkedList;
 import java.util.List;
 
+import javax.json.bind.annotation.JsonbProperty;
+
 public class JobInfo extends BaseJobEnvelope{
 
 	public static Builder newJobInfo(){
@@ -54,6 +56,18 @@ public class JobInfo extends BaseJobEnvelope{
 		public Builder withSchedule(JobSchedule.Builder scheduler) {
 			return withSchedule(scheduler.build());
 		}
+		
+		public Builder withQueuePosition(Integer queuePosition) {
+			assertNotInvalidated(getClass(), object);
+			object.queuePosition = queuePosition;
+			return this;
+		}
+		
+		public Builder withSuspended(boolean suspended) {
+			assertNotInvalidated(getClass(), object);
+			object.suspended = suspended;
+			return this;
+		}
 
 		@Override
 		public JobInfo build(){
@@ -72,6 +86,11 @@ public class JobInfo extends BaseJobEnvelope{
 	private JobSchedule schedule;
 	
 	private List<JobTask> tasks;
+	
+	@JsonbProperty("queue_position")
+	private Integer queuePosition;
+	
+	private boolean suspended;
 
 
 	public JobSchedule getSchedule() {
@@ -86,4 +105,22 @@ public class JobInfo extends BaseJobEnvelope{
 		return progress;
 	}	
 	
+	/**
+	 * Returns the position of a ready job in the queue of all jobs waiting for admission.
+	 * The queue is ordered by the dispatch rank of the jobs, i.e. by priority and the time the jobs are due for execution.
+	 * @return the queue position starting with <code>1</code> or <code>null</code> if the job is not waiting for admission.
+	 */
+	public Integer getQueuePosition() {
+		return queuePosition;
+	}
+	
+	/**
+	 * Returns whether the job is suspended, because the job is outside of its window.
+	 * The scheduler does not start new tasks of a suspended job.
+	 * @return <code>true</code> if the job is suspended, <code>false</code> otherwise.
+	 */
+	public boolean isSuspended() {
+		return suspended;
+	}
+	
 }
@@ -66,6 +66,11 @@ public class JobSettings extends ValueObject{
 			return this;
 		}
 		
+		public Builder withPriority(Integer priority){
+			job.priority = priority;
+			return this;
+		}
+		
 		public Builder withDateModified(Date date) {
 			job.dateModified = new Date(date.getTime());
 			return this;
@@ -96,6 +101,8 @@ public class JobSettings extends ValueObject{
 	
 	private JobSchedule schedule;
 	
+	private Integer priority;
+	
 	@JsonbProperty("date_modified")
 	private Date dateModified;
 	
@@ -127,6 +134,15 @@ public class JobSettings extends ValueObject{
         return jobOwner;
     }
 	
+	/**
+	 * Returns the job priority.
+	 * Jobs with a higher priority are executed first.
+	 * @return the job priority or <code>null</code> if the priority is not specified.
+	 */
+	public Integer getPriority() {
+		return priority;
+	}
+	
 	public Date getDateModified() {
 		if(dateModified == null) {
 			return null;
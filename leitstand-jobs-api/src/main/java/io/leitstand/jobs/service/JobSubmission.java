@@ -122,6 +122,12 @@ public class JobSubmission extends ValueObject {
 		    return this;
 		}
 		
+		public Builder withPriority(int priority) {
+		    assertNotInvalidated(getClass(), object);
+		    object.priority = priority;
+		    return this;
+		}
+		
 		public JobSubmission build(){
 			try{
 				assertNotInvalidated(getClass(), object);
@@ -149,6 +155,8 @@ public class JobSubmission extends ValueObject {
 	private JobType jobType;
 	
     private JobSchedule schedule;
+    
+    private int priority;
 
 	
 	private List<TaskSubmission> tasks;
@@ -190,4 +198,14 @@ public class JobSubmission extends ValueObject {
 	public JobSchedule getSchedule() {
         return schedule;
     }
+	
+	/**
+	 * Returns the job priority.
+	 * Jobs with a higher priority are executed first. 
+	 * The default priority is <code>0</code>. Negative priorities denote background jobs.
+	 * @return the job priority.
+	 */
+	public int getPriority() {
+		return priority;
+	}
 }
@@ -37,6 +37,7 @@ public enum ReasonCode implements Reason{
 	JOB0109E_CANNOT_COMMIT_JOB,
 	JOB0110E_CANNOT_RESUME_COMPLETED_JOB,
 	JOB0111E_JOB_NOT_REMOVABLE,
+	JOB0112E_JOB_ADMISSION_REJECTED,
     JOB0200E_TASK_NOT_FOUND,
     JOB0201E_CANNOT_MODIFY_COMPLETED_TASK,
     JOB0202I_TASK_STATE_UPDATED,
@@ -72,6 +72,11 @@ public class TaskSubmission extends ValueObject{
 			return this;
 		}
 		
+		public Builder withTimeout(Integer timeout){
+			task.timeout = timeout;
+			return this;
+		}
+		
 		public TaskSubmission build(){
 			try{
 				return task;
@@ -110,6 +115,9 @@ public class TaskSubmission extends ValueObject{
 	
 	private boolean canary;
 	
+	@JsonbProperty("timeout")
+	private Integer timeout;
+	
 	public TaskType getTaskType() {
 		return taskType;
 	}
@@ -135,5 +143,14 @@ public class TaskSubmission extends ValueObject{
 	public JsonObject getParameter() {
 		return parameter;
 	}
+	
+	/**
+	 * Returns the task timeout in seconds or <code>null</code> if the default timeout of the task type applies.
+	 * An active task that has not been completed within the timeout is marked as timed out.
+	 * @return the task timeout in seconds.
+	 */
+	public Integer getTimeout() {
+		return timeout;
+	}
 
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An adaptive limit following the additive increase, multiplicative decrease (AIMD) scheme.
+ * <p>
+ * The limit grows by one whenever the limit was exhausted without signs of overload
+ * and shrinks by a constant factor whenever an overload was observed.
+ * Hence, the limit probes for spare capacity slowly and backs off quickly.
+ * The limit never leaves the configured bounds.
+ * </p>
+ */
+final class AimdLimit {
+	
+	private static final double DECREASE_FACTOR = 0.7;
+
+	private final int min;
+	private final int max;
+	private final AtomicInteger limit;
+	
+	/**
+	 * Creates an adaptive limit.
+	 * @param min the lower bound of the limit
+	 * @param max the upper bound of the limit
+	 * @param initial the initial limit
+	 */
+	AimdLimit(int min, int max, int initial){
+		this.min = Math.max(1, min);
+		this.max = Math.max(this.min, max);
+		this.limit = new AtomicInteger(clamp(initial));
+	}
+	
+	/**
+	 * Returns the current limit.
+	 * @return the current limit.
+	 */
+	int get() {
+		return limit.get();
+	}
+	
+	/**
+	 * Increases the limit by one, if the limit was exhausted.
+	 * Nothing is changed if there is no demand exceeding the current limit.
+	 * @param exhausted whether the limit was exhausted
+	 * @return the new limit.
+	 */
+	int onSuccess(boolean exhausted) {
+		if(!exhausted) {
+			return limit.get();
+		}
+		return limit.updateAndGet(current -> clamp(current+1));
+	}
+	
+	/**
+	 * Decreases the limit multiplicatively.
+	 * @return the new limit.
+	 */
+	int onOverload() {
+		return limit.updateAndGet(current -> clamp((int) (current * DECREASE_FACTOR)));
+	}
+	
+	private int clamp(int value) {
+		return Math.min(max, Math.max(min, value));
+	}
+	
+}
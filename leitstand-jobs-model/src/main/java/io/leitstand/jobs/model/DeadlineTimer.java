@@ -0,0 +1,240 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.FINER;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+/**
+ * A timer that processes entities exactly when their deadline has passed.
+ * <p>
+ * The timer keeps the deadlines of all entities due within a look-ahead horizon in a min-heap
+ * and reloads the horizon when half of the horizon has elapsed.
+ * Deadline changes are applied incrementally by {@link #deadlineChanged(Object, Date)}.
+ * The timer sleeps until the nearest deadline and passes all due entities in batches to {@link #processDue(List)}.
+ * Heap entries of entities whose deadline has been changed or removed are discarded lazily when they reach the top of the heap.
+ * </p>
+ * @param <K> the entity ID type
+ */
+abstract class DeadlineTimer<K> implements Runnable {
+	
+	private static final long RETRY_MILLIS = 1000;
+	
+	private static final class Deadline<K> implements Comparable<Deadline<K>>{
+		private final K id;
+		private final long due;
+	
+		Deadline(K id, long due){
+			this.id = id;
+			this.due = due;
+		}
+	
+		@Override
+		public int compareTo(Deadline<K> o) {
+			return Long.compare(due, o.due);
+		}
+	}
+	
+	private final Logger log;
+	private final String name;
+	private final JobSchedulerConfig config;
+	private final PriorityQueue<Deadline<K>> deadlines = new PriorityQueue<>();
+	private final Map<K,Long> pending = new HashMap<>();
+	private final Semaphore signal = new Semaphore(0);
+	private volatile boolean active;
+	private long nextRefresh;
+	
+	/**
+	 * Creates a deadline timer.
+	 * @param name the timer name used in log messages
+	 * @param config the job scheduler settings
+	 */
+	DeadlineTimer(String name,
+				  JobSchedulerConfig config){
+		this.log = Logger.getLogger(getClass().getName());
+		this.name = name;
+		this.config = config;
+		this.active = true;
+	}
+	
+	/**
+	 * Returns the deadlines of all entities due before the given date, including all overdue entities.
+	 * @param to the end of the look-ahead horizon
+	 * @return the deadlines of the entities.
+	 */
+	protected abstract Map<K,Date> findDeadlines(Date to);
+	
+	/**
+	 * Processes a batch of entities whose deadline has passed.
+	 * @param due the IDs of the due entities
+	 */
+	protected abstract void processDue(List<K> due);
+	
+	/**
+	 * Updates the deadline of an entity.
+	 * Deadlines beyond the look-ahead horizon are loaded with the next horizon reload.
+	 * @param id the entity ID
+	 * @param date the new deadline or <code>null</code> if the entity has no deadline anymore.
+	 */
+	void deadlineChanged(K id, Date date) {
+		synchronized(deadlines) {
+			if(date == null) {
+				// The heap entry is discarded when it reaches the top of the heap.
+				pending.remove(id);
+				return;
+			}
+			long due = date.getTime();
+			if(due >= currentTimeMillis() + SECONDS.toMillis(config.getTimerHorizon())) {
+				pending.remove(id);
+				return;
+			}
+			if(!schedule(id, due)) {
+				return;
+			}
+		}
+		signal.release();
+	}
+	
+	/**
+	 * Stops the timer.
+	 */
+	void stop() {
+		active = false;
+		signal.release();
+	}
+	
+	/**
+	 * Returns the number of entities whose deadline is monitored by this timer.
+	 * @return the number of pending timers.
+	 */
+	int getPendingTimers() {
+		synchronized(deadlines) {
+			return pending.size();
+		}
+	}
+	
+	@Override
+	public void run() {
+		log.info(() -> format("%s started.",name));
+		while(active) {
+			try {
+				long now = currentTimeMillis();
+				if(now >= nextRefresh) {
+					refresh(now);
+				}
+				List<K> due;
+				while(!(due = pollDue(now)).isEmpty()) {
+					processDue(due);
+				}
+				// Sleep until the nearest deadline or until the next horizon reload.
+				long waittime = min(nextRefresh, nextDeadline()) - currentTimeMillis();
+				signal.tryAcquire(Math.max(1, waittime), MILLISECONDS);
+				signal.drainPermits();
+			} catch (InterruptedException e) {
+				currentThread().interrupt();
+				active = false;
+			} catch (Exception e) {
+				// Reload all deadlines to retry processing the due entities.
+				log.warning(() -> format("%s failure: %s",name,e.getMessage()));
+				log.log(FINER,e.getMessage(),e);
+				nextRefresh = currentTimeMillis() + RETRY_MILLIS;
+				pause();
+			}
+		}
+		log.info(() -> format("%s stopped.",name));
+	}
+	
+	List<K> pollDue(long now) {
+		int batchSize = config.getEventLoopBatchSize();
+		List<K> due = new ArrayList<>();
+		synchronized(deadlines) {
+			while(due.size() < batchSize && !deadlines.isEmpty() && deadlines.peek().due <= now) {
+				Deadline<K> deadline = deadlines.poll();
+				if(isCurrent(deadline)) {
+					pending.remove(deadline.id);
+					due.add(deadline.id);
+				}
+			}
+		}
+		return due;
+	}
+	
+	long nextDeadline() {
+		synchronized(deadlines) {
+			// Discard stale entries to not wake up for changed deadlines.
+			while(!deadlines.isEmpty()) {
+				Deadline<K> deadline = deadlines.peek();
+				if(isCurrent(deadline)) {
+					return deadline.due;
+				}
+				deadlines.poll();
+			}
+			return Long.MAX_VALUE;
+		}
+	}
+	
+	void refresh(long now) {
+		long horizon = SECONDS.toMillis(config.getTimerHorizon());
+		Map<K,Date> loaded = findDeadlines(new Date(now + horizon));
+		synchronized(deadlines) {
+			loaded.forEach((id,date) -> schedule(id, date.getTime()));
+		}
+		nextRefresh = now + horizon / 2;
+		log.fine(() -> format("%s loaded %d deadlines within the next %d seconds.",
+							  name,
+							  loaded.size(),
+							  config.getTimerHorizon()));
+	}
+	
+	private boolean isCurrent(Deadline<K> deadline) {
+		Long due = pending.get(deadline.id);
+		return due != null && due == deadline.due;
+	}
+	
+	private boolean schedule(K id, long due) {
+		Long previous = pending.put(id, due);
+		if(previous != null && previous == due) {
+			// Deadline is already in the heap.
+			return false;
+		}
+		deadlines.add(new Deadline<>(id, due));
+		return true;
+	}
+	
+	private void pause() {
+		try {
+			signal.tryAcquire(RETRY_MILLIS, MILLISECONDS);
+		} catch (InterruptedException e) {
+			currentThread().interrupt();
+			active = false;
+		}
+	}
+	
+}
@@ -16,10 +16,8 @@
 package io.leitstand.jobs.model;
 
 import static io.leitstand.jobs.model.Job.findReadyAndActiveJobsForElementGroup;
-import static io.leitstand.jobs.service.ElementGroupJobSummary.newElementGroupJobSummary;
 import static io.leitstand.jobs.service.ElementGroupJobs.newElementGroupJobs;
 
-import java.util.LinkedList;
 import java.util.List;
 
 import javax.inject.Inject;
@@ -59,16 +57,7 @@ public class DefaultElementGroupJobService implements ElementGroupJobService {
 	}
 	
 	ElementGroupJobs getActiveElementGroupJobs(ElementGroupSettings group) {
-		List<ElementGroupJobSummary> jobs = new LinkedList<>();
-		for(Job job : repository.execute(findReadyAndActiveJobsForElementGroup(group.getGroupId()))){
-			jobs.add(newElementGroupJobSummary()
-					 .withJobId(job.getJobId())
-					 .withJobName(job.getJobName())
-					 .withJobOwner(job.getJobOwner())
-					 .withTaskState(job.getJobState())
-					 .withStartDate(job.getDateScheduled())
-					 .build());
-		}
+		List<ElementGroupJobSummary> jobs = repository.execute(findReadyAndActiveJobsForElementGroup(group.getGroupId()));
 		
 		return newElementGroupJobs()
 			   .withGroupId(group.getGroupId())
@@ -20,6 +20,11 @@ import static io.leitstand.commons.jpa.BooleanConverter.parseBoolean;
 import static io.leitstand.commons.messages.MessageFactory.createMessage;
 import static io.leitstand.commons.model.ObjectUtil.not;
 import static io.leitstand.commons.model.ObjectUtil.optional;
+import static io.leitstand.jobs.model.Job.countJobsAhead;
+import static io.leitstand.jobs.model.Job.findJobSettings;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS_AND_TRANSITIONS;
+import static io.leitstand.jobs.model.Job_Task.findOrderedTaskInfos;
 import static io.leitstand.jobs.model.Job_Task.setTaskStateToReadyForExecution;
 import static io.leitstand.jobs.service.JobApplication.jobApplication;
 import static io.leitstand.jobs.service.JobFlow.newJobFlow;
@@ -29,9 +34,9 @@ import static io.leitstand.jobs.service.JobName.jobName;
 import static io.leitstand.jobs.service.JobProgress.newJobProgress;
 import static io.leitstand.jobs.service.JobSchedule.newJobSchedule;
 import static io.leitstand.jobs.service.JobSettings.newJobSettings;
-import static io.leitstand.jobs.service.JobTask.newJobTask;
 import static io.leitstand.jobs.service.JobTasks.newJobTasks;
 import static io.leitstand.jobs.service.JobType.jobType;
+import static io.leitstand.jobs.service.ReasonCode.JOB0100E_JOB_NOT_FOUND;
 import static io.leitstand.jobs.service.ReasonCode.JOB0101I_JOB_SETTINGS_UPDATED;
 import static io.leitstand.jobs.service.ReasonCode.JOB0102E_JOB_SETTINGS_IMMUTABLE;
 import static io.leitstand.jobs.service.ReasonCode.JOB0103I_JOB_CONFIRMED;
@@ -57,17 +62,16 @@ import static java.lang.String.format;
 import static java.util.stream.Collectors.toList;
 
 import java.util.Date;
-import java.util.HashSet;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.logging.Logger;
 
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
 import io.leitstand.commons.ConflictException;
+import io.leitstand.commons.EntityNotFoundException;
 import io.leitstand.commons.db.DatabaseService;
 import io.leitstand.commons.messages.Messages;
 import io.leitstand.commons.model.Repository;
@@ -92,20 +96,6 @@ public class DefaultJobService implements JobService {
 	
 	private static final Logger LOG = Logger.getLogger(DefaultJobService.class.getName());
 	
-	static class TaskByStateCount {
-		
-		private int[] counts = new int[TaskState.values().length];
-		
-		void increment(TaskState state) {
-			counts[state.ordinal()]++;
-		}
-		
-		int getCount(TaskState state) {
-			return counts[state.ordinal()];
-		}
-		
-	}
-
 	private Repository repository;
 	
 	@Inject
@@ -127,6 +117,18 @@ public class DefaultJobService implements JobService {
 	@Inject
 	private UserContext user;
 	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private JobAdmissionControl admission;
+	
+	@Inject
+	private Event<JobScheduleChangedEvent> scheduleEventSink;
+	
+	@Inject
+	private JobTopologyCache topologies;
+	
 	protected DefaultJobService() {
 		
 	}
@@ -137,7 +139,8 @@ public class DefaultJobService implements JobService {
 					  InventoryClient inventory,
 					  JobEditor jobEditor,
 					  Messages messages,
-					  UserContext user){
+					  UserContext user,
+					  Event<JobScheduleChangedEvent> scheduleEventSink){
 		this.repository = repository;
 		this.jobs = jobs;
 		this.db = db;
@@ -145,41 +148,29 @@ public class DefaultJobService implements JobService {
 		this.editor = jobEditor;
 		this.messages = messages;
 		this.user = user;
+		this.scheduleEventSink = scheduleEventSink;
+		this.topologies = new JobTopologyCache(repository, new JobSchedulerConfig());
 	}
 	
 	public JobProgress getJobProgress(JobId jobId) {
 		Job job = jobs.fetchJob(jobId);
-		Set<Job_Task> elements = new HashSet<>();
-		job.getTasks();
-		TaskByStateCount stats = new TaskByStateCount();
-		traverse(elements, job.getStart(),stats);
-		
 		return newJobProgress()
-			   .withActiveCount(stats.getCount(ACTIVE))
-			   .withReadyCount(stats.getCount(READY)+stats.getCount(CONFIRM))
-			   .withCompletedCount(stats.getCount(COMPLETED))
-			   .withFailedCount(stats.getCount(REJECTED)+stats.getCount(FAILED))
-			   .withTimeoutCount(stats.getCount(TIMEOUT))
+			   .withActiveCount(job.getTaskCount(ACTIVE))
+			   .withReadyCount(job.getTaskCount(READY,CONFIRM))
+			   .withCompletedCount(job.getTaskCount(COMPLETED))
+			   .withFailedCount(job.getTaskCount(REJECTED,FAILED))
+			   .withTimeoutCount(job.getTaskCount(TIMEOUT))
 			   .build();
 				
 	}
 	
-	private void traverse(Set<Job_Task> tasks, Job_Task task, TaskByStateCount stats){
-		if(tasks.add(task)) {
-			stats.increment(task.getTaskState());
-			for(Job_Task_Transition transition : task.getSuccessors()){
-				traverse(tasks, transition.getTo(),stats);
-			}
-		}
-	}
-	
 	@Override
 	public JobFlow getJobFlow(JobId jobId) {
-		Job job = jobs.fetchJob(jobId);
+		Job job = jobs.fetchJob(jobId, JOB_WITH_TASKS);
 		ElementGroupSettings group = inventory.getGroupSettings(job);
 		Map<ElementId,ElementSettings> elements = inventory.getElements(job);
 		JobExport export = new JobExport(elements);
-		JobGraph  graph = new JobGraph(job);
+		JobGraph  graph = new JobGraph(job, topologies.getTopology(job));
 		graph.accept(export);
 		
 		return newJobFlow()
@@ -198,7 +189,7 @@ public class DefaultJobService implements JobService {
 	
 	@Override
 	public void storeJob(JobId jobId, JobSubmission submission) {
-		Job job = jobs.tryFetchJob(jobId);
+		Job job = jobs.tryFetchJob(jobId, JOB_WITH_TASKS_AND_TRANSITIONS);
 		if(job == null){
 			job = new Job(submission.getJobApplication(),
 						  submission.getJobType(),
@@ -222,18 +213,28 @@ public class DefaultJobService implements JobService {
 	
 	@Override
 	public void commitJob(JobId jobId) {
-		Job job = jobs.fetchJob(jobId);
+		Job job = jobs.fetchJob(jobId, JOB_WITH_TASKS);
 		if(job.isNew()) {
+			
+			// Reject the job if the scheduler is saturated and job commits shall not be queued
+			admission.verifyCommit(job);
+			
+			// Store the task order to list the tasks without traversing the job flow
+			job.assignTaskOrdinals(topologies.readTopology(job));
 
 		    // Set all tasks ready for execution
 		    repository.execute(setTaskStateToReadyForExecution(job));
+		    job.allTasksReady();
 
 		    // Execute now, if no execution date is set
     		if(job.getDateScheduled() == null) {
     			job.setDateScheduled(new Date());
     		}
+    		// Rank job by schedule date and priority
+    		job.updateRank(config.getPriorityAging());
     		// Mark job ready for execution
     		job.setJobState(READY);
+    		scheduleEventSink.fire(new JobScheduleChangedEvent(job));
 
             LOG.fine(() -> format("%s: Job %s (%s) stored. Owner: %s", 
                                   JOB0107I_JOB_STORED.getReasonCode(),
@@ -259,21 +260,14 @@ public class DefaultJobService implements JobService {
 	
 	@Override
 	public JobSettings getJobSettings(JobId jobId) {
-		Job job = jobs.fetchJob(jobId);
-		return newJobSettings()
-			   .withJobId(job.getJobId())
-			   .withJobName(job.getJobName())
-			   .withJobApplication(job.getJobApplication())
-			   .withJobType(job.getJobType())
-			   .withJobState(job.getJobState())
-			   .withJobOwner(job.getJobOwner())
-			   .withSchedule(newJobSchedule()
-					   		    .withAutoResume(job.isAutoResume())
-					   		    .withStartTime(job.getDateScheduled())
-					   		    .withEndTime(job.getDateSuspend())
-							    .build())
-			   .withDateModified(job.getDateModified())
-			   .build();
+		JobSettings settings = repository.execute(findJobSettings(jobId));
+		if(settings == null) {
+			LOG.fine(() -> format("%s: Job %s not found.",
+								  JOB0100E_JOB_NOT_FOUND.getReasonCode(),
+								  jobId));
+			throw new EntityNotFoundException(JOB0100E_JOB_NOT_FOUND,jobId);
+		}
+		return settings;
 	}
 
 
@@ -281,11 +275,7 @@ public class DefaultJobService implements JobService {
 	public JobTasks getJobTasks(JobId jobId) {
 		Job job = jobs.fetchJob(jobId);
 		
-		List<JobTask> tasks = job.getOrderedTasks()
-								 .stream()
-								 .filter(task -> task.getElementId() != null || task.getParameters() != null)
-								 .map(task -> taskInfo(task))
-								 .collect(toList());
+		List<JobTask> tasks = taskInfos(job);
 		
 		ElementGroupSettings group = inventory.getGroupSettings(job);
 			
@@ -309,23 +299,14 @@ public class DefaultJobService implements JobService {
 		
 		Job job = jobs.fetchJob(jobId);
 		
-		List<JobTask> tasks = job.getOrderedTasks()
-								 .stream()
-								 .filter(task -> task.getElementId() != null || task.getParameters() != null)
-								 .map(task -> taskInfo(task))
-								 .collect(toList());
-		
-		TaskByStateCount stats = new TaskByStateCount();
-		Set<Job_Task> elements = new LinkedHashSet<>();
-		traverse(elements, job.getStart(),stats);
+		List<JobTask> tasks = taskInfos(job);
 		
-			
 		JobProgress progress = newJobProgress()
-							   .withActiveCount(stats.getCount(ACTIVE))
-							   .withReadyCount(stats.getCount(READY))
-							   .withCompletedCount(stats.getCount(COMPLETED)+stats.getCount(CONFIRM))
-							   .withFailedCount(stats.getCount(REJECTED)+stats.getCount(FAILED))
-							   .withTimeoutCount(stats.getCount(TIMEOUT))
+							   .withActiveCount(job.getTaskCount(ACTIVE))
+							   .withReadyCount(job.getTaskCount(READY))
+							   .withCompletedCount(job.getTaskCount(COMPLETED,CONFIRM))
+							   .withFailedCount(job.getTaskCount(REJECTED,FAILED))
+							   .withTimeoutCount(job.getTaskCount(TIMEOUT))
 							   .build();
 				
 		ElementGroupSettings group = inventory.getGroupSettings(job.getGroupId());
@@ -344,33 +325,55 @@ public class DefaultJobService implements JobService {
 					   		 .withStartTime(job.getDateScheduled())
 					   		 .withEndTime(job.getDateSuspend())
 					   		 .withAutoResume(job.isAutoResume()))
+			   .withQueuePosition(queuePosition(job))
+			   .withSuspended(job.isSuspended(new Date()))
 			   .build();
 	}
+	
+	private Integer queuePosition(Job job) {
+		Date now = new Date();
+		if(!job.isReady() || job.getDateRank() == null || job.getDateScheduled() == null || !job.getDateScheduled().before(now)) {
+			// Job is not waiting for admission
+			return null;
+		}
+		Long ahead = repository.execute(countJobsAhead(job, now));
+		if(ahead == null) {
+			return null;
+		}
+		return ahead.intValue()+1;
+	}
 
 
+	private List<JobTask> taskInfos(Job job){
+		if(!job.isNew()) {
+			// Read the task information of committed jobs without loading the task entities.
+			List<JobTask> tasks = repository.execute(findOrderedTaskInfos(job, inventory::getElementSettings));
+			if(tasks != null) {
+				return tasks;
+			}
+		}
+		// The job has not been committed yet or was committed before task ordinals were introduced.
+		return job.getOrderedTasks(topologies.getTopology(job))
+				  .stream()
+				  .filter(task -> task.getElementId() != null || task.getParameters() != null)
+				  .map(task -> taskInfo(task))
+				  .collect(toList());
+	}
+	
 	private JobTask taskInfo(Job_Task task) {
-		ElementSettings element = inventory.getElementSettings(task);
-		return newJobTask()
-			   .withTaskId(task.getTaskId())
-			   .withTaskName(task.getTaskName())
-			   .withTaskType(task.getTaskType())
-			   .withTaskState(task.getTaskState())
-			   .withElementId(optional(element, ElementSettings::getElementId))
-			   .withElementName(optional(element, ElementSettings::getElementName))
-			   .withElementAlias(optional(element,ElementSettings::getElementAlias))
-			   .withElementRole(optional(element,ElementSettings::getElementRole))
-			   .withGroupId(optional(element,ElementSettings::getGroupId))
-			   .withGroupName(optional(element,ElementSettings::getGroupName))
-			   .withGroupType(optional(element,ElementSettings::getGroupType))
-			   .withParameter(task.getParameters())
-			   .withDateLastModified(task.getDateModified())
-			   .build();
+		return Job_Task.taskInfo(task.getTaskId(),
+								 task.getTaskName(),
+								 task.getTaskType(),
+								 task.getTaskState(),
+								 task.getParameters(),
+								 task.getDateModified(),
+								 inventory.getElementSettings(task));
 	}
 	
 
 	@Override
 	public void resumeJob(JobId jobId) {
-		Job job = jobs.fetchJob(jobId);
+		Job job = jobs.fetchJob(jobId, JOB_WITH_TASKS);
 		if(job.isCompleted()) {
 			LOG.fine(()-> format("%s: Cannot resume completed job %s (%s). Job State: %s, Owner: %s",
 								 JOB0110E_CANNOT_RESUME_COMPLETED_JOB.getReasonCode(),
@@ -387,8 +390,21 @@ public class DefaultJobService implements JobService {
 			job.getTaskList()
 			   .stream()
 			   .filter(Job_Task::isResumable)
-			   .forEach(task -> task.setTaskState(READY));
+			   .forEach(task -> {
+				   task.resetAttempts();
+				   task.setTaskState(READY);
+			   });
+			// Restore the pending predecessors counters, since the tasks might have been modified by bulk updates.
+			job.resetPendingPredecessors(topologies.getTopology(job));
+			job.resetTaskCounts();
 			job.setJobState(ACTIVE);
+			scheduleEventSink.fire(new JobScheduleChangedEvent(job));
+		}
+		if(job.isWindowClosed(new Date())) {
+			// A job resumed after its window has been closed runs to completion.
+			job.setDateSuspend(null);
+			job.setAutoResume(false);
+			scheduleEventSink.fire(new JobScheduleChangedEvent(job));
 		}
 
 		LOG.fine(()-> format("%s: Resumed job %s (%s). Job State: %s, Owner: %s",
@@ -458,7 +474,7 @@ public class DefaultJobService implements JobService {
 
 	@Override
 	public void cancelJob(JobId jobId) {
-		Job job = jobs.fetchJob(jobId);
+		Job job = jobs.fetchJob(jobId, JOB_WITH_TASKS);
 		if(job.isCompleted()) {
 		    LOG.fine(() -> format("%s: Cannot cancel completed %s job (%s)",
 		                         JOB0106E_CANNOT_CANCEL_COMPLETED_JOB.getReasonCode(),
@@ -481,7 +497,7 @@ public class DefaultJobService implements JobService {
 
 	@Override
 	public void confirmJob(JobId jobId) {
-		Job job = jobs.fetchJob(jobId);
+		Job job = jobs.fetchJob(jobId, JOB_WITH_TASKS);
 		if(job.isSuspended()) {
 		    job.getTaskList()
 		       .stream()
@@ -490,6 +506,7 @@ public class DefaultJobService implements JobService {
 		    
 		    job.confirmed();
 		    job.completed();
+		    scheduleEventSink.fire(new JobScheduleChangedEvent(job));
 		    LOG.fine(()->format("%s: Job %s (%s) confirmed.",
 								JOB0103I_JOB_CONFIRMED.getReasonCode(),
 								job.getJobName(),
@@ -516,7 +533,15 @@ public class DefaultJobService implements JobService {
 		job.setDateScheduled(settings.getSchedule().getDateScheduled());
 		job.setDateSuspend(settings.getSchedule().getDateSuspend());
 		job.setAutoResume(settings.getSchedule().isAutoResume());
+		if(settings.getPriority() != null) {
+			// Settings without priority retain the current job priority.
+			job.setPriority(settings.getPriority());
+		}
+		if(job.isReady()) {
+			job.updateRank(config.getPriorityAging());
+		}
 		job.setJobOwner(user.getUserName());
+		scheduleEventSink.fire(new JobScheduleChangedEvent(job));
 		LOG.fine(()->format("%s: Job %s (%s) settings updated.",
 							JOB0101I_JOB_SETTINGS_UPDATED.getReasonCode(),
 							job.getJobName(),
@@ -528,7 +553,7 @@ public class DefaultJobService implements JobService {
 
 	@Override
 	public void removeJob(JobId jobId) {
-		Job job = jobs.tryFetchJob(jobId);
+		Job job = jobs.tryFetchJob(jobId, JOB_WITH_TASKS_AND_TRANSITIONS);
 		if(job == null) {
 		    return;
 		}
@@ -541,6 +566,7 @@ public class DefaultJobService implements JobService {
 									   job.getJobId(),
 									   job.getJobName()));
 			repository.remove(job);
+			topologies.evict(jobId);
 			return;
 		}
 		LOG.fine(()->format("%s: Job %s (%s) cannot be removed. State: %s.",
@@ -47,6 +47,7 @@ public class InvokeElementRestApiTaskProcessor implements TaskProcessor {
 			GenericRestClient client = new GenericRestClient(settings.getManagementInterfaceUri("REST"));
 			
 			Response response = client.invoke(request);
+			task.setStatusCode(response.getStatus());
 			return mapStatusCodeToTaskState(response);
 		} catch(Exception e) {
 			return FAILED;
@@ -42,6 +42,7 @@ public class InvokeRestApiTaskProcessor implements TaskProcessor {
 		try {
 			Request  request  = adaptFromJsonJsonRequest(task);
 			Response response = client.invoke(request);
+			task.setStatusCode(response.getStatus());
 			return mapStatusToTaskState(response);
 		} catch(Exception e) {
 			return FAILED;
@@ -15,6 +15,10 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.service.ElementGroupJobSummary.newElementGroupJobSummary;
+import static io.leitstand.jobs.service.JobId.jobId;
+import static io.leitstand.jobs.service.JobSchedule.newJobSchedule;
+import static io.leitstand.jobs.service.JobSettings.newJobSettings;
 import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.CANCELLED;
 import static io.leitstand.jobs.service.TaskState.COMPLETED;
@@ -24,24 +28,39 @@ import static io.leitstand.jobs.service.TaskState.NEW;
 import static io.leitstand.jobs.service.TaskState.READY;
 import static io.leitstand.jobs.service.TaskState.SKIPPED;
 import static io.leitstand.jobs.service.TaskState.TIMEOUT;
+import static java.lang.Boolean.TRUE;
+import static java.lang.String.format;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsLast;
+import static java.util.Collections.emptySet;
 import static java.util.Collections.unmodifiableMap;
+import static java.time.ZoneId.systemDefault;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.EnumType.STRING;
 import static javax.persistence.LockModeType.OPTIMISTIC_FORCE_INCREMENT;
 import static javax.persistence.TemporalType.TIMESTAMP;
 
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.StringJoiner;
 
 import javax.persistence.Column;
 import javax.persistence.Convert;
+import javax.persistence.Embedded;
 import javax.persistence.Entity;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.LockModeType;
 import javax.persistence.MapKey;
@@ -53,15 +72,18 @@ import javax.persistence.Temporal;
 
 import io.leitstand.commons.jpa.BooleanConverter;
 import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Update;
 import io.leitstand.commons.model.VersionableEntity;
 import io.leitstand.inventory.jpa.ElementGroupIdConverter;
 import io.leitstand.inventory.service.ElementGroupId;
 import io.leitstand.jobs.jpa.JobApplicationConverter;
 import io.leitstand.jobs.jpa.JobNameConverter;
 import io.leitstand.jobs.jpa.JobTypeConverter;
+import io.leitstand.jobs.service.ElementGroupJobSummary;
 import io.leitstand.jobs.service.JobApplication;
 import io.leitstand.jobs.service.JobId;
 import io.leitstand.jobs.service.JobName;
+import io.leitstand.jobs.service.JobSettings;
 import io.leitstand.jobs.service.JobType;
 import io.leitstand.jobs.service.TaskId;
 import io.leitstand.jobs.service.TaskState;
@@ -69,51 +91,452 @@ import io.leitstand.security.auth.UserName;
 import io.leitstand.security.auth.jpa.UserNameConverter;
 
 @Entity
-@Table(schema="job", name="job")
+@Table(schema="job", name="job", 
+       indexes={@Index(name="job_state_lease_idx", columnList="state,lease_owner,tslease"),
+                @Index(name="job_state_schedule_idx", columnList="state,tsschedule"),
+                @Index(name="job_state_rank_idx", columnList="state,tsrank"),
+                @Index(name="job_state_priority_idx", columnList="state,priority"),
+                @Index(name="job_state_suspend_idx", columnList="state,tssuspend")})
 @NamedQuery(name="Job.loadAllTransitionsAndTasks",
-			query="SELECT j FROM Job_Task_Transition j WHERE j.to.job=:job")
+			query="SELECT j FROM Job_Task_Transition j JOIN FETCH j.from JOIN FETCH j.to WHERE j.to.job=:job")
 @NamedQuery(name="Job.findByJobId",
 			query="SELECT j FROM Job j WHERE j.uuid=:id")
+@NamedQuery(name="Job.findSettingsByJobId",
+			query="SELECT j.uuid, j.name, j.application, j.type, j.state, j.owner, j.autoResume, j.tsschedule, j.tssuspend, j.priority, j.dateModified "+
+				  "FROM Job j WHERE j.uuid=:id")
+@NamedQuery(name="Job.findByJobIdWithTasks",
+			query="SELECT j FROM Job j LEFT JOIN FETCH j.tasks WHERE j.uuid=:id")
 @NamedQuery(name="Job.findByTaskId",
 			query="SELECT j FROM Job j INNER JOIN j.tasks t WHERE t.taskId=:id ")
 
 @NamedQuery(name="Job.findReadyAndActiveByElementGroup",
-			query="SELECT j FROM Job j "+
+			query="SELECT j.uuid, j.name, j.owner, j.state, j.tsschedule FROM Job j "+
 				  "WHERE j.groupId=:groupId "+
 				  "AND (j.state=io.leitstand.jobs.service.TaskState.READY "+
 				       "OR j.state=io.leitstand.jobs.service.TaskState.ACTIVE)" )
 @NamedQuery(name="Job.findJobs",
 			query="SELECT j FROM Job j ORDER BY j.tsschedule DESC")
-@NamedQuery(name="Job.findRunnableJobs",
-			query="SELECT j FROM Job j "+
+@NamedQuery(name="Job.findOldestOverdueJobDate",
+			query="SELECT MIN(COALESCE(j.tsschedule,j.dateModified)) FROM Job j "+
+				  "WHERE j.state=io.leitstand.jobs.service.TaskState.READY "+
+				  "AND (j.tsschedule IS NULL OR j.tsschedule <= :now)")
+@NamedQuery(name="Job.countJobsAhead",
+			query="SELECT COUNT(j) FROM Job j "+
 				  "WHERE j.state=io.leitstand.jobs.service.TaskState.READY "+
-				  "AND j.tsschedule < :scheduled" )
-@NamedQuery(name="Job.findRunningJobs",
-            query="SELECT j FROM Job j "+
-                  "WHERE j.state=io.leitstand.jobs.service.TaskState.ACTIVE")
+				  "AND j.tsschedule < :now "+
+				  "AND (j.tsrank < :rank OR (j.tsrank = :rank AND j.id < :id))")
+@NamedQuery(name="Job.findScheduledJobs",
+			query="SELECT j FROM Job j "+
+				  "WHERE (j.state=io.leitstand.jobs.service.TaskState.READY "+
+				       "OR (j.state=io.leitstand.jobs.service.TaskState.ACTIVE AND j.tssuspend IS NOT NULL)) "+
+				  "AND j.tsschedule >= :from "+
+				  "AND j.tsschedule < :to "+
+				  "ORDER BY j.tsschedule")
+@NamedQuery(name="Job.findAutoResumeJobs",
+			query="SELECT j FROM Job j "+
+				  "WHERE (j.state=io.leitstand.jobs.service.TaskState.READY "+
+				       "OR j.state=io.leitstand.jobs.service.TaskState.ACTIVE) "+
+				  "AND j.autoResume=:autoResume "+
+				  "AND j.tsschedule IS NOT NULL "+
+				  "AND j.tssuspend < :to "+
+				  "ORDER BY j.tssuspend")
+@NamedQuery(name="Job.findJobsWithoutTaskCounts",
+			query="SELECT j FROM Job j "+
+				  "WHERE j.taskCounts.readyCount IS NULL "+
+				  "AND (j.state=io.leitstand.jobs.service.TaskState.READY "+
+				       "OR j.state=io.leitstand.jobs.service.TaskState.ACTIVE "+
+				       "OR j.state=io.leitstand.jobs.service.TaskState.CONFIRM)")
+@NamedQuery(name="Job.renewLeases",
+			query="UPDATE Job j SET j.tslease=:expiry "+
+				  "WHERE j.leaseOwner=:owner "+
+				  "AND (j.state=io.leitstand.jobs.service.TaskState.READY "+
+				       "OR j.state=io.leitstand.jobs.service.TaskState.ACTIVE)")
+@NamedQuery(name="Job.assignMissingRanks",
+			query="UPDATE Job j SET j.tsrank=COALESCE(j.tsschedule,j.dateModified) "+
+				  "WHERE j.tsrank IS NULL "+
+				  "AND (j.state=io.leitstand.jobs.service.TaskState.READY "+
+				       "OR j.state=io.leitstand.jobs.service.TaskState.ACTIVE)")
+@NamedQuery(name="Job.releaseLeases",
+			query="UPDATE Job j SET j.leaseOwner=NULL, j.tslease=NULL "+
+				  "WHERE j.leaseOwner=:owner")
 public class Job extends VersionableEntity {
 	
 	private static final long serialVersionUID = 1L;
-
+	
+	// Positional parameters of the claim date and of the first excluded job application in the claim statements.
+	private static final int CLAIM_DATE = 8;
+	private static final int CLAIM_EXCLUDED = 9;
+	private static final int CANDIDATE_DATE = 6;
+	private static final int CANDIDATE_EXCLUDED = 7;
+	
+	// Claim order of ready jobs and urgent running jobs
+	private static final String RANK_ORDER = "tsrank, id";
+	
 	public static Query<List<Job>> findJobs() {
 		return em -> em.createNamedQuery("Job.findJobs",Job.class)
 					   .setMaxResults(100)
 					   .getResultList();
 	}
 	
-	public static Query<List<Job>> findRunningJobs(int limit){
-	    return em -> em.createNamedQuery("Job.findRunningJobs",Job.class)
-	                   .setMaxResults(limit)
-	                   .getResultList();
+	/**
+	 * Returns the schedule date of the oldest ready job that is due for execution.
+	 * The last modification date is returned for jobs without schedule date.
+	 * @param now the current date
+	 * @return the oldest schedule date or <code>null</code> if no job is due for execution.
+	 */
+	public static Query<Date> findOldestOverdueJobDate(Date now){
+		return em -> em.createNamedQuery("Job.findOldestOverdueJobDate",Date.class)
+					   .setParameter("now", now, TIMESTAMP)
+					   .getSingleResult();
+	}
+	
+	/**
+	 * Returns the number of ready jobs due for execution that precede the given job in dispatch rank order.
+	 * @param job the ready job
+	 * @param now the current date
+	 * @return the number of preceding ready jobs.
+	 */
+	public static Query<Long> countJobsAhead(Job job, Date now){
+		return em -> em.createNamedQuery("Job.countJobsAhead",Long.class)
+					   .setParameter("now", now, TIMESTAMP)
+					   .setParameter("rank", job.getDateRank(), TIMESTAMP)
+					   .setParameter("id", job.getId())
+					   .getSingleResult();
 	}
 	
-	public static Query<List<Job>> findRunnableJobs(Date scheduled, int limit){
-		return em -> em.createNamedQuery("Job.findRunnableJobs", Job.class)
-					   .setParameter("scheduled", scheduled, TIMESTAMP)
-					   .setMaxResults(limit)
+	/**
+	 * Returns all ready jobs and all running jobs with a suspend window scheduled within the given time frame.
+	 * @param from the start of the time frame (inclusive)
+	 * @param to the end of the time frame (exclusive)
+	 * @return all jobs scheduled within the time frame ordered by their schedule date
+	 */
+	public static Query<List<Job>> findScheduledJobs(Date from, Date to){
+		return em -> em.createNamedQuery("Job.findScheduledJobs",Job.class)
+					   .setParameter("from", from, TIMESTAMP)
+					   .setParameter("to", to, TIMESTAMP)
 					   .getResultList();
 	}
 	
+	/**
+	 * Returns all ready and running jobs resumed automatically whose window closes before the given date, 
+	 * including all jobs whose window has already been closed.
+	 * @param to the end of the look-ahead horizon
+	 * @return the jobs ordered by their suspend date
+	 */
+	public static Query<List<Job>> findAutoResumeJobs(Date to){
+		return em -> em.createNamedQuery("Job.findAutoResumeJobs",Job.class)
+					   .setParameter("autoResume", true)
+					   .setParameter("to", to, TIMESTAMP)
+					   .getResultList();
+	}
+	
+	/**
+	 * Claims a batch of ready jobs of the given partition scheduled before the given date.
+	 * Jobs leased by other nodes are skipped unless their lease has expired.
+	 * The claim relies on <code>SELECT ... FOR UPDATE SKIP LOCKED</code> 
+	 * to let concurrent nodes claim disjoint batches without blocking each other.
+	 * @param scheduled the schedule date
+	 * @param partition the job partition
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 * @see #claimRunnableJobsWithoutSkipLocked(Date, JobPartition, String, Date, int)
+	 */
+	public static Query<List<JobId>> claimRunnableJobs(Date scheduled, JobPartition partition, String owner, Date leaseExpiry, int limit){
+		return claimRunnableJobs(scheduled, partition, emptySet(), owner, leaseExpiry, limit);
+	}
+	
+	/**
+	 * Claims a batch of ready jobs of the given partition scheduled before the given date, 
+	 * skipping all jobs of the given job applications.
+	 * The jobs are claimed and returned in dispatch rank order.
+	 * @param scheduled the schedule date
+	 * @param partition the job partition
+	 * @param excluded the job applications whose jobs must not be claimed
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 * @see #claimRunnableJobs(Date, JobPartition, String, Date, int)
+	 */
+	public static Query<List<JobId>> claimRunnableJobs(Date scheduled, JobPartition partition, Collection<JobApplication> excluded, String owner, Date leaseExpiry, int limit){
+		return claimJobs(scheduledBefore(CLAIM_DATE), excluded, RANK_ORDER, scheduled, partition, new JobCursor(), owner, leaseExpiry, limit);
+	}
+	
+	/**
+	 * Claims a batch of running jobs of the given partition with a priority above the default priority.
+	 * The jobs are claimed and returned in dispatch rank order. Jobs outside of their window are skipped.
+	 * The claim relies on <code>SELECT ... FOR UPDATE SKIP LOCKED</code> 
+	 * to let concurrent nodes claim disjoint batches without blocking each other.
+	 * @param partition the job partition
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 * @see #claimUrgentRunningJobsWithoutSkipLocked(JobPartition, String, Date, int)
+	 */
+	public static Query<List<JobId>> claimUrgentRunningJobs(JobPartition partition, String owner, Date leaseExpiry, int limit){
+		return claimJobs("state='ACTIVE' AND priority > 0 "+withinWindow(CLAIM_DATE), emptySet(), RANK_ORDER, new Date(), partition, new JobCursor(), owner, leaseExpiry, limit);
+	}
+
+	/**
+	 * Claims the next batch of running jobs of the given partition.
+	 * The batch starts after the last job visited by the given cursor and the cursor is advanced to the last job of the batch.
+	 * The cursor restarts with the first job, once all running jobs have been visited.
+	 * Jobs leased by other nodes are skipped unless their lease has expired.
+	 * Jobs outside of their window are skipped.
+	 * The claim relies on <code>SELECT ... FOR UPDATE SKIP LOCKED</code> 
+	 * to let concurrent nodes claim disjoint batches without blocking each other.
+	 * @param partition the job partition
+	 * @param cursor the cursor of the calling worker
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 * @see #claimRunningJobsWithoutSkipLocked(JobPartition, JobCursor, String, Date, int)
+	 */
+	public static Query<List<JobId>> claimRunningJobs(JobPartition partition, JobCursor cursor, String owner, Date leaseExpiry, int limit){
+		return claimJobs("state='ACTIVE' "+withinWindow(CLAIM_DATE), emptySet(), "id", new Date(), partition, cursor, owner, leaseExpiry, limit);
+	}
+	
+	private static Query<List<JobId>> claimJobs(String filter, Collection<JobApplication> excluded, String order, Date scheduled, JobPartition partition, JobCursor cursor, String owner, Date leaseExpiry, int limit){
+		List<JobApplication> applications = new ArrayList<>(excluded);
+		return em -> {
+			javax.persistence.Query claim = em.createNativeQuery("UPDATE job.job SET lease_owner=?1, tslease=?2 "+
+																 "WHERE id IN (SELECT id FROM job.job "+
+																 			  "WHERE "+filter+notIn(applications.size(), CLAIM_EXCLUDED)+
+																 			  "AND MOD(id,?3)=?4 "+
+																 			  "AND (lease_owner IS NULL OR lease_owner=?1 OR tslease < ?5) "+
+																 			  "AND id > ?6 "+
+																 			  "ORDER BY "+order+" "+
+																 			  "LIMIT ?7 "+
+																 			  "FOR UPDATE SKIP LOCKED) "+
+																 "RETURNING id, uuid, tsrank")
+											  .setParameter(1, owner)
+											  .setParameter(2, leaseExpiry, TIMESTAMP)
+											  .setParameter(3, partition.getCount())
+											  .setParameter(4, partition.getIndex())
+											  .setParameter(5, new Date(), TIMESTAMP)
+											  .setParameter(6, cursor.getPosition())
+											  .setParameter(7, limit);
+			if(scheduled != null) {
+				claim.setParameter(CLAIM_DATE, scheduled, TIMESTAMP);
+			}
+			bindApplications(claim, applications, CLAIM_EXCLUDED);
+			// The returned rows are unordered, even though the subquery selects the claimed jobs in the given order.
+			List<Object[]> rows = new ArrayList<>();
+			for(Object candidate : claim.getResultList()) {
+				rows.add((Object[]) candidate);
+			}
+			rows.sort(claimOrder(order));
+			List<JobId> claimed = new ArrayList<>();
+			long last = cursor.getPosition();
+			for(Object[] row : rows) {
+				last = Math.max(last, ((Number) row[0]).longValue());
+				claimed.add(jobId((String) row[1]));
+			}
+			cursor.advance(last, claimed.size(), limit);
+			return claimed;
+		};
+	}
+	
+	/**
+	 * Returns the comparator to sort the rows returned by the claim statement in the given claim order.
+	 * @param order the claim order, either dispatch rank and job ID or job ID only
+	 * @return the comparator of <code>id, uuid, tsrank</code> rows
+	 */
+	static Comparator<Object[]> claimOrder(String order){
+		Comparator<Object[]> byId = comparing(row -> ((Number) row[0]).longValue());
+		if(RANK_ORDER.equals(order)) {
+			return Comparator.<Object[],Date>comparing(row -> (Date) row[2], nullsLast(naturalOrder()))
+							 .thenComparing(byId);
+		}
+		return byId;
+	}
+	
+	/**
+	 * Claims a batch of ready jobs for databases not supporting <code>SKIP LOCKED</code>.
+	 * The candidates are read without locks and claimed one by one by a conditional update.
+	 * A job claimed by a concurrent node in the meantime is not updated and hence not returned.
+	 * @param scheduled the schedule date
+	 * @param partition the job partition
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 */
+	public static Query<List<JobId>> claimRunnableJobsWithoutSkipLocked(Date scheduled, JobPartition partition, String owner, Date leaseExpiry, int limit){
+		return claimRunnableJobsWithoutSkipLocked(scheduled, partition, emptySet(), owner, leaseExpiry, limit);
+	}
+	
+	/**
+	 * Claims a batch of ready jobs for databases not supporting <code>SKIP LOCKED</code>, 
+	 * skipping all jobs of the given job applications.
+	 * @param scheduled the schedule date
+	 * @param partition the job partition
+	 * @param excluded the job applications whose jobs must not be claimed
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 */
+	public static Query<List<JobId>> claimRunnableJobsWithoutSkipLocked(Date scheduled, JobPartition partition, Collection<JobApplication> excluded, String owner, Date leaseExpiry, int limit){
+		return claimJobsWithoutSkipLocked(scheduledBefore(CANDIDATE_DATE), excluded, RANK_ORDER, scheduled, partition, new JobCursor(), owner, leaseExpiry, limit);
+	}
+	
+	/**
+	 * Returns the filter of jobs not owned by the excluded job applications.
+	 * The job applications are bound to consecutive positional parameters by {@link #bindApplications(javax.persistence.Query, List, int)}.
+	 * @param applications the number of excluded job applications
+	 * @param first the positional parameter of the first excluded job application
+	 * @return the job application filter or an empty string if no job application is excluded.
+	 */
+	private static String notIn(int applications, int first) {
+		if(applications == 0) {
+			return "";
+		}
+		StringJoiner filter = new StringJoiner(",", "AND application NOT IN (", ") ");
+		for(int i=0; i < applications; i++) {
+			filter.add("?"+(first+i));
+		}
+		return filter.toString();
+	}
+	
+	private static void bindApplications(javax.persistence.Query query, List<JobApplication> applications, int first) {
+		for(int i=0; i < applications.size(); i++) {
+			query.setParameter(first+i, applications.get(i).getValue());
+		}
+	}
+	
+	/**
+	 * Returns the filter of ready jobs scheduled before the claim date and not suspended at the claim date.
+	 * @param date the positional parameter of the claim date
+	 * @return the ready jobs filter
+	 */
+	private static String scheduledBefore(int date) {
+		return format("state='READY' AND tsschedule < ?%d AND (tssuspend IS NULL OR tssuspend > ?%d) ",date,date);
+	}
+	
+	/**
+	 * Returns the filter of running jobs within their window at the claim date.
+	 * Running jobs with a suspend date are only claimed within their window. 
+	 * @param date the positional parameter of the claim date
+	 * @return the window filter
+	 */
+	private static String withinWindow(int date) {
+		return format("AND (tssuspend IS NULL OR ((tsschedule IS NULL OR tsschedule <= ?%d) AND tssuspend > ?%d)) ",date,date);
+	}
+	
+	/**
+	 * Claims a batch of running jobs with a priority above the default priority 
+	 * for databases not supporting <code>SKIP LOCKED</code>.
+	 * The candidates are read in dispatch rank order without locks and claimed one by one by a conditional update.
+	 * @param partition the job partition
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 */
+	public static Query<List<JobId>> claimUrgentRunningJobsWithoutSkipLocked(JobPartition partition, String owner, Date leaseExpiry, int limit){
+		return claimJobsWithoutSkipLocked("state='ACTIVE' AND priority > 0 "+withinWindow(CANDIDATE_DATE), emptySet(), RANK_ORDER, new Date(), partition, new JobCursor(), owner, leaseExpiry, limit);
+	}
+
+	/**
+	 * Claims the next batch of running jobs for databases not supporting <code>SKIP LOCKED</code>.
+	 * The candidates are read without locks and claimed one by one by a conditional update.
+	 * A job claimed by a concurrent node in the meantime is not updated and hence not returned.
+	 * The cursor is advanced to the last candidate and restarts with the first job, once all running jobs have been visited.
+	 * @param partition the job partition
+	 * @param cursor the cursor of the calling worker
+	 * @param owner the claiming node
+	 * @param leaseExpiry the lease expiry date
+	 * @param limit the maximum number of claimed jobs
+	 * @return the IDs of all claimed jobs
+	 */
+	public static Query<List<JobId>> claimRunningJobsWithoutSkipLocked(JobPartition partition, JobCursor cursor, String owner, Date leaseExpiry, int limit){
+		return claimJobsWithoutSkipLocked("state='ACTIVE' "+withinWindow(CANDIDATE_DATE), emptySet(), "id", new Date(), partition, cursor, owner, leaseExpiry, limit);
+	}
+	
+	private static Query<List<JobId>> claimJobsWithoutSkipLocked(String filter, Collection<JobApplication> excluded, String order, Date scheduled, JobPartition partition, JobCursor cursor, String owner, Date leaseExpiry, int limit){
+		List<JobApplication> applications = new ArrayList<>(excluded);
+		return em -> {
+			Date now = new Date();
+			javax.persistence.Query candidates = em.createNativeQuery("SELECT id, uuid FROM job.job "+
+																	  "WHERE "+filter+notIn(applications.size(), CANDIDATE_EXCLUDED)+
+																	  "AND MOD(id,?1)=?2 "+
+																	  "AND (lease_owner IS NULL OR lease_owner=?3 OR tslease < ?4) "+
+																	  "AND id > ?5 "+
+																	  "ORDER BY "+order)
+												   .setParameter(1, partition.getCount())
+												   .setParameter(2, partition.getIndex())
+												   .setParameter(3, owner)
+												   .setParameter(4, now, TIMESTAMP)
+												   .setParameter(5, cursor.getPosition())
+												   .setMaxResults(limit);
+			if(scheduled != null) {
+				candidates.setParameter(CANDIDATE_DATE, scheduled, TIMESTAMP);
+			}
+			bindApplications(candidates, applications, CANDIDATE_EXCLUDED);
+			List<?> rows = candidates.getResultList();
+			List<JobId> claimed = new ArrayList<>();
+			long last = cursor.getPosition();
+			for(Object candidate : rows) {
+				Object[] row = (Object[]) candidate;
+				long id = ((Number) row[0]).longValue();
+				last = Math.max(last, id);
+				int updated = em.createNativeQuery("UPDATE job.job SET lease_owner=?1, tslease=?2 "+
+												   "WHERE id=?3 "+
+												   "AND (lease_owner IS NULL OR lease_owner=?1 OR tslease < ?4)")
+								.setParameter(1, owner)
+								.setParameter(2, leaseExpiry, TIMESTAMP)
+								.setParameter(3, id)
+								.setParameter(4, now, TIMESTAMP)
+								.executeUpdate();
+				if(updated == 1) {
+					claimed.add(jobId((String) row[1]));
+				}
+			}
+			cursor.advance(last, rows.size(), limit);
+			return claimed;
+		};
+	}
+	
+	/**
+	 * Renews the leases of all ready and running jobs claimed by the given node.
+	 * @param owner the node owning the leases
+	 * @param leaseExpiry the new lease expiry date
+	 * @return the number of renewed leases
+	 */
+	public static Update renewJobLeases(String owner, Date leaseExpiry) {
+		return em -> em.createNamedQuery("Job.renewLeases")
+					   .setParameter("owner", owner)
+					   .setParameter("expiry", leaseExpiry, TIMESTAMP)
+					   .executeUpdate();
+	}
+	
+	/**
+	 * Sets the dispatch rank of all ready and running jobs without dispatch rank to their schedule date.
+	 * Only jobs committed before the job priorities were introduced lack a dispatch rank.
+	 * @return the number of updated jobs
+	 */
+	public static Update assignMissingRanks() {
+		return em -> em.createNamedQuery("Job.assignMissingRanks")
+					   .executeUpdate();
+	}
+	
+	/**
+	 * Releases all leases owned by the given node, 
+	 * which allows other nodes to claim the jobs immediately.
+	 * @param owner the node owning the leases
+	 * @return the number of released leases
+	 */
+	public static Update releaseJobLeases(String owner) {
+		return em -> em.createNamedQuery("Job.releaseLeases")
+					   .setParameter("owner", owner)
+					   .executeUpdate();
+	}
+	
 	public static Query<List<Job_Task_Transition>> findAllTransitions(Job job){
 		return em -> em.createNamedQuery("Job.loadAllTransitionsAndTasks",Job_Task_Transition.class)
 					   .setParameter("job",job)
@@ -126,6 +549,55 @@ public class Job extends VersionableEntity {
 					   .getSingleResult();
 	}
 	
+	/**
+	 * Returns the settings of the given job.
+	 * The query reads the settings columns only and creates the settings directly without loading the job entity.
+	 * @param id the job ID
+	 * @return the job settings or <code>null</code> if the job does not exist.
+	 */
+	public static Query<JobSettings> findJobSettings(JobId id) {
+		return em -> {
+			List<Object[]> rows = em.createNamedQuery("Job.findSettingsByJobId",Object[].class)
+									.setParameter("id", id.toString())
+									.getResultList();
+			if(rows.isEmpty()) {
+				return null;
+			}
+			Object[] row = rows.get(0);
+			return newJobSettings()
+				   .withJobId(jobId((String) row[0]))
+				   .withJobName((JobName) row[1])
+				   .withJobApplication((JobApplication) row[2])
+				   .withJobType((JobType) row[3])
+				   .withJobState((TaskState) row[4])
+				   .withJobOwner((UserName) row[5])
+				   .withSchedule(newJobSchedule()
+						   		 .withAutoResume(TRUE.equals(row[6]))
+						   		 .withStartTime((Date) row[7])
+						   		 .withEndTime((Date) row[8])
+						   		 .build())
+				   .withPriority(((Number) row[9]).intValue())
+				   .withDateModified((Date) row[10])
+				   .build();
+		};
+	}
+	
+	/**
+	 * Returns the job with the given ID and all tasks of the job by a single query.
+	 * @param id the job ID
+	 * @return the job with all tasks or <code>null</code> if the job does not exist.
+	 * @see JobFetchPlan#JOB_WITH_TASKS
+	 */
+	public static Query<Job> findJobWithTasksById(JobId id) {
+		return em -> {
+			// The job is returned once per task.
+			List<Job> jobs = em.createNamedQuery("Job.findByJobIdWithTasks",Job.class)
+							   .setParameter("id", id.toString())
+							   .getResultList();
+			return jobs.isEmpty() ? null : jobs.get(0);
+		};
+	}
+	
 	public static Query<Job> findJobById(JobId id, LockModeType lockMode) {
 		return em -> em.createNamedQuery("Job.findByJobId",Job.class)
 					   .setParameter("id", id.toString())
@@ -144,11 +616,38 @@ public class Job extends VersionableEntity {
 					   .getSingleResult();
 	}
 	
-	public static Query<List<Job>> findReadyAndActiveJobsForElementGroup(ElementGroupId groupId) {
-		return em -> em.createNamedQuery("Job.findReadyAndActiveByElementGroup",Job.class)
-				   	   .setParameter("groupId", groupId)
-				   	   .getResultList();
-		
+	/**
+	 * Returns all ready, running and suspended jobs without task counters.
+	 * Only jobs stored before the task counters were introduced lack task counters.
+	 * @return all unfinished jobs without task counters
+	 */
+	public static Query<List<Job>> findJobsWithoutTaskCounts(){
+		return em -> em.createNamedQuery("Job.findJobsWithoutTaskCounts",Job.class)
+					   .getResultList();
+	}
+	
+	/**
+	 * Returns the summaries of all ready and active jobs of the given element group.
+	 * The query reads the summary columns only and creates the summaries directly without loading the job entities.
+	 * @param groupId the element group ID
+	 * @return the summaries of all ready and active jobs of the element group.
+	 */
+	public static Query<List<ElementGroupJobSummary>> findReadyAndActiveJobsForElementGroup(ElementGroupId groupId) {
+		return em -> {
+			List<ElementGroupJobSummary> jobs = new ArrayList<>();
+			for(Object[] row : em.createNamedQuery("Job.findReadyAndActiveByElementGroup",Object[].class)
+								 .setParameter("groupId", groupId)
+								 .getResultList()) {
+				jobs.add(newElementGroupJobSummary()
+						 .withJobId(jobId((String) row[0]))
+						 .withJobName((JobName) row[1])
+						 .withJobOwner((UserName) row[2])
+						 .withTaskState((TaskState) row[3])
+						 .withStartDate((Date) row[4])
+						 .build());
+			}
+			return jobs;
+		};
 	}
 	
 	@Column(name="elementgroup_uuid")
@@ -190,6 +689,23 @@ public class Job extends VersionableEntity {
 	@Convert(converter=UserNameConverter.class)
 	private UserName owner;
 	
+	@Column(name="lease_owner")
+	private String leaseOwner;
+	
+	@Temporal(TIMESTAMP)
+	private Date tslease;
+	
+	@Column(name="priority")
+	private int priority;
+	
+	/** Dispatch rank of the job. Jobs are dispatched in ascending rank order. */
+	@Temporal(TIMESTAMP)
+	private Date tsrank;
+	
+	/** Number of tasks per task state or <code>null</code> if the counters have not been computed yet. */
+	@Embedded
+	private TaskStateCounts taskCounts;
+	
 	protected Job(){
 		
 	}
@@ -205,11 +721,81 @@ public class Job extends VersionableEntity {
 		this.type = type;
 		this.name = name;
 		this.tasks = new LinkedHashMap<>();
+		this.taskCounts = new TaskStateCounts();
 		this.state = NEW;
 	}
 	
 	void addTask(Job_Task task){
-		this.tasks.put(task.getTaskId(),task);
+		Job_Task replaced = this.tasks.put(task.getTaskId(),task);
+		if(taskCounts != null) {
+			if(replaced != null) {
+				taskCounts.add(replaced.getTaskState(), -1);
+			}
+			taskCounts.add(task.getTaskState(), 1);
+		}
+	}
+	
+	/**
+	 * Updates the task counters when a task of this job has changed its state.
+	 * @param from the previous task state
+	 * @param to the new task state
+	 */
+	void taskStateChanged(TaskState from, TaskState to) {
+		if(taskCounts != null) {
+			taskCounts.add(from, -1);
+			taskCounts.add(to, 1);
+		}
+	}
+	
+	/**
+	 * Returns the number of tasks in any of the given states.
+	 * The task counters are recomputed from the tasks if the counters have not been computed yet.
+	 * @param states the task states
+	 * @return the number of tasks in any of the given states.
+	 */
+	public int getTaskCount(TaskState... states) {
+		if(taskCounts == null) {
+			resetTaskCounts();
+		}
+		int count = 0;
+		for(TaskState s : states) {
+			count += taskCounts.get(s);
+		}
+		return count;
+	}
+	
+	/**
+	 * Returns the total number of tasks of this job.
+	 * The task counters are recomputed from the tasks if the counters have not been computed yet.
+	 * @return the total number of tasks.
+	 */
+	public int getTotalTaskCount() {
+		if(taskCounts == null) {
+			resetTaskCounts();
+		}
+		return taskCounts.getTotal();
+	}
+	
+	/**
+	 * Updates the task counters after all tasks of this job have been set ready for execution by a bulk update.
+	 */
+	void allTasksReady() {
+		int total = getTotalTaskCount();
+		TaskStateCounts counts = new TaskStateCounts();
+		counts.add(READY, total);
+		this.taskCounts = counts;
+	}
+	
+	/**
+	 * Recomputes the task counters from the tasks of this job.
+	 * The counters must be recomputed after task states have been modified by bulk updates.
+	 */
+	public void resetTaskCounts() {
+		TaskStateCounts counts = new TaskStateCounts();
+		for(Job_Task task : tasks.values()) {
+			counts.add(task.getTaskState(), 1);
+		}
+		this.taskCounts = counts;
 	}
 	
 	public void setGroupId(ElementGroupId groupId) {
@@ -248,10 +834,112 @@ public class Job extends VersionableEntity {
 		return tssuspend;
 	}
 	
+	/**
+	 * Returns the node that has claimed this job or <code>null</code> if the job has not been claimed yet.
+	 * @return the node owning the job lease.
+	 */
+	public String getLeaseOwner() {
+		return leaseOwner;
+	}
+	
+	/**
+	 * Returns the expiry date of the job lease or <code>null</code> if the job has not been claimed yet.
+	 * @return the lease expiry date.
+	 */
+	public Date getDateLeaseExpiry() {
+		return tslease;
+	}
+	
+	/**
+	 * Returns the job priority. Jobs with a higher priority are executed first.
+	 * @return the job priority.
+	 */
+	public int getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * Sets the job priority.
+	 * The dispatch rank must be updated to apply the new priority.
+	 * @param priority the job priority
+	 * @see #updateRank(long)
+	 */
+	public void setPriority(int priority) {
+		this.priority = priority;
+	}
+	
+	/**
+	 * Returns the dispatch rank of this job or <code>null</code> if the job has not been committed yet.
+	 * @return the dispatch rank of this job.
+	 */
+	public Date getDateRank() {
+		return tsrank;
+	}
+	
+	/**
+	 * Updates the dispatch rank of this job. 
+	 * The dispatch rank is the schedule date advanced by the aging period for every priority level.
+	 * Jobs are dispatched in ascending rank order.
+	 * Hence, a job is dispatched before all jobs of lower priority that are due for less than the priority difference times the aging period
+	 * and after all jobs of lower priority that are due for longer, which guarantees that low-priority jobs are not starved.
+	 * @param aging the aging period of one priority level in seconds
+	 */
+	public void updateRank(long aging) {
+		long scheduled = tsschedule != null ? tsschedule.getTime() : System.currentTimeMillis();
+		this.tsrank = new Date(scheduled - priority * SECONDS.toMillis(aging));
+	}
+	
 	public boolean isAutoResume() {
 		return autoResume;
 	}
 	
+	/**
+	 * Returns whether the window of this job has been closed at the given date.
+	 * The scheduler does not dispatch new tasks of a job whose window has been closed.
+	 * @param now the current date
+	 * @return <code>true</code> if the suspend date of this job has passed, <code>false</code> otherwise.
+	 */
+	public boolean isWindowClosed(Date now) {
+		return tssuspend != null && !tssuspend.after(now);
+	}
+	
+	/**
+	 * Returns whether this job is suspended at the given date.
+	 * A ready job is suspended once its window has been closed.
+	 * A running job is suspended as long as it is outside of its window,
+	 * i.e. after its window has been closed or before the next window of a job resumed automatically opens.
+	 * The scheduler does not dispatch new tasks of a suspended job.
+	 * @param now the current date
+	 * @return <code>true</code> if this job is suspended, <code>false</code> otherwise.
+	 */
+	public boolean isSuspended(Date now) {
+		if(isReady()) {
+			return isWindowClosed(now);
+		}
+		if(isRunning()) {
+			return isWindowClosed(now) || (tssuspend != null && tsschedule != null && tsschedule.after(now));
+		}
+		return false;
+	}
+	
+	/**
+	 * Moves the window of this job by whole days to the next window that closes after the given date.
+	 * The days are added in the default time zone to keep the window at the same local time of day.
+	 * Nothing is changed if this job has no window or if the window is still open.
+	 * @param now the current date
+	 * @return <code>true</code> if the window has been moved, <code>false</code> otherwise.
+	 */
+	public boolean moveToNextWindow(Date now) {
+		if(tsschedule == null || !isWindowClosed(now)) {
+			return false;
+		}
+		ZonedDateTime suspend = tssuspend.toInstant().atZone(systemDefault());
+		long days = DAYS.between(suspend, now.toInstant().atZone(systemDefault())) + 1;
+		this.tssuspend = Date.from(suspend.plusDays(days).toInstant());
+		this.tsschedule = Date.from(tsschedule.toInstant().atZone(systemDefault()).plusDays(days).toInstant());
+		return true;
+	}
+	
 	public boolean isReady() {
 		return state == READY;
 	}
@@ -276,7 +964,10 @@ public class Job extends VersionableEntity {
 	}
 
 	public void removeTask(Job_Task task) {
-		tasks.remove(task.getTaskId());
+		Job_Task removed = tasks.remove(task.getTaskId());
+		if(removed != null && taskCounts != null) {
+			taskCounts.add(removed.getTaskState(), -1);
+		}
 	}
 	
 	public void setJobName(JobName name) {
@@ -357,10 +1048,7 @@ public class Job extends VersionableEntity {
 	}
 
 	public boolean completed() {
-		for(Job_Task task : getTasks().values()) {
-			if(task.isSucceeded()) {
-				continue;
-			}
+		if(getTaskCount(COMPLETED) < getTotalTaskCount()) {
 			return false;
 		}
 		this.state = COMPLETED;
@@ -368,26 +1056,54 @@ public class Job extends VersionableEntity {
 	}
 
 	public Job_Task getTask(TaskId taskId) {
-		return getTasks().get(taskId);
+		return tasks.get(taskId);
 	}
 	
 	public Set<Job_Task> getOrderedTasks(){
+		return getOrderedTasks(JobTopology.of(this));
+	}
+	
+	/**
+	 * Returns all tasks reachable from the start task in listing order.
+	 * The successors of a task are not listed before all predecessors of the task have been listed.
+	 * @param topology the topology of this job
+	 * @return the ordered tasks.
+	 * @see JobTopology#getOrderedTasks()
+	 */
+	public Set<Job_Task> getOrderedTasks(JobTopology topology){
 		Set<Job_Task> tasks = new LinkedHashSet<>();
-		tasks.add(getStart());
-		traverse(tasks, getStart());
+		for(int task : topology.getOrderedTasks()) {
+			tasks.add(getTask(topology.getTaskId(task)));
+		}
 		return tasks;
 	}
 	
-	private void traverse(Set<Job_Task> tasks, Job_Task task) {
-		for(Job_Task_Transition transition: task.getPredecessors()) {
-		    if(!tasks.contains(transition.getFrom())) {
-		        return;
-		    }
+	/**
+	 * Stores the position of every task in the ordered task list, 
+	 * so that the ordered tasks can be read by a single query instead of traversing the job flow.
+	 * Tasks not reachable from the start task are not part of the ordered task list and have no ordinal.
+	 * @param topology the topology of this job
+	 * @see Job_Task#findOrderedTaskInfos(Job, java.util.function.Function)
+	 */
+	void assignTaskOrdinals(JobTopology topology) {
+		int[] ordered = topology.getOrderedTasks();
+		for(int i=0; i < ordered.length; i++) {
+			getTask(topology.getTaskId(ordered[i])).setOrdinal(i);
 		}
-	    
-		for(Job_Task_Transition transition : task.getSuccessors()) {
-		    tasks.add(transition.getTo());
-		    traverse(tasks, transition.getTo());
+	}
+	
+	/**
+	 * Recounts the pending predecessors of all tasks from a snapshot of the task states.
+	 * The predecessors are read from the job topology, which avoids loading the transitions of every task.
+	 * @param topology the topology of this job
+	 */
+	public void resetPendingPredecessors(JobTopology topology) {
+		byte[] states = topology.getTaskStates(this);
+		for(int i=0; i < topology.getTaskCount(); i++) {
+			Job_Task task = getTask(topology.getTaskId(i));
+			if(task != null) {
+				task.setPendingPredecessors(topology.countPendingPredecessors(i, states));
+			}
 		}
 	}
 
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.Collections.emptyMap;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+import io.leitstand.jobs.service.JobApplication;
+
+/**
+ * A snapshot of the ready and active tasks of all admitted jobs, which decides whether a job can be admitted.
+ * <p>
+ * A job is admitted if its ready and active tasks do not exceed the global admission limit 
+ * and the admission limit of its job application.
+ * A job is always admitted if no other job holds ready or active tasks of the exceeded limit,
+ * so that a job with more tasks than the limit is not queued forever.
+ * An admitted job is added to the snapshot, so that all jobs admitted by a single event loop iteration are taken into account.
+ * </p>
+ * <p>
+ * A snapshot is not thread-safe and must be confined to a single event loop worker.
+ * Concurrent workers and cluster nodes work on their own snapshots.
+ * Hence, the admission limits are soft limits, which can be exceeded by the jobs admitted by a single event loop iteration of every worker.
+ * </p>
+ */
+public final class JobAdmission {
+
+	/** Admits all jobs. */
+	static final JobAdmission UNLIMITED = new JobAdmission(0, application -> 0, emptyMap());
+	
+	private final int limit;
+	private final ToIntFunction<JobApplication> limits;
+	private final Map<JobApplication,Long> pending;
+	private long total;
+	
+	/**
+	 * Creates a <code>JobAdmission</code> snapshot.
+	 * @param limit the global admission limit or <code>0</code> if the number of admitted tasks is not limited globally
+	 * @param limits the admission limit per job application or <code>0</code> if the number of admitted tasks of an application is not limited
+	 * @param pending the ready and active tasks of all admitted jobs per job application
+	 */
+	JobAdmission(int limit, ToIntFunction<JobApplication> limits, Map<JobApplication,Long> pending){
+		this.limit = limit;
+		this.limits = limits;
+		this.pending = new HashMap<>(pending);
+		for(Long tasks : pending.values()) {
+			this.total += tasks;
+		}
+	}
+	
+	/**
+	 * Returns whether the global admission limit is exhausted.
+	 * @return <code>true</code> if no further job can be admitted, <code>false</code> otherwise.
+	 */
+	public boolean isSaturated() {
+		return limit > 0 && total >= limit;
+	}
+	
+	/**
+	 * Returns all job applications whose admission limit is exhausted.
+	 * @return the saturated job applications.
+	 */
+	public Set<JobApplication> getSaturatedApplications() {
+		Set<JobApplication> saturated = new LinkedHashSet<>();
+		for(Map.Entry<JobApplication,Long> application : pending.entrySet()) {
+			int applicationLimit = limit(application.getKey());
+			if(applicationLimit > 0 && application.getValue() >= applicationLimit) {
+				saturated.add(application.getKey());
+			}
+		}
+		return saturated;
+	}
+	
+	/**
+	 * Admits a job, if its ready and active tasks do not exceed an admission limit.
+	 * @param application the job application
+	 * @param tasks the number of ready and active tasks of the job
+	 * @return <code>true</code> if the job has been admitted, <code>false</code> if the job must wait for admission.
+	 */
+	public boolean tryAdmit(JobApplication application, long tasks) {
+		if(this == UNLIMITED) {
+			return true;
+		}
+		long applicationTasks = application != null ? pending.getOrDefault(application, 0L) : 0L;
+		if(!fits(total, tasks, limit) || !fits(applicationTasks, tasks, limit(application))) {
+			return false;
+		}
+		total += tasks;
+		if(application != null) {
+			pending.put(application, applicationTasks+tasks);
+		}
+		return true;
+	}
+	
+	private int limit(JobApplication application) {
+		if(application == null) {
+			return 0;
+		}
+		return limits.applyAsInt(application);
+	}
+	
+	private static boolean fits(long pending, long tasks, int limit) {
+		return limit == 0 || pending == 0 || pending + tasks <= limit;
+	}
+	
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.Job_Task.countPendingTasksByApplication;
+import static io.leitstand.jobs.model.Job_Task.countPendingTasksWithinWindowByApplication;
+import static io.leitstand.jobs.service.ReasonCode.JOB0112E_JOB_ADMISSION_REJECTED;
+import static io.leitstand.jobs.service.TaskState.ACTIVE;
+import static io.leitstand.jobs.service.TaskState.READY;
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.Dependent;
+import javax.inject.Inject;
+
+import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.JobAdmissionException;
+import io.leitstand.jobs.service.JobApplication;
+
+/**
+ * Limits the number of ready and active tasks of all admitted jobs globally and per job application across all cluster nodes.
+ * <p>
+ * A committed job waits in <code>READY</code> state until it gets admitted by the job event loop.
+ * The waiting jobs are admitted in dispatch rank order, but jobs of a saturated job application are skipped,
+ * so that a bulk of jobs of one application does not delay the jobs of all other applications.
+ * Alternatively, a job commit is rejected if the committed jobs would exceed an admission limit.
+ * </p>
+ * @see JobAdmission
+ */
+@Dependent
+public class JobAdmissionControl {
+
+	private static final Logger LOG = Logger.getLogger(JobAdmissionControl.class.getName());
+	
+	@Inject
+	@Jobs
+	private Repository repository;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	protected JobAdmissionControl() {
+		// CDI
+	}
+	
+	JobAdmissionControl(Repository repository, JobSchedulerConfig config){
+		this.repository = repository;
+		this.config = config;
+	}
+	
+	/**
+	 * Returns a snapshot of the ready and active tasks of all running jobs to admit waiting jobs.
+	 * Running jobs outside of their window are suspended and do not hold admission capacity.
+	 * @return the admission snapshot.
+	 */
+	public JobAdmission getAdmission() {
+		return admission(countPendingTasksWithinWindowByApplication(asList(ACTIVE), new Date()));
+	}
+	
+	/**
+	 * Admits a waiting job, if the ready and active tasks of the job do not exceed an admission limit.
+	 * @param admission the admission snapshot
+	 * @param job the waiting job
+	 * @return <code>true</code> if the job has been admitted, <code>false</code> if the job must keep waiting.
+	 */
+	public boolean tryAdmit(JobAdmission admission, Job job) {
+		if(admission == JobAdmission.UNLIMITED) {
+			return true;
+		}
+		return admission.tryAdmit(job.getJobApplication(), job.getTaskCount(READY, ACTIVE));
+	}
+	
+	/**
+	 * Verifies that a new job can be committed, if job commits exceeding an admission limit shall be rejected.
+	 * The ready and active tasks of all committed jobs are taken into account, regardless of whether the jobs have been admitted already.
+	 * @param job the job to be committed
+	 * @throws JobAdmissionException if the job exceeds an admission limit
+	 */
+	public void verifyCommit(Job job) {
+		if(!config.isAdmissionRejecting()) {
+			return;
+		}
+		JobAdmission committed = admission(countPendingTasksByApplication(asList(READY,ACTIVE)));
+		if(committed.tryAdmit(job.getJobApplication(), job.getTotalTaskCount())) {
+			return;
+		}
+		long retryAfter = config.getAdmissionRetryAfter();
+		LOG.fine(() -> format("%s: Job %s (%s) rejected. Admission limit exceeded. Retry after %d seconds.",
+							  JOB0112E_JOB_ADMISSION_REJECTED.getReasonCode(),
+							  job.getJobName(),
+							  job.getJobId(),
+							  retryAfter));
+		throw new JobAdmissionException(JOB0112E_JOB_ADMISSION_REJECTED, 
+										retryAfter,
+										job.getJobId(),
+										retryAfter);
+	}
+	
+	private JobAdmission admission(Query<Map<JobApplication,Long>> pendingTasks) {
+		if(!config.isAdmissionEnabled()) {
+			return JobAdmission.UNLIMITED;
+		}
+		return new JobAdmission(config.getAdmissionLimit(),
+								config::getAdmissionLimit,
+								repository.execute(pendingTasks));
+	}
+	
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+/**
+ * A keyset cursor over the numeric job IDs.
+ * <p>
+ * A <code>JobCursor</code> allows a job event loop worker to page through all running jobs in a round-robin fashion.
+ * Every batch starts after the last job of the previous batch. 
+ * The cursor restarts with the first job when a batch is not filled up to the batch limit, 
+ * which means that all running jobs have been visited.
+ * This guarantees that every running job is visited within a bounded number of iterations,
+ * regardless of the number of running jobs.
+ * </p>
+ * <p>
+ * A cursor is not thread-safe and must not be shared among workers.
+ * </p>
+ */
+public final class JobCursor {
+
+	private long position;
+	private boolean wrapped = true;
+	
+	/**
+	 * Returns the ID of the last visited job or <code>0</code> if the cursor points to the first job.
+	 * @return the cursor position.
+	 */
+	public long getPosition() {
+		return position;
+	}
+	
+	/**
+	 * Returns whether the cursor has visited all jobs and restarts with the first job.
+	 * @return <code>true</code> if the cursor points to the first job, <code>false</code> otherwise.
+	 */
+	public boolean isWrapped() {
+		return wrapped;
+	}
+	
+	/**
+	 * Advances the cursor after a batch has been read.
+	 * @param lastId the ID of the last job of the batch
+	 * @param count the number of jobs of the batch
+	 * @param limit the batch limit
+	 */
+	void advance(long lastId, int count, int limit) {
+		if(count < limit) {
+			reset();
+			return;
+		}
+		this.position = lastId;
+		this.wrapped = false;
+	}
+	
+	/**
+	 * Restarts the cursor with the first job.
+	 */
+	public void reset() {
+		this.position = 0;
+		this.wrapped = true;
+	}
+	
+	@Override
+	public String toString() {
+		return String.valueOf(position);
+	}
+	
+}
@@ -81,8 +81,11 @@ public class JobEditor {
 		if(job.isReady()){
 			throw new IllegalStateException("Flow already submitted!"); // TODO Improve exception
 		}
+		job.setPriority(submission.getPriority());
 		updateTasks(job, submission);
 		updateTransitions(job, submission);
+		// Initialize the pending predecessors counters from the final task flow.
+		job.getTaskList().forEach(Job_Task::resetPendingPredecessors);
 	}
 	
 	private void updateTasks(Job job, JobSubmission submission) {
@@ -104,6 +107,7 @@ public class JobEditor {
 			// Update the parameters of the existing task.
 			task.setParameter(taskSubmission.getParameter());
 			task.setCanary(taskSubmission.isCanary());
+			task.setTimeout(taskSubmission.getTimeout());
 		}
 
 		// Add all new tasks.
@@ -117,6 +121,7 @@ public class JobEditor {
 										 taskSubmission.getElementId(),
 										 taskSubmission.getParameter());
 			task.setCanary(taskSubmission.isCanary());
+			task.setTimeout(taskSubmission.getTimeout());
 			job.addTask(task);
 		}
 		
@@ -16,39 +16,62 @@
 package io.leitstand.jobs.model;
 
 import static io.leitstand.jobs.model.JobEventLoopStatus.newJobEventLoopStatus;
+import static io.leitstand.jobs.model.JobPartition.partition;
+import static io.leitstand.jobs.model.JobSchedulerMetrics.gauge;
+import static io.leitstand.jobs.model.JobSchedulerMetrics.gauges;
 import static java.lang.Math.min;
 import static java.lang.String.format;
 import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
 import static java.lang.Thread.currentThread;
-import static java.lang.Thread.sleep;
-import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Level.FINER;
+import static java.util.stream.Collectors.toList;
+import static javax.enterprise.event.TransactionPhase.AFTER_SUCCESS;
 
 import java.util.Date;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 import javax.annotation.Resource;
 import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
 
 import io.leitstand.commons.ShutdownListener;
 import io.leitstand.commons.StartupListener;
-import io.leitstand.jobs.service.JobId;
-import io.leitstand.jobs.service.JobTaskService;
 import io.leitstand.jobs.service.TaskId;
 
+/**
+ * The <code>JobEventLoop</code> coordinates the {@link JobEventLoopWorker}s.
+ * <p>
+ * The event loop starts the configured number of workers and distributes the jobs evenly to all running workers.
+ * The job partitions are rebalanced whenever a worker is started or stopped.
+ * A crashed worker is replaced by a new worker as long as the event loop is active.
+ * </p>
+ */
 @ApplicationScoped
-public class JobEventLoop implements Runnable, StartupListener, ShutdownListener{
+public class JobEventLoop implements StartupListener, ShutdownListener{
 	
 	private static final Logger LOG = Logger.getLogger(JobEventLoop.class.getName());
 	
-	private static final int JOB_LIMIT = 20; // Don't process more than 20 jobs in parallel
-
 	private Date dateModified;
 	private volatile boolean active;
+	private final List<JobEventLoopWorker> workers = new CopyOnWriteArrayList<>();
+	private final AtomicLong nextLeaseRenewal = new AtomicLong();
+	private final AtomicLong nextPermitReconciliation = new AtomicLong();
+	private volatile JobStartTimer timer;
+	private volatile TaskExpiryTimer expiryTimer;
+	private volatile JobWindowTimer windowTimer;
+	private volatile TaskLeaseMonitor leaseMonitor;
+	private boolean leasesRecovered;
 	
 	@Resource
 	private ManagedExecutorService wm;
@@ -56,11 +79,28 @@ public class JobEventLoop implements Runnable, StartupListener, ShutdownListener
 	@Inject
 	private TaskExpiryManager expiryManager;
 	
+	@Inject
+	private TaskLeaseManager leaseManager;
+	
+	@Inject
+	private JobWindowManager windowManager;
+	
 	@Inject
 	private JobScheduler scheduler;
 	
 	@Inject
-	private JobTaskService executor;
+	private JobNotificationChannel notifications;
+	
+	@Inject
+	private TaskExecutionPool pool;
+	
+	@Inject
+	private JobSchedulerMetrics metrics;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	private final Runnable listener = this::wakeup;
 	
 	@Override
 	public void onStartup() {
@@ -70,90 +110,428 @@ public class JobEventLoop implements Runnable, StartupListener, ShutdownListener
 	@Override
 	public void onShutdown() {
 		stopEventLoop();
+		drain();
+		stopLeaseMonitor();
+	}
+	
+	/**
+	 * Drains the in-flight tasks of this node after the event loop has been stopped.
+	 * <p>
+	 * Waits for the workers to complete their current iteration and for the running task processors to report their outcome,
+	 * but not longer than the configured drain timeout.
+	 * The reported outcomes are committed.
+	 * All tasks that have not been completed are set ready for execution again 
+	 * and all job leases of this node are released,
+	 * so that the other cluster nodes resume the jobs immediately.
+	 * </p>
+	 */
+	void drain() {
+		long timeout = SECONDS.toMillis(config.getDrainTimeout());
+		long deadline = currentTimeMillis() + timeout;
+		try {
+			while(!workers.isEmpty() && currentTimeMillis() < deadline) {
+				// Workers remove themselves when the current iteration is completed.
+				MILLISECONDS.sleep(min(100, deadline - currentTimeMillis()));
+			}
+		} catch (InterruptedException e) {
+			currentThread().interrupt();
+		}
+		Set<TaskId> pending = pool.drain(Math.max(0, deadline - currentTimeMillis()), MILLISECONDS);
+		try {
+			TaskCompletion completion;
+			while((completion = pool.pollCompletion()) != null) {
+				commit(completion);
+			}
+			if(!pending.isEmpty()) {
+				int checkpointed = scheduler.checkpointTasks(pending);
+				LOG.info(() -> format("Set %d interrupted tasks ready for execution.",checkpointed));
+			}
+			int released = scheduler.releaseLeases();
+			LOG.info(() -> format("Released %d job leases.",released));
+			// Let the other cluster nodes claim the released jobs immediately.
+			notifications.publish();
+		} catch (Exception e) {
+			// Remaining tasks time out and job leases expire.
+			LOG.warning(() -> format("Unable to drain in-flight tasks: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
 	}
 	
-	public void stopEventLoop() {
+	private void commit(TaskCompletion completion) {
+		try {
+			scheduler.completeTask(completion);
+		} catch (Exception e) {
+			LOG.warning(() -> format("Cannot commit %s state of task %s of job %s: %s",
+									 completion.getTaskState(),
+									 completion.getTaskId(),
+									 completion.getJobId(),
+									 e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+	
+	public synchronized void stopEventLoop() {
 		this.active = false;
 		this.dateModified = new Date();
+		notifications.unsubscribe(listener);
+		if(timer != null) {
+			timer.stop();
+			timer = null;
+		}
+		if(expiryTimer != null) {
+			expiryTimer.stop();
+			expiryTimer = null;
+		}
+		if(windowTimer != null) {
+			windowTimer.stop();
+			windowTimer = null;
+		}
+		workers.forEach(JobEventLoopWorker::stop);
 	}
 	
-	public void startEventLoop() {
+	public synchronized void startEventLoop() {
 		if(!active) {
 			active = true;
 			this.dateModified = new Date();
+			notifications.subscribe(listener);
+			pool.setCompletionListener(listener);
+			int count = config.getEventLoopWorkers();
+			LOG.info(() -> format("Start job event loop with %d workers.",count));
+			assignMissingRanks();
+			assignMissingTaskCounts();
+			for(int workerId = 0; workerId < count; workerId++) {
+				startWorker(workerId);
+			}
+			startTimer();
+			startExpiryTimer();
+			startWindowTimer();
+			startLeaseMonitor();
+		}
+	}
+	
+	private void startWorker(int workerId) {
+		JobEventLoopWorker worker = new JobEventLoopWorker(workerId, 
+														   this, 
+														   scheduler, 
+														   pool,
+														   metrics,
+														   config);
+		workers.add(worker);
+		rebalance();
+		try {
+			wm.execute(worker);
+		} catch (Exception e) {
+			LOG.severe(() -> format("Unable to start job event loop worker %d: %s",workerId,e));
+			LOG.log(FINER,e.getMessage(),e);
+			workers.remove(worker);
+			rebalance();
+		}
+	}
+	
+	private void startTimer() {
+		JobStartTimer timer = new JobStartTimer(scheduler, 
+												config, 
+												this::wakeup);
+		try {
+			wm.execute(timer);
+			this.timer = timer;
+		} catch (Exception e) {
+			// Event loop proceeds to poll for scheduled jobs.
+			LOG.severe(() -> format("Unable to start job start timer: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+	
+	private void startWindowTimer() {
+		JobWindowTimer windowTimer = new JobWindowTimer(windowManager, 
+														config);
+		try {
+			wm.execute(windowTimer);
+			this.windowTimer = windowTimer;
+		} catch (Exception e) {
+			// Jobs resumed automatically remain suspended until they are resumed manually.
+			LOG.severe(() -> format("Unable to start job window timer: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+	
+	private void assignMissingRanks() {
+		try {
+			int updated = scheduler.assignMissingRanks();
+			if(updated > 0) {
+				LOG.info(() -> format("Set dispatch rank of %d jobs.",updated));
+			}
+		} catch (Exception e) {
+			// Jobs without dispatch rank are dispatched in database-specific order.
+			LOG.warning(() -> format("Unable to set dispatch rank of jobs: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+	
+	private void assignMissingTaskCounts() {
+		try {
+			int updated = scheduler.assignMissingTaskCounts();
+			if(updated > 0) {
+				LOG.info(() -> format("Computed task counters of %d jobs.",updated));
+			}
+		} catch (Exception e) {
+			// Task counters are computed on demand.
+			LOG.warning(() -> format("Unable to compute task counters of jobs: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+	
+	private void startExpiryTimer() {
+		try {
+			int updated = expiryManager.assignMissingDeadlines();
+			if(updated > 0) {
+				LOG.info(() -> format("Set expiry date of %d active tasks.",updated));
+			}
+		} catch (Exception e) {
+			// Tasks without expiry date are not expired.
+			LOG.warning(() -> format("Unable to set expiry date of active tasks: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+		TaskExpiryTimer expiryTimer = new TaskExpiryTimer(expiryManager, 
+														  config);
+		try {
+			wm.execute(expiryTimer);
+			this.expiryTimer = expiryTimer;
+		} catch (Exception e) {
+			LOG.severe(() -> format("Unable to start task expiry timer: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+	
+	/**
+	 * Starts the task lease monitor, unless the monitor is running already.
+	 * The monitor keeps running when the event loop is stopped, 
+	 * because the task execution pool continues to execute the dispatched tasks.
+	 */
+	private void startLeaseMonitor() {
+		if(leaseMonitor != null) {
+			return;
+		}
+		if(!leasesRecovered) {
+			// Tasks leased by this node before the restart are not executed anymore.
 			try {
-				wm.execute(this);
+				List<TaskId> recovered = leaseManager.recoverLeasedTasks();
+				leasesRecovered = true;
+				if(!recovered.isEmpty()) {
+					LOG.info(() -> format("Recovered %d tasks leased before restart.",recovered.size()));
+				}
 			} catch (Exception e) {
-				LOG.severe("Unable to start job event loop: "+e);
+				// Tasks are recovered by other nodes once the leases have expired.
+				LOG.warning(() -> format("Unable to recover leased tasks: %s",e));
 				LOG.log(FINER,e.getMessage(),e);
 			}
-			//TODO Maintain expiry date per task to support specific expiry periods.
-			Date expired = new Date(currentTimeMillis()-MINUTES.toMillis(15));
-			expiryManager.taskTimedout(expired);
+		}
+		TaskLeaseMonitor leaseMonitor = new TaskLeaseMonitor(leaseManager, 
+															 config);
+		try {
+			wm.execute(leaseMonitor);
+			this.leaseMonitor = leaseMonitor;
+		} catch (Exception e) {
+			LOG.severe(() -> format("Unable to start task lease monitor: %s",e));
+			LOG.log(FINER,e.getMessage(),e);
 		}
 	}
 	
-	@Override
-	public void run() {
-	    try {
-    		LOG.info("Job event loop started.");
-    		
-    		long waittime = 1;
-    		while(active) {
-    			int jobCount = scheduleJobsEligibleForExecution();
-    			int taskCount = runTasksEligibleForExecution();
-    			
-    		    if(jobCount == 0 && taskCount == 0) {
-    		        waittime = pause(waittime);
-    		    } else {
-    		        waittime = 1;
-    		    }
-    		}
-    		
-    		LOG.info("Job event loop stopped.");
-	    } catch (Exception e) {
-	        LOG.severe("Job event loop crashed: "+e.getMessage());
-	        stopEventLoop();
-	        startEventLoop();
+	private synchronized void stopLeaseMonitor() {
+		if(leaseMonitor != null) {
+			leaseMonitor.stop();
+			leaseMonitor = null;
+		}
+	}
+	
+	/**
+	 * Distributes the jobs evenly to all running workers.
+	 */
+	private synchronized void rebalance() {
+		int count = workers.size();
+		for(int i=0; i < count; i++) {
+			workers.get(i).assign(partition(i,count));
+		}
+	}
+	
+	/**
+	 * Callback invoked by a worker when the worker has been stopped.
+	 * The remaining workers take over the jobs of the stopped worker.
+	 * A crashed worker is replaced by a new worker, provided that the event loop is still active.
+	 * @param worker the stopped worker
+	 * @param e the exception that crashed the worker or <code>null</code> if the worker has been stopped regularly.
+	 */
+	synchronized void workerStopped(JobEventLoopWorker worker, Exception e) {
+		workers.remove(worker);
+		if(active && e != null) {
+			LOG.info(() -> format("Restart crashed job event loop worker %d.",worker.getWorkerId()));
+			startWorker(worker.getWorkerId());
+			return;
+		}
+		rebalance();
+	}
+	
+	/**
+	 * Renews the leases of all jobs claimed by this node, if the last renewal dates back more than a third of the lease duration.
+	 * All workers invoke this method once per iteration, but only one worker renews the leases on behalf of all workers.
+	 */
+	void renewLeasesIfDue() {
+		long now = currentTimeMillis();
+		long due = nextLeaseRenewal.get();
+		if(now >= due && nextLeaseRenewal.compareAndSet(due, now + SECONDS.toMillis(config.getLeaseDuration())/3)) {
+			long started = nanoTime();
+			scheduler.renewLeases();
+			metrics.queryExecuted("renew_leases", nanoTime()-started);
+		}
+	}
+	
+	/**
+	 * Reconciles the task permit counters with the active tasks, if the permit reconciliation interval has elapsed.
+	 * Only one worker reconciles the permits on behalf of all workers.
+	 * Does nothing if no task permits are configured.
+	 */
+	void reconcilePermitsIfDue() {
+		if(!config.isPermitsEnabled()) {
+			return;
+		}
+		long now = currentTimeMillis();
+		long due = nextPermitReconciliation.get();
+		if(now >= due && nextPermitReconciliation.compareAndSet(due, now + SECONDS.toMillis(config.getPermitReconcileInterval()))) {
+			long started = nanoTime();
+			scheduler.reconcilePermits();
+			metrics.queryExecuted("reconcile_permits", nanoTime()-started);
+		}
+	}
+	
+	/**
+	 * Wakes up all job event loop workers waiting for jobs or tasks eligible for execution.
+	 */
+	public void wakeup() {
+		workers.forEach(JobEventLoopWorker::wakeup);
+	}
+	
+	/**
+	 * Wakes up the event loop when a job has been committed, resumed or rescheduled.
+	 * The job event loops of all other cluster nodes are notified as well.
+	 * The job window timer is informed about the suspend date of jobs resumed automatically.
+	 * @param event the job schedule changed event
+	 */
+	void onJobScheduleChanged(@Observes(during=AFTER_SUCCESS) JobScheduleChangedEvent event) {
+	    JobStartTimer timer = this.timer;
+	    if(timer != null) {
+	        timer.scheduleChanged(event.getJobId(), event.getDateScheduled());
+	    }
+	    JobWindowTimer windowTimer = this.windowTimer;
+	    if(windowTimer != null) {
+	    	windowTimer.windowChanged(event.getJobId(), event.isAutoResume() ? event.getDateSuspend() : null);
 	    }
+	    wakeup();
+	    notifications.publish();
 	}
-
-    private int runTasksEligibleForExecution() {
-        int taskCount = 0;
-        for(JobId job : scheduler.findRunningJobs(JOB_LIMIT)) {
-            List<TaskId> tasks = scheduler.activateExecutableTasks(job);
-            tasks.forEach(task -> executor.executeTask(job, task));
-            taskCount+=tasks.size();
-        }
-        return taskCount;
-    }
-
-    private int scheduleJobsEligibleForExecution() {
-        List<JobId> jobs = scheduler.findExecutableJobs(JOB_LIMIT);
-        jobs.forEach(job -> scheduler.schedule(job));
-        return jobs.size();
-    }
 	
-	private long pause(long waittime){
-	    try {
-			LOG.fine(() -> format("No jobs or tasks eligible for execution. Sleep for %d seconds before polling for new tasks",waittime));
-			sleep(TimeUnit.SECONDS.toMillis(waittime));
-			// Wait time shall never exceed a minute (if no messages are there at all).
-			return min(2*waittime, 60);
-		} catch (InterruptedException e) {
-			LOG.fine(() -> "Wait for domain events has been interrupted. Reset wait interval and proceed polling!");
-			// Restore interrupt status.
-			currentThread().interrupt();
-			return 1; // Reset waittime
+	/**
+	 * Wakes up the event loop when a task state has been changed, 
+	 * because the successors of a completed task might be eligible for execution now.
+	 * The job event loops of all other cluster nodes are only notified about task state changes
+	 * that have not been triggered by the event loop itself, like task state updates reported by a task callback.
+	 * The task expiry timer is informed about the expiry date of activated tasks and about tasks that are not active anymore.
+	 * The job start timer is informed about scheduled task retries.
+	 * The task processor of a task that is not active anymore is interrupted if it is still running.
+	 * @param event the task state changed event
+	 */
+	void onTaskStateChanged(@Observes(during=AFTER_SUCCESS) TaskStateChangedEvent event) {
+	    Job_Task task = event.getTask();
+	    TaskExpiryTimer expiryTimer = this.expiryTimer;
+	    if(expiryTimer != null) {
+	    	expiryTimer.deadlineChanged(task.getTaskId(), task.isActive() ? task.getDateExpiry() : null);
+	    }
+	    JobStartTimer timer = this.timer;
+	    if(timer != null && task.isReady() && task.getDateNextAttempt() != null) {
+	    	timer.retryScheduled(task.getTaskId(), task.getDateNextAttempt());
+	    }
+	    if(!task.isActive()) {
+	    	// Interrupt a task processor still executing the task, e.g. when the task has timed out.
+	    	pool.cancel(task.getTaskId());
+	    }
+	    wakeup();
+	    if(!isWorkerThread()) {
+	        notifications.publish();
+	    }
+	}
+	
+	/**
+	 * Wakes up the event loop when a task has released its permits,
+	 * because tasks waiting for these permits might be eligible for execution now.
+	 * The job event loops of all other cluster nodes are notified as well, since the permits are shared by all nodes.
+	 * @param event the task permits released event
+	 */
+	void onTaskPermitsReleased(@Observes(during=AFTER_SUCCESS) TaskPermitsReleasedEvent event) {
+		wakeup();
+		notifications.publish();
+	}
+	
+	private boolean isWorkerThread() {
+		for(JobEventLoopWorker worker : workers) {
+			if(worker.isWorkerThread()) {
+				return true;
+			}
 		}
+		return false;
 	}
 
     public JobEventLoopStatus getStatus() {
         return newJobEventLoopStatus()
                 .withEnabled(active)
                 .withDateModified(dateModified)
+                .withWorkers(workers.stream()
+                		  			.map(JobEventLoopWorker::getStatus)
+                		  			.collect(toList()))
+                .withPendingJobStarts(timer != null ? timer.getPendingTimers() : 0)
+                .withPendingTaskExpiries(expiryTimer != null ? expiryTimer.getPendingTimers() : 0)
+                .withPendingJobWindows(windowTimer != null ? windowTimer.getPendingTimers() : 0)
+                .withTaskExecutors(pool.getStatus())
+                .withCompletionQueueDepth(pool.getCompletionQueueDepth())
+                .withIterationTime(metrics.getIterationTime())
+                .withScheduledJobs(metrics.getScheduledJobs())
+                .withActivatedTasks(metrics.getActivatedTasks())
+                .withQueryTimes(metrics.getQueryTimes())
+                .withProcessorTimes(metrics.getProcessorTimes())
+                .withOldestOverdueJobAge(getOldestOverdueJobAge())
+                .withThrottledTasks(metrics.getThrottledTasks())
                 .build();
     }
+    
+    /**
+     * Returns the age of the oldest ready job whose schedule date has passed.
+     * @return the age of the oldest overdue job in seconds or <code>0</code> if no job is overdue.
+     */
+    private long getOldestOverdueJobAge() {
+    	Date oldest = scheduler.findOldestOverdueJob();
+    	if(oldest == null) {
+    		return 0;
+    	}
+    	return Math.max(0, MILLISECONDS.toSeconds(currentTimeMillis() - oldest.getTime()));
+    }
+    
+    /**
+     * Returns the job scheduler metrics in Prometheus text exposition format.
+     * @return the job scheduler metrics.
+     */
+    public String getMetrics() {
+    	StringBuilder out = new StringBuilder();
+    	metrics.writeTo(out);
+    	Map<String,Long> pollIntervals = new TreeMap<>();
+    	for(JobEventLoopWorker worker : workers) {
+    		pollIntervals.put(String.valueOf(worker.getWorkerId()), worker.getStatus().getPollInterval());
+    	}
+    	gauges(out, "event_loop_poll_interval_seconds", "Current poll interval of idle job event loop workers.", "worker", pollIntervals);
+    	gauge(out, "event_loop_workers", "Number of job event loop workers.", workers.size());
+    	gauge(out, "pending_job_starts", "Number of scheduled jobs within the job start timer horizon.", timer != null ? timer.getPendingTimers() : 0);
+    	gauge(out, "pending_task_expiries", "Number of active tasks within the task expiry timer horizon.", expiryTimer != null ? expiryTimer.getPendingTimers() : 0);
+    	gauge(out, "pending_job_windows", "Number of jobs resumed automatically whose window closes within the job window timer horizon.", windowTimer != null ? windowTimer.getPendingTimers() : 0);
+    	gauge(out, "completion_queue_depth", "Number of task completions awaiting to be committed.", pool.getCompletionQueueDepth());
+    	gauge(out, "oldest_overdue_job_age_seconds", "Age of the oldest ready job whose schedule date has passed.", getOldestOverdueJobAge());
+    	return out.toString();
+    }
 
 }
-
@@ -1,8 +1,12 @@
 package io.leitstand.jobs.model;
 
 import static io.leitstand.commons.model.BuilderUtil.assertNotInvalidated;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 public class JobEventLoopStatus {
 
@@ -42,7 +46,150 @@ public class JobEventLoopStatus {
             status.dateModified = new Date(dateModified.getTime());
             return this;
         }
+        
+        /**
+         * Sets the status of all job event loop workers.
+         * @param workers the status of all job event loop workers.
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withWorkers(List<JobEventLoopWorkerStatus> workers) {
+            assertNotInvalidated(getClass(), status);
+            status.workers = new ArrayList<>(workers);
+            return this;
+        }
+        
+        /**
+         * Sets the number of pending job start timers.
+         * @param pendingJobStarts the number of scheduled jobs awaiting their start date.
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withPendingJobStarts(int pendingJobStarts) {
+            assertNotInvalidated(getClass(), status);
+            status.pendingJobStarts = pendingJobStarts;
+            return this;
+        }
+        
+        /**
+         * Sets the number of pending task expiry timers.
+         * @param pendingTaskExpiries the number of active tasks awaiting their expiry date.
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withPendingTaskExpiries(int pendingTaskExpiries) {
+            assertNotInvalidated(getClass(), status);
+            status.pendingTaskExpiries = pendingTaskExpiries;
+            return this;
+        }
+        
+        /**
+         * Sets the number of pending job window timers.
+         * @param pendingJobWindows the number of jobs resumed automatically awaiting their suspend date.
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withPendingJobWindows(int pendingJobWindows) {
+            assertNotInvalidated(getClass(), status);
+            status.pendingJobWindows = pendingJobWindows;
+            return this;
+        }
+        
+        /**
+         * Sets the status of all task executors.
+         * @param executors the status of all task executors.
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withTaskExecutors(List<TaskExecutorStatus> executors) {
+            assertNotInvalidated(getClass(), status);
+            status.taskExecutors = new ArrayList<>(executors);
+            return this;
+        }
+        
+        /**
+         * Sets the number of task completions awaiting to be committed.
+         * @param depth the completion queue depth
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withCompletionQueueDepth(int depth) {
+            assertNotInvalidated(getClass(), status);
+            status.completionQueueDepth = depth;
+            return this;
+        }
             
+        /**
+         * Sets the summary of the event loop iteration durations.
+         * @param iterationTime the iteration duration summary
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withIterationTime(TimerStatus iterationTime) {
+            assertNotInvalidated(getClass(), status);
+            status.iterationTime = iterationTime;
+            return this;
+        }
+        
+        /**
+         * Sets the total number of jobs scheduled by the event loop.
+         * @param jobs the number of scheduled jobs
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withScheduledJobs(long jobs) {
+            assertNotInvalidated(getClass(), status);
+            status.scheduledJobs = jobs;
+            return this;
+        }
+        
+        /**
+         * Sets the total number of tasks activated by the event loop.
+         * @param tasks the number of activated tasks
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withActivatedTasks(long tasks) {
+            assertNotInvalidated(getClass(), status);
+            status.activatedTasks = tasks;
+            return this;
+        }
+        
+        /**
+         * Sets the time spent in the job scheduler operations.
+         * @param queryTimes the job scheduler operation times
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withQueryTimes(List<TimerStatus> queryTimes) {
+            assertNotInvalidated(getClass(), status);
+            status.queryTimes = new ArrayList<>(queryTimes);
+            return this;
+        }
+        
+        /**
+         * Sets the execution latency of the task processors.
+         * @param processorTimes the task processor latencies
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withProcessorTimes(List<TimerStatus> processorTimes) {
+            assertNotInvalidated(getClass(), status);
+            status.processorTimes = new ArrayList<>(processorTimes);
+            return this;
+        }
+        
+        /**
+         * Sets the age of the oldest overdue ready job.
+         * @param age the age in seconds
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withOldestOverdueJobAge(long age) {
+            assertNotInvalidated(getClass(), status);
+            status.oldestOverdueJobAge = age;
+            return this;
+        }
+        
+        /**
+         * Sets the total number of throttled task starts.
+         * @param throttledTasks the number of throttled task starts
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withThrottledTasks(long throttledTasks) {
+            assertNotInvalidated(getClass(), status);
+            status.throttledTasks = throttledTasks;
+            return this;
+        }
+        
         /**
          * Returns an immutable job event loop state.
          * @return an immutable job event loop state.
@@ -61,6 +208,19 @@ public class JobEventLoopStatus {
     
     private boolean enabled;
     private Date dateModified;
+    private List<JobEventLoopWorkerStatus> workers = emptyList();
+    private int pendingJobStarts;
+    private int pendingTaskExpiries;
+    private int pendingJobWindows;
+    private List<TaskExecutorStatus> taskExecutors = emptyList();
+    private int completionQueueDepth;
+    private TimerStatus iterationTime;
+    private long scheduledJobs;
+    private long activatedTasks;
+    private List<TimerStatus> queryTimes = emptyList();
+    private List<TimerStatus> processorTimes = emptyList();
+    private long oldestOverdueJobAge;
+    private long throttledTasks;
     
     /**
      * Returns whether the job event loop is enabled.
@@ -81,5 +241,109 @@ public class JobEventLoopStatus {
         return new Date(dateModified.getTime());
     }
     
+    /**
+     * Returns the status of all job event loop workers.
+     * @return the status of all job event loop workers.
+     */
+    public List<JobEventLoopWorkerStatus> getWorkers() {
+        return unmodifiableList(workers);
+    }
+    
+    /**
+     * Returns the number of scheduled jobs within the look-ahead horizon of the job start timer.
+     * @return the number of pending job start timers.
+     */
+    public int getPendingJobStarts() {
+        return pendingJobStarts;
+    }
+    
+    /**
+     * Returns the number of active tasks expiring within the look-ahead horizon of the task expiry timer.
+     * @return the number of pending task expiry timers.
+     */
+    public int getPendingTaskExpiries() {
+        return pendingTaskExpiries;
+    }
+    
+    /**
+     * Returns the number of jobs resumed automatically whose window closes within the look-ahead horizon of the job window timer.
+     * @return the number of pending job window timers.
+     */
+    public int getPendingJobWindows() {
+        return pendingJobWindows;
+    }
+    
+    /**
+     * Returns the status of all task executors.
+     * @return the status of all task executors.
+     */
+    public List<TaskExecutorStatus> getTaskExecutors() {
+        return unmodifiableList(taskExecutors);
+    }
+    
+    /**
+     * Returns the number of task completions awaiting to be committed.
+     * @return the completion queue depth.
+     */
+    public int getCompletionQueueDepth() {
+        return completionQueueDepth;
+    }
+    
+    /**
+     * Returns the summary of the event loop iteration durations.
+     * @return the iteration duration summary.
+     */
+    public TimerStatus getIterationTime() {
+        return iterationTime;
+    }
+    
+    /**
+     * Returns the total number of jobs scheduled by the event loop.
+     * @return the number of scheduled jobs.
+     */
+    public long getScheduledJobs() {
+        return scheduledJobs;
+    }
+    
+    /**
+     * Returns the total number of tasks activated by the event loop.
+     * @return the number of activated tasks.
+     */
+    public long getActivatedTasks() {
+        return activatedTasks;
+    }
+    
+    /**
+     * Returns the time spent in the job scheduler operations.
+     * @return the job scheduler operation times.
+     */
+    public List<TimerStatus> getQueryTimes() {
+        return unmodifiableList(queryTimes);
+    }
+    
+    /**
+     * Returns the execution latency of the task processors.
+     * @return the task processor latencies.
+     */
+    public List<TimerStatus> getProcessorTimes() {
+        return unmodifiableList(processorTimes);
+    }
+    
+    /**
+     * Returns the age of the oldest ready job whose schedule date has passed.
+     * A growing age indicates that the event loop cannot keep up with the scheduled jobs.
+     * @return the age of the oldest overdue job in seconds or <code>0</code> if no job is overdue.
+     */
+    public long getOldestOverdueJobAge() {
+        return oldestOverdueJobAge;
+    }
+    
+    /**
+     * Returns the total number of task starts throttled by a rate limit.
+     * @return the total number of throttled task starts.
+     */
+    public long getThrottledTasks() {
+        return throttledTasks;
+    }
     
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.JobEventLoopWorkerStatus.newJobEventLoopWorkerStatus;
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.FINER;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import io.leitstand.jobs.service.JobId;
+
+/**
+ * A <code>JobEventLoopWorker</code> schedules the jobs and starts the tasks of a single {@link JobPartition}.
+ * <p>
+ * The {@link JobEventLoop} coordinates all workers and assigns the partitions to the workers.
+ * A worker waits for a wakeup notification when no job or task of its partition is eligible for execution.
+ * </p>
+ * <p>
+ * The number of jobs processed per iteration is an {@link AimdLimit}.
+ * The batch size grows by one job after every iteration that exhausted the batch size within the target latency,
+ * and shrinks multiplicatively after every iteration exceeding the target latency, e.g. because the database is under stress.
+ * </p>
+ */
+public class JobEventLoopWorker implements Runnable {
+
+	private static final Logger LOG = Logger.getLogger(JobEventLoopWorker.class.getName());
+	
+	/**
+	 * Job event loop worker states.
+	 */
+	public enum State {
+		/** The worker has been created but is not yet running. */
+		STARTING,
+		/** The worker processes jobs and tasks eligible for execution. */
+		BUSY,
+		/** The worker waits for jobs and tasks eligible for execution. */
+		IDLE,
+		/** The worker has been stopped. */
+		STOPPED,
+		/** The worker has been stopped due to an unexpected error. */
+		CRASHED
+	}
+	
+	private final int workerId;
+	private final JobEventLoop coordinator;
+	private final JobScheduler scheduler;
+	private final JobSchedulerConfig config;
+	private final TaskExecutionPool pool;
+	private final JobSchedulerMetrics metrics;
+	private final Semaphore wakeups = new Semaphore(0);
+	private final JobCursor cursor = new JobCursor();
+	private final AimdLimit batchSize;
+
+	private volatile JobPartition partition;
+	private volatile boolean active;
+	private volatile Thread thread;
+	private volatile State state;
+	private volatile Date dateModified;
+	private volatile long iterations;
+	private volatile long scheduledJobs;
+	private volatile long startedTasks;
+	private volatile long pollInterval;
+	private boolean waiting;
+	
+	JobEventLoopWorker(int workerId,
+					   JobEventLoop coordinator,
+					   JobScheduler scheduler,
+					   TaskExecutionPool pool,
+					   JobSchedulerMetrics metrics,
+					   JobSchedulerConfig config){
+		this.workerId = workerId;
+		this.coordinator = coordinator;
+		this.scheduler = scheduler;
+		this.pool = pool;
+		this.metrics = metrics;
+		this.config = config;
+		this.partition = JobPartition.ALL_JOBS;
+		this.batchSize = new AimdLimit(config.getEventLoopMinBatchSize(),
+									   config.getEventLoopMaxBatchSize(),
+									   config.getEventLoopBatchSize());
+		this.active = true;
+		setState(State.STARTING);
+	}
+	
+	int getWorkerId() {
+		return workerId;
+	}
+	
+	/**
+	 * Assigns a job partition to this worker.
+	 * The new partition is processed with the next event loop iteration.
+	 * @param partition the job partition
+	 */
+	void assign(JobPartition partition) {
+		this.partition = partition;
+		wakeup();
+	}
+	
+	/**
+	 * Stops this worker after the current event loop iteration.
+	 */
+	void stop() {
+		this.active = false;
+		wakeup();
+	}
+	
+	/**
+	 * Wakes up this worker, if the worker waits for jobs or tasks eligible for execution.
+	 */
+	void wakeup() {
+	    if(wakeups.availablePermits() == 0) {
+	        wakeups.release();
+	    }
+	}
+	
+	/**
+	 * Returns whether the current thread is the thread of this worker.
+	 * @return <code>true</code> if the current thread is the worker thread, <code>false</code> otherwise.
+	 */
+	boolean isWorkerThread() {
+		return thread == currentThread();
+	}
+	
+	@Override
+	public void run() {
+	    try {
+	    	thread = currentThread();
+	    	LOG.info(() -> format("Job event loop worker %d started.",workerId));
+	    	long waittime = 1;
+	    	boolean idle = true;
+	    	while(active) {
+	    		long started = nanoTime();
+	    		setState(State.BUSY);
+	    		coordinator.renewLeasesIfDue();
+	    		coordinator.reconcilePermitsIfDue();
+	    		JobPartition jobs = this.partition;
+	    		int limit = batchSize.get();
+	    		int completionCount = commitTaskCompletions(limit);
+	    		JobAdmission admission = timed("count_admitted_tasks", () -> scheduler.getAdmission());
+	    		int jobCount = scheduleJobsEligibleForExecution(jobs,admission,limit);
+	    		int taskCount = runTasksEligibleForExecution(jobs,limit);
+	    		iterations++;
+	    		long latency = nanoTime()-started;
+	    		metrics.iterationCompleted(latency, jobCount, taskCount, completionCount);
+	    		adaptBatchSize(limit, latency, completionCount >= limit || jobCount >= limit || taskCount >= limit);
+	    		if(completionCount > 0 || jobCount > 0 || taskCount > 0) {
+	    			idle = false;
+	    			waittime = 1;
+	    		}
+	    		if(cursor.isWrapped()) {
+	    			// All running jobs have been visited.
+	    			// Pause if no job or task was eligible for execution in the entire round.
+	    			if(idle) {
+	    				setState(State.IDLE);
+	    				if(scheduler.isThrottling() || waiting) {
+	    					// Throttled tasks become eligible for execution as soon as the rate limits permit.
+	    					// Waiting jobs get admitted as soon as running tasks have been completed on any cluster node.
+	    					waittime = 1;
+	    				}
+	    				pollInterval = waittime;
+	    				waittime = pause(waittime);
+	    				pollInterval = 0;
+	    			}
+	    			idle = true;
+	    		}
+	    	}
+	    	setState(State.STOPPED);
+	    	LOG.info(() -> format("Job event loop worker %d stopped.",workerId));
+	    	coordinator.workerStopped(this,null);
+	    } catch (Exception e) {
+	    	setState(State.CRASHED);
+	    	LOG.severe(() -> format("Job event loop worker %d crashed: %s",workerId,e.getMessage()));
+	    	LOG.log(FINER,e.getMessage(),e);
+	    	coordinator.workerStopped(this,e);
+	    } finally {
+	    	thread = null;
+	    }
+	}
+	
+    /**
+     * Adapts the batch size to the measured iteration latency.
+     * @param limit the batch size of the completed iteration
+     * @param latency the iteration latency in nanoseconds
+     * @param exhausted whether the iteration has exhausted the batch size
+     */
+    void adaptBatchSize(int limit, long latency, boolean exhausted) {
+    	int adapted;
+    	if(NANOSECONDS.toMillis(latency) > config.getEventLoopTargetLatency()) {
+    		adapted = batchSize.onOverload();
+    	} else {
+    		adapted = batchSize.onSuccess(exhausted);
+    	}
+    	if(adapted != limit) {
+    		LOG.fine(() -> format("Job event loop worker %d changed batch size from %d to %d.",workerId,limit,adapted));
+    	}
+    }
+    
+    /**
+     * Returns the current batch size of this worker.
+     * @return the current batch size.
+     */
+    int getBatchSize() {
+    	return batchSize.get();
+    }
+    
+    private int commitTaskCompletions(int batchSize) {
+        int completionCount = 0;
+        TaskCompletion completion;
+        while(completionCount < batchSize && (completion = pool.pollCompletion()) != null) {
+            try {
+                TaskCompletion committed = completion;
+                timed("complete_task", () -> {
+                    scheduler.completeTask(committed);
+                    return null;
+                });
+            } catch (Exception e) {
+                TaskCompletion failed = completion;
+                LOG.warning(() -> format("Cannot commit %s state of task %s of job %s: %s",
+                                         failed.getTaskState(),
+                                         failed.getTaskId(),
+                                         failed.getJobId(),
+                                         e.getMessage()));
+                LOG.log(FINER,e.getMessage(),e);
+            }
+            completionCount++;
+        }
+        return completionCount;
+    }
+	
+    private int runTasksEligibleForExecution(JobPartition jobs, int batchSize) {
+        // Urgent jobs are processed in every iteration to not wait for a full round over all running jobs.
+        int taskCount = runTasksEligibleForExecution(timed("claim_urgent_jobs", () -> scheduler.claimUrgentRunningJobs(jobs,batchSize)));
+        taskCount += runTasksEligibleForExecution(timed("claim_running_jobs", () -> scheduler.claimRunningJobs(jobs,cursor,batchSize)));
+        startedTasks+=taskCount;
+        return taskCount;
+    }
+    
+    private int runTasksEligibleForExecution(List<JobId> running) {
+        if(running.isEmpty()) {
+            return 0;
+        }
+        return timed("execute_eligible_tasks", () -> scheduler.executeEligibleTasks(running)).size();
+    }
+
+    private int scheduleJobsEligibleForExecution(JobPartition partition, JobAdmission admission, int batchSize) {
+        List<JobId> jobs = timed("claim_executable_jobs", () -> scheduler.claimExecutableJobs(partition,admission,batchSize));
+        int admitted = 0;
+        for(JobId job : jobs) {
+            if(timed("schedule_job", () -> scheduler.schedule(job,admission))) {
+                admitted++;
+            }
+        }
+        waiting = admission.isSaturated() || admitted < jobs.size();
+        scheduledJobs+=admitted;
+        return admitted;
+    }
+	
+	private <T> T timed(String operation, Supplier<T> call) {
+		long started = nanoTime();
+		try {
+			return call.get();
+		} finally {
+			metrics.queryExecuted(operation, nanoTime()-started);
+		}
+	}
+	
+	private long pause(long waittime){
+	    try {
+			LOG.fine(() -> format("No jobs or tasks eligible for execution in partition %s. Sleep for %d seconds before polling for new tasks",
+								  partition,
+								  waittime));
+			if(wakeups.tryAcquire(waittime, SECONDS)) {
+			    // Woken up by a notification. Discard all other pending notifications,
+			    // because the next iteration processes all jobs and tasks eligible for execution anyways.
+			    wakeups.drainPermits();
+			    return 1;
+			}
+			// Wait time shall never exceed the configured maximum poll interval (if no messages are there at all).
+			return min(2*waittime, config.getMaxPollInterval());
+		} catch (InterruptedException e) {
+			LOG.fine(() -> "Wait for domain events has been interrupted. Reset wait interval and proceed polling!");
+			// Restore interrupt status.
+			currentThread().interrupt();
+			return 1; // Reset waittime
+		}
+	}
+	
+	private void setState(State state) {
+		this.state = state;
+		this.dateModified = new Date();
+	}
+	
+	/**
+	 * Returns the current worker status.
+	 * @return the current worker status.
+	 */
+	JobEventLoopWorkerStatus getStatus() {
+		return newJobEventLoopWorkerStatus()
+			   .withWorkerId(workerId)
+			   .withPartition(partition)
+			   .withWorkerState(state)
+			   .withIterations(iterations)
+			   .withScheduledJobs(scheduledJobs)
+			   .withStartedTasks(startedTasks)
+			   .withBatchSize(batchSize.get())
+			   .withPollInterval(pollInterval)
+			   .withDateModified(dateModified)
+			   .build();
+	}
+	
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.commons.model.BuilderUtil.assertNotInvalidated;
+
+import java.util.Date;
+
+public class JobEventLoopWorkerStatus {
+
+    /**
+     * Creates a new job event loop worker status.
+     * @return a builder for an immutable job event loop worker status object.
+     */
+    public static Builder newJobEventLoopWorkerStatus() {
+        return new Builder();
+    }
+    
+    /**
+     * Builder for immutable job event loop worker status value object.
+     */
+    public static class Builder {
+        
+        private JobEventLoopWorkerStatus status = new JobEventLoopWorkerStatus();
+        
+        /**
+         * Sets the worker ID.
+         * @param workerId the worker ID
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withWorkerId(int workerId) {
+            assertNotInvalidated(getClass(), status);
+            status.workerId = workerId;
+            return this;
+        }
+        
+        /**
+         * Sets the job partition processed by the worker.
+         * @param partition the job partition
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withPartition(JobPartition partition) {
+            assertNotInvalidated(getClass(), status);
+            status.partition = partition != null ? partition.toString() : null;
+            return this;
+        }
+        
+        /**
+         * Sets the worker state.
+         * @param state the worker state
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withWorkerState(JobEventLoopWorker.State state) {
+            assertNotInvalidated(getClass(), status);
+            status.workerState = state;
+            return this;
+        }
+        
+        /**
+         * Sets the number of processed event loop iterations.
+         * @param iterations the number of processed iterations
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withIterations(long iterations) {
+            assertNotInvalidated(getClass(), status);
+            status.iterations = iterations;
+            return this;
+        }
+        
+        /**
+         * Sets the number of scheduled jobs.
+         * @param jobs the number of scheduled jobs
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withScheduledJobs(long jobs) {
+            assertNotInvalidated(getClass(), status);
+            status.scheduledJobs = jobs;
+            return this;
+        }
+        
+        /**
+         * Sets the number of started tasks.
+         * @param tasks the number of started tasks
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withStartedTasks(long tasks) {
+            assertNotInvalidated(getClass(), status);
+            status.startedTasks = tasks;
+            return this;
+        }
+        
+        /**
+         * Sets the current adaptive batch size of the worker.
+         * @param batchSize the current batch size
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withBatchSize(int batchSize) {
+            assertNotInvalidated(getClass(), status);
+            status.batchSize = batchSize;
+            return this;
+        }
+        
+        /**
+         * Sets the current poll interval of an idle worker.
+         * @param pollInterval the poll interval in seconds or <code>0</code> if the worker is busy.
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withPollInterval(long pollInterval) {
+            assertNotInvalidated(getClass(), status);
+            status.pollInterval = pollInterval;
+            return this;
+        }
+        
+        /**
+         * Sets the timestamp of the last worker state change.
+         * @param dateModified the timestamp of the last worker state change
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withDateModified(Date dateModified) {
+            assertNotInvalidated(getClass(), status);
+            status.dateModified = dateModified != null ? new Date(dateModified.getTime()) : null;
+            return this;
+        }
+        
+        /**
+         * Returns an immutable job event loop worker status.
+         * @return an immutable job event loop worker status.
+         */
+        public JobEventLoopWorkerStatus build() {
+            try {
+                assertNotInvalidated(getClass(), status);
+                return status;
+            } finally {
+                this.status = null;
+            }
+        }
+    }
+    
+    private int workerId;
+    private String partition;
+    private JobEventLoopWorker.State workerState;
+    private long iterations;
+    private long scheduledJobs;
+    private long startedTasks;
+    private int batchSize;
+    private long pollInterval;
+    private Date dateModified;
+    
+    /**
+     * Returns the worker ID.
+     * @return the worker ID.
+     */
+    public int getWorkerId() {
+        return workerId;
+    }
+    
+    /**
+     * Returns the job partition processed by the worker in <code>index/count</code> notation.
+     * @return the job partition processed by the worker.
+     */
+    public String getPartition() {
+        return partition;
+    }
+    
+    /**
+     * Returns the worker state.
+     * @return the worker state.
+     */
+    public JobEventLoopWorker.State getWorkerState() {
+        return workerState;
+    }
+    
+    /**
+     * Returns the number of processed event loop iterations.
+     * @return the number of processed event loop iterations.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+    
+    /**
+     * Returns the number of jobs scheduled by the worker.
+     * @return the number of jobs scheduled by the worker.
+     */
+    public long getScheduledJobs() {
+        return scheduledJobs;
+    }
+    
+    /**
+     * Returns the number of tasks started by the worker.
+     * @return the number of tasks started by the worker.
+     */
+    public long getStartedTasks() {
+        return startedTasks;
+    }
+    
+    /**
+     * Returns the current adaptive batch size of the worker,
+     * i.e. the maximum number of jobs processed per iteration.
+     * @return the current batch size.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    /**
+     * Returns the current poll interval of an idle worker, i.e. the current sleep backoff.
+     * @return the poll interval in seconds or <code>0</code> if the worker is busy.
+     */
+    public long getPollInterval() {
+        return pollInterval;
+    }
+    
+    /**
+     * Returns the timestamp of the last worker state change.
+     * @return the timestamp of the last worker state change.
+     */
+    public Date getDateModified() {
+        if(dateModified == null) {
+            return null;
+        }
+        return new Date(dateModified.getTime());
+    }
+    
+}
@@ -157,12 +157,10 @@ public class JobExport implements JobGraphVisitor{
 	}
 	
 	@Override
-	public void visitEdge(Job_Task_Transition transition) {
-		TaskId from = transition.getFrom().getTaskId();
-		TaskId to = transition.getTo().getTaskId();
-		String fromId = nodeNames.get(from);
-		String toId = nodeNames.get(to);
-		String style = transition.getFrom().isCanary() ? "dashed"  : "solid";
+	public void visitEdge(Job_Task from, Job_Task to) {
+		String fromId = nodeNames.get(from.getTaskId());
+		String toId = nodeNames.get(to.getTaskId());
+		String style = from.isCanary() ? "dashed"  : "solid";
 		edges.add(String.format("%s -> %s [penwidth=\"%d\" color=\"#202020\"  style=\"%s\" tooltip=\"%s\" arrowhead=open arrowsize=0.75]",
 								fromId,
 								toId,
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+/**
+ * Named plans to load a job with a bounded number of queries.
+ * <p>
+ * The tasks and transitions of a job are loaded lazily by default, 
+ * i.e. traversing the tasks of a job triggers a query per task and relationship.
+ * A fetch plan loads all parts of the job aggregate a service method needs upfront.
+ * Each service method uses the cheapest plan that covers its needs.
+ * </p>
+ * @see JobProvider#fetchJob(io.leitstand.jobs.service.JobId, JobFetchPlan)
+ */
+public enum JobFetchPlan {
+	
+	/** Loads the job record only. Tasks and transitions are loaded lazily on demand. */
+	JOB_HEADER,
+	
+	/** Loads the job and all tasks of the job by a single query. Transitions are loaded lazily on demand. */
+	JOB_WITH_TASKS,
+	
+	/** Loads the job, all tasks of the job and the successors and predecessors of all tasks by three queries. */
+	JOB_WITH_TASKS_AND_TRANSITIONS
+
+}
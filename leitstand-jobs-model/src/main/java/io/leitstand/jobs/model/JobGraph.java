@@ -15,35 +15,42 @@
  */
 package io.leitstand.jobs.model;
 
-import java.util.HashSet;
-import java.util.Set;
-
+/**
+ * Traverses the task flow of a job.
+ * <p>
+ * Every task reachable from the start task and every transition between these tasks is visited once.
+ * A task is visited before its successors, whereas a transition is visited after its succeeding task has been traversed.
+ * The traversal runs against the compact {@link JobTopology} of the job and is iterative,
+ * so that neither the job size nor the job depth is limited by the stack size.
+ * </p>
+ */
 public class JobGraph  {
 
 	private Job flow;
-	private Set<Job_Task_Transition> edges;
-	private Set<Job_Task> nodes;
+	private JobTopology topology;
 	
 	public JobGraph(Job flow){
-		this.flow = flow;
-		this.edges = new HashSet<>();
-		this.nodes = new HashSet<>();
+		this(flow, JobTopology.of(flow));
 	}
 	
-	public void accept(JobGraphVisitor visitor){
-		Job_Task start = flow.getStart();
-		traverse(visitor,start);
+	public JobGraph(Job flow, JobTopology topology) {
+		this.flow = flow;
+		this.topology = topology;
 	}
 	
-	private void traverse(JobGraphVisitor visitor, Job_Task task){
-		if(nodes.add(task)) {
-			visitor.visitNode(task);
-		}
-		for(Job_Task_Transition transition : task.getSuccessors()){
-			traverse(visitor,transition.getTo());
-			if(edges.add(transition)){
-				visitor.visitEdge(transition);
+	public void accept(JobGraphVisitor visitor){
+		Job_Task[] tasks = new Job_Task[topology.getTaskCount()];
+		topology.traverse(new JobTopology.Visitor() {
+			@Override
+			public void visitTask(int task) {
+				tasks[task] = flow.getTask(topology.getTaskId(task));
+				visitor.visitNode(tasks[task]);
+			}
+			
+			@Override
+			public void visitTransition(int from, int to) {
+				visitor.visitEdge(tasks[from], tasks[to]);
 			}
-		}
+		});
 	}
 }
@@ -18,6 +18,6 @@ package io.leitstand.jobs.model;
 public interface JobGraphVisitor {
 
 	void visitNode(Job_Task task);
-	void visitEdge(Job_Task_Transition transition);
+	void visitEdge(Job_Task from, Job_Task to);
 	
 }
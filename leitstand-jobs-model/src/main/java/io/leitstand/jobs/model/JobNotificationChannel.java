@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+/**
+ * A <code>JobNotificationChannel</code> wakes up the job event loops of all cluster nodes.
+ * <p>
+ * A node publishes a notification whenever a job or task has been changed in a way that allows the job event loop
+ * to proceed without waiting for the next polling interval.
+ * The {@link LocalJobNotificationChannel} dispatches notifications to the listeners of the same node only 
+ * and is used when no database notification mechanism is available.
+ * The {@link PostgresJobNotificationChannel} leverages the PostgreSQL <code>LISTEN</code>/<code>NOTIFY</code> 
+ * mechanism to dispatch notifications to all nodes.
+ * </p>
+ */
+public interface JobNotificationChannel {
+
+	/**
+	 * Notifies all subscribed listeners of all cluster nodes.
+	 */
+	void publish();
+	
+	/**
+	 * Subscribes a listener to this channel.
+	 * @param listener the listener to be invoked for every received notification.
+	 */
+	void subscribe(Runnable listener);
+	
+	/**
+	 * Removes a listener from this channel.
+	 * @param listener the listener to be removed.
+	 */
+	void unsubscribe(Runnable listener);
+	
+}
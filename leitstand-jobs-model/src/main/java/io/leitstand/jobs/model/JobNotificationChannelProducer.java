@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+import static java.util.logging.Level.FINER;
+import static java.util.logging.Logger.getLogger;
+
+import java.util.logging.Logger;
+
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Dependent;
+import javax.enterprise.inject.Produces;
+import javax.inject.Inject;
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+@Dependent
+public class JobNotificationChannelProducer {
+	
+	private static final Logger LOG = getLogger(JobNotificationChannelProducer.class.getName());
+
+	@Resource(lookup="java:/jdbc/leitstand")
+	private DataSource ds;
+	
+	@Resource
+	private ManagedThreadFactory threads;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private JobsDatabaseDialect dialect;
+	
+	@Produces
+	@ApplicationScoped
+	public JobNotificationChannel createJobNotificationChannel() {
+		String channel = config.getNotificationChannel();
+		if("postgres".equals(channel) || ("auto".equals(channel) && dialect.isPostgres())) {
+			LOG.info("Use PostgreSQL LISTEN/NOTIFY to notify job event loops.");
+			// Run the long-lived listener in a dedicated thread instead of occupying a managed executor thread.
+			return new PostgresJobNotificationChannel(ds,
+													  listenerDataSource(),
+													  listener -> threads.newThread(listener).start());
+		}
+		LOG.info("Use local job event loop notifications.");
+		return new LocalJobNotificationChannel();
+	}
+	
+	private DataSource listenerDataSource() {
+		String name = config.getNotificationDataSource();
+		if(name.isEmpty()) {
+			return ds;
+		}
+		try {
+			return InitialContext.doLookup(name);
+		} catch (NamingException e) {
+			LOG.warning(() -> format("Cannot look up job notification data source %s: %s. Listen on a pooled connection instead.",
+									 name,
+									 e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+			return ds;
+		}
+	}
+	
+}
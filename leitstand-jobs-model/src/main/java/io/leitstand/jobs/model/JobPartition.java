@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+
+/**
+ * A partition of all jobs processed by a single {@link JobEventLoopWorker}.
+ * <p>
+ * The jobs are distributed to the partitions by their numeric job ID.
+ * A job belongs to the partition where the job ID modulo the number of partitions is equal to the partition index.
+ * </p>
+ */
+public final class JobPartition {
+
+	/** A single partition containing all jobs. */
+	public static final JobPartition ALL_JOBS = partition(0,1);
+	
+	/**
+	 * Creates a job partition.
+	 * @param index the partition index
+	 * @param count the total number of partitions
+	 * @return the job partition
+	 */
+	public static JobPartition partition(int index, int count) {
+		if(count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException(format("Invalid job partition %d/%d",index,count));
+		}
+		return new JobPartition(index,count);
+	}
+	
+	private final int index;
+	private final int count;
+	
+	private JobPartition(int index, int count) {
+		this.index = index;
+		this.count = count;
+	}
+	
+	/**
+	 * Returns the partition index.
+	 * @return the partition index.
+	 */
+	public int getIndex() {
+		return index;
+	}
+	
+	/**
+	 * Returns the total number of partitions.
+	 * @return the total number of partitions.
+	 */
+	public int getCount() {
+		return count;
+	}
+	
+	@Override
+	public String toString() {
+		return format("%d/%d",index,count);
+	}
+	
+}
@@ -1,6 +1,10 @@
 package io.leitstand.jobs.model;
 
 import static io.leitstand.jobs.model.Job.findJobById;
+import static io.leitstand.jobs.model.Job.findJobWithTasksById;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_HEADER;
+import static io.leitstand.jobs.model.Job_Task.fetchPredecessorsOfJobTasks;
+import static io.leitstand.jobs.model.Job_Task.fetchSuccessorsOfJobTasks;
 import static io.leitstand.jobs.service.ReasonCode.JOB0100E_JOB_NOT_FOUND;
 import static java.lang.String.format;
 
@@ -30,9 +34,25 @@ public class JobProvider {
         this.repository = repository;
     }
 
-    
+    /**
+     * Loads the job record of the given job.
+     * @param jobId the job ID
+     * @return the job.
+     * @throws EntityNotFoundException if the job does not exist.
+     */
     public Job fetchJob(JobId jobId) {
-        Job job = repository.execute(findJobById(jobId));
+        return fetchJob(jobId, JOB_HEADER);
+    }
+    
+    /**
+     * Loads the given job according to the given fetch plan.
+     * @param jobId the job ID
+     * @param plan the fetch plan
+     * @return the job.
+     * @throws EntityNotFoundException if the job does not exist.
+     */
+    public Job fetchJob(JobId jobId, JobFetchPlan plan) {
+        Job job = tryFetchJob(jobId, plan);
         if(job == null) {
             LOG.fine(() -> format("%s: Job %s not found.",
                                   JOB0100E_JOB_NOT_FOUND.getReasonCode(),
@@ -42,8 +62,38 @@ public class JobProvider {
         return job;
     }
     
+    /**
+     * Loads the job record of the given job.
+     * @param jobId the job ID
+     * @return the job or <code>null</code> if the job does not exist.
+     */
     public Job tryFetchJob(JobId jobId) {
-        return repository.execute(findJobById(jobId));
+        return tryFetchJob(jobId, JOB_HEADER);
+    }
+    
+    /**
+     * Loads the given job according to the given fetch plan.
+     * @param jobId the job ID
+     * @param plan the fetch plan
+     * @return the job or <code>null</code> if the job does not exist.
+     */
+    public Job tryFetchJob(JobId jobId, JobFetchPlan plan) {
+        switch(plan) {
+            case JOB_WITH_TASKS_AND_TRANSITIONS:{
+                Job job = repository.execute(findJobWithTasksById(jobId));
+                if(job != null) {
+                    // Initialize the transitions of all tasks in the persistence context.
+                    repository.execute(fetchSuccessorsOfJobTasks(job));
+                    repository.execute(fetchPredecessorsOfJobTasks(job));
+                }
+                return job;
+            }
+            case JOB_WITH_TASKS:
+                return repository.execute(findJobWithTasksById(jobId));
+            case JOB_HEADER:
+            default:
+                return repository.execute(findJobById(jobId));
+        }
     }
     
     
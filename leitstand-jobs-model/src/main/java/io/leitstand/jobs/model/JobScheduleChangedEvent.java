@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import java.util.Date;
+
+import io.leitstand.jobs.service.JobId;
+
+/**
+ * Signals that a job has become eligible for scheduling or that its schedule has been changed.
+ * <p>
+ * The event is fired when a job gets committed, resumed or confirmed, when the job schedule settings are modified
+ * and when the window of a job resumed automatically has been moved to the next window.
+ * The {@link JobEventLoop} observes this event to wake up immediately instead of waiting for the next polling interval.
+ * The event conveys the job ID and the window dates rather than the job entity,
+ * because the event is processed after the transaction has been committed.
+ */
+public class JobScheduleChangedEvent {
+
+	private JobId jobId;
+	private Date dateScheduled;
+	private Date dateSuspend;
+	private boolean autoResume;
+
+	public JobScheduleChangedEvent(Job job) {
+		this.jobId = job.getJobId();
+		Date scheduled = job.getDateScheduled();
+		this.dateScheduled = scheduled != null ? new Date(scheduled.getTime()) : null;
+		Date suspend = job.getDateSuspend();
+		this.dateSuspend = suspend != null ? new Date(suspend.getTime()) : null;
+		this.autoResume = job.isAutoResume();
+	}
+
+	/**
+	 * Returns the ID of the affected job.
+	 * @return the job ID.
+	 */
+	public JobId getJobId() {
+		return jobId;
+	}
+
+	/**
+	 * Returns the scheduled job start date or <code>null</code> if no start date is set.
+	 * @return the scheduled job start date.
+	 */
+	public Date getDateScheduled() {
+		if(dateScheduled == null) {
+			return null;
+		}
+		return new Date(dateScheduled.getTime());
+	}
+	
+	/**
+	 * Returns the date when the window of the job closes or <code>null</code> if the job has no window.
+	 * @return the job suspend date.
+	 */
+	public Date getDateSuspend() {
+		if(dateSuspend == null) {
+			return null;
+		}
+		return new Date(dateSuspend.getTime());
+	}
+	
+	/**
+	 * Returns whether the job is resumed automatically in the next window.
+	 * @return <code>true</code> if the job is resumed automatically, <code>false</code> otherwise.
+	 */
+	public boolean isAutoResume() {
+		return autoResume;
+	}
+
+}
@@ -15,19 +15,31 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.model.Job.claimRunnableJobs;
+import static io.leitstand.jobs.model.Job.claimRunnableJobsWithoutSkipLocked;
+import static io.leitstand.jobs.model.Job.claimRunningJobsWithoutSkipLocked;
+import static io.leitstand.jobs.model.Job.claimUrgentRunningJobsWithoutSkipLocked;
 import static io.leitstand.jobs.model.Job.findJobById;
-import static io.leitstand.jobs.model.Job.findRunnableJobs;
-import static io.leitstand.jobs.model.Job_Task.findSuccessorsOfCompletedTasks;
+import static io.leitstand.jobs.model.Job.findJobsWithoutTaskCounts;
+import static io.leitstand.jobs.model.Job.findOldestOverdueJobDate;
+import static io.leitstand.jobs.model.Job.releaseJobLeases;
+import static io.leitstand.jobs.model.Job.renewJobLeases;
+import static io.leitstand.jobs.model.Job_Task.findTasksEligibleForExecution;
 import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.FAILED;
 import static java.lang.String.format;
-import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.logging.Level.FINER;
-import static java.util.stream.Collectors.toList;
 import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import javax.enterprise.event.Event;
@@ -36,6 +48,7 @@ import javax.inject.Inject;
 import io.leitstand.commons.model.Repository;
 import io.leitstand.commons.model.Service;
 import io.leitstand.commons.tx.SubtransactionService;
+import io.leitstand.jobs.service.JobApplication;
 import io.leitstand.jobs.service.JobId;
 import io.leitstand.jobs.service.JobTaskService;
 import io.leitstand.jobs.service.TaskId;
@@ -59,49 +72,306 @@ public class JobScheduler {
 	@Jobs
 	private SubtransactionService tx;
 	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private TaskProcessingService processing;
+	
+	@Inject
+	private JobsDatabaseDialect dialect;
+	
+	@Inject
+	private JobTaskPermits permits;
+	
+	@Inject
+	private TaskRateLimiter rateLimiter;
+	
+	@Inject
+	private JobAdmissionControl admissionControl;
+	
+	/**
+	 * Returns the schedule dates of all ready jobs and the window start dates of all running jobs scheduled within the given time frame.
+	 * @param from the start of the time frame (inclusive)
+	 * @param to the end of the time frame (exclusive)
+	 * @return the schedule dates of all jobs scheduled within the time frame.
+	 */
+	public Map<JobId,Date> findScheduledJobs(Date from, Date to){
+		Map<JobId,Date> scheduled = new LinkedHashMap<>();
+		for(Job job : repository.execute(Job.findScheduledJobs(from, to))) {
+			scheduled.put(job.getJobId(), job.getDateScheduled());
+		}
+		return scheduled;
+	}
+	
+	/**
+	 * Returns the dates of all task retries scheduled within the given time frame.
+	 * @param from the start of the time frame (inclusive)
+	 * @param to the end of the time frame (exclusive)
+	 * @return the dates of the next attempts of all tasks retried within the time frame.
+	 */
+	public Map<TaskId,Date> findScheduledRetries(Date from, Date to){
+		Map<TaskId,Date> retries = new LinkedHashMap<>();
+		for(Job_Task task : repository.execute(Job_Task.findScheduledRetries(from, to))) {
+			retries.put(task.getTaskId(), task.getDateNextAttempt());
+		}
+		return retries;
+	}
+	
+	/**
+	 * Returns the schedule date of the oldest ready job whose schedule date has passed.
+	 * Jobs without schedule date are due since their last modification.
+	 * @return the schedule date of the oldest overdue job or <code>null</code> if no job is overdue.
+	 */
+	public Date findOldestOverdueJob() {
+		return repository.execute(findOldestOverdueJobDate(new Date()));
+	}
+	
 	/**
-	 * Returns all jobs that are eligible for execution.
-	 * @return List of IDs of all executable tasks.
+	 * Returns a snapshot of the ready and active tasks of all running jobs to admit the jobs eligible for execution.
+	 * @return the admission snapshot.
+	 * @see JobAdmissionControl
 	 */
-	public List<JobId> findExecutableJobs(int limit){
+	public JobAdmission getAdmission() {
+		return admissionControl.getAdmission();
+	}
+	
+	/**
+	 * Claims the jobs of the given partition that are eligible for execution.
+	 * The jobs are claimed in dispatch rank order, i.e. by priority and the time the jobs are due for execution.
+	 * Jobs of saturated job applications are skipped and no job is claimed if the global admission limit is exhausted.
+	 * A job is leased to the claiming node until the lease expires or is released.
+	 * Other nodes skip the job while the lease is valid.
+	 * @param partition the job partition
+	 * @param admission the admission snapshot
+	 * @param limit the maximum number of claimed jobs
+	 * @return List of IDs of all claimed executable jobs.
+	 */
+	public List<JobId> claimExecutableJobs(JobPartition partition, JobAdmission admission, int limit){
+		if(admission.isSaturated()) {
+			return emptyList();
+		}
 		Date now = new Date();
-		return repository.execute(findRunnableJobs(now, limit))
-						 .stream()
-						 .map(Job::getJobId)
-						 .collect(toList());
-	}
-	
-	public List<JobId> findRunningJobs(int limit){
-	    return repository.execute(Job.findRunningJobs(limit))
-	                     .stream()
-	                     .map(Job::getJobId)
-	                     .collect(toList());
-	}
-	
-	public List<TaskId> activateExecutableTasks(JobId jobId){
-	    // Make sure to have exclusive access to the job when changing tasks
-	    // from READY to ACTIVE state to avoid duplicate execution of the
-	    // same task.
-	    Job job = repository.execute(findJobById(jobId, PESSIMISTIC_WRITE));
-	    if(job.getStart().isSucceeded()) {
-    	    return repository.execute(findSuccessorsOfCompletedTasks(job, PESSIMISTIC_WRITE))
-    	                     .stream()
-    	                     .filter(Job_Task::isEligibleForExecution)
-    	                     .map(Job_Task::getTaskId)
-    	                     .collect(toList());
-	    }
-	    Job_Task start = job.getStart();
-	    start.setTaskState(ACTIVE);
-	    return asList(start.getTaskId());
-	}
-	
-	public void schedule(JobId jobId){
+		Set<JobApplication> saturated = admission.getSaturatedApplications();
+		if(dialect.isPostgres()) {
+			return repository.execute(claimRunnableJobs(now, partition, saturated, config.getNodeId(), leaseExpiry(now), limit));
+		}
+		return repository.execute(claimRunnableJobsWithoutSkipLocked(now, partition, saturated, config.getNodeId(), leaseExpiry(now), limit));
+	}
+	
+	/**
+	 * Claims the next batch of running jobs of the given partition.
+	 * The batch starts after the last job visited by the given cursor, 
+	 * so that all running jobs are processed in a round-robin fashion.
+	 * Claiming a job already leased by this node renews the lease.
+	 * @param partition the job partition
+	 * @param cursor the cursor of the calling worker
+	 * @param limit the maximum number of claimed jobs
+	 * @return List of IDs of all claimed running jobs.
+	 */
+	public List<JobId> claimRunningJobs(JobPartition partition, JobCursor cursor, int limit){
+		Date now = new Date();
+		if(dialect.isPostgres()) {
+			return repository.execute(Job.claimRunningJobs(partition, cursor, config.getNodeId(), leaseExpiry(now), limit));
+		}
+		return repository.execute(claimRunningJobsWithoutSkipLocked(partition, cursor, config.getNodeId(), leaseExpiry(now), limit));
+	}
+	
+	/**
+	 * Claims the running jobs of the given partition with a priority above the default priority in dispatch rank order.
+	 * Urgent jobs are processed in every event loop iteration in addition to the round-robin batch of running jobs.
+	 * @param partition the job partition
+	 * @param limit the maximum number of claimed jobs
+	 * @return List of IDs of all claimed urgent running jobs.
+	 */
+	public List<JobId> claimUrgentRunningJobs(JobPartition partition, int limit){
+		Date now = new Date();
+		if(dialect.isPostgres()) {
+			return repository.execute(Job.claimUrgentRunningJobs(partition, config.getNodeId(), leaseExpiry(now), limit));
+		}
+		return repository.execute(claimUrgentRunningJobsWithoutSkipLocked(partition, config.getNodeId(), leaseExpiry(now), limit));
+	}
+	
+	/**
+	 * Sets the dispatch rank of all ready and running jobs that lack a dispatch rank.
+	 * @return the number of updated jobs.
+	 */
+	public int assignMissingRanks() {
+		return repository.execute(Job.assignMissingRanks());
+	}
+	
+	/**
+	 * Computes the task counters of all ready, running and suspended jobs that lack task counters.
+	 * @return the number of updated jobs.
+	 */
+	public int assignMissingTaskCounts() {
+		List<Job> jobs = repository.execute(findJobsWithoutTaskCounts());
+		jobs.forEach(Job::resetTaskCounts);
+		return jobs.size();
+	}
+	
+	/**
+	 * Renews the leases of all ready and running jobs claimed by this node.
+	 * @return the number of renewed leases.
+	 */
+	public int renewLeases() {
+		int renewed = repository.execute(renewJobLeases(config.getNodeId(), leaseExpiry(new Date())));
+		LOG.fine(() -> format("Renewed %d job leases of node %s.",renewed,config.getNodeId()));
+		return renewed;
+	}
+	
+	/**
+	 * Releases all leases of this node to allow other nodes to claim the jobs immediately.
+	 * @return the number of released leases.
+	 */
+	public int releaseLeases() {
+		int released = repository.execute(releaseJobLeases(config.getNodeId()));
+		LOG.fine(() -> format("Released %d job leases of node %s.",released,config.getNodeId()));
+		return released;
+	}
+	
+	/**
+	 * Sets all given tasks that are still active ready for execution again.
+	 * Invoked on shutdown for all tasks whose task processors have not reported the outcome within the drain timeout.
+	 * @param tasks the IDs of the interrupted tasks
+	 * @return the number of tasks set ready for execution again.
+	 */
+	public int checkpointTasks(Collection<TaskId> tasks) {
+		int checkpointed = 0;
+		for(TaskId taskId : tasks) {
+			Job_Task task = repository.execute(Job_Task.findTaskById(taskId, PESSIMISTIC_WRITE));
+			if(task != null && task.isActive()) {
+				processing.taskInterrupted(task);
+				checkpointed++;
+			}
+		}
+		return checkpointed;
+	}
+	
+	private Date leaseExpiry(Date now) {
+		return new Date(now.getTime() + SECONDS.toMillis(config.getLeaseDuration()));
+	}
+	
+	/**
+	 * Executes all tasks of the given running jobs that are eligible for execution.
+	 * <p>
+	 * The eligible tasks of all jobs are read by a single query, 
+	 * which locks the tasks to avoid duplicate execution of the same task.
+	 * The tasks are executed in dispatch rank order of their jobs, 
+	 * so that tasks of urgent jobs acquire the available permits first.
+	 * A task remains ready for execution if the task start is throttled by a rate limit or the task cannot acquire its permits.
+	 * </p>
+	 * @param jobs the IDs of the running jobs
+	 * @return List of IDs of all executed tasks.
+	 */
+	public List<TaskId> executeEligibleTasks(List<JobId> jobs){
+		if(jobs.isEmpty()) {
+			return emptyList();
+		}
+		List<TaskId> executed = new ArrayList<>();
+		List<Job_Task> tasks = repository.execute(findTasksEligibleForExecution(jobs, PESSIMISTIC_WRITE));
+		for(Job_Task task : tasks) {
+			if(tryAcquire(task)) {
+				processing.executeTask(task);
+				executed.add(task.getTaskId());
+			}
+		}
+		return executed;
+	}
+	
+	/**
+	 * Acquires a task start token and the concurrency permits of a task.
+	 * The task start token is returned if the permits are not available.
+	 * @param task the task to be started
+	 * @return <code>true</code> if the task can be started, <code>false</code> otherwise.
+	 */
+	private boolean tryAcquire(Job_Task task) {
+		if(!rateLimiter.tryAcquire(task)) {
+			return false;
+		}
+		if(!permits.tryAcquire(task)) {
+			rateLimiter.release(task);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns whether task starts have been throttled by a rate limit and the throttled tasks wait for tokens.
+	 * @return <code>true</code> if throttled tasks are waiting for tokens, <code>false</code> otherwise.
+	 */
+	public boolean isThrottling() {
+		return rateLimiter.isThrottling();
+	}
+	
+	/**
+	 * Recomputes the task permit counters from the permits held by all active tasks.
+	 * @see JobTaskPermits
+	 */
+	public void reconcilePermits() {
+		permits.reconcile();
+	}
+	
+	/**
+	 * Commits the outcome of a task executed by the {@link TaskExecutionPool}.
+	 * A task that could not be dispatched is set ready for execution again.
+	 * @param completion the task completion
+	 */
+	public void completeTask(TaskCompletion completion) {
+		Job job = repository.execute(findJobById(completion.getJobId(), PESSIMISTIC_WRITE));
+		if(job == null) {
+			LOG.fine(() -> format("Discard completion of task %s. Job %s does not exist anymore.",
+								  completion.getTaskId(),
+								  completion.getJobId()));
+			return;
+		}
+		Job_Task task = job.getTask(completion.getTaskId());
+		if(task == null) {
+			LOG.fine(() -> format("Discard completion of task %s. Task does not exist anymore.",
+								  completion.getTaskId()));
+			return;
+		}
+		if(task.getExecutor() != null && !task.getExecutor().equals(config.getNodeId())) {
+			LOG.fine(() -> format("Discard completion of task %s. Task has been recovered by node %s.",
+								  completion.getTaskId(),
+								  task.getExecutor()));
+			return;
+		}
+		if(!completion.isDispatched()) {
+			processing.taskInterrupted(task);
+			return;
+		}
+		processing.taskProcessed(task, completion.getTaskState(), completion.getStatusCode());
+	}
+	
+	/**
+	 * Starts a job eligible for execution, if the job gets admitted.
+	 * A job that is not admitted remains ready for execution and is started by a later event loop iteration.
+	 * @param jobId the job ID
+	 * @param admission the admission snapshot
+	 * @return <code>true</code> if the job has been admitted, <code>false</code> if the job waits for admission.
+	 */
+	public boolean schedule(JobId jobId, JobAdmission admission){
 		try{
 		    Job job = repository.execute(findJobById(jobId));
+		    if(!admissionControl.tryAdmit(admission, job)) {
+		    	LOG.fine(() -> format("Job %s (%s) waits for admission.",
+		    						  job.getJobName(),
+		    						  job.getJobId()));
+		    	return false;
+		    }
 			job.setJobState(ACTIVE);
 			jobStateEventSink.fire(new JobStateChangedEvent(job));
+			if(!tryAcquire(job.getStart())) {
+				// The event loop activates the start task as soon as the rate limits and permits allow.
+				LOG.fine(() -> format("Start task of job %s (%s) is throttled or waits for permits.",
+									  job.getJobName(),
+									  job.getJobId()));
+				return true;
+			}
 			service.executeTask(job.getJobId(),
 								job.getStart().getTaskId());
+			return true;
 		} catch (Exception e){
 		    // Transaction might be marked for rollback.
 		    // Start new transaction to mark job as failed.
@@ -116,6 +386,7 @@ public class JobScheduler {
 		    });
 		    
 			LOG.log(FINER,e.getMessage(),e);
+			return true;
 		}
 	}
 	
@@ -0,0 +1,585 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+import static java.util.logging.Logger.getLogger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.EnumSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import io.leitstand.inventory.service.ElementGroupType;
+import io.leitstand.jobs.service.JobApplication;
+import io.leitstand.jobs.service.TaskState;
+import io.leitstand.jobs.service.TaskType;
+
+/**
+ * Provides the job scheduler settings.
+ * <p>
+ * All settings are read from system properties prefixed by <code>leitstand.jobs.</code>.
+ * A default value is applied for every setting that is not configured or configured with an invalid value.
+ * </p>
+ */
+@ApplicationScoped
+public class JobSchedulerConfig {
+
+	private static final Logger LOG = getLogger(JobSchedulerConfig.class.getName());
+
+	static final String PREFIX = "leitstand.jobs.";
+
+	private Properties properties;
+	private String defaultNodeId;
+
+	public JobSchedulerConfig() {
+		this(System.getProperties());
+	}
+
+	JobSchedulerConfig(Properties properties){
+		this.properties = properties;
+		// The host name survives restarts, so that a restarted node recovers the tasks leased by its former instance.
+		this.defaultNodeId = hostname();
+	}
+	
+	private static String hostname() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e) {
+			LOG.warning(() -> format("Cannot determine host name: %s", e.getMessage()));
+			return "leitstand";
+		}
+	}
+
+	/**
+	 * Returns the name of the notification channel to wake up the job event loops of all cluster nodes.
+	 * Supported values are <code>local</code>, <code>postgres</code> and <code>auto</code>.
+	 * <code>auto</code> selects the <code>postgres</code> channel when the jobs are stored in a PostgreSQL database,
+	 * and the <code>local</code> channel otherwise.
+	 * @return the name of the notification channel.
+	 */
+	public String getNotificationChannel() {
+		return getString("notification.channel","auto");
+	}
+
+	/**
+	 * Returns the JNDI name of the data source to open the long-lived connection listening for PostgreSQL job notifications.
+	 * The data source should not be pooled, because the listener holds the connection as long as the job event loop runs.
+	 * @return the JNDI name of the listener data source or an empty string to use the leitstand data source.
+	 */
+	public String getNotificationDataSource() {
+		return getString("notification.datasource","").trim();
+	}
+
+	/**
+	 * Returns the maximum wait time in seconds between two polls of an idle job event loop.
+	 * The wait time is doubled for every idle event loop iteration until this limit is reached.
+	 * @return the maximum wait time in seconds.
+	 */
+	public long getMaxPollInterval() {
+		return getLong("event_loop.max_poll_interval", 60);
+	}
+
+	/**
+	 * Returns the number of job event loop workers.
+	 * Each worker processes a partition of all jobs.
+	 * Defaults to the number of available processors.
+	 * @return the number of job event loop workers.
+	 */
+	public int getEventLoopWorkers() {
+		return Math.max(1, getInt("event_loop.workers", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Returns the maximum number of jobs processed by a job event loop worker per iteration.
+	 * A worker processes all running jobs in batches of this size in a round-robin fashion.
+	 * The batch size is the initial batch size of the adaptive batch size limit of a worker.
+	 * @return the batch size of the job event loop workers.
+	 */
+	public int getEventLoopBatchSize() {
+		return Math.max(1, getInt("event_loop.batch_size", 20));
+	}
+	
+	/**
+	 * Returns the lower bound of the adaptive batch size of the job event loop workers.
+	 * Defaults to 1.
+	 * @return the minimum batch size.
+	 */
+	public int getEventLoopMinBatchSize() {
+		return Math.max(1, getInt("event_loop.min_batch_size", 1));
+	}
+	
+	/**
+	 * Returns the upper bound of the adaptive batch size of the job event loop workers.
+	 * Defaults to 200. The adaptive batch size is disabled if the upper bound equals the lower bound.
+	 * @return the maximum batch size.
+	 */
+	public int getEventLoopMaxBatchSize() {
+		return Math.max(getEventLoopMinBatchSize(), getInt("event_loop.max_batch_size", 200));
+	}
+	
+	/**
+	 * Returns the target latency of a job event loop iteration in milliseconds.
+	 * A worker shrinks its batch size when an iteration exceeds the target latency,
+	 * which indicates that the database is under stress.
+	 * Defaults to 1000 milliseconds.
+	 * @return the target latency of an event loop iteration in milliseconds.
+	 */
+	public long getEventLoopTargetLatency() {
+		return Math.max(1, getLong("event_loop.target_latency", 1000));
+	}
+	
+	/**
+	 * Returns the maximum number of concurrently executed tasks of the given task type.
+	 * The limit is configured per task type by <code>executor.concurrency.&lt;task type&gt;</code> 
+	 * and defaults to the <code>executor.concurrency</code> setting, which defaults to 16.
+	 * @param taskType the task type
+	 * @return the maximum number of concurrently executed tasks.
+	 */
+	public int getTaskConcurrency(TaskType taskType) {
+		int defaultConcurrency = getInt("executor.concurrency", 16);
+		if(taskType == null) {
+			return Math.max(1, defaultConcurrency);
+		}
+		return Math.max(1, getInt("executor.concurrency."+taskType, defaultConcurrency));
+	}
+	
+	/**
+	 * Returns the lower bound of the adaptive concurrency limit of a task type.
+	 * The configured task concurrency is the upper bound of the adaptive concurrency limit.
+	 * Defaults to 1.
+	 * @return the minimum number of concurrently executed tasks per task type.
+	 */
+	public int getTaskMinConcurrency() {
+		return Math.max(1, getInt("executor.min_concurrency", 1));
+	}
+	
+	/**
+	 * Returns the tolerated ratio of the recent task processor latency to the baseline latency of a task type.
+	 * The concurrency limit of a task type is decreased when the recent latency exceeds the tolerated ratio,
+	 * which indicates that the task processors or the systems they access are saturated.
+	 * Defaults to 2.
+	 * @return the tolerated latency ratio.
+	 */
+	public double getTaskLatencyTolerance() {
+		return Math.max(1, getDouble("executor.latency_tolerance", 2));
+	}
+	
+	/**
+	 * Returns how long the job event loop waits for in-flight tasks on shutdown.
+	 * Tasks not completed within this period are set ready for execution again, so that other cluster nodes can resume them immediately.
+	 * The drain timeout is configured by the <code>shutdown.drain_timeout</code> setting and defaults to 30 seconds.
+	 * @return the drain timeout in seconds.
+	 */
+	public long getDrainTimeout() {
+		return Math.max(0, getLong("shutdown.drain_timeout", 30));
+	}
+	
+	/**
+	 * Returns whether task processors shall be executed on virtual threads instead of the threads of the managed executor service.
+	 * The execution mode is configured by the <code>executor.threads</code> setting, 
+	 * which is either <code>platform</code> (default) or <code>virtual</code>.
+	 * Virtual threads are only used if the Java runtime supports virtual threads.
+	 * @return <code>true</code> if task processors shall be executed on virtual threads, <code>false</code> otherwise.
+	 */
+	public boolean isVirtualThreadExecution() {
+		return "virtual".equalsIgnoreCase(getString("executor.threads", "platform"));
+	}
+	
+	/**
+	 * Returns the maximum number of concurrently active tasks per element across all cluster nodes.
+	 * @return the maximum number of active tasks per element or <code>0</code> if the number is not limited.
+	 */
+	public int getElementPermits() {
+		return Math.max(0, getInt("permits.element", 0));
+	}
+	
+	/**
+	 * Returns the maximum number of concurrently active tasks per element group across all cluster nodes.
+	 * @return the maximum number of active tasks per element group or <code>0</code> if the number is not limited.
+	 */
+	public int getElementGroupPermits() {
+		return Math.max(0, getInt("permits.group", 0));
+	}
+	
+	/**
+	 * Returns the maximum number of concurrently active tasks per element group type across all cluster nodes.
+	 * The limit is configured per element group type by <code>permits.group_type.&lt;group type&gt;</code> 
+	 * and defaults to the <code>permits.group_type</code> setting.
+	 * @param groupType the element group type
+	 * @return the maximum number of active tasks per element group type or <code>0</code> if the number is not limited.
+	 */
+	public int getElementGroupTypePermits(ElementGroupType groupType) {
+		int defaultLimit = getInt("permits.group_type", 0);
+		if(groupType == null) {
+			return Math.max(0, defaultLimit);
+		}
+		return Math.max(0, getInt("permits.group_type."+groupType, defaultLimit));
+	}
+	
+	/**
+	 * Returns whether the number of active tasks is limited for at least one element group type.
+	 * @return <code>true</code> if an element group type limit is configured, <code>false</code> otherwise.
+	 */
+	public boolean isElementGroupTypePermitsEnabled() {
+		for(String key : properties.stringPropertyNames()) {
+			if(key.startsWith(PREFIX+"permits.group_type")) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Returns the interval in seconds to reconcile the permit counters with the active tasks.
+	 * @return the permit reconciliation interval in seconds.
+	 */
+	public long getPermitReconcileInterval() {
+		return Math.max(60, getLong("permits.reconcile_interval", 600));
+	}
+	
+	/**
+	 * Returns whether the number of active tasks is limited per element, element group or element group type.
+	 * @return <code>true</code> if at least one limit is configured, <code>false</code> otherwise.
+	 */
+	public boolean isPermitsEnabled() {
+		return getElementPermits() > 0 || getElementGroupPermits() > 0 || isElementGroupTypePermitsEnabled();
+	}
+	
+	/**
+	 * Returns the maximum number of task starts per second of the given job application on this cluster node.
+	 * The limit is configured by <code>rate.application.&lt;application&gt;</code> and may have a fractional part.
+	 * @param application the job application
+	 * @return the maximum number of task starts per second or <code>0</code> if the rate is not limited.
+	 */
+	public double getApplicationRate(JobApplication application) {
+		return Math.max(0, getDouble("rate.application."+application, 0));
+	}
+	
+	/**
+	 * Returns the maximum number of task starts per second of the given task type on this cluster node.
+	 * The limit is configured by <code>rate.task_type.&lt;task type&gt;</code> and may have a fractional part.
+	 * @param taskType the task type
+	 * @return the maximum number of task starts per second or <code>0</code> if the rate is not limited.
+	 */
+	public double getTaskTypeRate(TaskType taskType) {
+		return Math.max(0, getDouble("rate.task_type."+taskType, 0));
+	}
+	
+	/**
+	 * Returns the burst duration of the task start rate limits in seconds.
+	 * A rate limit admits a burst of the task starts of the burst duration, but at least one task start.
+	 * @return the burst duration in seconds.
+	 */
+	public double getRateBurst() {
+		return Math.max(0, getDouble("rate.burst", 1));
+	}
+	
+	/**
+	 * Returns the maximum number of ready and active tasks of all admitted jobs across all cluster nodes.
+	 * @return the maximum number of admitted tasks or <code>0</code> if the number is not limited.
+	 */
+	public int getAdmissionLimit() {
+		return Math.max(0, getInt("admission.tasks", 0));
+	}
+
+	/**
+	 * Returns the maximum number of ready and active tasks of all admitted jobs of the given job application across all cluster nodes.
+	 * The limit is configured per job application by <code>admission.tasks.&lt;application&gt;</code>.
+	 * @param application the job application
+	 * @return the maximum number of admitted tasks or <code>0</code> if the number is not limited.
+	 */
+	public int getAdmissionLimit(JobApplication application) {
+		if(application == null) {
+			return 0;
+		}
+		return Math.max(0, getInt("admission.tasks."+application, 0));
+	}
+
+	/**
+	 * Returns whether the number of admitted tasks is limited globally or for at least one job application.
+	 * @return <code>true</code> if an admission limit is configured, <code>false</code> otherwise.
+	 */
+	public boolean isAdmissionEnabled() {
+		for(String key : properties.stringPropertyNames()) {
+			if(key.startsWith(PREFIX+"admission.tasks") && getLong(key.substring(PREFIX.length()), 0) > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether a job commit is rejected if the job exceeds an admission limit.
+	 * The <code>admission.policy</code> setting supports <code>queue</code> and <code>reject</code>.
+	 * By default, committed jobs are queued until they get admitted.
+	 * @return <code>true</code> if job commits exceeding an admission limit are rejected,
+	 * <code>false</code> if the jobs are queued.
+	 */
+	public boolean isAdmissionRejecting() {
+		return "reject".equalsIgnoreCase(getString("admission.policy", "queue").trim());
+	}
+
+	/**
+	 * Returns the number of seconds a client shall wait before retrying a rejected job commit.
+	 * @return the retry delay in seconds.
+	 */
+	public long getAdmissionRetryAfter() {
+		return Math.max(1, getLong("admission.retry_after", 60));
+	}
+
+	/**
+	 * Returns the look-ahead horizon of the job start timer in seconds.
+	 * The job start timer loads all jobs scheduled within the horizon 
+	 * and reloads the horizon when half of the horizon has elapsed.
+	 * @return the look-ahead horizon in seconds.
+	 */
+	public long getTimerHorizon() {
+		return Math.max(60, getLong("timer.horizon", 3600));
+	}
+	
+	/**
+	 * Returns the aging period of one job priority level in seconds.
+	 * A job is dispatched before all jobs with a lower priority that are due for less than
+	 * the priority difference times the aging period.
+	 * @return the aging period of one priority level in seconds.
+	 */
+	public long getPriorityAging() {
+		return Math.max(1, getLong("priority.aging", 60));
+	}
+	
+	/**
+	 * Returns the default timeout in seconds of an active task of the given task type.
+	 * The timeout is configured per task type by <code>task.timeout.&lt;task type&gt;</code>
+	 * and defaults to the <code>task.timeout</code> setting, which defaults to 900 seconds.
+	 * A timeout specified by the task submission takes precedence over the configured timeout.
+	 * @param taskType the task type
+	 * @return the default task timeout in seconds.
+	 */
+	public long getTaskTimeout(TaskType taskType) {
+		long defaultTimeout = getLong("task.timeout", 900);
+		if(taskType == null) {
+			return Math.max(1, defaultTimeout);
+		}
+		return Math.max(1, getLong("task.timeout."+taskType, defaultTimeout));
+	}
+
+	/**
+	 * Returns the maximum number of attempts to execute a task of the given task type.
+	 * The limit is configured per task type by <code>task.retry.max_attempts.&lt;task type&gt;</code>
+	 * and defaults to the <code>task.retry.max_attempts</code> setting, which defaults to 1, i.e. failed tasks are not retried.
+	 * @param taskType the task type
+	 * @return the maximum number of attempts.
+	 */
+	public int getTaskMaxAttempts(TaskType taskType) {
+		int defaultAttempts = getInt("task.retry.max_attempts", 1);
+		if(taskType == null) {
+			return Math.max(1, defaultAttempts);
+		}
+		return Math.max(1, getInt("task.retry.max_attempts."+taskType, defaultAttempts));
+	}
+
+	/**
+	 * Returns the delay in seconds before the first retry of a task of the given task type.
+	 * The delay is doubled for every further retry.
+	 * The delay is configured per task type by <code>task.retry.backoff.&lt;task type&gt;</code>
+	 * and defaults to the <code>task.retry.backoff</code> setting, which defaults to 10 seconds.
+	 * @param taskType the task type
+	 * @return the initial retry delay in seconds.
+	 */
+	public long getTaskRetryBackoff(TaskType taskType) {
+		long defaultBackoff = getLong("task.retry.backoff", 10);
+		if(taskType == null) {
+			return Math.max(1, defaultBackoff);
+		}
+		return Math.max(1, getLong("task.retry.backoff."+taskType, defaultBackoff));
+	}
+
+	/**
+	 * Returns the maximum delay in seconds between two attempts to execute a task.
+	 * @return the maximum retry delay in seconds.
+	 */
+	public long getTaskRetryMaxBackoff() {
+		return Math.max(1, getLong("task.retry.max_backoff", 600));
+	}
+
+	/**
+	 * Returns the jitter of the retry delay as fraction of the retry delay.
+	 * The retry delay is randomly shortened by up to this fraction to spread the retries of concurrently failed tasks.
+	 * @return the retry delay jitter between <code>0</code> and <code>1</code>.
+	 */
+	public double getTaskRetryJitter() {
+		return Math.min(1, Math.max(0, getDouble("task.retry.jitter", 0.2)));
+	}
+
+	/**
+	 * Returns the task states that trigger a retry of a task of the given task type.
+	 * The states are configured as comma-separated list per task type by <code>task.retry.states.&lt;task type&gt;</code>
+	 * and default to the <code>task.retry.states</code> setting, which defaults to <code>FAILED</code>.
+	 * @param taskType the task type
+	 * @return the task states that trigger a retry.
+	 */
+	public Set<TaskState> getTaskRetryStates(TaskType taskType) {
+		String defaultStates = getString("task.retry.states", "FAILED");
+		String states = taskType != null ? getString("task.retry.states."+taskType, defaultStates) : defaultStates;
+		Set<TaskState> retryStates = EnumSet.noneOf(TaskState.class);
+		for(String state : states.split(",")) {
+			if(state.trim().isEmpty()) {
+				continue;
+			}
+			try {
+				retryStates.add(TaskState.valueOf(state.trim().toUpperCase()));
+			} catch (IllegalArgumentException e) {
+				LOG.warning(() -> format("Invalid task state %s in %stask.retry.states setting.",
+										 state,
+										 PREFIX));
+			}
+		}
+		return retryStates;
+	}
+
+	/**
+	 * Returns the status codes reported by a task processor that trigger a retry of a task of the given task type.
+	 * The status codes are configured as comma-separated list per task type by <code>task.retry.status_codes.&lt;task type&gt;</code>
+	 * and default to the <code>task.retry.status_codes</code> setting, which defaults to <code>429,502,503,504</code>.
+	 * @param taskType the task type
+	 * @return the status codes that trigger a retry.
+	 */
+	public Set<Integer> getTaskRetryStatusCodes(TaskType taskType) {
+		String defaultCodes = getString("task.retry.status_codes", "429,502,503,504");
+		String codes = taskType != null ? getString("task.retry.status_codes."+taskType, defaultCodes) : defaultCodes;
+		Set<Integer> statusCodes = new TreeSet<>();
+		for(String code : codes.split(",")) {
+			if(code.trim().isEmpty()) {
+				continue;
+			}
+			try {
+				statusCodes.add(Integer.valueOf(code.trim()));
+			} catch (NumberFormatException e) {
+				LOG.warning(() -> format("Invalid status code %s in %stask.retry.status_codes setting.",
+										 code,
+										 PREFIX));
+			}
+		}
+		return statusCodes;
+	}
+
+	/**
+	 * Returns the ID of this cluster node. 
+	 * The node ID identifies the owner of the job leases and must be unique across all cluster nodes.
+	 * Defaults to the host name, which must be configured explicitly if several cluster nodes run on the same host.
+	 * @return the ID of this cluster node.
+	 */
+	public String getNodeId() {
+		return getString("node_id", defaultNodeId);
+	}
+	
+	/**
+	 * Returns the job lease duration in seconds.
+	 * A node renews the leases of its jobs while it is alive.
+	 * Jobs of a crashed node can be claimed by other nodes as soon as the leases have expired.
+	 * Defaults to three times the maximum poll interval.
+	 * @return the job lease duration in seconds.
+	 */
+	public long getLeaseDuration() {
+		return Math.max(1, getLong("lease.duration", 3 * getMaxPollInterval()));
+	}
+	
+	/**
+	 * Returns the task lease duration in seconds.
+	 * A node renews the leases of the tasks it executes every third of the lease duration.
+	 * Tasks of a crashed node are recovered by other nodes as soon as the leases have expired.
+	 * Defaults to 30 seconds.
+	 * @return the task lease duration in seconds.
+	 */
+	public long getTaskLeaseDuration() {
+		return Math.max(3, getLong("task.lease.duration", 30));
+	}
+	
+	/**
+	 * Returns whether tasks of the given task type can safely be executed again, 
+	 * if the node executing the task has crashed.
+	 * Configured per task type by <code>task.idempotent.&lt;task type&gt;</code> 
+	 * and defaults to the <code>task.idempotent</code> setting, which defaults to <code>false</code>.
+	 * @param taskType the task type
+	 * @return <code>true</code> if tasks of the given type are idempotent, <code>false</code> otherwise.
+	 */
+	public boolean isTaskIdempotent(TaskType taskType) {
+		String idempotent = getString("task.idempotent", "false");
+		if(taskType != null) {
+			idempotent = getString("task.idempotent."+taskType, idempotent);
+		}
+		return Boolean.parseBoolean(idempotent.trim());
+	}
+	
+	/**
+	 * Returns the maximum number of job topologies kept in the job topology cache.
+	 * The least recently used topology is evicted when the cache is full.
+	 * Defaults to 1000. A cache size of 0 disables the cache.
+	 * @return the job topology cache size.
+	 */
+	public int getTopologyCacheSize() {
+		return Math.max(0, getInt("topology.cache_size", 1000));
+	}
+	
+	protected String getString(String key, String defaultValue) {
+		return properties.getProperty(PREFIX+key, defaultValue);
+	}
+
+	protected int getInt(String key, int defaultValue) {
+		return (int) getLong(key,defaultValue);
+	}
+
+	protected double getDouble(String key, double defaultValue) {
+		String value = properties.getProperty(PREFIX+key);
+		if(value == null) {
+			return defaultValue;
+		}
+		try {
+			return Double.parseDouble(value.trim());
+		} catch (NumberFormatException e) {
+			LOG.warning(() -> format("Invalid value %s for %s%s. Proceed with default value %s.",
+									 value,
+									 PREFIX,
+									 key,
+									 defaultValue));
+			return defaultValue;
+		}
+	}
+	
+	protected long getLong(String key, long defaultValue) {
+		String value = properties.getProperty(PREFIX+key);
+		if(value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			LOG.warning(() -> format("Invalid value %s for %s%s. Proceed with default value %d.",
+									 value,
+									 PREFIX,
+									 key,
+									 defaultValue));
+			return defaultValue;
+		}
+	}
+
+}
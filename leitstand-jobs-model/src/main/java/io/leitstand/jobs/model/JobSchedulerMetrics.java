@@ -0,0 +1,255 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.enterprise.context.ApplicationScoped;
+
+/**
+ * Collects the job scheduler hot-path metrics.
+ * <p>
+ * All metrics are recorded by lock-free counters and histograms, 
+ * so that recording a metric does not slow down the job event loop.
+ * The metrics are reported by the {@link JobEventLoopStatus} and exported in Prometheus text exposition format.
+ * </p>
+ */
+@ApplicationScoped
+public class JobSchedulerMetrics {
+	
+	static final String PREFIX = "leitstand_jobs_";
+	
+	private final LatencyHistogram iterations = new LatencyHistogram();
+	private final LongAdder scheduledJobs = new LongAdder();
+	private final LongAdder activatedTasks = new LongAdder();
+	private final LongAdder committedCompletions = new LongAdder();
+	private final ConcurrentMap<String,LatencyHistogram> queries = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String,LatencyHistogram> processors = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String,LongAdder> throttled = new ConcurrentHashMap<>();
+	
+	/**
+	 * Records a completed job event loop iteration.
+	 * @param nanos the iteration duration in nanoseconds
+	 * @param jobs the number of scheduled jobs
+	 * @param tasks the number of activated tasks
+	 * @param completions the number of committed task completions
+	 */
+	public void iterationCompleted(long nanos, int jobs, int tasks, int completions) {
+		iterations.record(nanos);
+		scheduledJobs.add(jobs);
+		activatedTasks.add(tasks);
+		committedCompletions.add(completions);
+	}
+	
+	/**
+	 * Records the time spent in a job scheduler operation.
+	 * @param operation the operation name
+	 * @param nanos the operation duration in nanoseconds
+	 */
+	public void queryExecuted(String operation, long nanos) {
+		queries.computeIfAbsent(operation, o -> new LatencyHistogram()).record(nanos);
+	}
+	
+	/**
+	 * Records the execution latency of a task processor.
+	 * @param processor the task processor name
+	 * @param nanos the execution latency in nanoseconds
+	 */
+	public void taskProcessed(String processor, long nanos) {
+		processors.computeIfAbsent(processor, p -> new LatencyHistogram()).record(nanos);
+	}
+	
+	/**
+	 * Records a task start that has been throttled by a rate limit.
+	 * @param bucket the name of the exhausted token bucket
+	 */
+	public void taskThrottled(String bucket) {
+		throttled.computeIfAbsent(bucket, b -> new LongAdder()).increment();
+	}
+	
+	/**
+	 * Returns the summary of all event loop iteration durations.
+	 * @return the iteration duration summary.
+	 */
+	public TimerStatus getIterationTime() {
+		return iterations.getStatus("iteration");
+	}
+	
+	/**
+	 * Returns the total number of jobs scheduled by the event loop.
+	 * @return the total number of scheduled jobs.
+	 */
+	public long getScheduledJobs() {
+		return scheduledJobs.sum();
+	}
+	
+	/**
+	 * Returns the total number of tasks activated by the event loop.
+	 * @return the total number of activated tasks.
+	 */
+	public long getActivatedTasks() {
+		return activatedTasks.sum();
+	}
+	
+	/**
+	 * Returns the total number of task completions committed by the event loop.
+	 * @return the total number of committed task completions.
+	 */
+	public long getCommittedCompletions() {
+		return committedCompletions.sum();
+	}
+	
+	/**
+	 * Returns the total number of throttled task starts.
+	 * @return the total number of throttled task starts.
+	 */
+	public long getThrottledTasks() {
+		long total = 0;
+		for(LongAdder count : throttled.values()) {
+			total += count.sum();
+		}
+		return total;
+	}
+	
+	/**
+	 * Returns the time spent in each job scheduler operation.
+	 * @return the job scheduler operation times ordered by operation name.
+	 */
+	public List<TimerStatus> getQueryTimes() {
+		return summarize(queries);
+	}
+	
+	/**
+	 * Returns the execution latency of each task processor.
+	 * @return the task processor latencies ordered by task processor name.
+	 */
+	public List<TimerStatus> getProcessorTimes() {
+		return summarize(processors);
+	}
+	
+	private static List<TimerStatus> summarize(Map<String,LatencyHistogram> histograms){
+		return new TreeMap<>(histograms).entrySet()
+										.stream()
+										.map(e -> e.getValue().getStatus(e.getKey()))
+										.collect(toList());
+	}
+	
+	/**
+	 * Writes all counters and histograms in Prometheus text exposition format.
+	 * @param out the output buffer
+	 */
+	void writeTo(StringBuilder out) {
+		histogram(out, "event_loop_iteration_seconds", "Duration of job event loop iterations.", iterations);
+		counter(out, "scheduled_jobs_total", "Number of jobs scheduled by the job event loop.", getScheduledJobs());
+		counter(out, "activated_tasks_total", "Number of tasks activated by the job event loop.", getActivatedTasks());
+		counter(out, "committed_completions_total", "Number of task completions committed by the job event loop.", getCommittedCompletions());
+		histograms(out, "scheduler_query_seconds", "Time spent in job scheduler operations.", "operation", queries);
+		histograms(out, "task_processor_seconds", "Execution latency of task processors.", "processor", processors);
+		Map<String,Long> throttledStarts = new TreeMap<>();
+		throttled.forEach((bucket,count) -> throttledStarts.put(bucket, count.sum()));
+		counters(out, "throttled_task_starts_total", "Number of task starts throttled by a rate limit.", "bucket", throttledStarts);
+	}
+	
+	private static void histogram(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+		header(out, name, help, "histogram");
+		histogram.writeTo(out, PREFIX+name, "");
+	}
+	
+	private static void histograms(StringBuilder out, String name, String help, String label, Map<String,LatencyHistogram> histograms) {
+		header(out, name, help, "histogram");
+		new TreeMap<>(histograms).forEach((value,histogram) -> histogram.writeTo(out, PREFIX+name, label+"=\""+escape(value)+"\""));
+	}
+	
+	/**
+	 * Writes a counter in Prometheus text exposition format.
+	 * @param out the output buffer
+	 * @param name the counter name without prefix
+	 * @param help the counter description
+	 * @param value the counter value
+	 */
+	static void counter(StringBuilder out, String name, String help, long value) {
+		header(out, name, help, "counter");
+		out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+	}
+	
+	/**
+	 * Writes a gauge in Prometheus text exposition format.
+	 * @param out the output buffer
+	 * @param name the gauge name without prefix
+	 * @param help the gauge description
+	 * @param value the gauge value
+	 */
+	static void gauge(StringBuilder out, String name, String help, long value) {
+		header(out, name, help, "gauge");
+		out.append(PREFIX).append(name).append(' ').append(value).append('\n');
+	}
+	
+	/**
+	 * Writes a labeled gauge in Prometheus text exposition format.
+	 * @param out the output buffer
+	 * @param name the gauge name without prefix
+	 * @param help the gauge description
+	 * @param label the label name
+	 * @param values the gauge values by label value
+	 */
+	static void gauges(StringBuilder out, String name, String help, String label, Map<String,Long> values) {
+		labeled(out, name, help, "gauge", label, values);
+	}
+	
+	/**
+	 * Writes a labeled counter in Prometheus text exposition format.
+	 * @param out the output buffer
+	 * @param name the counter name without prefix
+	 * @param help the counter description
+	 * @param label the label name
+	 * @param values the counter values by label value
+	 */
+	static void counters(StringBuilder out, String name, String help, String label, Map<String,Long> values) {
+		labeled(out, name, help, "counter", label, values);
+	}
+	
+	private static void labeled(StringBuilder out, String name, String help, String type, String label, Map<String,Long> values) {
+		header(out, name, help, type);
+		values.forEach((value,count) -> out.append(PREFIX)
+										   .append(name)
+										   .append('{')
+										   .append(label)
+										   .append("=\"")
+										   .append(escape(value))
+										   .append("\"} ")
+										   .append(count)
+										   .append('\n'));
+	}
+	
+	private static void header(StringBuilder out, String name, String help, String type) {
+		out.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+	}
+	
+	private static String escape(String value) {
+		return value.replace("\\", "\\\\")
+					.replace("\"", "\\\"")
+					.replace("\n", "\\n");
+	}
+	
+}
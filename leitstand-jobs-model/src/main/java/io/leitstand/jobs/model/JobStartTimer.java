@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.Math.min;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.FINER;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import io.leitstand.jobs.service.JobId;
+import io.leitstand.jobs.service.TaskId;
+
+/**
+ * The <code>JobStartTimer</code> wakes up the {@link JobEventLoop} exactly when a scheduled job or a task retry becomes eligible for execution.
+ * <p>
+ * The timer loads the start dates of all ready jobs, the window start dates of all running jobs with a window
+ * and the dates of all task retries scheduled within a look-ahead horizon 
+ * into a {@link TimerWheel} and reloads the horizon when half of the horizon has elapsed.
+ * Job schedule changes are applied incrementally by means of {@link JobScheduleChangedEvent}s,
+ * task retries are added incrementally by means of {@link TaskStateChangedEvent}s.
+ * The timer does not access the database between two horizon reloads.
+ * </p>
+ */
+class JobStartTimer implements Runnable {
+
+	private static final Logger LOG = Logger.getLogger(JobStartTimer.class.getName());
+	
+	private static final long TICK_MILLIS = 1000;
+	
+	private final JobScheduler scheduler;
+	private final JobSchedulerConfig config;
+	private final Runnable listener;
+	private final TimerWheel<Object> timers; // Job IDs and task IDs of scheduled task retries
+	private final Semaphore signal = new Semaphore(0);
+	private volatile boolean active;
+	private long nextRefresh;
+	
+	JobStartTimer(JobScheduler scheduler,
+				  JobSchedulerConfig config,
+				  Runnable listener){
+		this.scheduler = scheduler;
+		this.config = config;
+		this.listener = listener;
+		this.timers = new TimerWheel<>(TICK_MILLIS,currentTimeMillis());
+		this.active = true;
+	}
+	
+	/**
+	 * Updates the timer of a job whose schedule has been changed.
+	 * Schedule dates beyond the look-ahead horizon are loaded with the next horizon reload.
+	 * @param jobId the job ID
+	 * @param dateScheduled the new schedule date or <code>null</code> if the job shall be executed immediately.
+	 */
+	void scheduleChanged(JobId jobId, Date dateScheduled) {
+		long now = currentTimeMillis();
+		synchronized(timers) {
+			if(dateScheduled == null || dateScheduled.getTime() <= now) {
+				// Job is eligible for execution. The event loop was woken up already.
+				timers.cancel(jobId);
+				return;
+			}
+			if(dateScheduled.getTime() < now + SECONDS.toMillis(config.getTimerHorizon())) {
+				timers.schedule(jobId, dateScheduled.getTime());
+			} else {
+				timers.cancel(jobId);
+			}
+		}
+		signal.release();
+	}
+	
+	/**
+	 * Adds the timer of a scheduled task retry.
+	 * Retry dates beyond the look-ahead horizon are loaded with the next horizon reload.
+	 * @param taskId the task ID
+	 * @param dateNextAttempt the date of the next attempt to execute the task
+	 */
+	void retryScheduled(TaskId taskId, Date dateNextAttempt) {
+		long now = currentTimeMillis();
+		if(dateNextAttempt.getTime() <= now 
+		   || dateNextAttempt.getTime() >= now + SECONDS.toMillis(config.getTimerHorizon())) {
+			return;
+		}
+		synchronized(timers) {
+			timers.schedule(taskId, dateNextAttempt.getTime());
+		}
+		signal.release();
+	}
+	
+	/**
+	 * Stops the timer.
+	 */
+	void stop() {
+		active = false;
+		signal.release();
+	}
+	
+	/**
+	 * Returns the number of pending job start timers.
+	 * @return the number of pending job start timers.
+	 */
+	int getPendingTimers() {
+		synchronized(timers) {
+			return timers.size();
+		}
+	}
+	
+	@Override
+	public void run() {
+		LOG.info("Job start timer started.");
+		while(active) {
+			try {
+				long now = currentTimeMillis();
+				if(now >= nextRefresh) {
+					refresh(now);
+				}
+				List<Object> due;
+				boolean idle;
+				synchronized(timers) {
+					due = timers.advance(now);
+					idle = timers.isEmpty();
+				}
+				if(!due.isEmpty()) {
+					LOG.fine(() -> format("Scheduled start of %d jobs and task retries reached.",due.size()));
+					listener.run();
+				}
+				// Sleep until the next tick or until the next horizon reload if no timer is pending.
+				long waittime = nextRefresh - now;
+				if(!idle) {
+					waittime = min(waittime, TICK_MILLIS - now % TICK_MILLIS);
+				}
+				signal.tryAcquire(Math.max(1, waittime), MILLISECONDS);
+				signal.drainPermits();
+			} catch (InterruptedException e) {
+				currentThread().interrupt();
+				active = false;
+			} catch (Exception e) {
+				// Retry with the next tick.
+				LOG.warning(() -> format("Job start timer failure: %s",e.getMessage()));
+				LOG.log(FINER,e.getMessage(),e);
+				nextRefresh = currentTimeMillis() + TICK_MILLIS;
+				pause();
+			}
+		}
+		LOG.info("Job start timer stopped.");
+	}
+
+	private void refresh(long now) {
+		long horizon = SECONDS.toMillis(config.getTimerHorizon());
+		Map<JobId,Date> scheduled = scheduler.findScheduledJobs(new Date(now), new Date(now + horizon));
+		Map<TaskId,Date> retries = scheduler.findScheduledRetries(new Date(now), new Date(now + horizon));
+		synchronized(timers) {
+			scheduled.forEach((jobId,date) -> timers.schedule(jobId, date.getTime()));
+			retries.forEach((taskId,date) -> timers.schedule(taskId, date.getTime()));
+		}
+		nextRefresh = now + horizon / 2;
+		LOG.fine(() -> format("Loaded %d scheduled job starts and %d task retries within the next %d seconds.",
+							  scheduled.size(),
+							  retries.size(),
+							  config.getTimerHorizon()));
+	}
+	
+	private void pause() {
+		try {
+			signal.tryAcquire(TICK_MILLIS, MILLISECONDS);
+		} catch (InterruptedException e) {
+			currentThread().interrupt();
+			active = false;
+		}
+	}
+	
+}
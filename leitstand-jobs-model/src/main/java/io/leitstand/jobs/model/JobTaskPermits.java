@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.Job_Permit.acquirePermit;
+import static io.leitstand.jobs.model.Job_Permit.createPermit;
+import static io.leitstand.jobs.model.Job_Permit.createPermitIfAbsent;
+import static io.leitstand.jobs.model.Job_Permit.findPermit;
+import static io.leitstand.jobs.model.Job_Permit.reconcilePermits;
+import static io.leitstand.jobs.model.Job_Permit.releasePermit;
+import static io.leitstand.jobs.model.Job_Permit.removeStalePermits;
+import static java.lang.String.format;
+import static java.util.logging.Level.FINER;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+
+import io.leitstand.commons.model.Repository;
+import io.leitstand.inventory.service.ElementSettings;
+import io.leitstand.inventory.service.ElementSettingsService;
+
+/**
+ * Enforces cluster-wide limits on the number of concurrently active tasks per element, element group and element group type.
+ * <p>
+ * Every limited resource is represented by a {@link Job_Permit} counter.
+ * A task acquires a permit of every limited resource it accesses before the task gets activated.
+ * A permit is acquired by a conditional update that increments the counter only if the limit is not exceeded yet.
+ * This avoids counting the active tasks on every event loop iteration and holds across all cluster nodes, 
+ * because all nodes share the same permit counters.
+ * A task either acquires all permits or none and remains in <code>READY</code> state if a permit is not available.
+ * The permits are released when the task leaves the <code>ACTIVE</code> state.
+ * </p>
+ * <p>
+ * The permits held by a task are recorded in the task, which allows to periodically reconcile the permit counters with the active tasks, 
+ * in case a task was terminated without releasing its permits, e.g. by a bulk update.
+ * </p>
+ */
+@Dependent
+public class JobTaskPermits {
+	
+	private static final Logger LOG = Logger.getLogger(JobTaskPermits.class.getName());
+	
+	static final String ELEMENT = "element:";
+	static final String GROUP = "group:";
+	static final String GROUP_TYPE = "group_type:";
+	
+	@Inject
+	@Jobs
+	private Repository repository;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private JobsDatabaseDialect dialect;
+	
+	@Inject
+	private ElementSettingsService elements;
+	
+	@Inject
+	private Event<TaskPermitsReleasedEvent> sink;
+	
+	protected JobTaskPermits() {
+		// CDI
+	}
+	
+	JobTaskPermits(Repository repository,
+				   JobSchedulerConfig config,
+				   JobsDatabaseDialect dialect,
+				   ElementSettingsService elements,
+				   Event<TaskPermitsReleasedEvent> sink){
+		this.repository = repository;
+		this.config = config;
+		this.dialect = dialect;
+		this.elements = elements;
+		this.sink = sink;
+	}
+	
+	/**
+	 * Tries to acquire all permits needed to activate the given task.
+	 * @param task the task to be activated
+	 * @return <code>true</code> if all permits have been acquired or no permits are needed, 
+	 * <code>false</code> if at least one permit is not available.
+	 */
+	public boolean tryAcquire(Job_Task task) {
+		if(task.getPermits() != null) {
+			// Permits already acquired by a previous attempt to activate the task.
+			return true;
+		}
+		SortedMap<String,Integer> limits = getLimits(task);
+		if(limits.isEmpty()) {
+			return true;
+		}
+		// Acquire permits in a well-defined order to avoid deadlocks between concurrent transactions.
+		List<String> acquired = new ArrayList<>(limits.size());
+		for(String permit : limits.keySet()) {
+			if(!tryAcquire(permit,limits.get(permit))) {
+				LOG.fine(() -> format("Permit %s not available. Task %s of job %s remains ready for execution.",
+									  permit,
+									  task.getTaskId(),
+									  task.getJobId()));
+				acquired.forEach(p -> repository.execute(releasePermit(p)));
+				return false;
+			}
+			acquired.add(permit);
+		}
+		StringBuilder permits = new StringBuilder();
+		acquired.forEach(p -> permits.append(p).append(';'));
+		task.setPermits(permits.toString());
+		return true;
+	}
+	
+	private boolean tryAcquire(String permit, int limit) {
+		if(repository.execute(acquirePermit(permit, limit)) == 1) {
+			return true;
+		}
+		if(dialect.isPostgres()) {
+			repository.execute(createPermitIfAbsent(permit));
+		} else if(repository.execute(findPermit(permit)) == null) {
+			repository.execute(createPermit(permit));
+		}
+		return repository.execute(acquirePermit(permit, limit)) == 1;
+	}
+	
+	/**
+	 * Releases all permits held by the given task.
+	 * @param task the task
+	 */
+	public void release(Job_Task task) {
+		String permits = task.getPermits();
+		if(permits == null) {
+			return;
+		}
+		for(String permit : permits.split(";")) {
+			if(!permit.isEmpty()) {
+				repository.execute(releasePermit(permit));
+			}
+		}
+		task.setPermits(null);
+		sink.fire(new TaskPermitsReleasedEvent(task.getTaskId()));
+	}
+	
+	/**
+	 * Recomputes all permit counters from the permits held by the active tasks.
+	 */
+	public void reconcile() {
+		repository.execute(removeStalePermits());
+		int permits = repository.execute(reconcilePermits());
+		LOG.fine(() -> format("Reconciled %d task permit counters.",permits));
+	}
+	
+	/**
+	 * Returns the limits of all permits needed to activate the given task in the order the permits have to be acquired.
+	 * @param task the task
+	 * @return the limits of all needed permits.
+	 */
+	SortedMap<String,Integer> getLimits(Job_Task task){
+		SortedMap<String,Integer> limits = new TreeMap<>();
+		if(!task.isElementTask()) {
+			return limits;
+		}
+		int elementLimit = config.getElementPermits();
+		if(elementLimit > 0) {
+			limits.put(ELEMENT+task.getElementId(), elementLimit);
+		}
+		int groupLimit = config.getElementGroupPermits();
+		if(groupLimit > 0 || config.isElementGroupTypePermitsEnabled()) {
+			ElementSettings element = getElementSettings(task);
+			if(element != null) {
+				if(groupLimit > 0) {
+					limits.put(GROUP+element.getGroupId(), groupLimit);
+				}
+				int groupTypeLimit = config.getElementGroupTypePermits(element.getGroupType());
+				if(groupTypeLimit > 0) {
+					limits.put(GROUP_TYPE+element.getGroupType(), groupTypeLimit);
+				}
+			}
+		}
+		return limits;
+	}
+	
+	private ElementSettings getElementSettings(Job_Task task) {
+		try {
+			return elements.getElementSettings(task.getElementId());
+		} catch (Exception e) {
+			LOG.warning(() -> format("Cannot read settings of element %s: %s. Skip element group permits of task %s.",
+									 task.getElementId(),
+									 e.getMessage(),
+									 task.getTaskId()));
+			LOG.log(FINER,e.getMessage(),e);
+			return null;
+		}
+	}
+	
+}
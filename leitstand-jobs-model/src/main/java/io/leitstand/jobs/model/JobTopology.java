@@ -0,0 +1,400 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.TaskState.COMPLETED;
+import static java.util.Comparator.comparing;
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsLast;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.leitstand.jobs.service.JobId;
+import io.leitstand.jobs.service.TaskId;
+
+/**
+ * An immutable, compact representation of the task flow of a job.
+ * <p>
+ * The tasks are indexed in submission order.
+ * The successors and predecessors of all tasks are stored in compressed sparse row form,
+ * i.e. in a single array of task indexes each, where an offset array points to the first successor and predecessor of every task.
+ * The successors of a task are ordered by submission order, which is the order in which the job flow has always been traversed.
+ * </p>
+ * <p>
+ * The task flow of a job does not change once the job has been committed.
+ * Hence the topology does not refer to any entity and can be shared across transactions by the {@link JobTopologyCache}.
+ * All traversals are iterative and visit every task and every transition once,
+ * so that the job flow can be traversed in linear time regardless of the job size and depth.
+ * The task states are not part of the topology, because they change while the job is running.
+ * Instead, a snapshot of the task states is taken in a parallel array if needed.
+ * </p>
+ */
+public final class JobTopology {
+
+	/**
+	 * Receives the tasks and transitions of a job flow traversal.
+	 */
+	interface Visitor {
+
+		/**
+		 * Visits a task when it is reached for the first time.
+		 * @param task the task index
+		 */
+		void visitTask(int task);
+
+		/**
+		 * Visits a transition once the traversal of the successor has been finished.
+		 * @param from the index of the preceding task
+		 * @param to the index of the succeeding task
+		 */
+		void visitTransition(int from, int to);
+	}
+
+	/**
+	 * Marks a task without a state in a task state snapshot.
+	 */
+	static final byte NO_STATE = -1;
+
+	/**
+	 * Creates the topology of a job from the transitions of all job tasks.
+	 * @param job the job
+	 * @return the job topology.
+	 */
+	public static JobTopology of(Job job) {
+		List<Job_Task_Transition> transitions = new ArrayList<>();
+		for(Job_Task task : job.getTasks().values()) {
+			transitions.addAll(task.getSuccessors());
+		}
+		return of(job,transitions);
+	}
+
+	/**
+	 * Creates the topology of a job from the given transitions.
+	 * Transitions that refer to tasks of another job are ignored.
+	 * @param job the job
+	 * @param transitions all transitions of the job
+	 * @return the job topology.
+	 */
+	public static JobTopology of(Job job, Collection<Job_Task_Transition> transitions) {
+		List<Job_Task> tasks = new ArrayList<>(job.getTasks().values());
+		// Restore the submission order. Tasks not persisted yet are added last.
+		tasks.sort(comparing(Job_Task::getId, nullsLast(naturalOrder())));
+
+		TaskId[] taskIds = new TaskId[tasks.size()];
+		Map<TaskId,Integer> index = new HashMap<>();
+		for(int i=0; i < taskIds.length; i++) {
+			taskIds[i] = tasks.get(i).getTaskId();
+			index.put(taskIds[i], i);
+		}
+
+		int[] from = new int[transitions.size()];
+		int[] to = new int[transitions.size()];
+		int edges = 0;
+		for(Job_Task_Transition transition : transitions) {
+			Integer f = index.get(transition.getFrom().getTaskId());
+			Integer t = index.get(transition.getTo().getTaskId());
+			if(f == null || t == null) {
+				continue;
+			}
+			from[edges] = f;
+			to[edges] = t;
+			edges++;
+		}
+
+		Job_Task start = job.getStart();
+		Integer startIndex = start != null ? index.get(start.getTaskId()) : null;
+
+		int[] successorOffsets = new int[taskIds.length+1];
+		int[] successors = new int[edges];
+		adjacency(from,to,edges,successorOffsets,successors);
+		int[] predecessorOffsets = new int[taskIds.length+1];
+		int[] predecessors = new int[edges];
+		adjacency(to,from,edges,predecessorOffsets,predecessors);
+
+		return new JobTopology(job.getJobId(),
+							   taskIds,
+							   index,
+							   startIndex != null ? startIndex : -1,
+							   successorOffsets,
+							   successors,
+							   predecessorOffsets,
+							   predecessors);
+	}
+
+	private static void adjacency(int[] source, int[] target, int edges, int[] offsets, int[] adjacent) {
+		// Count the adjacent tasks of every task...
+		for(int i=0; i < edges; i++) {
+			offsets[source[i]+1]++;
+		}
+		// ...compute the offset of the first adjacent task of every task...
+		for(int i=1; i < offsets.length; i++) {
+			offsets[i] += offsets[i-1];
+		}
+		// ...and add the adjacent tasks in submission order.
+		int[] next = Arrays.copyOf(offsets, offsets.length-1);
+		for(int i=0; i < edges; i++) {
+			adjacent[next[source[i]]++] = target[i];
+		}
+		for(int i=0; i < offsets.length-1; i++) {
+			Arrays.sort(adjacent, offsets[i], offsets[i+1]);
+		}
+	}
+
+	private final JobId jobId;
+	private final TaskId[] taskIds;
+	private final Map<TaskId,Integer> index;
+	private final int start;
+	private final int[] successorOffsets;
+	private final int[] successors;
+	private final int[] predecessorOffsets;
+	private final int[] predecessors;
+	private volatile int[] orderedTasks;
+
+	private JobTopology(JobId jobId,
+						TaskId[] taskIds,
+						Map<TaskId,Integer> index,
+						int start,
+						int[] successorOffsets,
+						int[] successors,
+						int[] predecessorOffsets,
+						int[] predecessors) {
+		this.jobId = jobId;
+		this.taskIds = taskIds;
+		this.index = index;
+		this.start = start;
+		this.successorOffsets = successorOffsets;
+		this.successors = successors;
+		this.predecessorOffsets = predecessorOffsets;
+		this.predecessors = predecessors;
+	}
+
+	/**
+	 * Returns the ID of the job.
+	 * @return the job ID.
+	 */
+	public JobId getJobId() {
+		return jobId;
+	}
+
+	/**
+	 * Returns the number of tasks.
+	 * @return the number of tasks.
+	 */
+	public int getTaskCount() {
+		return taskIds.length;
+	}
+
+	/**
+	 * Returns the number of transitions.
+	 * @return the number of transitions.
+	 */
+	public int getTransitionCount() {
+		return successors.length;
+	}
+
+	/**
+	 * Returns the ID of the task with the given index.
+	 * @param task the task index
+	 * @return the task ID.
+	 */
+	public TaskId getTaskId(int task) {
+		return taskIds[task];
+	}
+
+	/**
+	 * Returns the index of the given task or <code>-1</code> if the task is not part of this topology.
+	 * @param taskId the task ID
+	 * @return the task index.
+	 */
+	public int indexOf(TaskId taskId) {
+		Integer task = index.get(taskId);
+		return task != null ? task : -1;
+	}
+
+	/**
+	 * Returns the index of the start task or <code>-1</code> if the job has no start task.
+	 * @return the start task index.
+	 */
+	public int getStart() {
+		return start;
+	}
+
+	/**
+	 * Returns the indexes of the successors of the given task in submission order.
+	 * @param task the task index
+	 * @return the successor indexes.
+	 */
+	public int[] getSuccessors(int task) {
+		return Arrays.copyOfRange(successors, successorOffsets[task], successorOffsets[task+1]);
+	}
+
+	/**
+	 * Returns the indexes of the predecessors of the given task in submission order.
+	 * @param task the task index
+	 * @return the predecessor indexes.
+	 */
+	public int[] getPredecessors(int task) {
+		return Arrays.copyOfRange(predecessors, predecessorOffsets[task], predecessorOffsets[task+1]);
+	}
+
+	/**
+	 * Traverses the job flow depth-first from the start task.
+	 * Every reachable task and every transition between reachable tasks is visited once.
+	 * A task is visited before its successors,
+	 * whereas a transition is visited after the traversal of its succeeding task has been finished.
+	 * @param visitor the visitor
+	 */
+	void traverse(Visitor visitor) {
+		if(start < 0) {
+			return;
+		}
+		boolean[] visited = new boolean[taskIds.length];
+		// Every task is pushed at most once, hence the stack never exceeds the number of tasks.
+		int[] stack = new int[taskIds.length];
+		int[] cursor = new int[taskIds.length];
+		int top = 0;
+		stack[0] = start;
+		cursor[0] = successorOffsets[start];
+		visited[start] = true;
+		visitor.visitTask(start);
+		while(top >= 0) {
+			int task = stack[top];
+			if(cursor[top] == successorOffsets[task+1]) {
+				top--;
+				continue;
+			}
+			int successor = successors[cursor[top]];
+			if(!visited[successor]) {
+				visited[successor] = true;
+				visitor.visitTask(successor);
+				top++;
+				stack[top] = successor;
+				cursor[top] = successorOffsets[successor];
+				// Visit the transition once the successor has been traversed.
+				continue;
+			}
+			visitor.visitTransition(task, successor);
+			cursor[top]++;
+		}
+	}
+
+	/**
+	 * Returns the indexes of all reachable tasks in the order in which the tasks are listed.
+	 * <p>
+	 * The tasks are listed depth-first from the start task, but the successors of a task
+	 * are not listed before all predecessors of the task have been listed,
+	 * so that all tasks of a branch are listed before the tasks following the join of branches.
+	 * </p>
+	 * @return the task indexes in listing order.
+	 */
+	public int[] getOrderedTasks() {
+		int[] ordered = orderedTasks;
+		if(ordered == null) {
+			ordered = orderTasks();
+			// The order only depends on the immutable topology and is computed once.
+			orderedTasks = ordered;
+		}
+		return ordered.clone();
+	}
+
+	private int[] orderTasks() {
+		if(start < 0) {
+			return new int[0];
+		}
+		int n = taskIds.length;
+		// Number of predecessors not listed yet.
+		int[] missing = new int[n];
+		for(int i=0; i < n; i++) {
+			missing[i] = predecessorOffsets[i+1] - predecessorOffsets[i];
+		}
+		boolean[] listed = new boolean[n];
+		boolean[] expanded = new boolean[n];
+		int[] ordered = new int[n];
+		int count = list(start, listed, missing, ordered, 0);
+
+		int[] stack = new int[n];
+		int[] cursor = new int[n];
+		int top = 0;
+		stack[0] = start;
+		cursor[0] = successorOffsets[start];
+		expanded[start] = true;
+		while(top >= 0) {
+			int task = stack[top];
+			if(cursor[top] == successorOffsets[task+1]) {
+				top--;
+				continue;
+			}
+			int successor = successors[cursor[top]++];
+			if(!listed[successor]) {
+				count = list(successor, listed, missing, ordered, count);
+			}
+			if(missing[successor] == 0 && !expanded[successor]) {
+				expanded[successor] = true;
+				top++;
+				stack[top] = successor;
+				cursor[top] = successorOffsets[successor];
+			}
+		}
+		return Arrays.copyOf(ordered, count);
+	}
+
+	private int list(int task, boolean[] listed, int[] missing, int[] ordered, int count) {
+		listed[task] = true;
+		ordered[count] = task;
+		for(int i=successorOffsets[task]; i < successorOffsets[task+1]; i++) {
+			missing[successors[i]]--;
+		}
+		return count+1;
+	}
+
+	/**
+	 * Takes a snapshot of the task states of the given job.
+	 * The snapshot is an array of task state ordinals indexed by task index.
+	 * Tasks without state or not existing in the job are marked by {@link #NO_STATE}.
+	 * @param job the job
+	 * @return the task state snapshot.
+	 */
+	byte[] getTaskStates(Job job) {
+		byte[] states = new byte[taskIds.length];
+		for(int i=0; i < taskIds.length; i++) {
+			Job_Task task = job.getTask(taskIds[i]);
+			states[i] = task != null && task.getTaskState() != null ? (byte) task.getTaskState().ordinal() : NO_STATE;
+		}
+		return states;
+	}
+
+	/**
+	 * Counts the predecessors of a task that have not been completed yet.
+	 * @param task the task index
+	 * @param states the task state snapshot
+	 * @return the number of pending predecessors.
+	 */
+	int countPendingPredecessors(int task, byte[] states) {
+		int pending = 0;
+		for(int i=predecessorOffsets[task]; i < predecessorOffsets[task+1]; i++) {
+			if(states[predecessors[i]] != COMPLETED.ordinal()) {
+				pending++;
+			}
+		}
+		return pending;
+	}
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.Job.findAllTransitions;
+import static java.lang.String.format;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.JobId;
+
+/**
+ * Caches the {@link JobTopology} of committed jobs.
+ * <p>
+ * The task flow of a job cannot be modified once the job has been committed.
+ * The topology of a committed job is therefore read once with a single query of all job transitions
+ * and kept in a bounded cache, which evicts the least recently used topology when the cache is full.
+ * The topology of a job that has not been committed yet is created from the current job tasks and not cached.
+ * </p>
+ * @see JobSchedulerConfig#getTopologyCacheSize()
+ */
+@ApplicationScoped
+public class JobTopologyCache {
+
+	private static final Logger LOG = Logger.getLogger(JobTopologyCache.class.getName());
+
+	@Inject
+	@Jobs
+	private Repository repository;
+
+	@Inject
+	private JobSchedulerConfig config;
+
+	private Map<JobId,JobTopology> topologies;
+
+	protected JobTopologyCache() {
+		// CDI
+	}
+
+	JobTopologyCache(Repository repository, JobSchedulerConfig config){
+		this.repository = repository;
+		this.config = config;
+	}
+
+	/**
+	 * Returns the topology of the given job.
+	 * @param job the job
+	 * @return the job topology.
+	 */
+	public JobTopology getTopology(Job job) {
+		if(job.isNew()) {
+			// The task flow can still be modified.
+			return JobTopology.of(job);
+		}
+		JobTopology topology = get(job.getJobId());
+		if(topology == null) {
+			topology = readTopology(job);
+			put(topology);
+			JobTopology cached = topology;
+			LOG.finer(() -> format("Cached topology of job %s with %d tasks and %d transitions.",
+								   job.getJobId(),
+								   cached.getTaskCount(),
+								   cached.getTransitionCount()));
+		}
+		return topology;
+	}
+
+	/**
+	 * Reads the topology of the given job with a single query of all job transitions without caching it.
+	 * @param job the job
+	 * @return the job topology.
+	 */
+	public JobTopology readTopology(Job job) {
+		return JobTopology.of(job, repository.execute(findAllTransitions(job)));
+	}
+
+	/**
+	 * Removes the topology of the given job from the cache.
+	 * @param jobId the job ID
+	 */
+	public synchronized void evict(JobId jobId) {
+		if(topologies != null) {
+			topologies.remove(jobId);
+		}
+	}
+
+	/**
+	 * Returns the number of cached job topologies.
+	 * @return the number of cached job topologies.
+	 */
+	public synchronized int size() {
+		return topologies != null ? topologies.size() : 0;
+	}
+
+	private synchronized JobTopology get(JobId jobId) {
+		return topologies != null ? topologies.get(jobId) : null;
+	}
+
+	private synchronized void put(JobTopology topology) {
+		int capacity = config.getTopologyCacheSize();
+		if(capacity == 0) {
+			return;
+		}
+		if(topologies == null) {
+			topologies = new LinkedHashMap<JobId,JobTopology>(16,0.75f,true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<JobId,JobTopology> eldest) {
+					return size() > capacity;
+				}
+			};
+		}
+		topologies.put(topology.getJobId(), topology);
+	}
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.Job.findAutoResumeJobs;
+import static java.lang.String.format;
+import static java.util.logging.Logger.getLogger;
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+
+import io.leitstand.commons.model.Repository;
+import io.leitstand.commons.model.Service;
+import io.leitstand.jobs.service.JobId;
+
+/**
+ * Moves the windows of jobs resumed automatically to the next window.
+ * <p>
+ * A job with a suspend date is only dispatched within its window, 
+ * which starts at the job schedule date and ends at the job suspend date.
+ * The scheduler does not claim a job outside of its window and hence does not start new tasks of the job.
+ * Tasks being executed when the window closes run to completion.
+ * A job resumed automatically is moved to the same window of the next day once its window has been closed.
+ * All other jobs remain suspended until they are resumed manually.
+ * The {@link JobWindowTimer} keeps the nearest suspend dates in memory and 
+ * asks the <code>JobWindowManager</code> to move the windows when their suspend date has passed.
+ * </p>
+ */
+@Service
+public class JobWindowManager {
+
+	private static final Logger LOG = getLogger(JobWindowManager.class.getName());
+	
+	@Inject
+	private Event<JobScheduleChangedEvent> scheduleEventSink;
+	
+	@Inject
+	@Jobs
+	private Repository repository;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	/**
+	 * Returns the suspend dates of all ready and running jobs resumed automatically whose window closes before the given date,
+	 * including all jobs whose window has already been closed.
+	 * @param to the end of the look-ahead horizon
+	 * @return the suspend dates of the jobs ordered by suspend date.
+	 */
+	public Map<JobId,Date> findWindowDeadlines(Date to){
+		Map<JobId,Date> deadlines = new LinkedHashMap<>();
+		for(Job job : repository.execute(findAutoResumeJobs(to))) {
+			deadlines.put(job.getJobId(), job.getDateSuspend());
+		}
+		return deadlines;
+	}
+	
+	/**
+	 * Moves the closed windows of all given jobs to the next window.
+	 * All windows are moved in a single transaction and a {@link JobScheduleChangedEvent} is fired for every moved window,
+	 * which lets the {@link JobStartTimer} wake up the event loop when the next window opens.
+	 * @param jobs the IDs of the jobs whose window has been closed
+	 * @return the IDs of the jobs whose window has been moved.
+	 */
+	public List<JobId> moveClosedWindows(Collection<JobId> jobs) {
+		Date now = new Date();
+		List<JobId> moved = new ArrayList<>(jobs.size());
+		for(JobId jobId : jobs) {
+			Job job = repository.execute(Job.findJobById(jobId,PESSIMISTIC_WRITE));
+			if(job == null || !(job.isReady() || job.isRunning()) || !job.isAutoResume()) {
+				// Job was removed, completed or modified in the meantime.
+				continue;
+			}
+			if(!job.moveToNextWindow(now)) {
+				continue;
+			}
+			if(job.isReady()) {
+				job.updateRank(config.getPriorityAging());
+			}
+			scheduleEventSink.fire(new JobScheduleChangedEvent(job));
+			LOG.fine(() -> format("Moved window of job %s (%s) to %s.",
+								  job.getJobName(),
+								  job.getJobId(),
+								  job.getDateScheduled()));
+			moved.add(jobId);
+		}
+		return moved;
+	}
+	
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import io.leitstand.jobs.service.JobId;
+
+/**
+ * The <code>JobWindowTimer</code> moves the window of a job resumed automatically to the next window exactly when the window closes.
+ * <p>
+ * The timer keeps the suspend dates of all jobs resumed automatically whose window closes within a look-ahead horizon.
+ * Window changes are applied incrementally by means of {@link JobScheduleChangedEvent}s.
+ * The timer passes all due jobs in batches to the {@link JobWindowManager}.
+ * The scheduler stops to dispatch a job when its window closes regardless of this timer, 
+ * because the job claims only select jobs within their window.
+ * </p>
+ */
+class JobWindowTimer extends DeadlineTimer<JobId> {
+
+	private static final Logger LOG = Logger.getLogger(JobWindowTimer.class.getName());
+	
+	private final JobWindowManager manager;
+	
+	JobWindowTimer(JobWindowManager manager,
+				   JobSchedulerConfig config){
+		super("Job window timer",config);
+		this.manager = manager;
+	}
+	
+	/**
+	 * Updates the suspend date of a job whose window has been changed.
+	 * Suspend dates beyond the look-ahead horizon are loaded with the next horizon reload.
+	 * @param jobId the job ID
+	 * @param dateSuspend the new suspend date or <code>null</code> if the job is not resumed automatically.
+	 */
+	void windowChanged(JobId jobId, Date dateSuspend) {
+		deadlineChanged(jobId, dateSuspend);
+	}
+	
+	@Override
+	protected Map<JobId,Date> findDeadlines(Date to) {
+		return manager.findWindowDeadlines(to);
+	}
+	
+	@Override
+	protected void processDue(List<JobId> due) {
+		List<JobId> moved = manager.moveClosedWindows(due);
+		LOG.fine(() -> format("Moved %d of %d closed job windows.",moved.size(),due.size()));
+	}
+	
+}
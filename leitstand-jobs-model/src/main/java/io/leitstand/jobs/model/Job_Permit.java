@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+
+import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Update;
+
+/**
+ * A cluster-wide concurrency permit counter.
+ * <p>
+ * A permit counter records the number of active tasks accessing a shared resource, like an element or all elements of an element group.
+ * The counter is incremented by a conditional update that only succeeds as long as the configured limit is not exceeded.
+ * </p>
+ * @see JobTaskPermits
+ */
+@Entity
+@Table(schema="job", name="job_permit")
+@NamedQuery(name="Job_Permit.acquire",
+			query="UPDATE Job_Permit p SET p.used=p.used+1 WHERE p.permit=:permit AND p.used < :limit")
+@NamedQuery(name="Job_Permit.release",
+			query="UPDATE Job_Permit p SET p.used=p.used-1 WHERE p.permit=:permit AND p.used > 0")
+public class Job_Permit implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static Query<Job_Permit> findPermit(String permit){
+		return em -> em.find(Job_Permit.class, permit);
+	}
+	
+	public static Update acquirePermit(String permit, int limit) {
+		return em -> em.createNamedQuery("Job_Permit.acquire")
+					   .setParameter("permit", permit)
+					   .setParameter("limit", limit)
+					   .executeUpdate();
+	}
+	
+	public static Update releasePermit(String permit) {
+		return em -> em.createNamedQuery("Job_Permit.release")
+					   .setParameter("permit", permit)
+					   .executeUpdate();
+	}
+	
+	public static Update createPermit(String permit) {
+		return em -> {
+			em.persist(new Job_Permit(permit));
+			em.flush();
+			return 1;
+		};
+	}
+	
+	public static Update createPermitIfAbsent(String permit) {
+		return em -> em.createNativeQuery("INSERT INTO job.job_permit(permit,used) VALUES (?1,0) ON CONFLICT DO NOTHING")
+					   .setParameter(1, permit)
+					   .executeUpdate();
+	}
+	
+	/**
+	 * Recomputes all permit counters from the permits held by ready and active tasks.
+	 * A ready task holds permits from its activation until the task execution has been started.
+	 * @return the number of updated permit counters
+	 */
+	public static Update reconcilePermits() {
+		return em -> em.createNativeQuery("UPDATE job.job_permit p "+
+										  "SET used=(SELECT COUNT(*) FROM job.job_task t "+
+										  			"WHERE t.state IN ('READY','ACTIVE') "+
+										  			"AND t.permits LIKE CONCAT('%',p.permit,';%'))")
+					   .executeUpdate();
+	}
+	
+	/**
+	 * Removes the permits from all tasks that are neither ready nor active.
+	 * @return the number of updated tasks
+	 */
+	public static Update removeStalePermits() {
+		return em -> em.createNativeQuery("UPDATE job.job_task SET permits=NULL "+
+										  "WHERE permits IS NOT NULL "+
+										  "AND state NOT IN ('READY','ACTIVE')")
+					   .executeUpdate();
+	}
+	
+	@Id
+	@Column(name="permit")
+	private String permit;
+	
+	@Column(name="used")
+	private int used;
+	
+	protected Job_Permit() {
+		// JPA
+	}
+	
+	public Job_Permit(String permit) {
+		this.permit = permit;
+	}
+	
+	public String getPermit() {
+		return permit;
+	}
+	
+	public int getUsed() {
+		return used;
+	}
+	
+}
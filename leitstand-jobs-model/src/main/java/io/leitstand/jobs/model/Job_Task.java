@@ -19,6 +19,8 @@ import static io.leitstand.commons.json.JsonMarshaller.marshal;
 import static io.leitstand.commons.json.JsonUnmarshaller.unmarshal;
 import static io.leitstand.commons.json.SerializableJsonObject.serializable;
 import static io.leitstand.commons.json.SerializableJsonObject.unwrap;
+import static io.leitstand.commons.model.ObjectUtil.optional;
+import static io.leitstand.jobs.service.JobTask.newJobTask;
 import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.CANCELLED;
 import static io.leitstand.jobs.service.TaskState.COMPLETED;
@@ -31,21 +33,25 @@ import static io.leitstand.jobs.service.TaskState.SKIPPED;
 import static io.leitstand.jobs.service.TaskState.TIMEOUT;
 import static java.lang.String.format;
 import static java.util.Collections.unmodifiableList;
+import static java.util.stream.Collectors.toList;
 import static javax.persistence.CascadeType.ALL;
 import static javax.persistence.EnumType.STRING;
+import static javax.persistence.TemporalType.TIMESTAMP;
 
+import java.util.Collection;
 import java.util.Date;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.function.Function;
 
 import javax.json.JsonObject;
 import javax.persistence.Column;
 import javax.persistence.Convert;
 import javax.persistence.Entity;
 import javax.persistence.Enumerated;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.LockModeType;
 import javax.persistence.ManyToOne;
@@ -53,6 +59,8 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.Transient;
 
 import io.leitstand.commons.jpa.BooleanConverter;
 import io.leitstand.commons.jpa.SerializableJsonObjectConverter;
@@ -63,12 +71,14 @@ import io.leitstand.commons.model.Update;
 import io.leitstand.commons.model.ValueObject;
 import io.leitstand.inventory.jpa.ElementIdConverter;
 import io.leitstand.inventory.service.ElementId;
+import io.leitstand.inventory.service.ElementSettings;
 import io.leitstand.jobs.jpa.TaskIdConverter;
 import io.leitstand.jobs.jpa.TaskNameConverter;
 import io.leitstand.jobs.jpa.TaskTypeConverter;
 import io.leitstand.jobs.service.JobApplication;
 import io.leitstand.jobs.service.JobId;
 import io.leitstand.jobs.service.JobName;
+import io.leitstand.jobs.service.JobTask;
 import io.leitstand.jobs.service.JobType;
 import io.leitstand.jobs.service.TaskId;
 import io.leitstand.jobs.service.TaskName;
@@ -77,37 +87,196 @@ import io.leitstand.jobs.service.TaskType;
 import io.leitstand.security.auth.UserName;
 
 @Entity
-@Table(schema="job", name="job_task")
+@Table(schema="job", name="job_task", 
+	   indexes={@Index(name="job_task_state_pending_idx", columnList="job_id,state,pending"),
+				@Index(name="job_task_state_expiry_idx", columnList="state,tsexpiry"),
+				@Index(name="job_task_state_nextattempt_idx", columnList="state,tsnextattempt"),
+				@Index(name="job_task_state_lease_idx", columnList="state,tslease"),
+				@Index(name="job_task_job_ordinal_idx", columnList="job_id,ordinal")})
 @NamedQueries({
 	@NamedQuery(name="Job_Task.findByTaskId", 
 				query="SELECT t FROM Job_Task t WHERE t.taskId=:id"),
-	@NamedQuery(name="Job_Task.findSuccessorsOfCompletedTasks", 
-				query="SELECT t.to FROM Job_Task_Transition t "+
-					  "WHERE t.from.job=:job "+
-					  "AND t.from.taskState=io.leitstand.jobs.service.TaskState.COMPLETED "+
-					  "AND t.to.taskState=io.leitstand.jobs.service.TaskState.READY"),
+	@NamedQuery(name="Job_Task.findTasksEligibleForExecution",
+				query="SELECT t FROM Job_Task t "+
+					  "WHERE t.job.uuid IN :jobs "+
+					  "AND t.job.state=io.leitstand.jobs.service.TaskState.ACTIVE "+
+					  "AND t.taskState=io.leitstand.jobs.service.TaskState.READY "+
+					  "AND (t.pendingPredecessors=0 "+
+					  	   "OR (t.pendingPredecessors IS NULL "+
+					  	   	   "AND NOT EXISTS (SELECT p FROM Job_Task_Transition p "+
+					  				  		   "WHERE p.to=t "+
+					  				  		   "AND p.from.taskState<>io.leitstand.jobs.service.TaskState.COMPLETED))) "+
+					  "AND (t.job.start=t OR EXISTS (SELECT c FROM Job_Task_Transition c WHERE c.to=t)) "+
+					  "AND (t.tsnextattempt IS NULL OR t.tsnextattempt <= :now) "+
+					  "ORDER BY t.job.tsrank, t.id"),
 	@NamedQuery(name="Job_Task.findSuccessorsOfTask", 
 				query="SELECT t.to FROM Job_Task_Transition t WHERE t.from=:task"),
 	@NamedQuery(name="Job_Task.setFlowTasksReadyForExecution", 
 				query="UPDATE Job_Task t "+
 					  "SET t.taskState=io.leitstand.jobs.service.TaskState.READY "+
 					  "WHERE t.job=:job"),
-	@NamedQuery(name="Job_Task.markExpiredTasks",
-				query="UPDATE Job_Task t "+
-					  "SET t.taskState=io.leitstand.jobs.service.TaskState.TIMEOUT "+
+	@NamedQuery(name="Job_Task.findTaskDeadlines",
+				query="SELECT t FROM Job_Task t "+
+					  "WHERE t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE "+
+					  "AND t.tsexpiry < :to "+
+					  "ORDER BY t.tsexpiry"),
+	@NamedQuery(name="Job_Task.findActiveTasksWithoutDeadline",
+				query="SELECT t FROM Job_Task t "+
+					  "WHERE t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE "+
+					  "AND t.tsexpiry IS NULL"),
+	@NamedQuery(name="Job_Task.findScheduledRetries",
+				query="SELECT t FROM Job_Task t "+
+					  "WHERE t.taskState=io.leitstand.jobs.service.TaskState.READY "+
+					  "AND t.tsnextattempt >= :from "+
+					  "AND t.tsnextattempt < :to "+
+					  "AND t.job.state=io.leitstand.jobs.service.TaskState.ACTIVE "+
+					  "ORDER BY t.tsnextattempt"),
+	@NamedQuery(name="Job_Task.renewLeases",
+				query="UPDATE Job_Task t SET t.tslease=:expiry "+
+					  "WHERE t.executor=:executor "+
+					  "AND t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE"),
+	@NamedQuery(name="Job_Task.findTasksWithExpiredLease",
+				query="SELECT t FROM Job_Task t "+
+					  "WHERE t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE "+
+					  "AND t.tslease < :now "+
+					  "ORDER BY t.tslease"),
+	@NamedQuery(name="Job_Task.findLeasedTasks",
+				query="SELECT t FROM Job_Task t "+
 					  "WHERE t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE "+
-					  "AND t.dateModified < :expired"),
+					  "AND t.executor=:executor"),
+	@NamedQuery(name="Job_Task.fetchSuccessorsOfJobTasks",
+				query="SELECT t FROM Job_Task t LEFT JOIN FETCH t.successors WHERE t.job=:job"),
+	@NamedQuery(name="Job_Task.fetchPredecessorsOfJobTasks",
+				query="SELECT t FROM Job_Task t LEFT JOIN FETCH t.predecessors WHERE t.job=:job"),
+	@NamedQuery(name="Job_Task.findOrderedTaskInfosOfJob",
+				query="SELECT t.taskId, t.taskName, t.taskType, t.taskState, t.elementId, t.parameter, t.dateModified "+
+					  "FROM Job_Task t "+
+					  "WHERE t.job=:job "+
+					  "AND t.ordinal IS NOT NULL "+
+					  "ORDER BY t.ordinal"),
+	@NamedQuery(name="Job_Task.countPendingTasksByApplication",
+				query="SELECT t.job.application, COUNT(t) FROM Job_Task t "+
+					  "WHERE t.job.state IN :jobStates "+
+					  "AND (t.taskState=io.leitstand.jobs.service.TaskState.READY "+
+					  	   "OR t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE) "+
+					  "GROUP BY t.job.application"),
+	@NamedQuery(name="Job_Task.countPendingTasksWithinWindowByApplication",
+				query="SELECT t.job.application, COUNT(t) FROM Job_Task t "+
+					  "WHERE t.job.state IN :jobStates "+
+					  "AND (t.job.tssuspend IS NULL "+
+					  	   "OR ((t.job.tsschedule IS NULL OR t.job.tsschedule <= :now) AND t.job.tssuspend > :now)) "+
+					  "AND (t.taskState=io.leitstand.jobs.service.TaskState.READY "+
+					  	   "OR t.taskState=io.leitstand.jobs.service.TaskState.ACTIVE) "+
+					  "GROUP BY t.job.application"),
 
 })
 public class Job_Task extends AbstractEntity{
 
 	private static final long serialVersionUID = 1L;
 
-	public static Query<Set<Job_Task>> findSuccessorsOfCompletedTasks(Job job, LockModeType locking){
-		return em -> new HashSet<>(em.createNamedQuery("Job_Task.findSuccessorsOfCompletedTasks", Job_Task.class)
-		                             .setLockMode(locking)
-		                             .setParameter("job",job)
-		                             .getResultList());
+	/**
+	 * Returns all tasks of the given running jobs that are eligible for execution.
+	 * A task is eligible for execution if the task is ready for execution and all predecessors have been completed.
+	 * The number of pending predecessors is read from the task record. 
+	 * The predecessors are only inspected for tasks without pending predecessors counter.
+	 * The start task of a job is eligible for execution as long as it is ready for execution.
+	 * A failed task that is retried is not eligible for execution before its next attempt is due.
+	 * @param jobs the IDs of the running jobs
+	 * @param locking the lock mode
+	 * @return all tasks eligible for execution ordered by the dispatch rank of their jobs and by task ID.
+	 */
+	public static Query<List<Job_Task>> findTasksEligibleForExecution(Collection<JobId> jobs, LockModeType locking){
+		return em -> em.createNamedQuery("Job_Task.findTasksEligibleForExecution", Job_Task.class)
+					   .setLockMode(locking)
+					   .setParameter("jobs", jobs.stream()
+											 .map(JobId::toString)
+											 .collect(toList()))
+					   .setParameter("now", new Date(), TIMESTAMP)
+					   .getResultList();
+	}
+	
+	/**
+	 * Loads the successors of all tasks of the given job by a single query.
+	 * @param job the job
+	 * @return all tasks of the job with initialized successors.
+	 * @see JobFetchPlan#JOB_WITH_TASKS_AND_TRANSITIONS
+	 */
+	public static Query<List<Job_Task>> fetchSuccessorsOfJobTasks(Job job) {
+		return em -> em.createNamedQuery("Job_Task.fetchSuccessorsOfJobTasks", Job_Task.class)
+					   .setParameter("job", job)
+					   .getResultList();
+	}
+	
+	/**
+	 * Loads the predecessors of all tasks of the given job by a single query.
+	 * @param job the job
+	 * @return all tasks of the job with initialized predecessors.
+	 * @see JobFetchPlan#JOB_WITH_TASKS_AND_TRANSITIONS
+	 */
+	public static Query<List<Job_Task>> fetchPredecessorsOfJobTasks(Job job) {
+		return em -> em.createNamedQuery("Job_Task.fetchPredecessorsOfJobTasks", Job_Task.class)
+					   .setParameter("job", job)
+					   .getResultList();
+	}
+	
+	/**
+	 * Returns the information of all element and parameterized tasks of the given job in listing order.
+	 * The task ordinals are assigned when the job is committed.
+	 * The query reads the task columns only and creates the task information directly without loading the task entities.
+	 * @param job the job
+	 * @param elements the element settings lookup
+	 * @return the ordered task information or <code>null</code> if no task ordinals have been assigned.
+	 */
+	public static Query<List<JobTask>> findOrderedTaskInfos(Job job, Function<ElementId,ElementSettings> elements) {
+		return em -> {
+			List<Object[]> rows = em.createNamedQuery("Job_Task.findOrderedTaskInfosOfJob",Object[].class)
+									.setParameter("job", job)
+									.getResultList();
+			if(rows.isEmpty()) {
+				return null;
+			}
+			List<JobTask> tasks = new LinkedList<>();
+			for(Object[] row : rows) {
+				ElementId elementId = (ElementId) row[4];
+				JsonObject parameters = unwrap((SerializableJsonObject) row[5]);
+				if(elementId == null && parameters == null) {
+					// Skip tasks without element and parameters, e.g. join tasks.
+					continue;
+				}
+				tasks.add(taskInfo((TaskId) row[0],
+								   (TaskName) row[1],
+								   (TaskType) row[2],
+								   (TaskState) row[3],
+								   parameters,
+								   (Date) row[6],
+								   elementId != null ? elements.apply(elementId) : null));
+			}
+			return tasks;
+		};
+	}
+	
+	static JobTask taskInfo(TaskId taskId,
+							TaskName taskName,
+							TaskType taskType,
+							TaskState taskState,
+							JsonObject parameters,
+							Date dateModified,
+							ElementSettings element) {
+		return newJobTask()
+			   .withTaskId(taskId)
+			   .withTaskName(taskName)
+			   .withTaskType(taskType)
+			   .withTaskState(taskState)
+			   .withElementId(optional(element, ElementSettings::getElementId))
+			   .withElementName(optional(element, ElementSettings::getElementName))
+			   .withElementAlias(optional(element,ElementSettings::getElementAlias))
+			   .withElementRole(optional(element,ElementSettings::getElementRole))
+			   .withGroupId(optional(element,ElementSettings::getGroupId))
+			   .withGroupName(optional(element,ElementSettings::getGroupName))
+			   .withGroupType(optional(element,ElementSettings::getGroupType))
+			   .withParameter(parameters)
+			   .withDateLastModified(dateModified)
+			   .build();
 	}
 	
 	public static Query<List<Job_Task>> findSuccessorsOfTask(Job_Task task) {
@@ -130,12 +299,116 @@ public class Job_Task extends AbstractEntity{
 				       .getSingleResult();
 	}
 	
-	public static Update markExpiredTasks(Date expiryDate){
-		return em -> em.createNamedQuery("Job_Task.markExpiredTasks",Job_Task.class)
-					   .setParameter("expired",expiryDate)
+	/**
+	 * Returns all active tasks that expire before the given date, including all overdue tasks.
+	 * @param to the end of the look-ahead horizon
+	 * @return all active tasks expiring before the given date ordered by expiry date.
+	 */
+	public static Query<List<Job_Task>> findTaskDeadlines(Date to){
+		return em -> em.createNamedQuery("Job_Task.findTaskDeadlines",Job_Task.class)
+					   .setParameter("to",to,TIMESTAMP)
+					   .getResultList();
+	}
+	
+	/**
+	 * Returns all active tasks without expiry date.
+	 * Tasks activated before the expiry date was introduced have no expiry date.
+	 * @return all active tasks without expiry date.
+	 */
+	public static Query<List<Job_Task>> findActiveTasksWithoutDeadline(){
+		return em -> em.createNamedQuery("Job_Task.findActiveTasksWithoutDeadline",Job_Task.class)
+					   .getResultList();
+	}
+
+	/**
+	 * Returns all tasks of running jobs whose next attempt is due within the given time frame.
+	 * @param from the start of the time frame (inclusive)
+	 * @param to the end of the time frame (exclusive)
+	 * @return all tasks with a next attempt within the time frame ordered by the date of the next attempt.
+	 */
+	public static Query<List<Job_Task>> findScheduledRetries(Date from, Date to){
+		return em -> em.createNamedQuery("Job_Task.findScheduledRetries",Job_Task.class)
+					   .setParameter("from",from,TIMESTAMP)
+					   .setParameter("to",to,TIMESTAMP)
+					   .getResultList();
+	}
+	
+	/**
+	 * Renews the leases of all active tasks executed by the given cluster node.
+	 * @param executor the ID of the cluster node executing the tasks
+	 * @param expiry the new lease expiry date
+	 * @return the number of renewed leases
+	 */
+	public static Update renewTaskLeases(String executor, Date expiry) {
+		return em -> em.createNamedQuery("Job_Task.renewLeases")
+					   .setParameter("executor", executor)
+					   .setParameter("expiry", expiry, TIMESTAMP)
 					   .executeUpdate();
 	}
+	
+	/**
+	 * Returns all active tasks whose lease has expired, i.e. whose executing cluster node has stopped renewing the leases.
+	 * @param now the current date
+	 * @return all active tasks with an expired lease ordered by lease expiry date.
+	 */
+	public static Query<List<Job_Task>> findTasksWithExpiredLease(Date now){
+		return em -> em.createNamedQuery("Job_Task.findTasksWithExpiredLease",Job_Task.class)
+					   .setParameter("now",now,TIMESTAMP)
+					   .getResultList();
+	}
+	
+	/**
+	 * Returns all active tasks leased by the given cluster node.
+	 * @param executor the ID of the cluster node
+	 * @return all active tasks leased by the cluster node.
+	 */
+	public static Query<List<Job_Task>> findLeasedTasks(String executor){
+		return em -> em.createNamedQuery("Job_Task.findLeasedTasks",Job_Task.class)
+					   .setParameter("executor",executor)
+					   .getResultList();
+	}
+	
+	/**
+	 * Returns the number of ready and active tasks per job application of all jobs in the given job states.
+	 * @param jobStates the job states
+	 * @return the number of ready and active tasks per job application.
+	 */
+	public static Query<Map<JobApplication,Long>> countPendingTasksByApplication(Collection<TaskState> jobStates){
+		return em -> pendingTasks(em.createNamedQuery("Job_Task.countPendingTasksByApplication",Object[].class)
+									.setParameter("jobStates", jobStates)
+									.getResultList());
+	}
+	
+	/**
+	 * Returns the number of ready and active tasks per job application of all jobs in the given job states
+	 * that are within their window at the given date.
+	 * Jobs outside of their window are not dispatched and hence not taken into account.
+	 * @param jobStates the job states
+	 * @param now the current date
+	 * @return the number of ready and active tasks per job application.
+	 */
+	public static Query<Map<JobApplication,Long>> countPendingTasksWithinWindowByApplication(Collection<TaskState> jobStates, Date now){
+		return em -> pendingTasks(em.createNamedQuery("Job_Task.countPendingTasksWithinWindowByApplication",Object[].class)
+									.setParameter("jobStates", jobStates)
+									.setParameter("now", now, TIMESTAMP)
+									.getResultList());
+	}
+	
+	private static Map<JobApplication,Long> pendingTasks(List<Object[]> rows){
+		Map<JobApplication,Long> pending = new HashMap<>();
+		for(Object[] row : rows) {
+			pending.put((JobApplication) row[0], ((Number) row[1]).longValue());
+		}
+		return pending;
+	}
 
+	/**
+	 * Sets all tasks of the given job ready for execution by a bulk update.
+	 * The task counters of the job must be updated accordingly.
+	 * @param job the job
+	 * @return the number of updated tasks
+	 * @see Job#allTasksReady()
+	 */
 	public static Update setTaskStateToReadyForExecution(Job job) {
 		return em -> em.createNamedQuery("Job_Task.setFlowTasksReadyForExecution")
 					   .setParameter("job", job)
@@ -182,6 +455,45 @@ public class Job_Task extends AbstractEntity{
 	@OneToMany(mappedBy="to", cascade=ALL, orphanRemoval=true)
 	private List<Job_Task_Transition> predecessors;
 	
+	@Column(name="permits")
+	private String permits;
+	
+	/** Number of predecessors that have not been completed yet. <code>null</code> for tasks created without counter. */
+	@Column(name="pending")
+	private Integer pendingPredecessors;
+	
+	/** Task timeout in seconds as requested by the task submission. <code>null</code> to apply the task type default. */
+	@Column(name="timeout")
+	private Integer timeout;
+	
+	/** Expiry date of an active task. */
+	@Temporal(TIMESTAMP)
+	private Date tsexpiry;
+	
+	/** Number of failed attempts to execute the task. */
+	@Column(name="attempts")
+	private Integer attempts;
+	
+	/** Earliest date of the next attempt to execute a failed task. */
+	@Temporal(TIMESTAMP)
+	private Date tsnextattempt;
+	
+	/** ID of the cluster node executing the task processor of an active task. */
+	@Column(name="executor")
+	private String executor;
+	
+	/** Lease expiry date of an active task. The executing cluster node renews the lease while the task processor is running. */
+	@Temporal(TIMESTAMP)
+	private Date tslease;
+	
+	/** Position of the task in the ordered task list of the job. Assigned when the job is committed. */
+	@Column(name="ordinal")
+	private Integer ordinal;
+	
+	/** Status code reported by the last task processor invocation. Not persisted. */
+	@Transient
+	private Integer statusCode;
+	
 	protected Job_Task(){
 		//JPA
 		this.successors = new LinkedList<>();
@@ -268,6 +580,7 @@ public class Job_Task extends AbstractEntity{
 		this.successors = new LinkedList<>();
 		this.predecessors = new LinkedList<>();
 		this.taskState = NEW;
+		this.pendingPredecessors = 0;
 		this.elementId = elementId;
 		this.parameter = serializable(parameter);
 		this.job = job;
@@ -288,6 +601,7 @@ public class Job_Task extends AbstractEntity{
        this.successors = new LinkedList<>();
        this.predecessors = new LinkedList<>();
        this.taskState = NEW;
+       this.pendingPredecessors = 0;
        this.elementId = elementId;
        this.parameter = serializable(parameter);
        this.job = job;
@@ -307,7 +621,74 @@ public class Job_Task extends AbstractEntity{
 	}
 	
 	public void setTaskState(TaskState state) {
+		TaskState previous = taskState;
+		boolean completed = previous == COMPLETED;
 		this.taskState = state;
+		if(job != null && previous != state) {
+			job.taskStateChanged(previous, state);
+		}
+		if(state != ACTIVE) {
+			// Only active tasks can expire and be leased.
+			this.tsexpiry = null;
+			this.executor = null;
+			this.tslease = null;
+		}
+		if(completed != (state == COMPLETED)) {
+			// Update the pending predecessors counter of all successors.
+			for(Job_Task_Transition transition : successors) {
+				transition.getTo().onPredecessorCompletionChanged(completed ? 1 : -1);
+			}
+		}
+	}
+	
+	private void onPredecessorCompletionChanged(int delta) {
+		if(pendingPredecessors != null) {
+			pendingPredecessors = Math.max(0, pendingPredecessors + delta);
+		}
+	}
+	
+	/**
+	 * Returns the number of predecessors that have not been completed yet.
+	 * @return the number of pending predecessors.
+	 */
+	public int getPendingPredecessors() {
+		if(pendingPredecessors == null) {
+			return countPendingPredecessors();
+		}
+		return pendingPredecessors;
+	}
+	
+	/**
+	 * Recounts the predecessors that have not been completed yet and updates the pending predecessors counter.
+	 */
+	public void resetPendingPredecessors() {
+		this.pendingPredecessors = countPendingPredecessors();
+	}
+	
+	/**
+	 * Returns the position of this task in the ordered task list of the job.
+	 * @return the task ordinal or <code>null</code> if the job has not been committed yet.
+	 */
+	public Integer getOrdinal() {
+		return ordinal;
+	}
+	
+	void setOrdinal(Integer ordinal) {
+		this.ordinal = ordinal;
+	}
+	
+	void setPendingPredecessors(int pendingPredecessors) {
+		this.pendingPredecessors = pendingPredecessors;
+	}
+	
+	private int countPendingPredecessors() {
+		int pending = 0;
+		for(Job_Task_Transition transition : predecessors) {
+			if(transition.getFrom().getTaskState() != COMPLETED) {
+				pending++;
+			}
+		}
+		return pending;
 	}
 	
 	public TaskId getTaskId() {
@@ -332,13 +713,7 @@ public class Job_Task extends AbstractEntity{
 	}
 	
 	public boolean isBlocked(){
-		for(Job_Task_Transition transition:predecessors){
-			if(transition.getFrom().isSucceeded()){
-				continue;
-			}
-			return true;
-		}
-		return false;
+		return getPendingPredecessors() > 0;
 	}
 	
 	public boolean isEligibleForExecution() {
@@ -383,6 +758,9 @@ public class Job_Task extends AbstractEntity{
 		Job_Task_Transition transition = findTransitionToPredecessor(task);
 		if(transition == null){
 			predecessors.add(task.findTransitionToSuccessor(this));
+			if(task.getTaskState() != COMPLETED) {
+				onPredecessorCompletionChanged(1);
+			}
 		}
 	}
 	
@@ -390,6 +768,9 @@ public class Job_Task extends AbstractEntity{
 		Job_Task_Transition transition = findTransitionToPredecessor(task);
 		if(transition != null){
 			predecessors.remove(transition);
+			if(task.getTaskState() != COMPLETED) {
+				onPredecessorCompletionChanged(-1);
+			}
 		}
 	}
 	
@@ -464,6 +845,157 @@ public class Job_Task extends AbstractEntity{
 		return suspend;
 	}
 
+	/**
+	 * Returns the concurrency permits held by this task or <code>null</code> if this task holds no permits.
+	 * The permits are separated by semicolons.
+	 * @return the permits held by this task.
+	 * @see JobTaskPermits
+	 */
+	public String getPermits() {
+		return permits;
+	}
+	
+	/**
+	 * Sets the concurrency permits held by this task.
+	 * @param permits the permits held by this task or <code>null</code> if this task holds no permits.
+	 */
+	void setPermits(String permits) {
+		this.permits = permits;
+	}
+	
+	/**
+	 * Returns the task timeout in seconds or <code>null</code> if the default timeout of the task type applies.
+	 * @return the task timeout in seconds.
+	 */
+	public Integer getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * Sets the task timeout in seconds.
+	 * @param timeout the task timeout in seconds or <code>null</code> to apply the default timeout of the task type.
+	 */
+	public void setTimeout(Integer timeout) {
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Returns the expiry date of an active task or <code>null</code> if the task is not active.
+	 * @return the expiry date of the task.
+	 * @see TaskExpiryManager
+	 */
+	public Date getDateExpiry() {
+		if(tsexpiry == null) {
+			return null;
+		}
+		return new Date(tsexpiry.getTime());
+	}
+	
+	/**
+	 * Sets the expiry date of an active task.
+	 * The expiry date is cleared when the task leaves the <code>ACTIVE</code> state.
+	 * @param dateExpiry the expiry date
+	 */
+	void setDateExpiry(Date dateExpiry) {
+		this.tsexpiry = dateExpiry != null ? new Date(dateExpiry.getTime()) : null;
+	}
+	
+	/**
+	 * Returns the ID of the cluster node executing the task processor of this task.
+	 * @return the executing cluster node or <code>null</code> if the task is not leased.
+	 * @see TaskLeaseManager
+	 */
+	public String getExecutor() {
+		return executor;
+	}
+	
+	/**
+	 * Returns the lease expiry date of this task.
+	 * @return the lease expiry date or <code>null</code> if the task is not leased.
+	 */
+	public Date getDateLeaseExpiry() {
+		if(tslease == null) {
+			return null;
+		}
+		return new Date(tslease.getTime());
+	}
+	
+	/**
+	 * Leases this task to the cluster node executing the task processor.
+	 * The lease is released when the task processor has reported its outcome or the task leaves the <code>ACTIVE</code> state.
+	 * @param executor the ID of the executing cluster node
+	 * @param dateLeaseExpiry the lease expiry date
+	 */
+	void lease(String executor, Date dateLeaseExpiry) {
+		this.executor = executor;
+		this.tslease = new Date(dateLeaseExpiry.getTime());
+	}
+	
+	/**
+	 * Releases the lease of this task.
+	 */
+	void releaseLease() {
+		this.executor = null;
+		this.tslease = null;
+	}
+	
+	/**
+	 * Returns the number of failed attempts to execute this task.
+	 * @return the number of failed attempts.
+	 */
+	public int getAttempts() {
+		return attempts != null ? attempts : 0;
+	}
+	
+	/**
+	 * Returns the earliest date of the next attempt to execute this task after a failed attempt.
+	 * @return the date of the next attempt or <code>null</code> if the task can be executed immediately.
+	 * @see TaskRetryPolicy
+	 */
+	public Date getDateNextAttempt() {
+		if(tsnextattempt == null) {
+			return null;
+		}
+		return new Date(tsnextattempt.getTime());
+	}
+	
+	/**
+	 * Records a failed attempt to execute this task and sets the task ready for execution again.
+	 * The task is not eligible for execution before the given date.
+	 * @param dateNextAttempt the earliest date of the next attempt
+	 */
+	void retry(Date dateNextAttempt) {
+		this.attempts = getAttempts()+1;
+		this.tsnextattempt = new Date(dateNextAttempt.getTime());
+		setTaskState(READY);
+	}
+	
+	/**
+	 * Resets the failed attempts, e.g. when a task is resumed manually.
+	 */
+	void resetAttempts() {
+		this.attempts = null;
+		this.tsnextattempt = null;
+	}
+	
+	/**
+	 * Returns the status code reported by the last task processor invocation, e.g. the HTTP status code of a REST API call.
+	 * The status code is not persisted.
+	 * @return the status code or <code>null</code> if no status code was reported.
+	 */
+	public Integer getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * Reports the status code of a task processor invocation.
+	 * The {@link TaskRetryPolicy} decides by means of the status code whether a failed task is retried.
+	 * @param statusCode the status code
+	 */
+	public void setStatusCode(Integer statusCode) {
+		this.statusCode = statusCode;
+	}
+	
 	public Job getJob() {
 		return job;
 	}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+import static java.util.logging.Level.FINER;
+import static java.util.logging.Logger.getLogger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+import javax.annotation.Resource;
+import javax.enterprise.context.ApplicationScoped;
+import javax.sql.DataSource;
+
+/**
+ * Provides information about the database storing the jobs.
+ * <p>
+ * The job scheduler leverages PostgreSQL specific features when available
+ * and falls back to standard SQL statements for all other databases.
+ * </p>
+ */
+@ApplicationScoped
+public class JobsDatabaseDialect {
+
+	private static final Logger LOG = getLogger(JobsDatabaseDialect.class.getName());
+	
+	@Resource(lookup="java:/jdbc/leitstand")
+	private DataSource ds;
+	
+	private volatile Boolean postgres;
+	
+	protected JobsDatabaseDialect() {
+		// CDI
+	}
+	
+	JobsDatabaseDialect(DataSource ds) {
+		this.ds = ds;
+	}
+	
+	/**
+	 * Returns whether the jobs are stored in a PostgreSQL database.
+	 * The database product is cached once it has been determined.
+	 * If the database cannot be reached, this method returns <code>false</code> and queries the database product again on the next call.
+	 * @return <code>true</code> if the jobs are stored in a PostgreSQL database, <code>false</code> otherwise.
+	 */
+	public boolean isPostgres() {
+		Boolean postgres = this.postgres;
+		if(postgres == null) {
+			String product = getDatabaseProductName();
+			if(product == null) {
+				// Database not reachable. Retry on the next call instead of caching a wrong answer.
+				return false;
+			}
+			postgres = "PostgreSQL".equalsIgnoreCase(product);
+			this.postgres = postgres;
+		}
+		return postgres;
+	}
+	
+	private String getDatabaseProductName() {
+		try(Connection c = ds.getConnection()){
+			return c.getMetaData().getDatabaseProductName();
+		} catch (SQLException e) {
+			LOG.warning(() -> format("Cannot determine database product: %s",e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+			return null;
+		}
+	}
+	
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.TimerStatus.newTimerStatus;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free latency histogram with fixed bucket boundaries.
+ * <p>
+ * Recording a latency increments a {@link LongAdder} of the matching bucket, 
+ * which keeps the overhead low even if the histogram is updated by many threads concurrently.
+ * The histogram is rendered in the Prometheus text exposition format with cumulative buckets.
+ * </p>
+ */
+final class LatencyHistogram {
+
+	/** Upper bucket boundaries in seconds. */
+	static final double[] BUCKETS = {0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60};
+	
+	private static final long[] BUCKET_NANOS = new long[BUCKETS.length];
+	static {
+		for(int i=0; i < BUCKETS.length; i++) {
+			BUCKET_NANOS[i] = (long) (BUCKETS[i] * 1_000_000_000L);
+		}
+	}
+	
+	private final LongAdder[] buckets = new LongAdder[BUCKETS.length+1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+	
+	LatencyHistogram(){
+		for(int i=0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+	
+	/**
+	 * Records a latency.
+	 * @param nanos the latency in nanoseconds
+	 */
+	void record(long nanos) {
+		long latency = Math.max(0, nanos);
+		buckets[bucket(latency)].increment();
+		count.increment();
+		sum.add(latency);
+		long current = max.get();
+		while(latency > current && !max.compareAndSet(current, latency)) {
+			current = max.get();
+		}
+	}
+	
+	private static int bucket(long nanos) {
+		for(int i=0; i < BUCKET_NANOS.length; i++) {
+			if(nanos <= BUCKET_NANOS[i]) {
+				return i;
+			}
+		}
+		return BUCKET_NANOS.length;
+	}
+	
+	/**
+	 * Returns the number of recorded latencies.
+	 * @return the number of recorded latencies.
+	 */
+	long getCount() {
+		return count.sum();
+	}
+	
+	/**
+	 * Returns the sum of all recorded latencies in nanoseconds.
+	 * @return the sum of all recorded latencies.
+	 */
+	long getSumNanos() {
+		return sum.sum();
+	}
+	
+	/**
+	 * Returns the maximum recorded latency in nanoseconds.
+	 * @return the maximum recorded latency.
+	 */
+	long getMaxNanos() {
+		return max.get();
+	}
+	
+	/**
+	 * Returns the number of recorded latencies that did not exceed the given bucket boundary.
+	 * @param bucket the bucket index
+	 * @return the cumulative count of the bucket.
+	 */
+	long getCumulativeCount(int bucket) {
+		long cumulative = 0;
+		for(int i=0; i <= bucket && i < buckets.length; i++) {
+			cumulative += buckets[i].sum();
+		}
+		return cumulative;
+	}
+	
+	/**
+	 * Returns a summary of the recorded latencies.
+	 * @param name the name of the measured operation
+	 * @return the summary of the recorded latencies.
+	 */
+	TimerStatus getStatus(String name) {
+		long n = getCount();
+		long total = getSumNanos();
+		return newTimerStatus()
+			   .withName(name)
+			   .withCount(n)
+			   .withTotalMillis(NANOSECONDS.toMillis(total))
+			   .withMeanMillis(n > 0 ? NANOSECONDS.toMillis(total/n) : 0)
+			   .withMaxMillis(NANOSECONDS.toMillis(getMaxNanos()))
+			   .build();
+	}
+	
+	/**
+	 * Writes the histogram in Prometheus text exposition format.
+	 * @param out the output buffer
+	 * @param metric the metric name
+	 * @param labels the metric labels in <code>name="value"</code> notation or an empty string
+	 */
+	void writeTo(StringBuilder out, String metric, String labels) {
+		String separator = labels.isEmpty() ? "" : ",";
+		long cumulative = 0;
+		for(int i=0; i < buckets.length; i++) {
+			cumulative += buckets[i].sum();
+			out.append(metric)
+			   .append("_bucket{")
+			   .append(labels)
+			   .append(separator)
+			   .append("le=\"")
+			   .append(i < BUCKETS.length ? Double.toString(BUCKETS[i]) : "+Inf")
+			   .append("\"} ")
+			   .append(cumulative)
+			   .append('\n');
+		}
+		String suffix = labels.isEmpty() ? " " : "{"+labels+"} ";
+		out.append(metric).append("_sum").append(suffix).append(getSumNanos() / 1e9).append('\n');
+		out.append(metric).append("_count").append(suffix).append(getCount()).append('\n');
+	}
+	
+}
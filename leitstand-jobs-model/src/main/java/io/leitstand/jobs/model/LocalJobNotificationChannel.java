@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * In-process {@link JobNotificationChannel} that notifies all listeners of the same node.
+ */
+public class LocalJobNotificationChannel implements JobNotificationChannel {
+
+	private Set<Runnable> listeners = new CopyOnWriteArraySet<>();
+	
+	@Override
+	public void publish() {
+		listeners.forEach(Runnable::run);
+	}
+
+	@Override
+	public void subscribe(Runnable listener) {
+		listeners.add(listener);
+	}
+
+	@Override
+	public void unsubscribe(Runnable listener) {
+		listeners.remove(listener);
+	}
+
+}
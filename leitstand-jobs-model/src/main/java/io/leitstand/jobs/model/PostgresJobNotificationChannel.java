@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.FINER;
+import static java.util.logging.Logger.getLogger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+/**
+ * {@link JobNotificationChannel} leveraging the PostgreSQL <code>LISTEN</code>/<code>NOTIFY</code> mechanism 
+ * to notify the job event loops of all cluster nodes.
+ * <p>
+ * The channel opens a dedicated database connection to listen for notifications once the first listener has subscribed.
+ * The connection is obtained from the listener data source, which should not be pooled.
+ * The channel stops listening before the connection is released when the last listener has unsubscribed.
+ * </p>
+ */
+public class PostgresJobNotificationChannel implements JobNotificationChannel {
+
+	private static final Logger LOG = getLogger(PostgresJobNotificationChannel.class.getName());
+	
+	static final String CHANNEL = "leitstand_jobs";
+	
+	private static final int LISTEN_TIMEOUT_MILLIS = 1000;
+	
+	private DataSource ds;
+	private DataSource listenerDs;
+	private Executor executor;
+	private Set<Runnable> listeners;
+	private AtomicBoolean listening;
+	
+	public PostgresJobNotificationChannel(DataSource ds, DataSource listenerDs, Executor executor) {
+		this.ds = ds;
+		this.listenerDs = listenerDs;
+		this.executor = executor;
+		this.listeners = new CopyOnWriteArraySet<>();
+		this.listening = new AtomicBoolean();
+	}
+	
+	@Override
+	public void publish() {
+		try(Connection c = ds.getConnection();
+			PreparedStatement notify = c.prepareStatement("SELECT pg_notify(?,'')")){
+			notify.setString(1, CHANNEL);
+			notify.execute();
+		} catch (SQLException e) {
+			LOG.warning(() -> format("Cannot notify job event loops: %s", e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+
+	@Override
+	public void subscribe(Runnable listener) {
+		listeners.add(listener);
+		startListening();
+	}
+
+	@Override
+	public void unsubscribe(Runnable listener) {
+		listeners.remove(listener);
+	}
+	
+	private void startListening() {
+		if(!listeners.isEmpty() && listening.compareAndSet(false, true)) {
+			executor.execute(this::listen);
+		}
+	}
+	
+	private void listen() {
+		try {
+			while(!listeners.isEmpty()) {
+				try(Connection c = listenerDs.getConnection()){
+					try {
+						try(Statement stmt = c.createStatement()){
+							stmt.execute("LISTEN "+CHANNEL);
+						}
+						LOG.fine(() -> format("Listening for job notifications on %s channel.",CHANNEL));
+						PGConnection pg = c.unwrap(PGConnection.class);
+						while(!listeners.isEmpty()) {
+							PGNotification[] notifications = pg.getNotifications(LISTEN_TIMEOUT_MILLIS);
+							if(notifications != null && notifications.length > 0) {
+								listeners.forEach(Runnable::run);
+							}
+						}
+					} finally {
+						unlisten(c);
+					}
+				} catch (SQLException e) {
+					LOG.warning(() -> format("Lost connection to %s job notification channel: %s. Reconnect in one second.",
+											 CHANNEL,
+											 e.getMessage()));
+					LOG.log(FINER,e.getMessage(),e);
+					SECONDS.sleep(1);
+				}
+			}
+		} catch (InterruptedException e) {
+			LOG.fine(() -> "Listening for job notifications has been interrupted.");
+			Thread.currentThread().interrupt();
+		} finally {
+			listening.set(false);
+			LOG.fine(() -> format("Stopped listening for job notifications on %s channel.",CHANNEL));
+		}
+		// A listener might have subscribed while the listener thread terminated.
+		startListening();
+	}
+	
+	private static void unlisten(Connection c) {
+		// Do not return a listening connection to the pool.
+		try(Statement stmt = c.createStatement()){
+			stmt.execute("UNLISTEN *");
+		} catch (SQLException e) {
+			LOG.fine(() -> format("Cannot stop listening on %s channel: %s",CHANNEL,e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+		}
+	}
+
+}
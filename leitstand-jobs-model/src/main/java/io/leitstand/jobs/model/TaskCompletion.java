@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import io.leitstand.jobs.service.JobId;
+import io.leitstand.jobs.service.TaskId;
+import io.leitstand.jobs.service.TaskState;
+
+/**
+ * The outcome of a task processor executed by the {@link TaskExecutionPool}.
+ * <p>
+ * Task completions are queued by the task execution pool and committed by the {@link JobEventLoop} in short follow-up transactions.
+ * </p>
+ */
+public class TaskCompletion {
+
+	/**
+	 * Creates a task completion for a task that could not be dispatched to a task processor thread.
+	 * The task is set ready for execution again instead of recording a task processor outcome.
+	 * @param jobId the job ID
+	 * @param taskId the task ID
+	 * @return the task completion of the not dispatched task.
+	 */
+	public static TaskCompletion notDispatched(JobId jobId, TaskId taskId) {
+		return new TaskCompletion(jobId,taskId,null,null,false);
+	}
+	
+	private final JobId jobId;
+	private final TaskId taskId;
+	private final TaskState taskState;
+	private final Integer statusCode;
+	private final boolean dispatched;
+	
+	/**
+	 * Creates a task completion.
+	 * @param jobId the job ID
+	 * @param taskId the task ID
+	 * @param taskState the task state reported by the task processor
+	 */
+	public TaskCompletion(JobId jobId, TaskId taskId, TaskState taskState){
+		this(jobId,taskId,taskState,null);
+	}
+	
+	/**
+	 * Creates a task completion.
+	 * @param jobId the job ID
+	 * @param taskId the task ID
+	 * @param taskState the task state reported by the task processor
+	 * @param statusCode the status code reported by the task processor or <code>null</code> if no status code was reported
+	 */
+	public TaskCompletion(JobId jobId, TaskId taskId, TaskState taskState, Integer statusCode){
+		this(jobId,taskId,taskState,statusCode,true);
+	}
+	
+	private TaskCompletion(JobId jobId, TaskId taskId, TaskState taskState, Integer statusCode, boolean dispatched){
+		this.jobId = jobId;
+		this.taskId = taskId;
+		this.taskState = taskState;
+		this.statusCode = statusCode;
+		this.dispatched = dispatched;
+	}
+	
+	/**
+	 * Returns the job ID.
+	 * @return the job ID.
+	 */
+	public JobId getJobId() {
+		return jobId;
+	}
+	
+	/**
+	 * Returns the task ID.
+	 * @return the task ID.
+	 */
+	public TaskId getTaskId() {
+		return taskId;
+	}
+	
+	/**
+	 * Returns the task state reported by the task processor.
+	 * @return the task state.
+	 */
+	public TaskState getTaskState() {
+		return taskState;
+	}
+	
+	/**
+	 * Returns the status code reported by the task processor, e.g. the HTTP status code of a REST API call.
+	 * @return the status code or <code>null</code> if no status code was reported.
+	 */
+	public Integer getStatusCode() {
+		return statusCode;
+	}
+	
+	/**
+	 * Returns whether the task has been dispatched to a task processor.
+	 * @return <code>true</code> if the task processor was invoked, <code>false</code> if the task could not be dispatched and has to be executed again.
+	 */
+	public boolean isDispatched() {
+		return dispatched;
+	}
+	
+}
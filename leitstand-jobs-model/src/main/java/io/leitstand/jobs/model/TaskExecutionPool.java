@@ -0,0 +1,476 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.TaskCompletion.notDispatched;
+import static io.leitstand.jobs.model.TaskExecutorStatus.newTaskExecutorStatus;
+import static io.leitstand.jobs.model.TaskLeaseManager.leaseExpiry;
+import static io.leitstand.jobs.model.VirtualThreads.newVirtualThreadFactory;
+import static io.leitstand.jobs.service.TaskState.FAILED;
+import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
+import static java.lang.System.nanoTime;
+import static java.lang.Thread.currentThread;
+import static java.util.logging.Level.FINER;
+import static java.util.stream.Collectors.toList;
+import static javax.transaction.Status.STATUS_ACTIVE;
+import static javax.transaction.Status.STATUS_COMMITTED;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ContextService;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import io.leitstand.jobs.service.JobId;
+import io.leitstand.jobs.service.TaskId;
+import io.leitstand.jobs.service.TaskState;
+import io.leitstand.jobs.service.TaskType;
+
+/**
+ * The <code>TaskExecutionPool</code> executes task processors off the job event loop thread.
+ * <p>
+ * A task is dispatched to the pool when the transaction that set the task to <code>ACTIVE</code> state has been committed.
+ * The pool limits the number of concurrently executed tasks per task type and queues all tasks exceeding the limit.
+ * The limit of a task type is an {@link AimdLimit} bounded by the configured task concurrency. 
+ * The limit is decreased when the task processors slow down, e.g. because the systems they access are saturated,
+ * and increased while tasks are waiting for execution.
+ * Queued tasks are executed in dispatch rank order of their jobs, i.e. tasks of urgent jobs are executed first.
+ * The outcome of every executed task is added to a completion queue, 
+ * which is drained by the {@link JobEventLoop} to commit the new task states in short follow-up transactions.
+ * Consequently, a slow task processor neither blocks the event loop nor holds a database connection or a job row lock.
+ * </p>
+ * <p>
+ * Task processors are executed by the managed executor service by default.
+ * Alternatively, every task processor can be executed on its own virtual thread,
+ * which lets thousands of task processors wait for blocking I/O without exhausting a thread pool.
+ * The container context of the dispatching thread is propagated to the virtual thread.
+ * The concurrency limits of the task types apply in both execution modes.
+ * A virtual thread is interrupted when its task is terminated or retried by someone else, e.g. because the task has timed out,
+ * and when the pool is shut down. Hence, no task processor outlives its task or the pool.
+ * </p>
+ * <p>
+ * On shutdown, the {@link JobEventLoop} drains the pool: queued tasks are not executed anymore 
+ * and the event loop waits for the running task processors to report their outcome.
+ * </p>
+ */
+@ApplicationScoped
+public class TaskExecutionPool {
+
+	private static final Logger LOG = Logger.getLogger(TaskExecutionPool.class.getName());
+	
+	/**
+	 * A task awaiting execution.
+	 */
+	private static class Execution implements Comparable<Execution>{
+		private final JobId jobId;
+		private final TaskId taskId;
+		private final Job_Task task;
+		private final TaskProcessor processor;
+		private final long rank;
+		private final long sequence;
+		
+		Execution(Job_Task task, TaskProcessor processor, long sequence){
+			this.jobId = task.getJobId();
+			this.taskId = task.getTaskId();
+			this.task = task;
+			this.processor = processor;
+			Date dateRank = task.getJob().getDateRank();
+			this.rank = dateRank != null ? dateRank.getTime() : 0;
+			this.sequence = sequence;
+		}
+		
+		@Override
+		public int compareTo(Execution o) {
+			// Dispatch rank order of the jobs, FIFO order for tasks of the same rank.
+			int order = Long.compare(rank, o.rank);
+			if(order != 0) {
+				return order;
+			}
+			return Long.compare(sequence, o.sequence);
+		}
+	}
+	
+	/**
+	 * Executes all tasks of the same task type with a bounded concurrency.
+	 */
+	private class TaskTypeExecutor {
+		
+		private final TaskType taskType;
+		private final int concurrency;
+		private final AimdLimit limit;
+		private final Queue<Execution> queued = new PriorityBlockingQueue<>();
+		private final AtomicInteger running = new AtomicInteger();
+		private final AtomicLong executed = new AtomicLong();
+		private double baselineLatency;
+		private double recentLatency;
+		
+		TaskTypeExecutor(TaskType taskType, int concurrency){
+			this.taskType = taskType;
+			this.concurrency = concurrency;
+			this.limit = new AimdLimit(config.getTaskMinConcurrency(), concurrency, concurrency);
+		}
+		
+		private boolean tryAcquire() {
+			int current;
+			do {
+				current = running.get();
+				if(current >= limit.get()) {
+					return false;
+				}
+			} while(!running.compareAndSet(current, current+1));
+			return true;
+		}
+		
+		/**
+		 * Adapts the concurrency limit to the measured task processor latency.
+		 * The baseline latency follows latency drops immediately but latency increases only slowly,
+		 * whereas the recent latency follows all latency changes quickly.
+		 * The limit is decreased when the recent latency exceeds the tolerated multiple of the baseline latency
+		 * and increased while tasks are waiting for execution.
+		 * @param latency the task processor latency in nanoseconds
+		 */
+		private synchronized void adaptLimit(long latency) {
+			if(baselineLatency == 0 || latency < baselineLatency) {
+				baselineLatency = latency;
+			} else {
+				baselineLatency = 0.99 * baselineLatency + 0.01 * latency;
+			}
+			recentLatency = recentLatency == 0 ? latency : 0.8 * recentLatency + 0.2 * latency;
+			int previous = limit.get();
+			int adapted;
+			if(recentLatency > config.getTaskLatencyTolerance() * baselineLatency) {
+				adapted = limit.onOverload();
+			} else {
+				adapted = limit.onSuccess(!queued.isEmpty());
+			}
+			if(adapted != previous) {
+				LOG.fine(() -> format("Changed concurrency limit of task type %s from %d to %d.",taskType,previous,adapted));
+			}
+		}
+		
+		void submit(Execution execution) {
+			queued.add(execution);
+			drain();
+		}
+		
+		/**
+		 * Removes all queued tasks from this executor.
+		 * @param discarded the collection to add the IDs of the removed tasks to
+		 */
+		void discardQueued(Collection<TaskId> discarded) {
+			Execution execution;
+			while((execution = queued.poll()) != null) {
+				discarded.add(execution.taskId);
+			}
+		}
+		
+		private void drain() {
+			if(draining) {
+				// Pool is shut down. Queued tasks are checkpointed by the event loop.
+				discardQueued(abandoned);
+				return;
+			}
+			while(!queued.isEmpty() && tryAcquire()) {
+				Execution execution = queued.poll();
+				if(execution == null) {
+					running.decrementAndGet();
+					return;
+				}
+				executionStarted(execution.taskId);
+				try {
+					ThreadFactory virtualThreads = TaskExecutionPool.this.virtualThreads;
+					if(virtualThreads != null) {
+						Runnable task = contexts.createContextualProxy((Runnable) () -> run(execution), Runnable.class);
+						Thread thread = virtualThreads.newThread(task);
+						threads.put(execution.taskId, thread);
+						thread.start();
+					} else {
+						wm.execute(() -> run(execution));
+					}
+				} catch (Exception e) {
+					threads.remove(execution.taskId);
+					LOG.warning(() -> format("Cannot dispatch task %s of job %s: %s",
+											 execution.taskId,
+											 execution.jobId,
+											 e.getMessage()));
+					LOG.log(FINER,e.getMessage(),e);
+					// The task processor was not invoked. Set the task ready again instead of reporting a failure.
+					running.decrementAndGet();
+					completed(notDispatched(execution.jobId, execution.taskId));
+					executionFinished(execution.taskId);
+				}
+			}
+		}
+		
+		private void run(Execution execution) {
+			TaskCompletion completion = null;
+			long started = nanoTime();
+			try {
+				completion = execute(execution);
+				adaptLimit(nanoTime()-started);
+			} finally {
+				threads.remove(execution.taskId);
+				release();
+				if(completion != null) {
+					completed(completion);
+				}
+				executionFinished(execution.taskId);
+				drain();
+			}
+		}
+		
+		private void release() {
+			running.decrementAndGet();
+			executed.incrementAndGet();
+		}
+		
+		TaskExecutorStatus getStatus() {
+			return newTaskExecutorStatus()
+				   .withTaskType(taskType)
+				   .withConcurrency(concurrency)
+				   .withConcurrencyLimit(limit.get())
+				   .withRunningTasks(running.get())
+				   .withQueuedTasks(queued.size())
+				   .withExecutedTasks(executed.get())
+				   .build();
+		}
+	}
+	
+	@Resource
+	private ManagedExecutorService wm;
+	
+	@Resource
+	private ContextService contexts;
+	
+	@Resource
+	private TransactionSynchronizationRegistry registry;
+	
+	@Inject
+	private TaskProcessorInvoker invoker;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private JobSchedulerMetrics metrics;
+	
+	private final ConcurrentMap<TaskType,TaskTypeExecutor> executors = new ConcurrentHashMap<>();
+	private final Queue<TaskCompletion> completions = new ConcurrentLinkedQueue<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final ConcurrentMap<TaskId,Thread> threads = new ConcurrentHashMap<>();
+	private final Set<TaskId> executing = new HashSet<>();
+	private final Set<TaskId> abandoned = ConcurrentHashMap.newKeySet();
+	private volatile boolean draining;
+	private volatile ThreadFactory virtualThreads;
+	private volatile Runnable listener = () -> {};
+	
+	/**
+	 * Selects the execution mode of the task processors.
+	 * Falls back to the managed executor service if virtual threads are configured but not supported by the Java runtime.
+	 */
+	@PostConstruct
+	protected void initExecutionMode() {
+		if(!config.isVirtualThreadExecution()) {
+			return;
+		}
+		virtualThreads = newVirtualThreadFactory("leitstand-task-");
+		if(virtualThreads != null) {
+			LOG.info("Task processors are executed on virtual threads.");
+		} else {
+			LOG.warning("Virtual threads are not supported. Task processors are executed by the managed executor service.");
+		}
+	}
+	
+	/**
+	 * Interrupts all task processors running on virtual threads.
+	 */
+	@PreDestroy
+	protected void shutdown() {
+		threads.values().forEach(Thread::interrupt);
+	}
+	
+	/**
+	 * Stops executing queued tasks and waits until all running task processors have reported their outcome or the timeout has elapsed.
+	 * The outcomes of the completed tasks remain in the completion queue.
+	 * Tasks dispatched after the pool has been drained are not executed either.
+	 * @param timeout the maximum time to wait for the running task processors
+	 * @param unit the time unit of the timeout
+	 * @return the IDs of all queued tasks and all tasks whose task processors have not reported their outcome within the timeout.
+	 */
+	Set<TaskId> drain(long timeout, TimeUnit unit) {
+		draining = true;
+		Set<TaskId> pending = new HashSet<>();
+		executors.values().forEach(executor -> executor.discardQueued(pending));
+		long deadline = currentTimeMillis() + unit.toMillis(timeout);
+		synchronized(executing) {
+			try {
+				long waittime = deadline - currentTimeMillis();
+				while(!executing.isEmpty() && waittime > 0) {
+					executing.wait(waittime);
+					waittime = deadline - currentTimeMillis();
+				}
+			} catch (InterruptedException e) {
+				currentThread().interrupt();
+			}
+			pending.addAll(executing);
+		}
+		pending.addAll(abandoned);
+		LOG.info(() -> format("Task execution pool drained. %d tasks have not been completed.", pending.size()));
+		return pending;
+	}
+	
+	private void executionStarted(TaskId taskId) {
+		synchronized(executing) {
+			executing.add(taskId);
+		}
+	}
+	
+	private void executionFinished(TaskId taskId) {
+		synchronized(executing) {
+			executing.remove(taskId);
+			executing.notifyAll();
+		}
+	}
+	
+	/**
+	 * Interrupts the task processor of the given task, if the task processor is running on a virtual thread.
+	 * The outcome of an interrupted task processor is discarded, because its task is not active anymore.
+	 * @param taskId the task ID
+	 */
+	void cancel(TaskId taskId) {
+		Thread thread = threads.remove(taskId);
+		if(thread != null) {
+			LOG.fine(() -> format("Interrupt task processor of task %s.", taskId));
+			thread.interrupt();
+		}
+	}
+	
+	/**
+	 * Sets the listener to be notified when a task has been executed.
+	 * @param listener the completion listener
+	 */
+	void setCompletionListener(Runnable listener) {
+		this.listener = listener;
+	}
+	
+	/**
+	 * Dispatches a task to the pool.
+	 * The task is leased to this node and executed as soon as the current transaction has been committed.
+	 * The task is discarded if the current transaction is rolled back.
+	 * @param task the task to be executed
+	 * @param processor the task processor
+	 */
+	public void dispatch(Job_Task task, TaskProcessor processor) {
+		task.lease(config.getNodeId(), leaseExpiry(config, new Date()));
+		TaskTypeExecutor executor = executors.computeIfAbsent(task.getTaskType(),
+															  type -> new TaskTypeExecutor(type,config.getTaskConcurrency(type)));
+		Execution execution = new Execution(task,processor,sequence.incrementAndGet());
+		if(registry.getTransactionStatus() != STATUS_ACTIVE) {
+			executor.submit(execution);
+			return;
+		}
+		registry.registerInterposedSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+				// Nothing to do
+			}
+			
+			@Override
+			public void afterCompletion(int status) {
+				if(status == STATUS_COMMITTED) {
+					executor.submit(execution);
+				}
+			}
+		});
+	}
+	
+	private TaskCompletion execute(Execution execution) {
+		long started = nanoTime();
+		try {
+			TaskState state = invoker.invoke(execution.processor, execution.task);
+			return new TaskCompletion(execution.jobId, 
+									  execution.taskId, 
+									  state != null ? state : FAILED,
+									  execution.task.getStatusCode());
+		} catch (Exception e) {
+			LOG.warning(() -> format("%s task processor failed to execute task %s of job %s: %s",
+									 execution.processor.getClass().getName(),
+									 execution.taskId,
+									 execution.jobId,
+									 e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+			return new TaskCompletion(execution.jobId, 
+									  execution.taskId, 
+									  FAILED);
+		} finally {
+			metrics.taskProcessed(execution.processor.getClass().getName(), nanoTime()-started);
+		}
+	}
+	
+	private void completed(TaskCompletion completion) {
+		completions.add(completion);
+		listener.run();
+	}
+	
+	/**
+	 * Removes the next task completion from the completion queue.
+	 * @return the next task completion or <code>null</code> if the completion queue is empty.
+	 */
+	TaskCompletion pollCompletion() {
+		return completions.poll();
+	}
+	
+	/**
+	 * Returns the number of task completions awaiting to be committed.
+	 * @return the completion queue depth.
+	 */
+	int getCompletionQueueDepth() {
+		return completions.size();
+	}
+	
+	/**
+	 * Returns the status of all task executors.
+	 * @return the status of all task executors.
+	 */
+	List<TaskExecutorStatus> getStatus() {
+		return executors.values()
+						.stream()
+						.map(TaskTypeExecutor::getStatus)
+						.collect(toList());
+	}
+	
+}
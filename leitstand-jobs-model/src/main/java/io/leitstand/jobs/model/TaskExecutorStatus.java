@@ -0,0 +1,175 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.commons.model.BuilderUtil.assertNotInvalidated;
+
+import io.leitstand.jobs.service.TaskType;
+
+public class TaskExecutorStatus {
+
+    /**
+     * Creates a new task executor status.
+     * @return a builder for an immutable task executor status object.
+     */
+    public static Builder newTaskExecutorStatus() {
+        return new Builder();
+    }
+    
+    /**
+     * Builder for immutable task executor status value object.
+     */
+    public static class Builder {
+        
+        private TaskExecutorStatus status = new TaskExecutorStatus();
+        
+        /**
+         * Sets the task type processed by the executor.
+         * @param taskType the task type
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withTaskType(TaskType taskType) {
+            assertNotInvalidated(getClass(), status);
+            status.taskType = taskType;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum number of concurrently executed tasks.
+         * @param concurrency the maximum number of concurrently executed tasks
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withConcurrency(int concurrency) {
+            assertNotInvalidated(getClass(), status);
+            status.concurrency = concurrency;
+            return this;
+        }
+        
+        /**
+         * Sets the current adaptive concurrency limit.
+         * @param limit the current number of concurrently executed tasks permitted by the adaptive concurrency limit
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withConcurrencyLimit(int limit) {
+            assertNotInvalidated(getClass(), status);
+            status.concurrencyLimit = limit;
+            return this;
+        }
+        
+        /**
+         * Sets the number of tasks in progress.
+         * @param running the number of tasks in progress
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withRunningTasks(int running) {
+            assertNotInvalidated(getClass(), status);
+            status.runningTasks = running;
+            return this;
+        }
+        
+        /**
+         * Sets the number of tasks waiting for execution.
+         * @param queued the number of tasks waiting for execution
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withQueuedTasks(int queued) {
+            assertNotInvalidated(getClass(), status);
+            status.queuedTasks = queued;
+            return this;
+        }
+        
+        /**
+         * Sets the number of executed tasks.
+         * @param executed the number of executed tasks
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withExecutedTasks(long executed) {
+            assertNotInvalidated(getClass(), status);
+            status.executedTasks = executed;
+            return this;
+        }
+        
+        /**
+         * Returns an immutable task executor status.
+         * @return an immutable task executor status.
+         */
+        public TaskExecutorStatus build() {
+            try {
+                assertNotInvalidated(getClass(), status);
+                return status;
+            } finally {
+                this.status = null;
+            }
+        }
+    }
+    
+    private TaskType taskType;
+    private int concurrency;
+    private int concurrencyLimit;
+    private int runningTasks;
+    private int queuedTasks;
+    private long executedTasks;
+    
+    /**
+     * Returns the task type processed by the executor.
+     * @return the task type.
+     */
+    public TaskType getTaskType() {
+        return taskType;
+    }
+    
+    /**
+     * Returns the maximum number of concurrently executed tasks.
+     * @return the maximum number of concurrently executed tasks.
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+    
+    /**
+     * Returns the current adaptive concurrency limit, 
+     * which is decreased when the task processors slow down and increased while tasks are queued.
+     * @return the current number of concurrently executed tasks permitted by the adaptive concurrency limit.
+     */
+    public int getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+    
+    /**
+     * Returns the number of tasks in progress.
+     * @return the number of tasks in progress.
+     */
+    public int getRunningTasks() {
+        return runningTasks;
+    }
+    
+    /**
+     * Returns the number of tasks waiting for execution.
+     * @return the number of tasks waiting for execution.
+     */
+    public int getQueuedTasks() {
+        return queuedTasks;
+    }
+    
+    /**
+     * Returns the number of executed tasks.
+     * @return the number of executed tasks.
+     */
+    public long getExecutedTasks() {
+        return executedTasks;
+    }
+    
+}
@@ -15,11 +15,21 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.model.Job_Task.findActiveTasksWithoutDeadline;
 import static io.leitstand.jobs.model.Job_Task.findTaskById;
-import static io.leitstand.jobs.model.Job_Task.markExpiredTasks;
 import static io.leitstand.jobs.service.TaskState.TIMEOUT;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Logger.getLogger;
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
 
 import javax.enterprise.event.Event;
 import javax.inject.Inject;
@@ -28,9 +38,21 @@ import io.leitstand.commons.model.Repository;
 import io.leitstand.commons.model.Service;
 import io.leitstand.jobs.service.TaskId;
 
+/**
+ * Maintains the expiry dates of active tasks and marks expired tasks as timed out.
+ * <p>
+ * A task gets an expiry date when the task becomes active.
+ * The expiry date is computed from the task timeout specified by the task submission 
+ * or from the configured default timeout of the task type.
+ * The {@link TaskExpiryTimer} keeps the nearest expiry dates in memory and 
+ * asks the <code>TaskExpiryManager</code> to expire the tasks when their expiry date has passed.
+ * </p>
+ */
 @Service
 public class TaskExpiryManager {
 	
+	private static final Logger LOG = getLogger(TaskExpiryManager.class.getName());
+	
 	@Inject
 	private Event<TaskStateChangedEvent> taskEventSink;
 	
@@ -38,14 +60,80 @@ public class TaskExpiryManager {
 	@Jobs
 	private Repository repository;
 	
-	public void taskTimedout(Date expired) {
-		repository.execute(markExpiredTasks(expired));
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private TaskRetryPolicy retries;
+	
+	/**
+	 * Sets the expiry date of all active tasks without expiry date.
+	 * The expiry date is computed from the last modification of the task.
+	 * Only tasks activated before the expiry dates were introduced lack an expiry date.
+	 * @return the number of updated tasks.
+	 */
+	public int assignMissingDeadlines() {
+		List<Job_Task> tasks = repository.execute(findActiveTasksWithoutDeadline());
+		for(Job_Task task : tasks) {
+			Date activated = task.getDateModified() != null ? task.getDateModified() : new Date();
+			task.setDateExpiry(expiryDate(config, task, activated));
+		}
+		return tasks.size();
+	}
+	
+	/**
+	 * Returns the expiry dates of all active tasks that expire before the given date, including all overdue tasks.
+	 * @param to the end of the look-ahead horizon
+	 * @return the expiry dates of the active tasks ordered by expiry date.
+	 */
+	public Map<TaskId,Date> findTaskDeadlines(Date to){
+		Map<TaskId,Date> deadlines = new LinkedHashMap<>();
+		for(Job_Task task : repository.execute(Job_Task.findTaskDeadlines(to))) {
+			deadlines.put(task.getTaskId(), task.getDateExpiry());
+		}
+		return deadlines;
+	}
+
+	/**
+	 * Marks all given tasks as timed out that are still active and whose expiry date has passed.
+	 * All tasks are expired in a single transaction and a {@link TaskStateChangedEvent} is fired for every expired task.
+	 * An expired task is set ready for execution again, if the {@link TaskRetryPolicy} asks to retry timed out tasks.
+	 * @param tasks the IDs of the tasks to be expired
+	 * @return the IDs of the expired tasks.
+	 */
+	public List<TaskId> expireTasks(Collection<TaskId> tasks) {
+		Date now = new Date();
+		List<TaskId> expired = new ArrayList<>(tasks.size());
+		for(TaskId taskId : tasks) {
+			Job_Task task = repository.execute(findTaskById(taskId,PESSIMISTIC_WRITE));
+			if(task == null || !task.isActive() || task.getDateExpiry() == null || task.getDateExpiry().after(now)) {
+				// Task was removed, completed or reactivated in the meantime.
+				continue;
+			}
+			Date nextAttempt = retries.nextAttempt(task, TIMEOUT, null);
+			if(nextAttempt != null) {
+				task.retry(nextAttempt);
+			} else {
+				task.setTaskState(TIMEOUT);
+			}
+			taskEventSink.fire(new TaskStateChangedEvent(task));
+			expired.add(taskId);
+		}
+		LOG.fine(() -> format("%d of %d due tasks expired.", expired.size(), tasks.size()));
+		return expired;
 	}
 
-	public void taskTimedout(TaskId taskId){
-		Job_Task task = repository.execute(findTaskById(taskId));
-		task.setTaskState(TIMEOUT);
-		taskEventSink.fire(new TaskStateChangedEvent(task));
+	/**
+	 * Computes the expiry date of an active task.
+	 * @param config the job scheduler settings
+	 * @param task the active task
+	 * @param activated the activation date of the task
+	 * @return the expiry date of the task.
+	 */
+	static Date expiryDate(JobSchedulerConfig config, Job_Task task, Date activated) {
+		Integer timeout = task.getTimeout();
+		long seconds = timeout != null && timeout > 0 ? timeout : config.getTaskTimeout(task.getTaskType());
+		return new Date(activated.getTime() + SECONDS.toMillis(seconds));
 	}
 	
 }
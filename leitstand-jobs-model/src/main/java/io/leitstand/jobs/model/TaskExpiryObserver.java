@@ -0,0 +1,47 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.TaskExpiryManager.expiryDate;
+
+import java.util.Date;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+/**
+ * Sets the expiry date of a task as soon as the task enters the <code>ACTIVE</code> state.
+ * <p>
+ * The expiry date is set in the same transaction that changes the task state 
+ * and is removed when the task leaves the <code>ACTIVE</code> state.
+ * </p>
+ * @see TaskExpiryManager
+ */
+@Dependent
+public class TaskExpiryObserver {
+
+	@Inject
+	private JobSchedulerConfig config;
+	
+	public void taskStateChanged(@Observes TaskStateChangedEvent event) {
+		Job_Task task = event.getTask();
+		if(task.isActive() && task.getDateExpiry() == null) {
+			task.setDateExpiry(expiryDate(config, task, new Date()));
+		}
+	}
+	
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import io.leitstand.jobs.service.TaskId;
+
+/**
+ * The <code>TaskExpiryTimer</code> expires active tasks exactly when their expiry date has passed.
+ * <p>
+ * The timer keeps the expiry dates of all active tasks expiring within a look-ahead horizon.
+ * Newly activated tasks are added incrementally by means of {@link TaskStateChangedEvent}s.
+ * The timer passes all due tasks in batches to the {@link TaskExpiryManager}.
+ * </p>
+ */
+class TaskExpiryTimer extends DeadlineTimer<TaskId> {
+
+	private static final Logger LOG = Logger.getLogger(TaskExpiryTimer.class.getName());
+	
+	private final TaskExpiryManager manager;
+	
+	TaskExpiryTimer(TaskExpiryManager manager,
+					JobSchedulerConfig config){
+		super("Task expiry timer",config);
+		this.manager = manager;
+	}
+	
+	@Override
+	protected Map<TaskId,Date> findDeadlines(Date to) {
+		return manager.findTaskDeadlines(to);
+	}
+	
+	@Override
+	protected void processDue(List<TaskId> due) {
+		List<TaskId> expired = manager.expireTasks(due);
+		LOG.fine(() -> format("Expired %d of %d due tasks.",expired.size(),due.size()));
+	}
+	
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.Job_Task.findLeasedTasks;
+import static io.leitstand.jobs.model.Job_Task.findTaskById;
+import static io.leitstand.jobs.model.Job_Task.findTasksWithExpiredLease;
+import static io.leitstand.jobs.model.Job_Task.renewTaskLeases;
+import static io.leitstand.jobs.service.TaskState.READY;
+import static io.leitstand.jobs.service.TaskState.TIMEOUT;
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Logger.getLogger;
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+
+import io.leitstand.commons.model.Repository;
+import io.leitstand.commons.model.Service;
+import io.leitstand.jobs.service.TaskId;
+
+/**
+ * Maintains the leases of the tasks executed by the {@link TaskExecutionPool} and recovers the tasks of crashed cluster nodes.
+ * <p>
+ * A task is leased to the executing cluster node when the task is dispatched to the task execution pool.
+ * The lease is released when the task processor has reported its outcome.
+ * The {@link TaskLeaseMonitor} renews the leases of all tasks executed by this node periodically,
+ * which also extends the leases of long-running task processors.
+ * An expired lease indicates that the executing node has crashed.
+ * Any surviving node recovers the task: 
+ * tasks of idempotent task types are set ready for execution again, 
+ * all other tasks time out unless the {@link TaskRetryPolicy} asks to retry timed out tasks.
+ * </p>
+ */
+@Service
+public class TaskLeaseManager {
+
+	private static final Logger LOG = getLogger(TaskLeaseManager.class.getName());
+	
+	@Inject
+	private Event<TaskStateChangedEvent> taskEventSink;
+	
+	@Inject
+	@Jobs
+	private Repository repository;
+	
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private TaskRetryPolicy retries;
+	
+	/**
+	 * Renews the leases of all active tasks executed by this node.
+	 * @return the number of renewed leases.
+	 */
+	public int renewLeases() {
+		int renewed = repository.execute(renewTaskLeases(config.getNodeId(), leaseExpiry(config, new Date())));
+		LOG.finer(() -> format("Renewed %d task leases of node %s.",renewed,config.getNodeId()));
+		return renewed;
+	}
+	
+	/**
+	 * Recovers all active tasks whose lease has expired.
+	 * @return the IDs of the recovered tasks.
+	 */
+	public List<TaskId> recoverExpiredLeases() {
+		Date now = new Date();
+		List<TaskId> recovered = new ArrayList<>();
+		for(Job_Task expired : repository.execute(findTasksWithExpiredLease(now))) {
+			Job_Task task = repository.execute(findTaskById(expired.getTaskId(),PESSIMISTIC_WRITE));
+			if(task == null || !task.isActive() || task.getDateLeaseExpiry() == null || task.getDateLeaseExpiry().after(now)) {
+				// Task was completed or the lease was renewed in the meantime.
+				continue;
+			}
+			recover(task);
+			recovered.add(task.getTaskId());
+		}
+		return recovered;
+	}
+	
+	/**
+	 * Recovers all active tasks leased by a former instance of this node.
+	 * Invoked once on startup, when no task processor is running on this node.
+	 * @return the IDs of the recovered tasks.
+	 */
+	public List<TaskId> recoverLeasedTasks() {
+		List<TaskId> recovered = new ArrayList<>();
+		for(Job_Task task : repository.execute(findLeasedTasks(config.getNodeId()))) {
+			recover(task);
+			recovered.add(task.getTaskId());
+		}
+		return recovered;
+	}
+	
+	private void recover(Job_Task task) {
+		String executor = task.getExecutor();
+		if(config.isTaskIdempotent(task.getTaskType())) {
+			task.setTaskState(READY);
+		} else {
+			Date nextAttempt = retries.nextAttempt(task, TIMEOUT, null);
+			if(nextAttempt != null) {
+				task.retry(nextAttempt);
+			} else {
+				task.setTaskState(TIMEOUT);
+			}
+		}
+		LOG.info(() -> format("Recovered %s task (%s) of %s job (%s) leased by node %s. Task state: %s",
+							  task.getTaskName(),
+							  task.getTaskId(),
+							  task.getJobName(),
+							  task.getJobId(),
+							  executor,
+							  task.getTaskState()));
+		taskEventSink.fire(new TaskStateChangedEvent(task));
+	}
+	
+	/**
+	 * Computes the lease expiry date of a task.
+	 * @param config the job scheduler settings
+	 * @param now the current date
+	 * @return the lease expiry date.
+	 */
+	static Date leaseExpiry(JobSchedulerConfig config, Date now) {
+		return new Date(now.getTime() + SECONDS.toMillis(config.getTaskLeaseDuration()));
+	}
+	
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+import static java.lang.Thread.currentThread;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.logging.Level.FINER;
+
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Logger;
+
+import io.leitstand.jobs.service.TaskId;
+
+/**
+ * The <code>TaskLeaseMonitor</code> sends the task lease heartbeat of this node and detects expired task leases of crashed nodes.
+ * <p>
+ * The monitor renews the leases of all tasks executed by this node every third of the task lease duration
+ * and asks the {@link TaskLeaseManager} to recover all tasks whose lease has expired.
+ * Hence, the tasks of a crashed node are recovered at most four thirds of the lease duration after the crash.
+ * </p>
+ */
+class TaskLeaseMonitor implements Runnable {
+
+	private static final Logger LOG = Logger.getLogger(TaskLeaseMonitor.class.getName());
+	
+	private final TaskLeaseManager manager;
+	private final JobSchedulerConfig config;
+	private final Semaphore signal = new Semaphore(0);
+	private volatile boolean active;
+	
+	TaskLeaseMonitor(TaskLeaseManager manager,
+					 JobSchedulerConfig config){
+		this.manager = manager;
+		this.config = config;
+		this.active = true;
+	}
+	
+	/**
+	 * Stops the monitor.
+	 */
+	void stop() {
+		active = false;
+		signal.release();
+	}
+	
+	@Override
+	public void run() {
+		LOG.info("Task lease monitor started.");
+		while(active) {
+			try {
+				manager.renewLeases();
+				List<TaskId> recovered = manager.recoverExpiredLeases();
+				if(!recovered.isEmpty()) {
+					LOG.info(() -> format("Recovered %d tasks with expired lease.",recovered.size()));
+				}
+			} catch (Exception e) {
+				// Retry with the next heartbeat.
+				LOG.warning(() -> format("Task lease monitor failure: %s",e.getMessage()));
+				LOG.log(FINER,e.getMessage(),e);
+			}
+			try {
+				signal.tryAcquire(SECONDS.toMillis(config.getTaskLeaseDuration())/3, MILLISECONDS);
+			} catch (InterruptedException e) {
+				currentThread().interrupt();
+				active = false;
+			}
+		}
+		LOG.info("Task lease monitor stopped.");
+	}
+	
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import javax.enterprise.context.Dependent;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+
+/**
+ * Releases the concurrency permits of a task as soon as the task leaves the <code>ACTIVE</code> state.
+ * <p>
+ * The permits are released in the same transaction that changes the task state.
+ * </p>
+ * @see JobTaskPermits
+ */
+@Dependent
+public class TaskPermitObserver {
+
+	@Inject
+	private JobTaskPermits permits;
+	
+	public void taskStateChanged(@Observes TaskStateChangedEvent event) {
+		Job_Task task = event.getTask();
+		if(task.getPermits() != null && !task.isActive()) {
+			permits.release(task);
+		}
+	}
+	
+}
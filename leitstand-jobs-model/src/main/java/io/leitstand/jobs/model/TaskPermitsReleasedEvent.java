@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import io.leitstand.jobs.service.TaskId;
+
+/**
+ * Signals that a task has released its concurrency permits.
+ * <p>
+ * The {@link JobEventLoop} observes this event to notify the event loops of all cluster nodes, 
+ * because tasks waiting for the released permits might be eligible for execution now.
+ * </p>
+ */
+public class TaskPermitsReleasedEvent {
+
+	private final TaskId taskId;
+	
+	public TaskPermitsReleasedEvent(TaskId taskId) {
+		this.taskId = taskId;
+	}
+	
+	/**
+	 * Returns the ID of the task that released its permits.
+	 * @return the task ID.
+	 */
+	public TaskId getTaskId() {
+		return taskId;
+	}
+	
+}
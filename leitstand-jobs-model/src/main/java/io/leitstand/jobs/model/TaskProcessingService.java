@@ -16,11 +16,14 @@
 package io.leitstand.jobs.model;
 
 import static io.leitstand.commons.model.ObjectUtil.isDifferent;
+import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.COMPLETED;
 import static io.leitstand.jobs.service.TaskState.CONFIRM;
+import static io.leitstand.jobs.service.TaskState.READY;
 import static java.lang.String.format;
 import static java.util.logging.Logger.getLogger;
 
+import java.util.Date;
 import java.util.logging.Logger;
 
 import javax.enterprise.context.Dependent;
@@ -36,13 +39,40 @@ public class TaskProcessingService  {
     
 	private TaskProcessorDiscoveryService processors;
 	private Event<TaskStateChangedEvent> sink;
+	private TaskExecutionPool pool;
+	private TaskRetryPolicy retries;
 
-	
 	@Inject
 	public TaskProcessingService(TaskProcessorDiscoveryService processors, 
-	                             Event<TaskStateChangedEvent> sink) {
+	                             Event<TaskStateChangedEvent> sink,
+	                             TaskExecutionPool pool,
+	                             TaskRetryPolicy retries) {
 		this.processors = processors;
 		this.sink = sink;
+		this.pool = pool;
+		this.retries = retries;
+	}
+	
+	/**
+	 * Creates a <code>TaskProcessingService</code> that does not retry failed tasks.
+	 * @param processors the task processor discovery service
+	 * @param sink the task state change event sink
+	 * @param pool the task execution pool or <code>null</code> to execute all task processors synchronously
+	 */
+	public TaskProcessingService(TaskProcessorDiscoveryService processors, 
+	                             Event<TaskStateChangedEvent> sink,
+	                             TaskExecutionPool pool) {
+		this(processors,sink,pool,null);
+	}
+	
+	/**
+	 * Creates a <code>TaskProcessingService</code> that executes all task processors synchronously.
+	 * @param processors the task processor discovery service
+	 * @param sink the task state change event sink
+	 */
+	public TaskProcessingService(TaskProcessorDiscoveryService processors, 
+	                             Event<TaskStateChangedEvent> sink) {
+		this(processors,sink,null);
 	}
 	
 	public void executeTask(Job_Task task){
@@ -59,9 +89,18 @@ public class TaskProcessingService  {
                                       task.getJobName(), 
                                       task.getJobId(), 
                                       task.getJobApplication()));
-
-    			TaskState newState = processor.execute(task);
-    			task.setTaskState(newState);
+                if(pool != null) {
+                    // Mark the task as active and let the pool execute the task
+                    // once the task state has been committed.
+                    // The task outcome is reported by means of the completion queue.
+                    task.setTaskState(ACTIVE);
+                    pool.dispatch(task, processor);
+                } else {
+                    TaskState newState = processor.execute(task);
+                    if(!retry(task, newState, task.getStatusCode())) {
+                        task.setTaskState(newState);
+                    }
+                }
     		} else {
     	        // An executable task with no processor is either
     	        // - a fork task, that has to be completed in order to fork the task flow into multiple branches or
@@ -76,12 +115,7 @@ public class TaskProcessingService  {
                                       task.getJobApplication()));
     		    task.setTaskState(COMPLETED);
     		}
-    		
-            if(task.isFailed()) {
-                task.getJob().failed();
-            } else if(task.isSucceeded()) {
-                task.getJob().completed();
-            }
+    		updateJobState(task);
 		} finally {
 		    if(isDifferent(state,task.getTaskState())){
 	            sink.fire(new TaskStateChangedEvent(task));
@@ -89,6 +123,95 @@ public class TaskProcessingService  {
 		}
 	}
 	
+	/**
+	 * Applies the outcome of a task processor executed by the {@link TaskExecutionPool}.
+	 * The outcome is discarded if the task was terminated in the meantime, e.g. because the task has timed out.
+	 * @param task the executed task
+	 * @param newState the task state reported by the task processor
+	 */
+	public void taskProcessed(Job_Task task, TaskState newState) {
+		taskProcessed(task, newState, null);
+	}
+	
+	/**
+	 * Applies the outcome of a task processor executed by the {@link TaskExecutionPool}.
+	 * The outcome is discarded if the task was terminated in the meantime, e.g. because the task has timed out.
+	 * A failed task is set ready for execution again, if the {@link TaskRetryPolicy} asks to retry the task.
+	 * @param task the executed task
+	 * @param newState the task state reported by the task processor
+	 * @param statusCode the status code reported by the task processor or <code>null</code> if no status code was reported
+	 */
+	public void taskProcessed(Job_Task task, TaskState newState, Integer statusCode) {
+		TaskState state = task.getTaskState();
+		try {
+		    if(task.isTerminated()) {
+		        return;
+		    }
+		    // The task processor has reported its outcome.
+		    task.releaseLease();
+		    if(retry(task, newState, statusCode)) {
+		    	return;
+		    }
+		    task.setTaskState(newState);
+		    updateJobState(task);
+		} finally {
+		    if(isDifferent(state,task.getTaskState())){
+	            sink.fire(new TaskStateChangedEvent(task));
+		    }
+		}
+	}
+	
+	private boolean retry(Job_Task task, TaskState newState, Integer statusCode) {
+		if(retries == null) {
+			return false;
+		}
+		Date nextAttempt = retries.nextAttempt(task, newState, statusCode);
+		if(nextAttempt == null) {
+			return false;
+		}
+		LOG.fine(() -> format("%s task (%s) of %s job (%s) reported %s (status code: %s). Retry attempt %d at %s.",
+							  task.getTaskName(),
+							  task.getTaskId(),
+							  task.getJobName(),
+							  task.getJobId(),
+							  newState,
+							  statusCode,
+							  task.getAttempts()+2,
+							  nextAttempt));
+		task.retry(nextAttempt);
+		return true;
+	}
+	
+	private static void updateJobState(Job_Task task) {
+        if(task.isFailed()) {
+            task.getJob().failed();
+        } else if(task.isSucceeded()) {
+            task.getJob().completed();
+        }
+	}
+	
+	/**
+	 * Sets an active task ready for execution again, 
+	 * because the task processor has not reported the outcome before the task execution pool was shut down
+	 * or the task could not be dispatched to a task processor thread.
+	 * Setting the task ready releases the task lease and the task permits.
+	 * The task is executed again by the next event loop iteration of any cluster node.
+	 * @param task the interrupted task
+	 */
+	public void taskInterrupted(Job_Task task) {
+		if(!task.isActive()) {
+			// Task was completed, cancelled or timed out in the meantime.
+			return;
+		}
+		LOG.fine(() -> format("Set %s task (%s) of %s job (%s) ready for execution, because the task processor was interrupted.",
+							  task.getTaskName(),
+							  task.getTaskId(),
+							  task.getJobName(),
+							  task.getJobId()));
+		task.setTaskState(READY);
+		sink.fire(new TaskStateChangedEvent(task));
+	}
+	
 	public void updateTask(Job_Task task, TaskState state) {
        try {
             if(task.isTerminated()) {
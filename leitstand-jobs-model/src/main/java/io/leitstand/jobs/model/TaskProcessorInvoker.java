@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.control.ActivateRequestContext;
+
+import io.leitstand.jobs.service.TaskState;
+
+/**
+ * Invokes a {@link TaskProcessor} outside of the event loop transaction.
+ * <p>
+ * A request context is activated for every invocation, 
+ * because task processors can depend on request scoped beans like the {@link InventoryClient}.
+ * </p>
+ */
+@ApplicationScoped
+public class TaskProcessorInvoker {
+
+	/**
+	 * Executes the given task by the given task processor.
+	 * @param processor the task processor
+	 * @param task the task to be executed
+	 * @return the task state reported by the task processor.
+	 */
+	@ActivateRequestContext
+	public TaskState invoke(TaskProcessor processor, Job_Task task) {
+		return processor.execute(task);
+	}
+	
+}
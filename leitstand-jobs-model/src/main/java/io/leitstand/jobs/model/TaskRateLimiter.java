@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.TokenBucket.UNLIMITED;
+import static java.lang.System.nanoTime;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.leitstand.jobs.service.JobApplication;
+import io.leitstand.jobs.service.TaskType;
+
+/**
+ * Limits the rate of task starts per job application and per task type.
+ * <p>
+ * Every limited job application and task type has a {@link TokenBucket}.
+ * A task takes a token from the bucket of its job application and from the bucket of its task type before it gets activated.
+ * A task remains ready for execution if a token is not available and is started by a later event loop iteration.
+ * The rate limits apply per cluster node.
+ * </p>
+ */
+@ApplicationScoped
+public class TaskRateLimiter {
+
+	@Inject
+	private JobSchedulerConfig config;
+	
+	@Inject
+	private JobSchedulerMetrics metrics;
+	
+	private final ConcurrentMap<JobApplication,TokenBucket> applications = new ConcurrentHashMap<>();
+	private final ConcurrentMap<TaskType,TokenBucket> taskTypes = new ConcurrentHashMap<>();
+	private volatile long throttledUntil = nanoTime();
+	
+	public TaskRateLimiter() {
+		// CDI
+	}
+	
+	TaskRateLimiter(JobSchedulerConfig config, JobSchedulerMetrics metrics){
+		this.config = config;
+		this.metrics = metrics;
+	}
+	
+	/**
+	 * Takes a token for the given task from the bucket of the job application and from the bucket of the task type.
+	 * No token is taken if a token is not available in one of the buckets.
+	 * @param task the task to be started
+	 * @return <code>true</code> if the task can be started, <code>false</code> if the task start is throttled.
+	 */
+	public boolean tryAcquire(Job_Task task) {
+		long now = nanoTime();
+		TokenBucket application = applicationBucket(task);
+		if(!application.tryAcquire(now)) {
+			throttled("application:"+task.getJob().getJobApplication(), application, now);
+			return false;
+		}
+		TokenBucket taskType = taskTypeBucket(task);
+		if(!taskType.tryAcquire(now)) {
+			application.release();
+			throttled("task_type:"+task.getTaskType(), taskType, now);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Returns the tokens taken for a task that could not be started.
+	 * @param task the task
+	 */
+	public void release(Job_Task task) {
+		applicationBucket(task).release();
+		taskTypeBucket(task).release();
+	}
+	
+	/**
+	 * Returns whether task starts have been throttled and the throttled tasks are not startable yet.
+	 * @return <code>true</code> if throttled tasks are waiting for tokens, <code>false</code> otherwise.
+	 */
+	public boolean isThrottling() {
+		return throttledUntil - nanoTime() > 0;
+	}
+	
+	private void throttled(String bucketName, TokenBucket bucket, long now) {
+		metrics.taskThrottled(bucketName);
+		long until = now + bucket.getDelay(now);
+		if(until - throttledUntil > 0) {
+			throttledUntil = until;
+		}
+	}
+	
+	private TokenBucket applicationBucket(Job_Task task) {
+		Job job = task.getJob();
+		JobApplication application = job != null ? job.getJobApplication() : null;
+		if(application == null) {
+			return UNLIMITED;
+		}
+		TokenBucket bucket = applications.get(application);
+		if(bucket == null) {
+			bucket = applications.computeIfAbsent(application, a -> newBucket(config.getApplicationRate(a)));
+		}
+		return bucket;
+	}
+	
+	private TokenBucket taskTypeBucket(Job_Task task) {
+		TaskType type = task.getTaskType();
+		if(type == null) {
+			return UNLIMITED;
+		}
+		TokenBucket bucket = taskTypes.get(type);
+		if(bucket == null) {
+			bucket = taskTypes.computeIfAbsent(type, t -> newBucket(config.getTaskTypeRate(t)));
+		}
+		return bucket;
+	}
+	
+	private TokenBucket newBucket(double rate) {
+		if(rate <= 0) {
+			return UNLIMITED;
+		}
+		return new TokenBucket(rate, rate * config.getRateBurst(), nanoTime());
+	}
+	
+}
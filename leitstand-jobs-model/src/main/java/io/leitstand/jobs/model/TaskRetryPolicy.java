@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import io.leitstand.jobs.service.TaskState;
+
+/**
+ * Decides whether a task that failed for a transient reason is retried and computes the date of the next attempt.
+ * <p>
+ * A task is retried if the reported task state is a configured retry state,
+ * the task has not exhausted the maximum number of attempts of its task type,
+ * and the task processor either reported no status code or a configured retry status code.
+ * The retry delay starts with the configured backoff and is doubled for every further attempt up to the maximum backoff.
+ * The delay is randomly shortened by the configured jitter, so that tasks that failed together are not retried together.
+ * </p>
+ * <p>
+ * A retried task is set ready for execution again and records the number of attempts and the date of the next attempt.
+ * The job event loop does not execute the task before the next attempt is due.
+ * Hence, a retry neither fails the job nor blocks the event loop.
+ * </p>
+ */
+@ApplicationScoped
+public class TaskRetryPolicy {
+
+	@Inject
+	private JobSchedulerConfig config;
+	
+	protected TaskRetryPolicy() {
+		// CDI
+	}
+	
+	TaskRetryPolicy(JobSchedulerConfig config){
+		this.config = config;
+	}
+	
+	/**
+	 * Returns the date of the next attempt to execute the given task, if the task shall be retried.
+	 * @param task the executed task
+	 * @param state the task state reported for the task
+	 * @param statusCode the status code reported by the task processor or <code>null</code> if no status code was reported
+	 * @return the date of the next attempt or <code>null</code> if the task shall not be retried.
+	 */
+	public Date nextAttempt(Job_Task task, TaskState state, Integer statusCode) {
+		if(state == null || !config.getTaskRetryStates(task.getTaskType()).contains(state)) {
+			return null;
+		}
+		int attempt = task.getAttempts()+1;
+		if(attempt >= config.getTaskMaxAttempts(task.getTaskType())) {
+			return null;
+		}
+		if(statusCode != null) {
+			Set<Integer> retryCodes = config.getTaskRetryStatusCodes(task.getTaskType());
+			if(!retryCodes.contains(statusCode)) {
+				return null;
+			}
+		}
+		return new Date(System.currentTimeMillis() + backoff(attempt, task));
+	}
+	
+	private long backoff(int attempt, Job_Task task) {
+		long maxBackoff = SECONDS.toMillis(config.getTaskRetryMaxBackoff());
+		long backoff = SECONDS.toMillis(config.getTaskRetryBackoff(task.getTaskType()));
+		// Double the backoff for every attempt without overflowing.
+		for(int i = 1; i < attempt && backoff < maxBackoff; i++) {
+			backoff *= 2;
+		}
+		backoff = Math.min(backoff, maxBackoff);
+		double jitter = config.getTaskRetryJitter();
+		if(jitter > 0) {
+			backoff -= (long) (backoff * jitter * ThreadLocalRandom.current().nextDouble());
+		}
+		return backoff;
+	}
+	
+}
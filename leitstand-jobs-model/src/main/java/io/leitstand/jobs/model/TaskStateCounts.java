@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+import io.leitstand.jobs.service.TaskState;
+
+/**
+ * The number of tasks of a job in each task state.
+ * <p>
+ * The counters are stored in the <code>job</code> table and updated whenever a task of the job changes its state,
+ * which allows to check the job completion and to report the job progress without reading all tasks of the job.
+ * All counters are <code>NULL</code> for jobs stored before the counters were introduced.
+ * </p>
+ * @see Job#resetTaskCounts()
+ */
+@Embeddable
+public class TaskStateCounts implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	@Column(name="tasks_new")
+	private int newCount;
+	
+	@Column(name="tasks_ready")
+	private int readyCount;
+	
+	@Column(name="tasks_active")
+	private int activeCount;
+	
+	@Column(name="tasks_confirm")
+	private int confirmCount;
+	
+	@Column(name="tasks_completed")
+	private int completedCount;
+	
+	@Column(name="tasks_failed")
+	private int failedCount;
+	
+	@Column(name="tasks_rejected")
+	private int rejectedCount;
+	
+	@Column(name="tasks_timeout")
+	private int timeoutCount;
+	
+	@Column(name="tasks_cancelled")
+	private int cancelledCount;
+	
+	@Column(name="tasks_skipped")
+	private int skippedCount;
+	
+	/**
+	 * Returns the number of tasks in the given state.
+	 * @param state the task state
+	 * @return the number of tasks in the given state.
+	 */
+	public int get(TaskState state) {
+		if(state == null) {
+			return 0;
+		}
+		switch(state) {
+			case NEW: return newCount;
+			case READY: return readyCount;
+			case ACTIVE: return activeCount;
+			case CONFIRM: return confirmCount;
+			case COMPLETED: return completedCount;
+			case FAILED: return failedCount;
+			case REJECTED: return rejectedCount;
+			case TIMEOUT: return timeoutCount;
+			case CANCELLED: return cancelledCount;
+			case SKIPPED: return skippedCount;
+			default: return 0;
+		}
+	}
+	
+	/**
+	 * Returns the total number of tasks.
+	 * @return the total number of tasks.
+	 */
+	public int getTotal() {
+		int total = 0;
+		for(TaskState state : TaskState.values()) {
+			total += get(state);
+		}
+		return total;
+	}
+	
+	/**
+	 * Adds the given delta to the number of tasks in the given state. 
+	 * Tasks without state are not counted.
+	 * @param state the task state
+	 * @param delta the delta to be added
+	 */
+	void add(TaskState state, int delta) {
+		if(state == null) {
+			return;
+		}
+		switch(state) {
+			case NEW: newCount = Math.max(0, newCount + delta); break;
+			case READY: readyCount = Math.max(0, readyCount + delta); break;
+			case ACTIVE: activeCount = Math.max(0, activeCount + delta); break;
+			case CONFIRM: confirmCount = Math.max(0, confirmCount + delta); break;
+			case COMPLETED: completedCount = Math.max(0, completedCount + delta); break;
+			case FAILED: failedCount = Math.max(0, failedCount + delta); break;
+			case REJECTED: rejectedCount = Math.max(0, rejectedCount + delta); break;
+			case TIMEOUT: timeoutCount = Math.max(0, timeoutCount + delta); break;
+			case CANCELLED: cancelledCount = Math.max(0, cancelledCount + delta); break;
+			case SKIPPED: skippedCount = Math.max(0, skippedCount + delta); break;
+			default: break;
+		}
+	}
+	
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.commons.model.BuilderUtil.assertNotInvalidated;
+
+/**
+ * Summary of the latencies of a measured job scheduler operation.
+ */
+public class TimerStatus {
+
+    /**
+     * Creates a new timer status.
+     * @return a builder for an immutable timer status object.
+     */
+    public static Builder newTimerStatus() {
+        return new Builder();
+    }
+    
+    /**
+     * Builder for immutable timer status value object.
+     */
+    public static class Builder {
+        
+        private TimerStatus status = new TimerStatus();
+        
+        /**
+         * Sets the name of the measured operation.
+         * @param name the operation name
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withName(String name) {
+            assertNotInvalidated(getClass(), status);
+            status.name = name;
+            return this;
+        }
+        
+        /**
+         * Sets the number of measured operations.
+         * @param count the number of measured operations
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withCount(long count) {
+            assertNotInvalidated(getClass(), status);
+            status.count = count;
+            return this;
+        }
+        
+        /**
+         * Sets the total time spent in the measured operation in milliseconds.
+         * @param millis the total time in milliseconds
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withTotalMillis(long millis) {
+            assertNotInvalidated(getClass(), status);
+            status.totalMillis = millis;
+            return this;
+        }
+        
+        /**
+         * Sets the mean latency of the measured operation in milliseconds.
+         * @param millis the mean latency in milliseconds
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withMeanMillis(long millis) {
+            assertNotInvalidated(getClass(), status);
+            status.meanMillis = millis;
+            return this;
+        }
+        
+        /**
+         * Sets the maximum latency of the measured operation in milliseconds.
+         * @param millis the maximum latency in milliseconds
+         * @return a reference to this builder to continue object creation
+         */
+        public Builder withMaxMillis(long millis) {
+            assertNotInvalidated(getClass(), status);
+            status.maxMillis = millis;
+            return this;
+        }
+        
+        /**
+         * Returns an immutable timer status.
+         * @return an immutable timer status.
+         */
+        public TimerStatus build() {
+            try {
+                assertNotInvalidated(getClass(), status);
+                return status;
+            } finally {
+                this.status = null;
+            }
+        }
+    }
+    
+    private String name;
+    private long count;
+    private long totalMillis;
+    private long meanMillis;
+    private long maxMillis;
+    
+    /**
+     * Returns the name of the measured operation.
+     * @return the operation name.
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Returns the number of measured operations.
+     * @return the number of measured operations.
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * Returns the total time spent in the measured operation in milliseconds.
+     * @return the total time in milliseconds.
+     */
+    public long getTotalMillis() {
+        return totalMillis;
+    }
+    
+    /**
+     * Returns the mean latency of the measured operation in milliseconds.
+     * @return the mean latency in milliseconds.
+     */
+    public long getMeanMillis() {
+        return meanMillis;
+    }
+    
+    /**
+     * Returns the maximum latency of the measured operation in milliseconds.
+     * @return the maximum latency in milliseconds.
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+    
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hierarchical timer wheel.
+ * <p>
+ * The timer wheel consists of four levels with 64 slots each. 
+ * A slot of the first level spans a single tick, a slot of the second level spans 64 ticks, and so forth.
+ * A timer is added to the slot of the lowest level that covers the timer deadline 
+ * and is moved to the next lower level when the wheel reaches the slot of the timer.
+ * Adding and removing a timer is done in constant time, 
+ * and advancing the wheel by one tick only inspects the slots of the current tick.
+ * </p>
+ * <p>
+ * A timer expires with the first tick <em>after</em> its deadline, 
+ * i.e. a timer never expires before its deadline has passed.
+ * Timers with a deadline beyond the range of the wheel are rejected.
+ * </p>
+ * <p>
+ * A <code>TimerWheel</code> is not thread-safe.
+ * </p>
+ * @param <T> the timer type
+ */
+final class TimerWheel<T> {
+
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+	
+	private final long tickMillis;
+	private final List<List<Set<T>>> levels;
+	private final Map<T,Long> deadlines;
+	private final Map<T,Set<T>> slots;
+	private long currentTick;
+	
+	/**
+	 * Creates a timer wheel.
+	 * @param tickMillis the tick duration in milliseconds
+	 * @param nowMillis the current time in milliseconds
+	 */
+	TimerWheel(long tickMillis, long nowMillis){
+		if(tickMillis <= 0) {
+			throw new IllegalArgumentException("Tick duration must be positive");
+		}
+		this.tickMillis = tickMillis;
+		this.currentTick = nowMillis / tickMillis;
+		this.deadlines = new HashMap<>();
+		this.slots = new HashMap<>();
+		this.levels = new ArrayList<>(LEVELS);
+		for(int level = 0; level < LEVELS; level++) {
+			List<Set<T>> wheel = new ArrayList<>(SLOTS);
+			for(int slot = 0; slot < SLOTS; slot++) {
+				wheel.add(new LinkedHashSet<>());
+			}
+			levels.add(wheel);
+		}
+	}
+	
+	/**
+	 * Returns the maximum time span in milliseconds a timer can be scheduled ahead.
+	 * @return the range of the timer wheel in milliseconds.
+	 */
+	long getRangeMillis() {
+		return (1L << (SLOT_BITS * LEVELS)) * tickMillis;
+	}
+	
+	/**
+	 * Schedules a timer. An existing timer for the same item is replaced.
+	 * A timer with a deadline in the past expires with the next tick.
+	 * @param item the timer item
+	 * @param deadlineMillis the deadline in milliseconds
+	 * @return <code>true</code> if the timer has been scheduled, 
+	 * <code>false</code> if the deadline exceeds the range of the timer wheel.
+	 */
+	boolean schedule(T item, long deadlineMillis) {
+		cancel(item);
+		long tick = Math.max(deadlineMillis / tickMillis + 1, currentTick + 1);
+		if(tick - currentTick >= (1L << (SLOT_BITS * LEVELS))) {
+			return false;
+		}
+		deadlines.put(item, tick);
+		place(item,tick);
+		return true;
+	}
+	
+	/**
+	 * Cancels a timer.
+	 * @param item the timer item
+	 * @return <code>true</code> if a timer has been cancelled, <code>false</code> if no timer exists for the item.
+	 */
+	boolean cancel(T item) {
+		Set<T> slot = slots.remove(item);
+		if(slot == null) {
+			return false;
+		}
+		slot.remove(item);
+		deadlines.remove(item);
+		return true;
+	}
+	
+	/**
+	 * Advances the timer wheel to the given time.
+	 * @param nowMillis the current time in milliseconds
+	 * @return all expired timer items in order of their deadlines.
+	 */
+	List<T> advance(long nowMillis) {
+		long targetTick = nowMillis / tickMillis;
+		List<T> expired = new ArrayList<>();
+		while(currentTick < targetTick) {
+			if(deadlines.isEmpty()) {
+				// Nothing to expire. Skip all remaining ticks at once.
+				currentTick = targetTick;
+				break;
+			}
+			currentTick++;
+			cascade();
+			Set<T> slot = levels.get(0).get((int)(currentTick & SLOT_MASK));
+			for(T item : slot) {
+				deadlines.remove(item);
+				slots.remove(item);
+				expired.add(item);
+			}
+			slot.clear();
+		}
+		return expired;
+	}
+	
+	/**
+	 * Returns the number of scheduled timers.
+	 * @return the number of scheduled timers.
+	 */
+	int size() {
+		return deadlines.size();
+	}
+	
+	/**
+	 * Returns whether no timers are scheduled.
+	 * @return <code>true</code> if no timers are scheduled, <code>false</code> otherwise.
+	 */
+	boolean isEmpty() {
+		return deadlines.isEmpty();
+	}
+	
+	private void cascade() {
+		for(int level = 1; level < LEVELS; level++) {
+			int shift = SLOT_BITS * level;
+			if((currentTick & ((1L << shift) - 1)) != 0) {
+				// Higher levels can only cascade if this level has completed a full turn.
+				return;
+			}
+			Set<T> slot = levels.get(level).get((int)((currentTick >>> shift) & SLOT_MASK));
+			List<T> items = new ArrayList<>(slot);
+			slot.clear();
+			for(T item : items) {
+				place(item,deadlines.get(item));
+			}
+		}
+	}
+	
+	private void place(T item, long tick) {
+		long delta = tick - currentTick;
+		int level = 0;
+		while(level < LEVELS - 1 && delta >= (1L << (SLOT_BITS * (level + 1)))) {
+			level++;
+		}
+		Set<T> slot = levels.get(level).get((int)((tick >>> (SLOT_BITS * level)) & SLOT_MASK));
+		slot.add(item);
+		slots.put(item, slot);
+	}
+	
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket.
+ * <p>
+ * The bucket is refilled continuously with the configured rate up to the configured capacity.
+ * Instead of maintaining a token count, the bucket tracks the theoretical arrival time of the next token,
+ * which is advanced by one refill interval per acquired token by a single compare-and-set operation.
+ * A token is available if the theoretical arrival time does not exceed the current time by more than the bucket capacity.
+ * </p>
+ */
+final class TokenBucket {
+
+	/** A bucket that never runs out of tokens. */
+	static final TokenBucket UNLIMITED = new TokenBucket(0,0,0);
+	
+	private final long interval;
+	private final long capacity;
+	private final AtomicLong next;
+	
+	/**
+	 * Creates a full token bucket.
+	 * @param rate the number of tokens added per second or <code>0</code> for an unlimited number of tokens
+	 * @param capacity the maximum number of tokens
+	 * @param now the current time in nanoseconds
+	 */
+	TokenBucket(double rate, double capacity, long now){
+		this.interval = rate > 0 ? Math.max(1, (long) (SECONDS.toNanos(1) / rate)) : 0;
+		this.capacity = (long) (Math.max(1, capacity) * interval);
+		this.next = new AtomicLong(now);
+	}
+	
+	/**
+	 * Takes a token from the bucket.
+	 * @param now the current time in nanoseconds
+	 * @return <code>true</code> if a token was available, <code>false</code> otherwise.
+	 */
+	boolean tryAcquire(long now) {
+		if(interval == 0) {
+			return true;
+		}
+		for(;;) {
+			long current = next.get();
+			long updated = Math.max(current, now) + interval;
+			if(updated - now > capacity) {
+				return false;
+			}
+			if(next.compareAndSet(current, updated)) {
+				return true;
+			}
+		}
+	}
+	
+	/**
+	 * Returns a token to the bucket.
+	 */
+	void release() {
+		if(interval == 0) {
+			return;
+		}
+		next.addAndGet(-interval);
+	}
+	
+	/**
+	 * Returns the time until the next token becomes available.
+	 * @param now the current time in nanoseconds
+	 * @return the time in nanoseconds until the next token becomes available or <code>0</code> if a token is available.
+	 */
+	long getDelay(long now) {
+		if(interval == 0) {
+			return 0;
+		}
+		return Math.max(0, next.get() + interval - capacity - now);
+	}
+	
+}
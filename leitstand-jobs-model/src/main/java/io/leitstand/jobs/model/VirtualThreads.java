@@ -0,0 +1,65 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.lang.String.format;
+import static java.util.logging.Level.FINER;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.logging.Logger;
+
+/**
+ * Creates virtual threads on Java runtimes supporting virtual threads.
+ * <p>
+ * Virtual threads are created by reflection, 
+ * because the job scheduler must also run on Java runtimes without virtual thread support.
+ * </p>
+ */
+final class VirtualThreads {
+	
+	private static final Logger LOG = Logger.getLogger(VirtualThreads.class.getName());
+
+	/**
+	 * Returns a factory for virtual threads.
+	 * @param prefix the name prefix of the created threads
+	 * @return the virtual thread factory or <code>null</code> if the Java runtime does not support virtual threads.
+	 */
+	static ThreadFactory newVirtualThreadFactory(String prefix) {
+		try {
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Method name = builderType.getMethod("name", String.class, long.class);
+			Method factory = builderType.getMethod("factory");
+			Object builder = ofVirtual.invoke(null);
+			builder = name.invoke(builder, prefix, 0L);
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			LOG.fine(() -> format("Virtual threads are not supported by Java %s.",
+								  System.getProperty("java.version")));
+			return null;
+		} catch (Exception e) {
+			LOG.warning(() -> format("Cannot create virtual thread factory: %s",e.getMessage()));
+			LOG.log(FINER,e.getMessage(),e);
+			return null;
+		}
+	}
+	
+	private VirtualThreads() {
+		// No instances allowed
+	}
+	
+}
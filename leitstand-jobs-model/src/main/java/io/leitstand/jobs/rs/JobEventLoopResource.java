@@ -10,6 +10,7 @@ import javax.inject.Inject;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
 
 import io.leitstand.commons.messages.Messages;
 import io.leitstand.commons.rs.Resource;
@@ -49,4 +50,11 @@ public class JobEventLoopResource {
     public JobEventLoopStatus getStatus() {
         return service.getStatus();
     }
+    
+    @GET
+    @Path("/_metrics")
+    @Produces("text/plain; version=0.0.4")
+    public String getMetrics() {
+        return service.getMetrics();
+    }
 }
@@ -15,9 +15,15 @@
  */
 package io.leitstand.jobs.rs;
 
+import static io.leitstand.commons.messages.MessageFactory.createMessage;
 import static io.leitstand.jobs.rs.Scopes.JOB;
 import static io.leitstand.jobs.rs.Scopes.JOB_READ;
+import static io.leitstand.jobs.service.ReasonCode.JOB0112E_JOB_ADMISSION_REJECTED;
+import static javax.ws.rs.core.HttpHeaders.RETRY_AFTER;
 import static javax.ws.rs.core.MediaType.APPLICATION_JSON;
+import static javax.ws.rs.core.Response.noContent;
+import static javax.ws.rs.core.Response.status;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 
 import javax.inject.Inject;
 import javax.validation.Valid;
@@ -29,9 +35,11 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
 
 import io.leitstand.commons.messages.Messages;
 import io.leitstand.commons.rs.Resource;
+import io.leitstand.jobs.service.JobAdmissionException;
 import io.leitstand.jobs.service.JobFlow;
 import io.leitstand.jobs.service.JobId;
 import io.leitstand.jobs.service.JobInfo;
@@ -93,8 +101,20 @@ public class JobResource {
 	
 	@POST
 	@Path("/{job_id}/_commit")
-	public void commitJob(@PathParam("job_id") JobId jobId){
-		service.commitJob(jobId);
+	public Response commitJob(@PathParam("job_id") JobId jobId){
+		try {
+			service.commitJob(jobId);
+			return noContent().build();
+		} catch (JobAdmissionException e) {
+			// Ask the client to retry the commit when the scheduler has caught up.
+			messages.add(createMessage(JOB0112E_JOB_ADMISSION_REJECTED,
+									   jobId,
+									   e.getRetryAfter()));
+			return status(SERVICE_UNAVAILABLE)
+				   .header(RETRY_AFTER, e.getRetryAfter())
+				   .entity(messages)
+				   .build();
+		}
 	}
 	
 	@GET
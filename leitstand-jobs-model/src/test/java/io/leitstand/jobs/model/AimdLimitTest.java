@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class AimdLimitTest {
+
+	@Test
+	public void clamp_initial_limit_to_bounds() {
+		assertEquals(10, new AimdLimit(1,10,20).get());
+		assertEquals(5, new AimdLimit(5,10,1).get());
+	}
+	
+	@Test
+	public void increase_limit_additively_when_limit_is_exhausted() {
+		AimdLimit limit = new AimdLimit(1,10,5);
+		assertEquals(6, limit.onSuccess(true));
+		assertEquals(7, limit.onSuccess(true));
+	}
+	
+	@Test
+	public void keep_limit_without_demand() {
+		AimdLimit limit = new AimdLimit(1,10,5);
+		assertEquals(5, limit.onSuccess(false));
+	}
+	
+	@Test
+	public void decrease_limit_multiplicatively_on_overload() {
+		AimdLimit limit = new AimdLimit(1,100,100);
+		assertEquals(70, limit.onOverload());
+		assertEquals(49, limit.onOverload());
+	}
+	
+	@Test
+	public void do_not_exceed_bounds() {
+		AimdLimit limit = new AimdLimit(2,3,3);
+		assertEquals(3, limit.onSuccess(true));
+		assertEquals(2, limit.onOverload());
+		assertEquals(2, limit.onOverload());
+	}
+	
+}
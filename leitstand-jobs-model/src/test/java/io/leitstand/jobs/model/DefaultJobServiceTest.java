@@ -15,6 +15,8 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS_AND_TRANSITIONS;
 import static io.leitstand.jobs.service.JobId.randomJobId;
 import static io.leitstand.jobs.service.JobName.jobName;
 import static io.leitstand.jobs.service.JobSchedule.newJobSchedule;
@@ -30,6 +32,7 @@ import static io.leitstand.jobs.service.ReasonCode.JOB0108I_JOB_REMOVED;
 import static io.leitstand.jobs.service.ReasonCode.JOB0109E_CANNOT_COMMIT_JOB;
 import static io.leitstand.jobs.service.ReasonCode.JOB0110E_CANNOT_RESUME_COMPLETED_JOB;
 import static io.leitstand.jobs.service.ReasonCode.JOB0111E_JOB_NOT_REMOVABLE;
+import static io.leitstand.jobs.service.ReasonCode.JOB0112E_JOB_ADMISSION_REJECTED;
 import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.CANCELLED;
 import static io.leitstand.jobs.service.TaskState.READY;
@@ -39,8 +42,10 @@ import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -49,6 +54,8 @@ import static org.mockito.Mockito.when;
 
 import java.util.Date;
 
+import javax.enterprise.event.Event;
+
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -64,6 +71,7 @@ import io.leitstand.commons.db.DatabaseService;
 import io.leitstand.commons.messages.Message;
 import io.leitstand.commons.messages.Messages;
 import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.JobAdmissionException;
 import io.leitstand.jobs.service.JobId;
 import io.leitstand.jobs.service.JobSchedule;
 import io.leitstand.jobs.service.JobSettings;
@@ -108,6 +116,18 @@ public class DefaultJobServiceTest {
 	@Mock
 	private UserContext userContext;
 	
+	@Mock
+	private JobSchedulerConfig config;
+	
+	@Mock
+	private JobAdmissionControl admission;
+	
+	@Mock
+	private Event<JobScheduleChangedEvent> scheduleEventSink;
+	
+	@Mock
+	private JobTopologyCache topologies;
+	
 	@InjectMocks
 	private DefaultJobService service = new DefaultJobService();
 	
@@ -131,20 +151,42 @@ public class DefaultJobServiceTest {
 	
 	@Test
 	public void commit_job() {
+        when(config.getPriorityAging()).thenReturn(60L);
         Job job = mock(Job.class);
         when(job.isNew()).thenReturn(true);
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
+        JobTopology topology = JobTopology.of(mock(Job.class));
+        when(topologies.readTopology(job)).thenReturn(topology);
 		
 	    service.commitJob(JOB_ID);
+	    verify(job).assignTaskOrdinals(topology);
+	    verify(job).updateRank(60);
 	    verify(job).setJobState(READY);
 	    assertEquals(JOB0107I_JOB_STORED.getReasonCode(),
 	                 messageCaptor.getValue().getReason());
 	}
 
+	@Test
+	public void do_not_mark_job_ready_when_commit_is_rejected() {
+		Job job = mock(Job.class);
+		when(job.isNew()).thenReturn(true);
+		when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
+		doThrow(new JobAdmissionException(JOB0112E_JOB_ADMISSION_REJECTED, 60, JOB_ID, 60)).when(admission).verifyCommit(job);
+		
+		exception.expect(JobAdmissionException.class);
+		exception.expect(reason(JOB0112E_JOB_ADMISSION_REJECTED));
+		try {
+			service.commitJob(JOB_ID);
+		} finally {
+			verify(job,never()).setJobState(READY);
+			verifyZeroInteractions(scheduleEventSink);
+		}
+	}
+	
 	@Test
 	public void cannot_commit_committed_job() {
 		Job job = mock(Job.class);
-		when(provider.fetchJob(JOB_ID)).thenReturn(job);
+		when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
 		
 		exception.expect(ConflictException.class);
 		exception.expect(reason(JOB0109E_CANNOT_COMMIT_JOB));
@@ -156,7 +198,7 @@ public class DefaultJobServiceTest {
 	public void run_job_immediately_when_no_schedule_date_is_set() {
 		Job job = mock(Job.class);
 		when(job.isNew()).thenReturn(true);
-		when(provider.fetchJob(JOB_ID)).thenReturn(job);
+		when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
 		ArgumentCaptor<Date> dateScheduled = ArgumentCaptor.forClass(Date.class);
 		doNothing().when(job).setDateScheduled(dateScheduled.capture());
 		service.commitJob(JOB_ID);
@@ -181,7 +223,7 @@ public class DefaultJobServiceTest {
 	@Test
 	public void confirm_activates_suspended_job() {
 	    Job job = mock(Job.class);
-	    when(provider.fetchJob(JOB_ID)).thenReturn(job);
+	    when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
 	    when(job.isSuspended()).thenReturn(true);
 	    
 	    service.confirmJob(JOB_ID);
@@ -194,7 +236,7 @@ public class DefaultJobServiceTest {
     @Test
     public void confirm_does_nothing_when_job_is_not_suspended() {
         Job job = mock(Job.class);
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
         
         service.confirmJob(JOB_ID);
         verify(job,never()).confirmed();
@@ -246,11 +288,33 @@ public class DefaultJobServiceTest {
         verify(job).setDateSuspend(null);
         verify(job).setDateScheduled(schedule.getDateScheduled());
         verify(job).setJobOwner(AUTHENTICATED_USER);
+        verify(job,never()).setPriority(anyInt());
         
         assertEquals(JOB0101I_JOB_SETTINGS_UPDATED.getReasonCode(),
                      messageCaptor.getValue().getReason());
     }
     
+    @Test
+    public void update_priority_of_planned_job() {
+        when(config.getPriorityAging()).thenReturn(60L);
+        JobSettings settings = newJobSettings()
+                               .withJobName(jobName("job"))
+                               .withSchedule(newJobSchedule()
+                                             .withStartTime(new Date())
+                                             .build())
+                               .withPriority(2)
+                               .build();
+        
+        Job job = mock(Job.class);
+        when(job.isReady()).thenReturn(true);
+        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+
+        service.storeJobSettings(JOB_ID, settings);
+        
+        verify(job).setPriority(2);
+        verify(job).updateRank(60);
+    }
+    
     @Test
     public void remove_unknown_job_does_not_reoprt_an_error() {
         service.removeJob(JOB_ID);
@@ -260,7 +324,7 @@ public class DefaultJobServiceTest {
     @Test
     public void cannot_remove_running_job() {
         Job job = mock(Job.class);
-        when(provider.tryFetchJob(JOB_ID)).thenReturn(job);
+        when(provider.tryFetchJob(JOB_ID,JOB_WITH_TASKS_AND_TRANSITIONS)).thenReturn(job);
         
         exception.expect(ConflictException.class);
         exception.expect(reason(JOB0111E_JOB_NOT_REMOVABLE));
@@ -272,12 +336,13 @@ public class DefaultJobServiceTest {
     @Test
     public void remove_terminated_job() {
         Job job = mock(Job.class);
-        when(provider.tryFetchJob(JOB_ID)).thenReturn(job);
+        when(provider.tryFetchJob(JOB_ID,JOB_WITH_TASKS_AND_TRANSITIONS)).thenReturn(job);
         when(job.isTerminated()).thenReturn(true);
         
         service.removeJob(JOB_ID);
 
         verify(repository).remove(job);
+        verify(topologies).evict(JOB_ID);
         assertEquals(JOB0108I_JOB_REMOVED.getReasonCode(),
                      messageCaptor.getValue().getReason());
         
@@ -287,7 +352,7 @@ public class DefaultJobServiceTest {
     public void cannot_cancel_completed_job() {
         Job job = mock(Job.class);
         when(job.isCompleted()).thenReturn(true);
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
         
         exception.expect(ConflictException.class);
         exception.expect(reason(JOB0106E_CANNOT_CANCEL_COMPLETED_JOB));
@@ -305,7 +370,7 @@ public class DefaultJobServiceTest {
         Job_Task ready = mock(Job_Task.class);
         when(job.getTaskList()).thenReturn(asList(completed,active,ready));
         
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
         
         service.cancelJob(JOB_ID);
         
@@ -322,7 +387,7 @@ public class DefaultJobServiceTest {
     public void cannot_resume_completed_job() {
         Job job = mock(Job.class);
         when(job.isCompleted()).thenReturn(true);
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
 
         exception.expect(ConflictException.class);
         exception.expect(reason(JOB0110E_CANNOT_RESUME_COMPLETED_JOB));
@@ -339,8 +404,10 @@ public class DefaultJobServiceTest {
         when(failed.isResumable()).thenReturn(true);
         Job_Task ready = mock(Job_Task.class);
         when(job.getTaskList()).thenReturn(asList(completed,failed,ready));
+        JobTopology topology = JobTopology.of(mock(Job.class));
+        when(topologies.getTopology(job)).thenReturn(topology);
         
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
         
         service.resumeJob(JOB_ID);
         
@@ -348,6 +415,7 @@ public class DefaultJobServiceTest {
         verify(completed,never()).setTaskState(READY);
         verify(ready,never()).setTaskState(READY);
         verify(failed).setTaskState(READY);
+        verify(job).resetPendingPredecessors(topology);
         assertEquals(JOB0105I_JOB_RESUMED.getReasonCode(),
                      messageCaptor.getValue().getReason());
         
@@ -363,7 +431,7 @@ public class DefaultJobServiceTest {
         Job_Task ready = mock(Job_Task.class);
         when(job.getTaskList()).thenReturn(asList(completed,failed,ready));
         
-        when(provider.fetchJob(JOB_ID)).thenReturn(job);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
         
         service.resumeJob(JOB_ID);
         
@@ -376,4 +444,32 @@ public class DefaultJobServiceTest {
         
     }
     
+    @Test
+    public void resume_job_with_closed_window() {
+        Job job = mock(Job.class);
+        when(job.isRunning()).thenReturn(true);
+        when(job.isWindowClosed(any(Date.class))).thenReturn(true);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
+        
+        service.resumeJob(JOB_ID);
+        
+        verify(job).setDateSuspend(null);
+        verify(job).setAutoResume(false);
+        verify(job,never()).setJobState(any(TaskState.class));
+        assertEquals(JOB0105I_JOB_RESUMED.getReasonCode(),
+                     messageCaptor.getValue().getReason());
+    }
+    
+    @Test
+    public void resume_job_with_open_window_does_not_change_window() {
+        Job job = mock(Job.class);
+        when(job.isRunning()).thenReturn(true);
+        when(provider.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
+        
+        service.resumeJob(JOB_ID);
+        
+        verify(job,never()).setDateSuspend(null);
+        verify(job,never()).setAutoResume(false);
+    }
+    
 }
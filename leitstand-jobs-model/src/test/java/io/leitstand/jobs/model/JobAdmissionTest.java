@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.JobApplication.jobApplication;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.leitstand.jobs.service.JobApplication;
+
+public class JobAdmissionTest {
+
+	private static final JobApplication BULK = jobApplication("bulk");
+	private static final JobApplication INTERACTIVE = jobApplication("interactive");
+	
+	@Test
+	public void admit_jobs_until_global_limit_is_exhausted() {
+		JobAdmission admission = new JobAdmission(10, application -> 0, singletonMap(BULK, 4L));
+		assertTrue(admission.tryAdmit(INTERACTIVE, 6));
+		assertTrue(admission.isSaturated());
+		assertFalse(admission.tryAdmit(INTERACTIVE, 1));
+	}
+	
+	@Test
+	public void admit_jobs_of_other_applications_when_application_limit_is_exhausted() {
+		Map<JobApplication,Long> pending = new HashMap<>();
+		pending.put(BULK, 100L);
+		pending.put(INTERACTIVE, 2L);
+		JobAdmission admission = new JobAdmission(0, application -> BULK.equals(application) ? 100 : 0, pending);
+		assertFalse(admission.isSaturated());
+		assertEquals(1,admission.getSaturatedApplications().size());
+		assertTrue(admission.getSaturatedApplications().contains(BULK));
+		assertFalse(admission.tryAdmit(BULK, 1));
+		assertTrue(admission.tryAdmit(INTERACTIVE, 50));
+	}
+	
+	@Test
+	public void admit_job_exceeding_limit_when_no_other_job_is_admitted() {
+		JobAdmission admission = new JobAdmission(10, application -> 5, emptyMap());
+		assertTrue(admission.tryAdmit(BULK, 20));
+		assertFalse(admission.tryAdmit(BULK, 1));
+	}
+	
+	@Test
+	public void unlimited_admission_admits_all_jobs() {
+		for(int i=0; i < 100; i++) {
+			assertTrue(JobAdmission.UNLIMITED.tryAdmit(BULK, 1000));
+		}
+		assertFalse(JobAdmission.UNLIMITED.isSaturated());
+		assertTrue(JobAdmission.UNLIMITED.getSaturatedApplications().isEmpty());
+	}
+	
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JobCursorTest {
+
+	@Test
+	public void new_cursor_points_to_first_job() {
+		JobCursor cursor = new JobCursor();
+		assertEquals(0L,cursor.getPosition());
+		assertTrue(cursor.isWrapped());
+	}
+	
+	@Test
+	public void advance_cursor_to_last_job_of_full_batch() {
+		JobCursor cursor = new JobCursor();
+		cursor.advance(42L, 20, 20);
+		assertEquals(42L,cursor.getPosition());
+		assertFalse(cursor.isWrapped());
+	}
+	
+	@Test
+	public void restart_cursor_after_partial_batch() {
+		JobCursor cursor = new JobCursor();
+		cursor.advance(42L, 20, 20);
+		cursor.advance(50L, 3, 20);
+		assertEquals(0L,cursor.getPosition());
+		assertTrue(cursor.isWrapped());
+	}
+	
+	@Test
+	public void visit_all_jobs_in_bounded_number_of_batches() {
+		// 45 running jobs with IDs 1 to 45 and a batch size of 20 require three batches.
+		JobCursor cursor = new JobCursor();
+		int batches = 0;
+		do {
+			long from = cursor.getPosition();
+			long to = Math.min(from+20, 45);
+			cursor.advance(to, (int)(to-from), 20);
+			batches++;
+		} while(!cursor.isWrapped());
+		assertEquals(3,batches);
+	}
+	
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.JobId.randomJobId;
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskState.COMPLETED;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.enterprise.concurrent.ManagedExecutorService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.leitstand.jobs.service.TaskId;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JobEventLoopTest {
+
+	@Mock
+	private ManagedExecutorService wm;
+	
+	@Mock
+	private TaskExpiryManager expiryManager;
+	
+	@Mock
+	private TaskLeaseManager leaseManager;
+	
+	@Mock
+	private JobWindowManager windowManager;
+	
+	@Mock
+	private JobScheduler scheduler;
+	
+	@Mock
+	private JobNotificationChannel notifications;
+	
+	@Mock
+	private JobSchedulerConfig config;
+	
+	@Mock
+	private TaskExecutionPool pool;
+	
+	@Mock
+	private JobSchedulerMetrics metrics;
+	
+	@InjectMocks
+	private JobEventLoop loop = new JobEventLoop();
+	
+	@Before
+	public void initConfig() {
+		when(config.getEventLoopWorkers()).thenReturn(3);
+	}
+	
+	private List<JobEventLoopWorker> startedWorkers() {
+		// The job start timer, the task expiry timer, the job window timer and the task lease monitor are started by the executor service as well.
+		ArgumentCaptor<Runnable> tasks = ArgumentCaptor.forClass(Runnable.class);
+		verify(wm,times(7)).execute(tasks.capture());
+		List<JobEventLoopWorker> workers = new ArrayList<>();
+		for(Runnable task : tasks.getAllValues()) {
+			if(task instanceof JobEventLoopWorker) {
+				workers.add((JobEventLoopWorker) task);
+			}
+		}
+		assertEquals(3,workers.size());
+		return workers;
+	}
+	
+	@Test
+	public void start_configured_number_of_workers_with_disjoint_partitions() {
+		loop.startEventLoop();
+		
+		JobEventLoopStatus status = loop.getStatus();
+		assertTrue(status.isEnabled());
+		List<JobEventLoopWorkerStatus> workers = status.getWorkers();
+		assertEquals(3,workers.size());
+		assertEquals("0/3",workers.get(0).getPartition());
+		assertEquals("1/3",workers.get(1).getPartition());
+		assertEquals("2/3",workers.get(2).getPartition());
+		verify(notifications).subscribe(any(Runnable.class));
+	}
+	
+	@Test
+	public void rebalance_partitions_when_worker_stops() {
+		loop.startEventLoop();
+		List<JobEventLoopWorker> workers = startedWorkers();
+		
+		loop.workerStopped(workers.get(1), null);
+		
+		List<JobEventLoopWorkerStatus> status = loop.getStatus().getWorkers();
+		assertEquals(2,status.size());
+		assertEquals(0,status.get(0).getWorkerId());
+		assertEquals("0/2",status.get(0).getPartition());
+		assertEquals(2,status.get(1).getWorkerId());
+		assertEquals("1/2",status.get(1).getPartition());
+	}
+	
+	@Test
+	public void replace_crashed_worker() {
+		loop.startEventLoop();
+		List<JobEventLoopWorker> workers = startedWorkers();
+		
+		loop.workerStopped(workers.get(0), new IllegalStateException());
+		
+		List<JobEventLoopWorkerStatus> status = loop.getStatus().getWorkers();
+		assertEquals(3,status.size());
+		assertEquals(0,status.get(2).getWorkerId());
+		assertEquals("2/3",status.get(2).getPartition());
+	}
+	
+	@Test
+	public void set_missing_task_expiry_dates_on_startup() {
+		loop.startEventLoop();
+		verify(expiryManager).assignMissingDeadlines();
+	}
+	
+	@Test
+	public void recover_tasks_leased_before_restart_once() {
+		loop.startEventLoop();
+		loop.stopEventLoop();
+		loop.startEventLoop();
+		verify(leaseManager,times(1)).recoverLeasedTasks();
+	}
+	
+	@Test
+	public void stop_all_workers() {
+		loop.startEventLoop();
+		loop.stopEventLoop();
+		assertFalse(loop.getStatus().isEnabled());
+		verify(notifications).unsubscribe(any(Runnable.class));
+	}
+	
+	@Test
+	public void checkpoint_in_flight_tasks_and_release_leases_on_shutdown() {
+		TaskId pendingTask = randomTaskId();
+		Set<TaskId> pending = singleton(pendingTask);
+		TaskCompletion completion = new TaskCompletion(randomJobId(), randomTaskId(), COMPLETED);
+		when(pool.drain(anyLong(), any(TimeUnit.class))).thenReturn(pending);
+		when(pool.pollCompletion()).thenReturn(completion, (TaskCompletion) null);
+		
+		loop.startEventLoop();
+		loop.onShutdown();
+		
+		verify(scheduler).completeTask(completion);
+		verify(scheduler).checkpointTasks(pending);
+		verify(scheduler).releaseLeases();
+		verify(notifications).publish();
+	}
+	
+	@Test
+	public void release_leases_when_all_tasks_are_drained() {
+		when(pool.drain(anyLong(), any(TimeUnit.class))).thenReturn(Collections.<TaskId>emptySet());
+		
+		loop.onShutdown();
+		
+		verify(scheduler,never()).checkpointTasks(any(Collection.class));
+		verify(scheduler).releaseLeases();
+	}
+	
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.commons.db.DatabaseService.prepare;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_HEADER;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS_AND_TRANSITIONS;
+import static io.leitstand.jobs.service.JobApplication.jobApplication;
+import static io.leitstand.jobs.service.JobId.randomJobId;
+import static io.leitstand.jobs.service.JobName.jobName;
+import static io.leitstand.jobs.service.JobSubmission.newJobSubmission;
+import static io.leitstand.jobs.service.JobType.jobType;
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskName.taskName;
+import static io.leitstand.jobs.service.TaskSubmission.newTaskSubmission;
+import static io.leitstand.jobs.service.TaskTransitionSubmission.newTaskTransitionSubmission;
+import static io.leitstand.jobs.service.TaskType.taskType;
+import static io.leitstand.security.auth.UserName.userName;
+import static java.lang.String.format;
+import static java.util.Collections.emptyMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.enterprise.event.Event;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.leitstand.commons.db.DatabaseService;
+import io.leitstand.commons.messages.Messages;
+import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.JobId;
+import io.leitstand.jobs.service.TaskSubmission;
+import io.leitstand.jobs.service.TaskTransitionSubmission;
+import io.leitstand.security.auth.UserContext;
+
+/**
+ * Verifies that the job aggregate is loaded in a bounded number of queries,
+ * regardless of the number of job tasks.
+ * <p>
+ * The statements are counted by the H2 query statistics.
+ */
+public class JobFetchPlanIT extends JobsIT {
+
+	private static final int TASKS = 50;
+
+	private Repository repository;
+	private JobProvider provider;
+	private DefaultJobService jobs;
+	private JobId jobId;
+
+	/* Creates a job where the start task forks into TASKS-2 parallel tasks, which are joined by the end task. */
+	@Before
+	public void create_job() {
+		repository = new Repository(getEntityManager());
+		provider = new JobProvider(repository);
+		UserContext userContext = mock(UserContext.class);
+		when(userContext.getUserName()).thenReturn(userName("dummy"));
+		InventoryClient inventory = mock(InventoryClient.class);
+		when(inventory.getElements(any(Job.class))).thenReturn(emptyMap());
+		jobs = new DefaultJobService(repository,
+									 provider,
+									 mock(DatabaseService.class),
+									 inventory,
+									 new JobEditor(repository),
+									 mock(Messages.class),
+									 userContext,
+									 mock(Event.class));
+
+		TaskSubmission start = task("start");
+		TaskSubmission end = task("end");
+		List<TaskSubmission> tasks = new ArrayList<>();
+		List<TaskTransitionSubmission> transitions = new ArrayList<>();
+		tasks.add(start);
+		for(int i=1; i < TASKS-1; i++) {
+			TaskSubmission task = task("task"+i);
+			tasks.add(task);
+			transitions.add(transition(start,task));
+			transitions.add(transition(task,end));
+		}
+		tasks.add(end);
+
+		jobId = randomJobId();
+		transaction(() -> {
+			jobs.storeJob(jobId,
+						  newJobSubmission()
+						  .withJobApplication(jobApplication("IntegrationTest"))
+						  .withJobType(jobType("fetchplan"))
+						  .withJobName(jobName("fetchplan"))
+						  .withTasks(tasks)
+						  .withTransitions(transitions)
+						  .build());
+			jobs.commitJob(jobId);
+		});
+
+		transaction(() -> {
+			getDatabase().executeUpdate(prepare("SET QUERY_STATISTICS_MAX_ENTRIES 1000"));
+			getDatabase().executeUpdate(prepare("SET QUERY_STATISTICS TRUE"));
+		});
+	}
+
+	private static TaskSubmission task(String name) {
+		return newTaskSubmission()
+			   .withTaskId(randomTaskId())
+			   .withTaskName(taskName(name))
+			   .withTaskType(taskType("unit"))
+			   .build();
+	}
+
+	private static TaskTransitionSubmission transition(TaskSubmission from,
+													   TaskSubmission to) {
+		return newTaskTransitionSubmission()
+			   .from(from.getTaskId())
+			   .to(to.getTaskId())
+			   .build();
+	}
+
+	private long selects() {
+		return getDatabase().executeQuery(prepare("SELECT COALESCE(SUM(EXECUTION_COUNT),0) "+
+												  "FROM INFORMATION_SCHEMA.QUERY_STATISTICS "+
+												  "WHERE SQL_STATEMENT LIKE 'SELECT%' "+
+												  "AND SQL_STATEMENT NOT LIKE '%QUERY_STATISTICS%'"),
+										  rs -> rs.getLong(1))
+							.get(0);
+	}
+
+	/* Runs the given action with an empty persistence context and returns the number of issued SELECT statements. */
+	private long countSelects(Runnable action) {
+		long[] count = new long[1];
+		transaction(() -> {
+			getEntityManager().clear();
+			long before = selects();
+			action.run();
+			count[0] = selects() - before;
+		});
+		return count[0];
+	}
+
+	private static void assertSelects(long max, long actual) {
+		assertTrue(format("Expected at most %d SELECT statements but %d statements were issued.",max,actual),
+				   actual <= max);
+	}
+
+	private static void touchTransitions(Job job) {
+		for(Job_Task task : job.getTasks().values()) {
+			for(Job_Task_Transition transition : task.getSuccessors()) {
+				transition.getTo().getTaskName();
+			}
+			for(Job_Task_Transition transition : task.getPredecessors()) {
+				transition.getFrom().getTaskName();
+			}
+		}
+	}
+
+	@Test
+	public void lazy_loading_of_transitions_issues_a_query_per_task() {
+		long selects = countSelects(() -> touchTransitions(provider.fetchJob(jobId, JOB_HEADER)));
+
+		assertTrue(selects >= TASKS);
+	}
+
+	@Test
+	public void fetch_job_header() {
+		long selects = countSelects(() -> provider.fetchJob(jobId).getJobName());
+
+		// Job and start task
+		assertSelects(2, selects);
+	}
+
+	@Test
+	public void fetch_job_with_tasks() {
+		long selects = countSelects(() -> {
+			Job job = provider.fetchJob(jobId, JOB_WITH_TASKS);
+			assertEquals(TASKS, job.getTasks().size());
+			job.getTasks().values().forEach(Job_Task::getTaskName);
+		});
+
+		assertSelects(2, selects);
+	}
+
+	@Test
+	public void fetch_job_with_tasks_and_transitions() {
+		long selects = countSelects(() -> touchTransitions(provider.fetchJob(jobId, JOB_WITH_TASKS_AND_TRANSITIONS)));
+
+		// Job with tasks, successors and predecessors
+		assertSelects(4, selects);
+	}
+
+	@Test
+	public void get_job_settings() {
+		// Job settings projection
+		assertSelects(1, countSelects(() -> jobs.getJobSettings(jobId)));
+	}
+
+	@Test
+	public void get_job_progress() {
+		assertSelects(2, countSelects(() -> jobs.getJobProgress(jobId)));
+	}
+
+	@Test
+	public void get_job_tasks() {
+		// Job header and task information projection in stored task order
+		assertSelects(3, countSelects(() -> jobs.getJobTasks(jobId)));
+	}
+
+	@Test
+	public void get_job_info() {
+		// Job header, task information projection in stored task order and queue position
+		assertSelects(4, countSelects(() -> jobs.getJobInfo(jobId)));
+	}
+
+	@Test
+	public void get_job_flow() {
+		// Job with tasks and the job topology
+		assertSelects(3, countSelects(() -> jobs.getJobFlow(jobId)));
+	}
+
+}
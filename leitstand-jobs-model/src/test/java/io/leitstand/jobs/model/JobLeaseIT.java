@@ -0,0 +1,231 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.Job.claimRunnableJobsWithoutSkipLocked;
+import static io.leitstand.jobs.model.Job.findJobById;
+import static io.leitstand.jobs.model.Job.releaseJobLeases;
+import static io.leitstand.jobs.model.Job.renewJobLeases;
+import static io.leitstand.jobs.model.JobPartition.ALL_JOBS;
+import static io.leitstand.jobs.model.JobPartition.partition;
+import static io.leitstand.jobs.service.JobId.randomJobId;
+import static io.leitstand.jobs.service.JobSubmission.newJobSubmission;
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskSubmission.newTaskSubmission;
+import static io.leitstand.security.auth.UserName.userName;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.enterprise.event.Event;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.leitstand.commons.db.DatabaseService;
+import io.leitstand.commons.messages.Messages;
+import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.JobApplication;
+import io.leitstand.jobs.service.JobId;
+import io.leitstand.jobs.service.JobName;
+import io.leitstand.jobs.service.JobType;
+import io.leitstand.jobs.service.TaskName;
+import io.leitstand.jobs.service.TaskType;
+import io.leitstand.security.auth.UserContext;
+
+public class JobLeaseIT extends JobsIT {
+
+	private static final String NODE_A = "node-a";
+	private static final String NODE_B = "node-b";
+	
+	private Repository repository;
+	private JobId jobId;
+	
+	@Before
+	public void create_ready_job() {
+		repository = new Repository(getEntityManager());
+		UserContext userContext = mock(UserContext.class);
+		when(userContext.getUserName()).thenReturn(userName("dummy"));
+		DefaultJobService jobs = new DefaultJobService(repository, 
+													   new JobProvider(repository),
+													   mock(DatabaseService.class),
+													   mock(InventoryClient.class),
+													   new JobEditor(repository),
+													   mock(Messages.class),
+													   userContext,
+													   mock(Event.class));
+		jobId = randomJobId();
+		transaction(() -> {
+			jobs.storeJob(jobId, 
+						  newJobSubmission()
+						  .withJobApplication(JobApplication.valueOf("IntegrationTest"))
+						  .withJobType(JobType.valueOf("lease"))
+						  .withJobName(JobName.valueOf("lease"))
+						  .withTasks(newTaskSubmission()
+								  	 .withTaskId(randomTaskId())
+								  	 .withTaskName(TaskName.valueOf("start"))
+								  	 .withTaskType(TaskType.valueOf("unit"))
+								  	 .build())
+						  .build());
+			jobs.commitJob(jobId);
+		});
+	}
+	
+	private List<JobId> claim(String owner, Date leaseExpiry){
+		Date scheduled = new Date(currentTimeMillis()+1000);
+		return repository.execute(claimRunnableJobsWithoutSkipLocked(scheduled, ALL_JOBS, owner, leaseExpiry, 10));
+	}
+	
+	private static Date validLease() {
+		return new Date(currentTimeMillis()+60000);
+	}
+	
+	private static Date expiredLease() {
+		return new Date(currentTimeMillis()-60000);
+	}
+	
+	@Test
+	public void claim_unclaimed_job() {
+		transaction(() -> {
+			assertEquals(asList(jobId),claim(NODE_A,validLease()));
+		});
+		transaction(() -> {
+			Job job = repository.execute(findJobById(jobId));
+			assertEquals(NODE_A,job.getLeaseOwner());
+		});
+	}
+	
+	@Test
+	public void do_not_claim_job_of_excluded_application() {
+		Date scheduled = new Date(currentTimeMillis()+1000);
+		transaction(() -> {
+			assertEquals(emptyList(),
+						 repository.execute(claimRunnableJobsWithoutSkipLocked(scheduled, 
+								 											   ALL_JOBS, 
+								 											   asList(JobApplication.valueOf("O'Bulk"),
+								 													  JobApplication.valueOf("IntegrationTest")), 
+								 											   NODE_A, 
+								 											   validLease(), 
+								 											   10)));
+		});
+		transaction(() -> {
+			assertEquals(asList(jobId),
+						 repository.execute(claimRunnableJobsWithoutSkipLocked(scheduled, 
+								 											   ALL_JOBS, 
+								 											   asList(JobApplication.valueOf("O'Bulk")), 
+								 											   NODE_A, 
+								 											   validLease(), 
+								 											   10)));
+		});
+	}
+	
+	@Test
+	public void do_not_claim_job_leased_by_other_node() {
+		transaction(() -> {
+			claim(NODE_A,validLease());
+		});
+		transaction(() -> {
+			assertEquals(emptyList(),claim(NODE_B,validLease()));
+		});
+	}
+	
+	@Test
+	public void reclaim_own_job() {
+		transaction(() -> {
+			claim(NODE_A,validLease());
+		});
+		transaction(() -> {
+			assertEquals(asList(jobId),claim(NODE_A,validLease()));
+		});
+	}
+	
+	@Test
+	public void claim_job_with_expired_lease() {
+		transaction(() -> {
+			claim(NODE_A,expiredLease());
+		});
+		transaction(() -> {
+			assertEquals(asList(jobId),claim(NODE_B,validLease()));
+		});
+	}
+	
+	@Test
+	public void renewed_lease_prevents_takeover() {
+		transaction(() -> {
+			claim(NODE_A,expiredLease());
+		});
+		transaction(() -> {
+			assertEquals(1,repository.execute(renewJobLeases(NODE_A, validLease())));
+		});
+		transaction(() -> {
+			assertEquals(emptyList(),claim(NODE_B,validLease()));
+		});
+	}
+	
+	@Test
+	public void released_job_can_be_claimed_by_other_node() {
+		transaction(() -> {
+			claim(NODE_A,validLease());
+		});
+		transaction(() -> {
+			repository.execute(releaseJobLeases(NODE_A));
+		});
+		transaction(() -> {
+			Job job = repository.execute(findJobById(jobId));
+			assertNull(job.getLeaseOwner());
+			assertEquals(asList(jobId),claim(NODE_B,validLease()));
+		});
+	}
+	
+	@Test
+	public void do_not_claim_job_with_closed_window() {
+		transaction(() -> {
+			Job job = repository.execute(findJobById(jobId));
+			job.setDateSuspend(new Date(currentTimeMillis()-1000));
+		});
+		transaction(() -> {
+			assertEquals(emptyList(),claim(NODE_A,validLease()));
+		});
+	}
+	
+	@Test
+	public void claim_job_within_window() {
+		transaction(() -> {
+			Job job = repository.execute(findJobById(jobId));
+			job.setDateSuspend(new Date(currentTimeMillis()+60000));
+		});
+		transaction(() -> {
+			assertEquals(asList(jobId),claim(NODE_A,validLease()));
+		});
+	}
+	
+	@Test
+	public void claim_jobs_of_assigned_partition_only() {
+		transaction(() -> {
+			List<JobId> p0 = repository.execute(claimRunnableJobsWithoutSkipLocked(new Date(currentTimeMillis()+1000), partition(0,2), NODE_A, validLease(), 10));
+			List<JobId> p1 = repository.execute(claimRunnableJobsWithoutSkipLocked(new Date(currentTimeMillis()+1000), partition(1,2), NODE_A, validLease(), 10));
+			assertEquals(1,p0.size()+p1.size());
+		});
+	}
+	
+}
@@ -4,6 +4,7 @@ import static io.leitstand.inventory.service.ElementId.randomElementId;
 import static io.leitstand.inventory.service.ElementName.elementName;
 import static io.leitstand.inventory.service.ElementRoleName.elementRoleName;
 import static io.leitstand.inventory.service.ElementSettings.newElementSettings;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS;
 import static io.leitstand.jobs.service.JobApplication.jobApplication;
 import static io.leitstand.jobs.service.JobId.randomJobId;
 import static io.leitstand.jobs.service.JobName.jobName;
@@ -16,8 +17,13 @@ import static io.leitstand.jobs.service.TaskState.READY;
 import static io.leitstand.jobs.service.TaskType.taskType;
 import static io.leitstand.security.auth.UserName.userName;
 import static io.leitstand.testing.ut.LeitstandCoreMatchers.hasSizeOf;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
@@ -31,6 +37,8 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Repository;
 import io.leitstand.inventory.service.ElementId;
 import io.leitstand.inventory.service.ElementSettings;
 import io.leitstand.jobs.service.JobApplication;
@@ -58,6 +66,12 @@ public class JobOrderedTaskTest {
     @Mock
     private JobProvider jobs;
     
+    @Mock
+    private JobTopologyCache topologies;
+    
+    @Mock
+    private Repository repository;
+    
     @InjectMocks
     private DefaultJobService service = new DefaultJobService();
     
@@ -234,6 +248,10 @@ public class JobOrderedTaskTest {
         
         job.setStart(start);
         when(jobs.fetchJob(JOB_ID)).thenReturn(job);
+        when(jobs.fetchJob(JOB_ID,JOB_WITH_TASKS)).thenReturn(job);
+        when(topologies.getTopology(job)).thenReturn(JobTopology.of(job));
+        // No task ordinals stored yet.
+        when(repository.execute(any(Query.class))).thenReturn(null);
         
         // Mock inventory response
         Map<ElementId,ElementSettings> elements = new HashMap<>();
@@ -363,6 +381,41 @@ public class JobOrderedTaskTest {
                          tasks.get(7));    
     }
 
+    @Test
+    public void read_task_list_in_stored_task_order() {
+        // The stored task order is read by a projection query of the element and parameterized tasks.
+        when(repository.execute(any(Query.class))).thenReturn(asList(taskInfo(upgradeSpine2),
+                                                                     taskInfo(pingSpine2)));
+        
+        List<JobTask> tasks = service.getJobTasks(JOB_ID).getTasks();
+        
+        assertThat(tasks,hasSizeOf(2));
+        assertTaskEquals(upgradeSpine2, 
+                         tasks.get(0));
+        assertTaskEquals(pingSpine2, 
+                         tasks.get(1));
+    }
+
+    @Test
+    public void do_not_traverse_job_flow_when_no_task_has_an_element_or_parameters() {
+        when(repository.execute(any(Query.class))).thenReturn(emptyList());
+        
+        List<JobTask> tasks = service.getJobTasks(JOB_ID).getTasks();
+        
+        assertThat(tasks,hasSizeOf(0));
+        verify(topologies,never()).getTopology(job);
+    }
+
+    private JobTask taskInfo(Job_Task task) {
+        return Job_Task.taskInfo(task.getTaskId(),
+                                 task.getTaskName(),
+                                 task.getTaskType(),
+                                 task.getTaskState(),
+                                 task.getParameters(),
+                                 task.getDateModified(),
+                                 inventory.getElementSettings(task));
+    }
+    
     private void assertTaskEquals(Job_Task _task, JobTask task) {
         assertEquals(_task.getTaskId(),task.getTaskId());
         assertEquals(_task.getTaskName(),task.getTaskName());
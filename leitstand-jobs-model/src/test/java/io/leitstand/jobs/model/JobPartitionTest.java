@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.JobPartition.partition;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class JobPartitionTest {
+
+	@Test
+	public void single_partition_contains_all_jobs() {
+		assertEquals(0,JobPartition.ALL_JOBS.getIndex());
+		assertEquals(1,JobPartition.ALL_JOBS.getCount());
+	}
+	
+	@Test
+	public void format_partition_as_index_and_count() {
+		assertEquals("2/4",partition(2,4).toString());
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void reject_partition_index_exceeding_partition_count() {
+		partition(4,4);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void reject_negative_partition_index() {
+		partition(-1,4);
+	}
+	
+	@Test(expected=IllegalArgumentException.class)
+	public void reject_empty_partition_count() {
+		partition(0,0);
+	}
+	
+}
@@ -1,5 +1,8 @@
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_HEADER;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS;
+import static io.leitstand.jobs.model.JobFetchPlan.JOB_WITH_TASKS_AND_TRANSITIONS;
 import static io.leitstand.jobs.service.JobId.randomJobId;
 import static io.leitstand.jobs.service.ReasonCode.JOB0100E_JOB_NOT_FOUND;
 import static io.leitstand.testing.ut.LeitstandCoreMatchers.reason;
@@ -7,6 +10,8 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.Rule;
@@ -62,4 +67,37 @@ public class JobProviderTest {
         assertNull(jobs.tryFetchJob(randomJobId()));
     }
     
+    @Test
+    public void fetch_job_header_with_single_query() {
+        Job job = mock(Job.class);
+        when(repository.execute(any(Query.class))).thenReturn(job);
+        
+        assertSame(job,jobs.fetchJob(randomJobId(),JOB_HEADER));
+        verify(repository,times(1)).execute(any(Query.class));
+    }
+    
+    @Test
+    public void fetch_job_with_tasks_with_single_query() {
+        Job job = mock(Job.class);
+        when(repository.execute(any(Query.class))).thenReturn(job);
+        
+        assertSame(job,jobs.fetchJob(randomJobId(),JOB_WITH_TASKS));
+        verify(repository,times(1)).execute(any(Query.class));
+    }
+    
+    @Test
+    public void fetch_job_with_tasks_and_transitions_with_three_queries() {
+        Job job = mock(Job.class);
+        when(repository.execute(any(Query.class))).thenReturn(job);
+        
+        assertSame(job,jobs.fetchJob(randomJobId(),JOB_WITH_TASKS_AND_TRANSITIONS));
+        verify(repository,times(3)).execute(any(Query.class));
+    }
+    
+    @Test
+    public void do_not_fetch_transitions_of_unknown_job() {
+        assertNull(jobs.tryFetchJob(randomJobId(),JOB_WITH_TASKS_AND_TRANSITIONS));
+        verify(repository,times(1)).execute(any(Query.class));
+    }
+    
 }
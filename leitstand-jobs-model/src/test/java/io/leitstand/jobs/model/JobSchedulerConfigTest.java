@@ -0,0 +1,187 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.JobApplication.jobApplication;
+import static io.leitstand.jobs.service.TaskState.FAILED;
+import static io.leitstand.jobs.service.TaskState.TIMEOUT;
+import static io.leitstand.jobs.service.TaskType.taskType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobSchedulerConfigTest {
+
+	private Properties properties;
+	private JobSchedulerConfig config;
+	
+	@Before
+	public void initConfig() {
+		properties = new Properties();
+		config = new JobSchedulerConfig(properties);
+	}
+	
+	@Test
+	public void apply_defaults_when_no_settings_exist() {
+		assertEquals("auto",config.getNotificationChannel());
+		assertEquals("",config.getNotificationDataSource());
+		assertEquals(60L,config.getMaxPollInterval());
+	}
+	
+	@Test
+	public void read_settings_from_properties() {
+		properties.setProperty("leitstand.jobs.notification.channel", "local");
+		properties.setProperty("leitstand.jobs.notification.datasource", "java:/jdbc/leitstand-listener");
+		properties.setProperty("leitstand.jobs.event_loop.max_poll_interval", "5");
+		assertEquals("local",config.getNotificationChannel());
+		assertEquals("java:/jdbc/leitstand-listener",config.getNotificationDataSource());
+		assertEquals(5L,config.getMaxPollInterval());
+	}
+	
+	@Test
+	public void apply_default_for_invalid_numeric_setting() {
+		properties.setProperty("leitstand.jobs.event_loop.max_poll_interval", "five");
+		assertEquals(60L,config.getMaxPollInterval());
+	}
+	
+	@Test
+	public void derive_lease_duration_from_max_poll_interval() {
+		properties.setProperty("leitstand.jobs.event_loop.max_poll_interval", "5");
+		assertEquals(15L,config.getLeaseDuration());
+		properties.setProperty("leitstand.jobs.lease.duration", "30");
+		assertEquals(30L,config.getLeaseDuration());
+	}
+	
+	@Test
+	public void read_task_timeout_per_task_type() {
+		assertEquals(900L,config.getTaskTimeout(taskType("deploy")));
+		properties.setProperty("leitstand.jobs.task.timeout", "300");
+		assertEquals(300L,config.getTaskTimeout(taskType("deploy")));
+		properties.setProperty("leitstand.jobs.task.timeout.deploy", "60");
+		assertEquals(60L,config.getTaskTimeout(taskType("deploy")));
+		assertEquals(300L,config.getTaskTimeout(taskType("reboot")));
+	}
+	
+	@Test
+	public void read_priority_aging() {
+		assertEquals(60L,config.getPriorityAging());
+		properties.setProperty("leitstand.jobs.priority.aging", "0");
+		assertEquals(1L,config.getPriorityAging());
+		properties.setProperty("leitstand.jobs.priority.aging", "300");
+		assertEquals(300L,config.getPriorityAging());
+	}
+	
+	@Test
+	public void read_admission_settings() {
+		assertFalse(config.isAdmissionEnabled());
+		assertFalse(config.isAdmissionRejecting());
+		assertEquals(0,config.getAdmissionLimit(jobApplication("inventory")));
+		properties.setProperty("leitstand.jobs.admission.tasks.inventory", "500");
+		properties.setProperty("leitstand.jobs.admission.policy", "reject");
+		assertTrue(config.isAdmissionEnabled());
+		assertTrue(config.isAdmissionRejecting());
+		assertEquals(0,config.getAdmissionLimit());
+		assertEquals(500,config.getAdmissionLimit(jobApplication("inventory")));
+		assertEquals(60,config.getAdmissionRetryAfter());
+	}
+	
+	@Test
+	public void read_fractional_task_start_rates() {
+		assertEquals(0,config.getTaskTypeRate(taskType("deploy")),0);
+		properties.setProperty("leitstand.jobs.rate.task_type.deploy", "0.5");
+		properties.setProperty("leitstand.jobs.rate.application.inventory", "20");
+		assertEquals(0.5,config.getTaskTypeRate(taskType("deploy")),0);
+		assertEquals(20,config.getApplicationRate(jobApplication("inventory")),0);
+		assertEquals(1,config.getRateBurst(),0);
+	}
+	
+	@Test
+	public void read_task_retry_settings() {
+		assertEquals(1,config.getTaskMaxAttempts(taskType("deploy")));
+		assertEquals(10L,config.getTaskRetryBackoff(taskType("deploy")));
+		assertTrue(config.getTaskRetryStates(taskType("deploy")).contains(FAILED));
+		assertTrue(config.getTaskRetryStatusCodes(taskType("deploy")).contains(503));
+		properties.setProperty("leitstand.jobs.task.retry.max_attempts", "3");
+		properties.setProperty("leitstand.jobs.task.retry.max_attempts.deploy", "5");
+		properties.setProperty("leitstand.jobs.task.retry.states", "FAILED, TIMEOUT, UNKNOWN");
+		properties.setProperty("leitstand.jobs.task.retry.status_codes.deploy", "503");
+		assertEquals(3,config.getTaskMaxAttempts(taskType("backup")));
+		assertEquals(5,config.getTaskMaxAttempts(taskType("deploy")));
+		assertTrue(config.getTaskRetryStates(taskType("deploy")).contains(TIMEOUT));
+		assertFalse(config.getTaskRetryStatusCodes(taskType("deploy")).contains(429));
+		assertTrue(config.getTaskRetryStatusCodes(taskType("backup")).contains(429));
+	}
+	
+	@Test
+	public void read_drain_timeout() {
+		assertEquals(30L,config.getDrainTimeout());
+		properties.setProperty("leitstand.jobs.shutdown.drain_timeout", "-1");
+		assertEquals(0L,config.getDrainTimeout());
+	}
+	
+	@Test
+	public void read_task_lease_settings() {
+		assertEquals(30L,config.getTaskLeaseDuration());
+		assertFalse(config.isTaskIdempotent(taskType("deploy")));
+		properties.setProperty("leitstand.jobs.task.lease.duration", "12");
+		properties.setProperty("leitstand.jobs.task.idempotent.deploy", "true");
+		assertEquals(12L,config.getTaskLeaseDuration());
+		assertTrue(config.isTaskIdempotent(taskType("deploy")));
+		assertFalse(config.isTaskIdempotent(taskType("backup")));
+	}
+	
+	@Test
+	public void read_adaptive_limit_bounds() {
+		assertEquals(1,config.getEventLoopMinBatchSize());
+		assertEquals(200,config.getEventLoopMaxBatchSize());
+		assertEquals(1000L,config.getEventLoopTargetLatency());
+		assertEquals(2,config.getTaskLatencyTolerance(),0);
+		properties.setProperty("leitstand.jobs.event_loop.min_batch_size", "50");
+		properties.setProperty("leitstand.jobs.event_loop.max_batch_size", "10");
+		assertEquals(50,config.getEventLoopMinBatchSize());
+		assertEquals(50,config.getEventLoopMaxBatchSize());
+	}
+	
+	@Test
+	public void read_executor_thread_mode() {
+		assertFalse(config.isVirtualThreadExecution());
+		properties.setProperty("leitstand.jobs.executor.threads", "virtual");
+		assertTrue(config.isVirtualThreadExecution());
+	}
+	
+	@Test
+	public void read_topology_cache_size() {
+		assertEquals(1000,config.getTopologyCacheSize());
+		properties.setProperty("leitstand.jobs.topology.cache_size", "-1");
+		assertEquals(0,config.getTopologyCacheSize());
+	}
+	
+	@Test
+	public void generated_node_id_is_stable() {
+		assertNotNull(config.getNodeId());
+		assertEquals(config.getNodeId(),config.getNodeId());
+		assertEquals(config.getNodeId(),new JobSchedulerConfig(properties).getNodeId());
+		properties.setProperty("leitstand.jobs.node_id", "node-a");
+		assertEquals("node-a",config.getNodeId());
+	}
+	
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobSchedulerMetricsTest {
+
+	private JobSchedulerMetrics metrics;
+	
+	@Before
+	public void initMetrics() {
+		metrics = new JobSchedulerMetrics();
+	}
+	
+	@Test
+	public void assign_latencies_to_buckets() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(MILLISECONDS.toNanos(1));
+		histogram.record(MILLISECONDS.toNanos(3));
+		histogram.record(MILLISECONDS.toNanos(200));
+		histogram.record(MILLISECONDS.toNanos(120_000));
+		
+		assertEquals(1,histogram.getCumulativeCount(0)); // <= 1ms
+		assertEquals(2,histogram.getCumulativeCount(1)); // <= 5ms
+		assertEquals(3,histogram.getCumulativeCount(6)); // <= 250ms
+		assertEquals(3,histogram.getCumulativeCount(LatencyHistogram.BUCKETS.length-1));
+		assertEquals(4,histogram.getCumulativeCount(LatencyHistogram.BUCKETS.length));
+		assertEquals(4,histogram.getCount());
+		assertEquals(MILLISECONDS.toNanos(120_000),histogram.getMaxNanos());
+	}
+	
+	@Test
+	public void count_throttled_task_starts_per_bucket() {
+		metrics.taskThrottled("task_type:deploy");
+		metrics.taskThrottled("task_type:deploy");
+		metrics.taskThrottled("application:inventory");
+		
+		assertEquals(3,metrics.getThrottledTasks());
+		StringBuilder out = new StringBuilder();
+		metrics.writeTo(out);
+		assertTrue(out.toString().contains("leitstand_jobs_throttled_task_starts_total{bucket=\"task_type:deploy\"} 2\n"));
+		assertTrue(out.toString().contains("leitstand_jobs_throttled_task_starts_total{bucket=\"application:inventory\"} 1\n"));
+	}
+	
+	@Test
+	public void summarize_iterations() {
+		metrics.iterationCompleted(MILLISECONDS.toNanos(10), 1, 2, 3);
+		metrics.iterationCompleted(MILLISECONDS.toNanos(30), 0, 4, 0);
+		
+		TimerStatus iterations = metrics.getIterationTime();
+		assertEquals(2,iterations.getCount());
+		assertEquals(40,iterations.getTotalMillis());
+		assertEquals(20,iterations.getMeanMillis());
+		assertEquals(30,iterations.getMaxMillis());
+		assertEquals(1,metrics.getScheduledJobs());
+		assertEquals(6,metrics.getActivatedTasks());
+		assertEquals(3,metrics.getCommittedCompletions());
+	}
+	
+	@Test
+	public void report_query_times_ordered_by_operation() {
+		metrics.queryExecuted("execute_eligible_tasks", MILLISECONDS.toNanos(5));
+		metrics.queryExecuted("claim_running_jobs", MILLISECONDS.toNanos(2));
+		metrics.queryExecuted("claim_running_jobs", MILLISECONDS.toNanos(4));
+		
+		List<TimerStatus> queries = metrics.getQueryTimes();
+		assertEquals(2,queries.size());
+		assertEquals("claim_running_jobs",queries.get(0).getName());
+		assertEquals(2,queries.get(0).getCount());
+		assertEquals("execute_eligible_tasks",queries.get(1).getName());
+	}
+	
+	@Test
+	public void write_prometheus_text_format() {
+		metrics.iterationCompleted(MILLISECONDS.toNanos(2), 1, 1, 0);
+		metrics.queryExecuted("complete_task", MILLISECONDS.toNanos(1));
+		metrics.taskProcessed("io.leitstand.Processor", MILLISECONDS.toNanos(100));
+		
+		StringBuilder out = new StringBuilder();
+		metrics.writeTo(out);
+		String text = out.toString();
+		assertTrue(text.contains("# TYPE leitstand_jobs_event_loop_iteration_seconds histogram\n"));
+		assertTrue(text.contains("leitstand_jobs_event_loop_iteration_seconds_bucket{le=\"0.001\"} 0\n"));
+		assertTrue(text.contains("leitstand_jobs_event_loop_iteration_seconds_bucket{le=\"0.005\"} 1\n"));
+		assertTrue(text.contains("leitstand_jobs_event_loop_iteration_seconds_bucket{le=\"+Inf\"} 1\n"));
+		assertTrue(text.contains("leitstand_jobs_event_loop_iteration_seconds_count 1\n"));
+		assertTrue(text.contains("leitstand_jobs_scheduled_jobs_total 1\n"));
+		assertTrue(text.contains("leitstand_jobs_scheduler_query_seconds_count{operation=\"complete_task\"} 1\n"));
+		assertTrue(text.contains("leitstand_jobs_task_processor_seconds_bucket{processor=\"io.leitstand.Processor\",le=\"0.1\"} 1\n"));
+	}
+	
+}
@@ -1,19 +1,31 @@
 package io.leitstand.jobs.model;
 
-import static io.leitstand.commons.model.ObjectUtil.asSet;
+import static io.leitstand.jobs.model.JobPartition.ALL_JOBS;
+import static io.leitstand.jobs.model.TaskCompletion.notDispatched;
+import static io.leitstand.jobs.service.JobApplication.jobApplication;
 import static io.leitstand.jobs.service.JobId.randomJobId;
 import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskState.ACTIVE;
+import static io.leitstand.jobs.service.TaskState.FAILED;
 import static io.leitstand.testing.ut.LeitstandCoreMatchers.hasSizeOf;
 import static io.leitstand.testing.ut.LeitstandCoreMatchers.isEmptyList;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonMap;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
-import java.util.Set;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
@@ -29,74 +41,142 @@ import io.leitstand.jobs.service.TaskId;
 public class JobSchedulerTest {
     
     private static final JobId JOB_ID = randomJobId();
-    private static final TaskId START_TASK_ID = randomTaskId();
     private static final TaskId TASK_A_ID = randomTaskId();
     private static final TaskId TASK_B_ID = randomTaskId();
     
     @Mock
     private Repository repository;
     
+    @Mock
+    private JobTaskPermits permits;
+    
+    @Mock
+    private TaskRateLimiter rateLimiter;
+    
+    @Mock
+    private JobAdmissionControl admissionControl;
+    
+    @Mock
+    private TaskProcessingService processing;
+    
     @InjectMocks
     private JobScheduler scheduler = new JobScheduler();
     
+    @Before
+    public void grant_all_permits() {
+        when(permits.tryAcquire(any(Job_Task.class))).thenReturn(true);
+        when(rateLimiter.tryAcquire(any(Job_Task.class))).thenReturn(true);
+    }
     
     @Test
-    public void return_start_task_when_no_task_of_the_job_has_been_completed() {
-        Job job = mock(Job.class);
-        Job_Task start = mock(Job_Task.class);
-        
-        when(start.getTaskId()).thenReturn(START_TASK_ID);
-        when(job.getStart()).thenReturn(start);
-        when(repository.execute(any(Query.class))).thenReturn(job);
-        
-        List<TaskId> tasks = scheduler.activateExecutableTasks(JOB_ID);
-        assertThat(tasks,hasSizeOf(1));
-        assertEquals(START_TASK_ID,tasks.get(0));
-        
+    public void do_not_query_tasks_when_no_job_is_running() {
+        List<TaskId> tasks = scheduler.executeEligibleTasks(emptyList());
+        assertThat(tasks,isEmptyList());
+        verifyZeroInteractions(repository);
     }
     
     @Test
-    public void return_task_successors_eligible_for_execution() {
-        Job job = mock(Job.class);
-        Job_Task start = mock(Job_Task.class);
+    public void execute_all_tasks_eligible_for_execution() {
         Job_Task a = mock(Job_Task.class);
         Job_Task b = mock(Job_Task.class);
         when(a.getTaskId()).thenReturn(TASK_A_ID);
         when(b.getTaskId()).thenReturn(TASK_B_ID);
-        when(b.isEligibleForExecution()).thenReturn(true);
-        
-        Set<Job_Task> successors = asSet(a,b);
+        when(repository.execute(any(Query.class))).thenReturn(asList(a,b));
         
-        when(job.getStart()).thenReturn(start);
-        when(start.isSucceeded()).thenReturn(true);
-        when(repository.execute(any(Query.class))).thenReturn(job)
-                                                  .thenReturn(successors);
+        List<TaskId> tasks = scheduler.executeEligibleTasks(asList(JOB_ID));
+        assertThat(tasks,hasSizeOf(2));
+        assertEquals(TASK_A_ID,tasks.get(0));
+        assertEquals(TASK_B_ID,tasks.get(1));
+        verify(processing).executeTask(a);
+        verify(processing).executeTask(b);
+    }
+    
+    @Test
+    public void do_not_execute_tasks_when_permits_are_not_available() {
+        Job_Task a = mock(Job_Task.class);
+        Job_Task b = mock(Job_Task.class);
+        when(a.getTaskId()).thenReturn(TASK_A_ID);
+        when(b.getTaskId()).thenReturn(TASK_B_ID);
+        when(permits.tryAcquire(a)).thenReturn(false);
+        when(repository.execute(any(Query.class))).thenReturn(asList(a,b));
         
-        List<TaskId> tasks = scheduler.activateExecutableTasks(JOB_ID);
+        List<TaskId> tasks = scheduler.executeEligibleTasks(asList(JOB_ID));
         assertThat(tasks,hasSizeOf(1));
         assertEquals(TASK_B_ID,tasks.get(0));
-        
+        verify(processing,never()).executeTask(a);
+        verify(processing).executeTask(b);
     }
     
     @Test
-    public void return_empty_list_if_no_task_is_eligible_for_execution() {
-        Job job = mock(Job.class);
-        Job_Task start = mock(Job_Task.class);
+    public void do_not_execute_throttled_tasks() {
         Job_Task a = mock(Job_Task.class);
         Job_Task b = mock(Job_Task.class);
         when(a.getTaskId()).thenReturn(TASK_A_ID);
         when(b.getTaskId()).thenReturn(TASK_B_ID);
+        when(rateLimiter.tryAcquire(a)).thenReturn(false);
+        when(repository.execute(any(Query.class))).thenReturn(asList(a,b));
         
-        Set<Job_Task> successors = asSet(a,b);
-        
-        when(job.getStart()).thenReturn(start);
-        when(start.isSucceeded()).thenReturn(true);
-        when(repository.execute(any(Query.class))).thenReturn(job)
-                                                  .thenReturn(successors);
+        List<TaskId> tasks = scheduler.executeEligibleTasks(asList(JOB_ID));
+        assertThat(tasks,hasSizeOf(1));
+        assertEquals(TASK_B_ID,tasks.get(0));
+        verify(permits,never()).tryAcquire(a);
+        verify(processing,never()).executeTask(a);
+    }
+    
+    @Test
+    public void return_task_start_token_when_permits_are_not_available() {
+        Job_Task a = mock(Job_Task.class);
+        when(permits.tryAcquire(a)).thenReturn(false);
+        when(repository.execute(any(Query.class))).thenReturn(asList(a));
         
-        List<TaskId> tasks = scheduler.activateExecutableTasks(JOB_ID);
+        List<TaskId> tasks = scheduler.executeEligibleTasks(asList(JOB_ID));
         assertThat(tasks,isEmptyList());
+        verify(rateLimiter).release(a);
+    }
+    
+    @Test
+    public void do_not_start_job_waiting_for_admission() {
+        Job job = mock(Job.class);
+        JobAdmission admission = new JobAdmission(1, application -> 0, emptyMap());
+        when(repository.execute(any(Query.class))).thenReturn(job);
+        when(admissionControl.tryAdmit(admission, job)).thenReturn(false);
+        
+        assertFalse(scheduler.schedule(JOB_ID, admission));
+        verify(job,never()).setJobState(ACTIVE);
+        verifyZeroInteractions(processing);
+    }
+    
+    @Test
+    public void do_not_claim_jobs_when_admission_is_saturated() {
+        JobAdmission admission = new JobAdmission(1, application -> 0, singletonMap(jobApplication("bulk"), 1L));
+        
+        assertThat(scheduler.claimExecutableJobs(ALL_JOBS, admission, 10),isEmptyList());
+        verifyZeroInteractions(repository);
+    }
+    
+    @Test
+    public void checkpoint_active_tasks_only() {
+        Job_Task a = mock(Job_Task.class);
+        Job_Task b = mock(Job_Task.class);
+        when(a.isActive()).thenReturn(true);
+        when(repository.execute(any(Query.class))).thenReturn(a,b);
+        
+        int checkpointed = scheduler.checkpointTasks(asList(TASK_A_ID,TASK_B_ID));
+        assertEquals(1,checkpointed);
+        verify(processing).taskInterrupted(a);
+        verify(processing,never()).taskInterrupted(b);
+    }
+    
+    @Test
+    public void set_task_ready_when_task_was_not_dispatched() {
+        Job job = mock(Job.class);
+        Job_Task a = mock(Job_Task.class);
+        when(job.getTask(TASK_A_ID)).thenReturn(a);
+        when(repository.execute(any(Query.class))).thenReturn(job);
         
+        scheduler.completeTask(notDispatched(JOB_ID, TASK_A_ID));
+        verify(processing).taskInterrupted(a);
+        verify(processing,never()).taskProcessed(a, FAILED, null);
     }
     
 }
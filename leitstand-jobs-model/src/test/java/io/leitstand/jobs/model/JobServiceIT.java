@@ -151,7 +151,8 @@ public class JobServiceIT extends JobsIT{
 									 inventory,    
 									 new JobEditor(repository),
 									 mock(Messages.class),
-									 userContext);
+									 userContext,
+									 mock(Event.class));
 
 		start 	 = canaryTask(START,elementName("start"));
 	 	split 	 = task(SPLIT);
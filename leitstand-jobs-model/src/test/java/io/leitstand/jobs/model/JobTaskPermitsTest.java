@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.inventory.service.ElementGroupId.randomGroupId;
+import static io.leitstand.inventory.service.ElementId.randomElementId;
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import java.util.Properties;
+import java.util.SortedMap;
+
+import javax.enterprise.event.Event;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Repository;
+import io.leitstand.commons.model.Update;
+import io.leitstand.inventory.service.ElementGroupId;
+import io.leitstand.inventory.service.ElementGroupType;
+import io.leitstand.inventory.service.ElementId;
+import io.leitstand.inventory.service.ElementSettings;
+import io.leitstand.inventory.service.ElementSettingsService;
+
+public class JobTaskPermitsTest {
+
+	private static final ElementId ELEMENT_ID = randomElementId();
+	private static final ElementGroupId GROUP_ID = randomGroupId();
+	private static final ElementGroupType GROUP_TYPE = new ElementGroupType("unit");
+	
+	private Repository repository;
+	private Properties properties;
+	private ElementSettingsService elements;
+	private Event<TaskPermitsReleasedEvent> sink;
+	private JobTaskPermits permits;
+	private Job_Task task;
+	
+	@SuppressWarnings("unchecked")
+	@Before
+	public void initPermits() {
+		repository = mock(Repository.class);
+		properties = new Properties();
+		elements = mock(ElementSettingsService.class);
+		sink = mock(Event.class);
+		permits = new JobTaskPermits(repository, 
+									 new JobSchedulerConfig(properties), 
+									 mock(JobsDatabaseDialect.class), 
+									 elements, 
+									 sink);
+		
+		ElementSettings element = mock(ElementSettings.class);
+		when(element.getGroupId()).thenReturn(GROUP_ID);
+		when(element.getGroupType()).thenReturn(GROUP_TYPE);
+		when(elements.getElementSettings(ELEMENT_ID)).thenReturn(element);
+		
+		task = mock(Job_Task.class);
+		when(task.getTaskId()).thenReturn(randomTaskId());
+		when(task.isElementTask()).thenReturn(true);
+		when(task.getElementId()).thenReturn(ELEMENT_ID);
+	}
+	
+	@Test
+	public void no_permits_needed_when_no_limits_are_configured() {
+		assertTrue(permits.getLimits(task).isEmpty());
+		assertTrue(permits.tryAcquire(task));
+		verifyZeroInteractions(repository);
+		verifyZeroInteractions(elements);
+	}
+	
+	@Test
+	public void no_permits_needed_for_tasks_without_element() {
+		properties.setProperty("leitstand.jobs.permits.element", "1");
+		when(task.isElementTask()).thenReturn(false);
+		assertTrue(permits.getLimits(task).isEmpty());
+	}
+	
+	@Test
+	public void compute_element_group_and_group_type_limits() {
+		properties.setProperty("leitstand.jobs.permits.element", "1");
+		properties.setProperty("leitstand.jobs.permits.group", "5");
+		properties.setProperty("leitstand.jobs.permits.group_type", "10");
+		properties.setProperty("leitstand.jobs.permits.group_type.unit", "20");
+		
+		SortedMap<String,Integer> limits = permits.getLimits(task);
+		assertEquals(3,limits.size());
+		assertEquals(Integer.valueOf(1),limits.get("element:"+ELEMENT_ID));
+		assertEquals(Integer.valueOf(5),limits.get("group:"+GROUP_ID));
+		assertEquals(Integer.valueOf(20),limits.get("group_type:unit"));
+	}
+	
+	@Test
+	public void record_acquired_permits_in_task() {
+		properties.setProperty("leitstand.jobs.permits.element", "1");
+		when(repository.execute(any(Update.class))).thenReturn(1);
+		
+		assertTrue(permits.tryAcquire(task));
+		verify(task).setPermits("element:"+ELEMENT_ID+";");
+	}
+	
+	@Test
+	public void do_not_acquire_permits_again_when_task_already_holds_permits() {
+		properties.setProperty("leitstand.jobs.permits.element", "1");
+		when(task.getPermits()).thenReturn("element:"+ELEMENT_ID+";");
+		
+		assertTrue(permits.tryAcquire(task));
+		verifyZeroInteractions(repository);
+	}
+	
+	@Test
+	public void release_acquired_permits_when_a_permit_is_not_available() {
+		properties.setProperty("leitstand.jobs.permits.element", "1");
+		properties.setProperty("leitstand.jobs.permits.group", "5");
+		when(repository.execute(any(Query.class))).thenReturn(mock(Job_Permit.class));
+		// Acquire element permit, fail to acquire group permit twice, release element permit.
+		when(repository.execute(any(Update.class))).thenReturn(1)
+													.thenReturn(0)
+													.thenReturn(0)
+													.thenReturn(1);
+		
+		assertFalse(permits.tryAcquire(task));
+		verify(repository,times(4)).execute(any(Update.class));
+		verify(task,never()).setPermits(any(String.class));
+	}
+	
+	@Test
+	public void release_permits_held_by_task() {
+		when(task.getPermits()).thenReturn("element:"+ELEMENT_ID+";group:"+GROUP_ID+";");
+		
+		permits.release(task);
+		verify(repository,times(2)).execute(any(Update.class));
+		verify(task).setPermits(null);
+		verify(sink).fire(any(TaskPermitsReleasedEvent.class));
+	}
+	
+}
@@ -15,6 +15,8 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.model.Job.claimRunnableJobs;
+import static io.leitstand.jobs.model.JobPartition.ALL_JOBS;
 import static io.leitstand.jobs.model.JobTaskMother.activeTask;
 import static io.leitstand.jobs.model.JobTaskMother.completedTask;
 import static io.leitstand.jobs.model.JobTaskMother.failedTask;
@@ -25,24 +27,43 @@ import static io.leitstand.jobs.service.JobId.randomJobId;
 import static io.leitstand.jobs.service.JobName.jobName;
 import static io.leitstand.jobs.service.JobType.jobType;
 import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskName.taskName;
 import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.COMPLETED;
 import static io.leitstand.jobs.service.TaskState.CONFIRM;
 import static io.leitstand.jobs.service.TaskState.FAILED;
+import static io.leitstand.jobs.service.TaskState.NEW;
 import static io.leitstand.jobs.service.TaskState.READY;
 import static io.leitstand.jobs.service.TaskState.SKIPPED;
+import static io.leitstand.jobs.service.TaskType.taskType;
 import static io.leitstand.security.auth.UserName.userName;
+import static java.time.ZoneId.systemDefault;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TemporalType;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.JobId;
+
 public class JobTest {
 	
 	private Job job;
@@ -56,6 +77,107 @@ public class JobTest {
 				      userName("unittest"));
 	}
 
+	private static Date local(String date) {
+		return Date.from(LocalDateTime.parse(date).atZone(systemDefault()).toInstant());
+	}
+	
+	@Test
+	public void move_closed_window_to_next_window_of_the_same_time_of_day() {
+		job.setDateScheduled(local("2026-03-02T22:00:00"));
+		job.setDateSuspend(local("2026-03-03T04:00:00"));
+		
+		assertTrue(job.isWindowClosed(local("2026-03-05T10:00:00")));
+		assertTrue(job.moveToNextWindow(local("2026-03-05T10:00:00")));
+		assertEquals(local("2026-03-05T22:00:00"),job.getDateScheduled());
+		assertEquals(local("2026-03-06T04:00:00"),job.getDateSuspend());
+	}
+	
+	@Test
+	public void move_window_closed_right_now_to_next_day() {
+		job.setDateScheduled(local("2026-03-02T22:00:00"));
+		job.setDateSuspend(local("2026-03-03T04:00:00"));
+		
+		assertTrue(job.moveToNextWindow(local("2026-03-03T04:00:00")));
+		assertEquals(local("2026-03-03T22:00:00"),job.getDateScheduled());
+		assertEquals(local("2026-03-04T04:00:00"),job.getDateSuspend());
+	}
+	
+	@Test
+	public void do_not_move_open_window() {
+		job.setDateScheduled(local("2026-03-02T22:00:00"));
+		job.setDateSuspend(local("2026-03-03T04:00:00"));
+		
+		assertFalse(job.isWindowClosed(local("2026-03-03T03:59:59")));
+		assertFalse(job.moveToNextWindow(local("2026-03-03T03:59:59")));
+		assertEquals(local("2026-03-03T04:00:00"),job.getDateSuspend());
+	}
+	
+	@Test
+	public void job_without_suspend_date_has_no_window() {
+		assertFalse(job.isWindowClosed(new Date()));
+		assertFalse(job.moveToNextWindow(new Date()));
+		job.setJobState(ACTIVE);
+		assertFalse(job.isSuspended(new Date()));
+	}
+	
+	@Test
+	public void suspend_running_job_outside_of_its_window() {
+		job.setJobState(ACTIVE);
+		job.setDateScheduled(local("2026-03-02T22:00:00"));
+		job.setDateSuspend(local("2026-03-03T04:00:00"));
+		
+		assertFalse(job.isSuspended(local("2026-03-03T03:59:59")));
+		assertTrue(job.isSuspended(local("2026-03-03T04:00:00")));
+		assertTrue(job.moveToNextWindow(local("2026-03-03T04:00:00")));
+		assertTrue(job.isSuspended(local("2026-03-03T10:00:00")));
+		assertFalse(job.isSuspended(local("2026-03-03T22:00:00")));
+	}
+	
+	@Test
+	public void suspend_ready_job_when_its_window_has_been_closed() {
+		job.setJobState(READY);
+		job.setDateScheduled(local("2026-03-02T22:00:00"));
+		job.setDateSuspend(local("2026-03-03T04:00:00"));
+		
+		assertFalse(job.isSuspended(local("2026-03-02T20:00:00")));
+		assertTrue(job.isSuspended(local("2026-03-03T04:00:00")));
+	}
+	
+	@Test
+	public void rank_job_by_schedule_date_and_priority() {
+		Date scheduled = new Date();
+		job.setDateScheduled(scheduled);
+		job.updateRank(60);
+		assertEquals(scheduled,job.getDateRank());
+		
+		job.setPriority(2);
+		job.updateRank(60);
+		assertEquals(new Date(scheduled.getTime()-120000),job.getDateRank());
+
+		job.setPriority(-1);
+		job.updateRank(60);
+		assertEquals(new Date(scheduled.getTime()+60000),job.getDateRank());
+	}
+	
+	@Test
+	public void urgent_job_does_not_overtake_routine_job_due_for_longer_than_aging_period() {
+		Job routine = new Job(jobApplication("junit"),
+							  jobType("test"),
+							  randomJobId(),
+							  jobName("routine"),
+							  userName("unittest"));
+		routine.setDateScheduled(new Date(System.currentTimeMillis()-180000));
+		routine.updateRank(60);
+		job.setDateScheduled(new Date());
+		job.setPriority(2);
+		job.updateRank(60);
+		assertTrue(routine.getDateRank().before(job.getDateRank()));
+		
+		job.setPriority(4);
+		job.updateRank(60);
+		assertTrue(job.getDateRank().before(routine.getDateRank()));
+	}
+	
 	@Test
 	public void cannot_complete_job_with_failed_tasks() {
 		job.addTask(completedTask());
@@ -93,6 +215,61 @@ public class JobTest {
 		assertEquals(COMPLETED,job.getJobState());
 	}
 	
+	@Test
+	public void count_tasks_per_state() {
+		Job_Task a = new Job_Task(job, taskType("test"), randomTaskId(), taskName("a"));
+		Job_Task b = new Job_Task(job, taskType("test"), randomTaskId(), taskName("b"));
+		new Job_Task(job, taskType("test"), randomTaskId(), taskName("c"));
+		assertEquals(3,job.getTaskCount(NEW));
+		
+		a.setTaskState(ACTIVE);
+		b.setTaskState(COMPLETED);
+		assertEquals(1,job.getTaskCount(NEW));
+		assertEquals(1,job.getTaskCount(ACTIVE));
+		assertEquals(1,job.getTaskCount(COMPLETED));
+		assertEquals(2,job.getTaskCount(ACTIVE,COMPLETED));
+		assertEquals(3,job.getTotalTaskCount());
+		
+		job.removeTask(b);
+		assertEquals(0,job.getTaskCount(COMPLETED));
+		assertEquals(2,job.getTotalTaskCount());
+	}
+	
+	@Test
+	public void complete_job_when_last_task_completes() {
+		Job_Task a = new Job_Task(job, taskType("test"), randomTaskId(), taskName("a"));
+		Job_Task b = new Job_Task(job, taskType("test"), randomTaskId(), taskName("b"));
+		a.setTaskState(COMPLETED);
+		assertFalse(job.completed());
+		
+		b.setTaskState(COMPLETED);
+		assertTrue(job.completed());
+		assertEquals(COMPLETED,job.getJobState());
+	}
+	
+	@Test
+	public void set_all_tasks_ready() {
+		new Job_Task(job, taskType("test"), randomTaskId(), taskName("a"));
+		new Job_Task(job, taskType("test"), randomTaskId(), taskName("b"));
+		
+		job.allTasksReady();
+		
+		assertEquals(0,job.getTaskCount(NEW));
+		assertEquals(2,job.getTaskCount(READY));
+	}
+	
+	@Test
+	public void recompute_task_counts_from_tasks() {
+		Job_Task a = new Job_Task(job, taskType("test"), randomTaskId(), taskName("a"));
+		job.allTasksReady();
+		
+		job.resetTaskCounts();
+		
+		assertEquals(1,job.getTaskCount(NEW));
+		assertEquals(0,job.getTaskCount(READY));
+		assertEquals(NEW,a.getTaskState());
+	}
+	
 	@Test
 	public void submit_new_job() {
 	    Job_Task a = mock(Job_Task.class);
@@ -183,5 +360,24 @@ public class JobTest {
         verify(ready).setTaskState(SKIPPED);
         
     }
+    
+    @Test
+    public void return_claimed_jobs_in_dispatch_rank_order() {
+    	JobId bulk = randomJobId();
+    	JobId urgent = randomJobId();
+    	JobId legacy = randomJobId();
+    	EntityManager em = mock(EntityManager.class);
+    	javax.persistence.Query claim = mock(javax.persistence.Query.class);
+    	when(em.createNativeQuery(anyString())).thenReturn(claim);
+    	when(claim.setParameter(anyInt(), any())).thenReturn(claim);
+    	when(claim.setParameter(anyInt(), any(Date.class), any(TemporalType.class))).thenReturn(claim);
+    	when(claim.getResultList()).thenReturn(asList(new Object[] {3L, legacy.toString(), null},
+    												  new Object[] {1L, bulk.toString(), local("2026-03-05T10:00:00")},
+    												  new Object[] {2L, urgent.toString(), local("2026-03-05T09:00:00")}));
+    	
+    	List<JobId> claimed = new Repository(em).execute(claimRunnableJobs(new Date(), ALL_JOBS, emptySet(), "node", new Date(), 10));
+    	
+    	assertEquals(asList(urgent,bulk,legacy),claimed);
+    }
 	
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.JobApplication.jobApplication;
+import static io.leitstand.jobs.service.JobId.randomJobId;
+import static io.leitstand.jobs.service.JobName.jobName;
+import static io.leitstand.jobs.service.JobType.jobType;
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskName.taskName;
+import static io.leitstand.jobs.service.TaskState.READY;
+import static io.leitstand.jobs.service.TaskType.taskType;
+import static io.leitstand.security.auth.UserName.userName;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Repository;
+
+public class JobTopologyCacheTest {
+
+	private Repository repository;
+	private JobSchedulerConfig config;
+	private JobTopologyCache cache;
+
+	@Before
+	public void initCache() {
+		repository = mock(Repository.class);
+		config = mock(JobSchedulerConfig.class);
+		when(config.getTopologyCacheSize()).thenReturn(2);
+		when(repository.execute(any(Query.class))).thenReturn(emptyList());
+		cache = new JobTopologyCache(repository, config);
+	}
+
+	private static Job job() {
+		Job job = new Job(jobApplication("junit"),
+						  jobType("test"),
+						  randomJobId(),
+						  jobName("test"),
+						  userName("unittest"));
+		job.setStart(new Job_Task(job,
+								  taskType("noop"),
+								  randomTaskId(),
+								  taskName("start")));
+		return job;
+	}
+
+	private static Job committedJob() {
+		Job job = job();
+		job.setJobState(READY);
+		return job;
+	}
+
+	@Test
+	public void do_not_cache_topology_of_new_job() {
+		Job job = job();
+
+		JobTopology topology = cache.getTopology(job);
+
+		assertEquals(1, topology.getTaskCount());
+		assertNotSame(topology, cache.getTopology(job));
+		assertEquals(0, cache.size());
+		verify(repository,never()).execute(any(Query.class));
+	}
+
+	@Test
+	public void read_topology_of_committed_job_once() {
+		Job job = committedJob();
+
+		JobTopology topology = cache.getTopology(job);
+
+		assertSame(topology, cache.getTopology(job));
+		assertEquals(1, cache.size());
+		verify(repository,times(1)).execute(any(Query.class));
+	}
+
+	@Test
+	public void evict_least_recently_used_topology() {
+		Job a = committedJob();
+		Job b = committedJob();
+		Job c = committedJob();
+		JobTopology topologyA = cache.getTopology(a);
+		cache.getTopology(b);
+		// Touch a to make b the least recently used topology.
+		cache.getTopology(a);
+		cache.getTopology(c);
+
+		assertEquals(2, cache.size());
+		assertSame(topologyA, cache.getTopology(a));
+		verify(repository,times(3)).execute(any(Query.class));
+	}
+
+	@Test
+	public void read_topology_without_caching() {
+		Job job = committedJob();
+
+		assertNotSame(cache.readTopology(job), cache.readTopology(job));
+		assertEquals(0, cache.size());
+		verify(repository,times(2)).execute(any(Query.class));
+	}
+
+	@Test
+	public void evict_topology_of_removed_job() {
+		Job job = committedJob();
+		cache.getTopology(job);
+
+		cache.evict(job.getJobId());
+
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void disable_cache() {
+		when(config.getTopologyCacheSize()).thenReturn(0);
+		Job job = committedJob();
+
+		cache.getTopology(job);
+		cache.getTopology(job);
+
+		assertEquals(0, cache.size());
+		verify(repository,times(2)).execute(any(Query.class));
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.JobApplication.jobApplication;
+import static io.leitstand.jobs.service.JobId.randomJobId;
+import static io.leitstand.jobs.service.JobName.jobName;
+import static io.leitstand.jobs.service.JobType.jobType;
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskName.taskName;
+import static io.leitstand.jobs.service.TaskState.COMPLETED;
+import static io.leitstand.jobs.service.TaskState.READY;
+import static io.leitstand.jobs.service.TaskType.taskType;
+import static io.leitstand.security.auth.UserName.userName;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobTopologyTest {
+
+	private Job job;
+	private long id;
+
+	@Before
+	public void prepareJob() {
+		job = new Job(jobApplication("junit"),
+					  jobType("test"),
+					  randomJobId(),
+					  jobName("test"),
+					  userName("unittest"));
+	}
+
+	private Job_Task task(String name) {
+		return new Job_Task(++id,
+							job,
+							taskType("noop"),
+							randomTaskId(),
+							taskName(name));
+	}
+
+	/* Creates the following task flow, where the tasks are submitted in alphabetical order:
+	 *
+	 *           <a>
+	 *            |
+	 *     +------+------+
+	 *     |             |
+	 *    <b>           <c>
+	 *     |             |
+	 *     +------+------+
+	 *            |
+	 *           <d>
+	 *            |
+	 *           <e>
+	 */
+	private Job_Task[] diamond() {
+		Job_Task a = task("a");
+		Job_Task b = task("b");
+		Job_Task c = task("c");
+		Job_Task d = task("d");
+		Job_Task e = task("e");
+		// Add successors in reverse order to verify that successors are ordered by submission order.
+		a.addSuccessor(c);
+		a.addSuccessor(b);
+		b.addSuccessor(d);
+		c.addSuccessor(d);
+		d.addSuccessor(e);
+		job.setStart(a);
+		return new Job_Task[] {a,b,c,d,e};
+	}
+
+	@Test
+	public void index_tasks_in_submission_order() {
+		Job_Task[] tasks = diamond();
+
+		JobTopology topology = JobTopology.of(job);
+
+		assertEquals(job.getJobId(), topology.getJobId());
+		assertEquals(5, topology.getTaskCount());
+		assertEquals(5, topology.getTransitionCount());
+		assertEquals(0, topology.getStart());
+		for(int i=0; i < tasks.length; i++) {
+			assertEquals(tasks[i].getTaskId(), topology.getTaskId(i));
+			assertEquals(i, topology.indexOf(tasks[i].getTaskId()));
+		}
+		assertEquals(-1, topology.indexOf(randomTaskId()));
+		assertArrayEquals(new int[] {1,2}, topology.getSuccessors(0));
+		assertArrayEquals(new int[] {3}, topology.getSuccessors(1));
+		assertArrayEquals(new int[] {1,2}, topology.getPredecessors(3));
+		assertArrayEquals(new int[0], topology.getPredecessors(0));
+		assertArrayEquals(new int[0], topology.getSuccessors(4));
+	}
+
+	@Test
+	public void create_topology_from_transitions() {
+		Job_Task[] tasks = diamond();
+		List<Job_Task_Transition> transitions = new ArrayList<>();
+		for(Job_Task task : tasks) {
+			transitions.addAll(task.getSuccessors());
+		}
+
+		JobTopology topology = JobTopology.of(job, transitions);
+
+		assertEquals(5, topology.getTransitionCount());
+		assertArrayEquals(new int[] {1,2}, topology.getSuccessors(0));
+		assertArrayEquals(new int[] {4}, topology.getSuccessors(3));
+	}
+
+	@Test
+	public void list_branches_before_join() {
+		diamond();
+
+		JobTopology topology = JobTopology.of(job);
+
+		assertArrayEquals(new int[] {0,1,3,2,4}, topology.getOrderedTasks());
+	}
+
+	@Test
+	public void assign_task_ordinals_in_listing_order() {
+		Job_Task[] tasks = diamond();
+		Job_Task orphan = task("orphan");
+
+		job.assignTaskOrdinals(JobTopology.of(job));
+
+		assertEquals(Integer.valueOf(0), tasks[0].getOrdinal());
+		assertEquals(Integer.valueOf(1), tasks[1].getOrdinal());
+		assertEquals(Integer.valueOf(2), tasks[3].getOrdinal());
+		assertEquals(Integer.valueOf(3), tasks[2].getOrdinal());
+		assertEquals(Integer.valueOf(4), tasks[4].getOrdinal());
+		assertNull(orphan.getOrdinal());
+	}
+
+	@Test
+	public void visit_tasks_before_and_transitions_after_successors() {
+		diamond();
+
+		List<String> visits = new ArrayList<>();
+		JobTopology.of(job).traverse(new JobTopology.Visitor() {
+			@Override
+			public void visitTask(int task) {
+				visits.add(String.valueOf(task));
+			}
+
+			@Override
+			public void visitTransition(int from, int to) {
+				visits.add(from+"->"+to);
+			}
+		});
+
+		assertEquals(asList("0","1","3","4","3->4","1->3","0->1","2","2->3","0->2"),visits);
+	}
+
+	@Test
+	public void count_pending_predecessors_from_task_state_snapshot() {
+		Job_Task[] tasks = diamond();
+		tasks[0].setTaskState(COMPLETED);
+		tasks[1].setTaskState(COMPLETED);
+		tasks[2].setTaskState(READY);
+
+		JobTopology topology = JobTopology.of(job);
+		byte[] states = topology.getTaskStates(job);
+
+		assertEquals(COMPLETED.ordinal(), states[0]);
+		assertEquals(READY.ordinal(), states[2]);
+		assertEquals(0, topology.countPendingPredecessors(1, states));
+		assertEquals(1, topology.countPendingPredecessors(3, states));
+
+		job.resetPendingPredecessors(topology);
+		assertEquals(0, tasks[0].getPendingPredecessors());
+		assertEquals(0, tasks[2].getPendingPredecessors());
+		assertEquals(1, tasks[3].getPendingPredecessors());
+		assertEquals(1, tasks[4].getPendingPredecessors());
+	}
+
+	@Test
+	public void traverse_long_task_chain_iteratively() {
+		Job_Task previous = task("start");
+		job.setStart(previous);
+		for(int i=1; i < 100000; i++) {
+			Job_Task next = task("task"+i);
+			previous.addSuccessor(next);
+			previous = next;
+		}
+
+		JobTopology topology = JobTopology.of(job);
+
+		int[] ordered = topology.getOrderedTasks();
+		assertEquals(100000, ordered.length);
+		assertEquals(99999, ordered[99999]);
+		assertEquals(100000, job.getOrderedTasks(topology).size());
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.JobId.randomJobId;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.leitstand.jobs.service.JobId;
+
+public class JobWindowTimerTest {
+
+	private JobWindowManager manager;
+	private JobSchedulerConfig config;
+	private JobWindowTimer timer;
+	private long now;
+	
+	@Before
+	public void initTimer() {
+		manager = mock(JobWindowManager.class);
+		config = mock(JobSchedulerConfig.class);
+		when(config.getTimerHorizon()).thenReturn(3600L);
+		when(config.getEventLoopBatchSize()).thenReturn(10);
+		timer = new JobWindowTimer(manager, config);
+		now = currentTimeMillis();
+	}
+	
+	@Test
+	public void poll_closed_windows_in_suspend_date_order() {
+		JobId first = randomJobId();
+		JobId second = randomJobId();
+		JobId open = randomJobId();
+		timer.windowChanged(second, new Date(now-1000));
+		timer.windowChanged(open, new Date(now+60000));
+		timer.windowChanged(first, new Date(now-2000));
+		
+		assertEquals(asList(first,second),timer.pollDue(now));
+		assertEquals(emptyList(),timer.pollDue(now));
+		assertEquals(now+60000,timer.nextDeadline());
+		assertEquals(1,timer.getPendingTimers());
+	}
+	
+	@Test
+	public void apply_moved_window() {
+		JobId job = randomJobId();
+		timer.windowChanged(job, new Date(now-1000));
+		timer.windowChanged(job, new Date(now+1000));
+		
+		assertEquals(emptyList(),timer.pollDue(now));
+		assertEquals(now+1000,timer.nextDeadline());
+		assertEquals(asList(job),timer.pollDue(now+1000));
+	}
+	
+	@Test
+	public void discard_window_of_job_not_resumed_automatically() {
+		JobId job = randomJobId();
+		timer.windowChanged(job, new Date(now-1000));
+		timer.windowChanged(job, null);
+		
+		assertEquals(emptyList(),timer.pollDue(now));
+		assertEquals(Long.MAX_VALUE,timer.nextDeadline());
+		assertEquals(0,timer.getPendingTimers());
+	}
+	
+	@Test
+	public void discard_window_moved_beyond_horizon() {
+		JobId job = randomJobId();
+		timer.windowChanged(job, new Date(now+1000));
+		timer.windowChanged(job, new Date(now+7200000));
+		
+		assertEquals(0,timer.getPendingTimers());
+		assertEquals(emptyList(),timer.pollDue(now+1000));
+	}
+	
+}
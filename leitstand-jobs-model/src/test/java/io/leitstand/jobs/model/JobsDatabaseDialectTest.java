@@ -0,0 +1,82 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class JobsDatabaseDialectTest {
+
+	private DataSource ds;
+	private Connection connection;
+	private DatabaseMetaData metadata;
+	private JobsDatabaseDialect dialect;
+
+	@Before
+	public void initDialect() throws SQLException {
+		ds = mock(DataSource.class);
+		connection = mock(Connection.class);
+		metadata = mock(DatabaseMetaData.class);
+		when(connection.getMetaData()).thenReturn(metadata);
+		dialect = new JobsDatabaseDialect(ds);
+	}
+
+	@Test
+	public void cache_database_product() throws SQLException {
+		when(ds.getConnection()).thenReturn(connection);
+		when(metadata.getDatabaseProductName()).thenReturn("PostgreSQL");
+
+		assertTrue(dialect.isPostgres());
+		assertTrue(dialect.isPostgres());
+		verify(ds,times(1)).getConnection();
+	}
+
+	@Test
+	public void cache_other_database_product() throws SQLException {
+		when(ds.getConnection()).thenReturn(connection);
+		when(metadata.getDatabaseProductName()).thenReturn("H2");
+
+		assertFalse(dialect.isPostgres());
+		assertFalse(dialect.isPostgres());
+		verify(ds,times(1)).getConnection();
+	}
+
+	@Test
+	public void retry_when_database_is_not_reachable() throws SQLException {
+		when(ds.getConnection()).thenThrow(new SQLException("Connection refused"))
+								.thenReturn(connection);
+		when(metadata.getDatabaseProductName()).thenReturn("PostgreSQL");
+
+		assertFalse(dialect.isPostgres());
+		assertTrue(dialect.isPostgres());
+		assertTrue(dialect.isPostgres());
+		verify(ds,times(2)).getConnection();
+	}
+
+}
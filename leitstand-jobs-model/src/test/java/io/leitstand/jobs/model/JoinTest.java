@@ -15,6 +15,10 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.service.TaskState.ACTIVE;
+import static io.leitstand.jobs.service.TaskState.COMPLETED;
+import static io.leitstand.jobs.service.TaskState.READY;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -56,5 +60,40 @@ public class JoinTest {
 		
 	}
 	
+	@Test
+	public void count_pending_predecessors_of_join() {
+		a.setTaskState(READY);
+		b.setTaskState(READY);
+		ab.setTaskState(READY);
+		ab.resetPendingPredecessors();
+		
+		ab.join(a,b);
+		assertEquals(2,ab.getPendingPredecessors());
+		
+		a.setTaskState(COMPLETED);
+		assertEquals(1,ab.getPendingPredecessors());
+		assertTrue(ab.isBlocked());
+		
+		b.setTaskState(COMPLETED);
+		assertEquals(0,ab.getPendingPredecessors());
+		assertFalse(ab.isBlocked());
+		
+		b.setTaskState(READY);
+		assertEquals(1,ab.getPendingPredecessors());
+		
+		a.removeSuccessor(ab);
+		assertEquals(1,ab.getPendingPredecessors());
+		b.removeSuccessor(ab);
+		assertEquals(0,ab.getPendingPredecessors());
+	}
+	
+	@Test
+	public void count_pending_predecessors_of_task_without_counter() {
+		ab.join(a,b);
+		a.setTaskState(COMPLETED);
+		b.setTaskState(ACTIVE);
+		assertEquals(1,ab.getPendingPredecessors());
+	}
+	
 	
 }
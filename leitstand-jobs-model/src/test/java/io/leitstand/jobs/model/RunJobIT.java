@@ -15,8 +15,10 @@
  */
 package io.leitstand.jobs.model;
 
+import static io.leitstand.jobs.model.Job.findJobById;
 import static io.leitstand.jobs.model.Job_Task.findSuccessorsOfTask;
 import static io.leitstand.jobs.model.Job_Task.findTaskById;
+import static io.leitstand.jobs.model.Job_Task.findTasksEligibleForExecution;
 import static io.leitstand.jobs.service.JobId.randomJobId;
 import static io.leitstand.jobs.service.JobSubmission.newJobSubmission;
 import static io.leitstand.jobs.service.TaskId.randomTaskId;
@@ -25,13 +27,16 @@ import static io.leitstand.jobs.service.TaskState.COMPLETED;
 import static io.leitstand.jobs.service.TaskSubmission.newTaskSubmission;
 import static io.leitstand.jobs.service.TaskTransitionSubmission.newTaskTransitionSubmission;
 import static io.leitstand.security.auth.UserName.userName;
+import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
+import static javax.persistence.LockModeType.PESSIMISTIC_WRITE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import javax.enterprise.event.Event;
@@ -93,6 +98,7 @@ public class RunJobIT extends JobsIT{
 	
 	private DefaultJobService jobs;
 	private DefaultJobTaskService tasks;
+	private TaskProcessingService processing;
 	private JobId jobId;
 	private Event<TaskStateChangedEvent> event;
 	private TaskProcessor processor;
@@ -120,7 +126,8 @@ public class RunJobIT extends JobsIT{
 									 mock(InventoryClient.class),
 									 new JobEditor(repository),
 									 mock(Messages.class),
-									 userContext);
+									 userContext,
+									 mock(Event.class));
 
 		jobId = randomJobId();
 		start 	 = task(START);
@@ -160,9 +167,10 @@ public class RunJobIT extends JobsIT{
 		processor = mock(TaskProcessor.class);
 		TaskProcessorDiscoveryService discovery = mock(TaskProcessorDiscoveryService.class);
 		when(discovery.findElementTaskProcessor(any(Job_Task.class))).thenReturn(processor);
+		processing = new TaskProcessingService(discovery,event);
 		tasks = new DefaultJobTaskService(repository,
                                           new JobProvider(repository),
-										  new TaskProcessingService(discovery,event));
+										  processing);
 		
 	}
 	
@@ -318,6 +326,34 @@ public class RunJobIT extends JobsIT{
 		
 	}
 	
+	List<TaskId> executeEligibleTasks(){
+	    List<TaskId> executed = new ArrayList<>();
+	    for(Job_Task task : repository.execute(findTasksEligibleForExecution(asList(jobId), PESSIMISTIC_WRITE))) {
+	        processing.executeTask(task);
+	        executed.add(task.getTaskId());
+	    }
+	    return executed;
+	}
+	
+	@Test
+	public void run_job_with_set_based_task_activation() {
+		when(processor.execute(any(Job_Task.class))).thenReturn(COMPLETED);
+		transaction(() -> {
+		    // Tasks of inactive jobs are not eligible for execution.
+		    assertTrue(executeEligibleTasks().isEmpty());
+		    repository.execute(findJobById(jobId)).setJobState(ACTIVE);
+		});
+		
+		transaction(() -> assertSuccessors(executeEligibleTasks(), start));
+		transaction(() -> assertSuccessors(executeEligibleTasks(), split));
+		transaction(() -> assertSuccessors(executeEligibleTasks(), branchA0, branchB0));
+		// Join task is blocked until branch A has been completed.
+		transaction(() -> assertSuccessors(executeEligibleTasks(), branchA1));
+		transaction(() -> assertSuccessors(executeEligibleTasks(), join));
+		transaction(() -> assertSuccessors(executeEligibleTasks(), end));
+		transaction(() -> assertTrue(executeEligibleTasks().isEmpty()));
+	}
+	
 	@After
 	public void verify_job_completed() {
 		JobProgress progress = jobs.getJobProgress(jobId);
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import io.leitstand.jobs.service.TaskId;
+
+public class TaskExpiryTimerTest {
+
+	private TaskExpiryManager manager;
+	private JobSchedulerConfig config;
+	private TaskExpiryTimer timer;
+	private long now;
+	
+	@Before
+	public void initTimer() {
+		manager = mock(TaskExpiryManager.class);
+		config = mock(JobSchedulerConfig.class);
+		when(config.getTimerHorizon()).thenReturn(3600L);
+		when(config.getEventLoopBatchSize()).thenReturn(2);
+		timer = new TaskExpiryTimer(manager, config);
+		now = currentTimeMillis();
+	}
+	
+	@Test
+	public void poll_due_tasks_in_expiry_order() {
+		TaskId first = randomTaskId();
+		TaskId second = randomTaskId();
+		TaskId pending = randomTaskId();
+		timer.deadlineChanged(second, new Date(now-1000));
+		timer.deadlineChanged(pending, new Date(now+60000));
+		timer.deadlineChanged(first, new Date(now-2000));
+		
+		assertEquals(asList(first,second),timer.pollDue(now));
+		assertEquals(emptyList(),timer.pollDue(now));
+		assertEquals(now+60000,timer.nextDeadline());
+		assertEquals(1,timer.getPendingTimers());
+	}
+	
+	@Test
+	public void poll_due_tasks_in_batches() {
+		TaskId a = randomTaskId();
+		TaskId b = randomTaskId();
+		TaskId c = randomTaskId();
+		timer.deadlineChanged(a, new Date(now-3000));
+		timer.deadlineChanged(b, new Date(now-2000));
+		timer.deadlineChanged(c, new Date(now-1000));
+		
+		assertEquals(asList(a,b),timer.pollDue(now));
+		assertEquals(asList(c),timer.pollDue(now));
+	}
+	
+	@Test
+	public void discard_deadline_of_inactive_task() {
+		TaskId task = randomTaskId();
+		timer.deadlineChanged(task, new Date(now-1000));
+		timer.deadlineChanged(task, null);
+		
+		assertEquals(emptyList(),timer.pollDue(now));
+		assertEquals(Long.MAX_VALUE,timer.nextDeadline());
+		assertEquals(0,timer.getPendingTimers());
+	}
+	
+	@Test
+	public void apply_latest_deadline_of_reactivated_task() {
+		TaskId task = randomTaskId();
+		timer.deadlineChanged(task, new Date(now-1000));
+		timer.deadlineChanged(task, null);
+		timer.deadlineChanged(task, new Date(now+1000));
+		
+		assertEquals(emptyList(),timer.pollDue(now));
+		assertEquals(now+1000,timer.nextDeadline());
+		assertEquals(asList(task),timer.pollDue(now+1000));
+	}
+	
+	@Test
+	public void ignore_deadline_beyond_horizon() {
+		timer.deadlineChanged(randomTaskId(), new Date(now+7200000));
+		assertEquals(0,timer.getPendingTimers());
+	}
+	
+	@Test
+	public void discard_deadline_moved_beyond_horizon() {
+		TaskId task = randomTaskId();
+		timer.deadlineChanged(task, new Date(now+1000));
+		timer.deadlineChanged(task, new Date(now+7200000));
+		
+		assertEquals(0,timer.getPendingTimers());
+		assertEquals(emptyList(),timer.pollDue(now+1000));
+	}
+	
+	@Test
+	public void load_deadlines_within_horizon() {
+		TaskId overdue = randomTaskId();
+		TaskId pending = randomTaskId();
+		Map<TaskId,Date> deadlines = new LinkedHashMap<>();
+		deadlines.put(overdue, new Date(now-60000));
+		deadlines.put(pending, new Date(now+60000));
+		when(manager.findTaskDeadlines(new Date(now+3600000))).thenReturn(deadlines);
+		
+		timer.refresh(now);
+		
+		assertEquals(2,timer.getPendingTimers());
+		assertEquals(asList(overdue),timer.pollDue(now));
+		assertTrue(timer.nextDeadline() > now);
+	}
+	
+}
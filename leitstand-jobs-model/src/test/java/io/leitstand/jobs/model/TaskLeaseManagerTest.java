@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.TaskId.randomTaskId;
+import static io.leitstand.jobs.service.TaskState.READY;
+import static io.leitstand.jobs.service.TaskState.TIMEOUT;
+import static io.leitstand.jobs.service.TaskType.taskType;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.List;
+
+import javax.enterprise.event.Event;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import io.leitstand.commons.model.Query;
+import io.leitstand.commons.model.Repository;
+import io.leitstand.jobs.service.TaskId;
+import io.leitstand.jobs.service.TaskState;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TaskLeaseManagerTest {
+	
+	private static final TaskId TASK_ID = randomTaskId();
+
+	@Mock
+	private Repository repository;
+	
+	@Mock
+	private JobSchedulerConfig config;
+	
+	@Mock
+	private TaskRetryPolicy retries;
+	
+	@Mock
+	private Event<TaskStateChangedEvent> taskEventSink;
+	
+	@InjectMocks
+	private TaskLeaseManager manager = new TaskLeaseManager();
+	
+	private Job_Task task;
+	
+	@Before
+	public void initTestResources() {
+		task = mock(Job_Task.class);
+		when(task.getTaskId()).thenReturn(TASK_ID);
+		when(task.getTaskType()).thenReturn(taskType("deploy"));
+		when(task.isActive()).thenReturn(true);
+		when(task.getDateLeaseExpiry()).thenReturn(new Date(System.currentTimeMillis()-1000));
+		when(repository.execute(any(Query.class))).thenReturn(asList(task), task);
+	}
+	
+	@Test
+	public void time_out_task_with_expired_lease() {
+		List<TaskId> recovered = manager.recoverExpiredLeases();
+		
+		assertEquals(asList(TASK_ID),recovered);
+		verify(task).setTaskState(TIMEOUT);
+		verify(taskEventSink).fire(any(TaskStateChangedEvent.class));
+	}
+	
+	@Test
+	public void execute_idempotent_task_with_expired_lease_again() {
+		when(config.isTaskIdempotent(taskType("deploy"))).thenReturn(true);
+		
+		manager.recoverExpiredLeases();
+		
+		verify(task).setTaskState(READY);
+		verify(task,never()).setTaskState(TIMEOUT);
+	}
+	
+	@Test
+	public void retry_task_with_expired_lease_if_timed_out_tasks_are_retried() {
+		Date nextAttempt = new Date();
+		when(retries.nextAttempt(task, TIMEOUT, null)).thenReturn(nextAttempt);
+		
+		manager.recoverExpiredLeases();
+		
+		verify(task).retry(nextAttempt);
+		verify(task,never()).setTaskState(TIMEOUT);
+	}
+	
+	@Test
+	public void do_not_recover_task_with_renewed_lease() {
+		when(task.getDateLeaseExpiry()).thenReturn(new Date(System.currentTimeMillis()+60000));
+		
+		assertTrue(manager.recoverExpiredLeases().isEmpty());
+		verify(task,never()).setTaskState(any(TaskState.class));
+		verify(taskEventSink,never()).fire(any(TaskStateChangedEvent.class));
+	}
+	
+}
@@ -22,6 +22,7 @@ import static io.leitstand.jobs.service.TaskState.ACTIVE;
 import static io.leitstand.jobs.service.TaskState.COMPLETED;
 import static io.leitstand.jobs.service.TaskState.CONFIRM;
 import static io.leitstand.jobs.service.TaskState.FAILED;
+import static io.leitstand.jobs.service.TaskState.READY;
 import static java.lang.Boolean.TRUE;
 import static java.util.Arrays.asList;
 import static org.mockito.Matchers.any;
@@ -33,6 +34,7 @@ import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 import java.io.StringReader;
+import java.util.Date;
 
 import javax.enterprise.event.Event;
 import javax.json.Json;
@@ -193,6 +195,67 @@ public class TaskProcessingServiceTest {
        
    }
    
+   @Test
+   public void dispatch_task_to_execution_pool() {
+       TaskExecutionPool pool = mock(TaskExecutionPool.class);
+       service = new TaskProcessingService(processors, event, pool);
+       
+       service.executeTask(task);
+       
+       verify(task).setTaskState(ACTIVE);
+       verify(pool).dispatch(task, processor);
+       verify(processor,never()).execute(task);
+       verify(job,never()).failed();
+       verify(job,never()).completed();
+   }
+   
+   @Test
+   public void apply_outcome_of_executed_task() {
+       when(task.isSucceeded()).thenReturn(true);
+       
+       service.taskProcessed(task, COMPLETED);
+       
+       verify(task).setTaskState(COMPLETED);
+       verify(job).completed();
+   }
+   
+   @Test
+   public void retry_failed_task_without_failing_job() {
+       TaskRetryPolicy retries = mock(TaskRetryPolicy.class);
+       Date nextAttempt = new Date();
+       when(retries.nextAttempt(task, FAILED, 503)).thenReturn(nextAttempt);
+       when(task.getTaskState()).thenReturn(ACTIVE, READY);
+       service = new TaskProcessingService(processors, event, null, retries);
+       
+       service.taskProcessed(task, FAILED, 503);
+       
+       verify(task).retry(nextAttempt);
+       verify(task,never()).setTaskState(FAILED);
+       verify(job,never()).failed();
+       verify(event).fire(any(TaskStateChangedEvent.class));
+   }
+   
+   @Test
+   public void fail_task_when_retries_are_exhausted() {
+       TaskRetryPolicy retries = mock(TaskRetryPolicy.class);
+       when(task.isFailed()).thenReturn(true);
+       service = new TaskProcessingService(processors, event, null, retries);
+       
+       service.taskProcessed(task, FAILED, 503);
+       
+       verify(task,never()).retry(any(Date.class));
+       verify(task).setTaskState(FAILED);
+       verify(job).failed();
+   }
+   
+   @Test
+   public void discard_outcome_of_terminated_task() {
+       when(task.isTerminated()).thenReturn(true);
+       
+       service.taskProcessed(task, COMPLETED);
+       
+       verify(task,never()).setTaskState(COMPLETED);
+       verify(job,never()).completed();
+   }
+   
 }
-
-
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.service.TaskState.COMPLETED;
+import static io.leitstand.jobs.service.TaskState.FAILED;
+import static io.leitstand.jobs.service.TaskState.TIMEOUT;
+import static io.leitstand.jobs.service.TaskType.taskType;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Date;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TaskRetryPolicyTest {
+
+	private Properties properties;
+	private TaskRetryPolicy policy;
+	private Job_Task task;
+	
+	@Before
+	public void initTestResources() {
+		properties = new Properties();
+		properties.setProperty("leitstand.jobs.task.retry.max_attempts", "3");
+		properties.setProperty("leitstand.jobs.task.retry.backoff", "10");
+		properties.setProperty("leitstand.jobs.task.retry.max_backoff", "15");
+		properties.setProperty("leitstand.jobs.task.retry.jitter", "0");
+		policy = new TaskRetryPolicy(new JobSchedulerConfig(properties));
+		task = mock(Job_Task.class);
+		when(task.getTaskType()).thenReturn(taskType("deploy"));
+	}
+	
+	@Test
+	public void do_not_retry_tasks_by_default() {
+		policy = new TaskRetryPolicy(new JobSchedulerConfig(new Properties()));
+		assertNull(policy.nextAttempt(task, FAILED, null));
+	}
+	
+	@Test
+	public void retry_failed_task_after_backoff() {
+		long before = currentTimeMillis();
+		Date nextAttempt = policy.nextAttempt(task, FAILED, 503);
+		assertNotNull(nextAttempt);
+		assertTrue(nextAttempt.getTime() >= before + SECONDS.toMillis(10));
+		assertTrue(nextAttempt.getTime() <= currentTimeMillis() + SECONDS.toMillis(10));
+	}
+	
+	@Test
+	public void double_backoff_up_to_max_backoff() {
+		when(task.getAttempts()).thenReturn(1);
+		long before = currentTimeMillis();
+		Date nextAttempt = policy.nextAttempt(task, FAILED, null);
+		assertTrue(nextAttempt.getTime() >= before + SECONDS.toMillis(15));
+		assertTrue(nextAttempt.getTime() <= currentTimeMillis() + SECONDS.toMillis(15));
+	}
+	
+	@Test
+	public void do_not_retry_task_when_attempts_are_exhausted() {
+		when(task.getAttempts()).thenReturn(2);
+		assertNull(policy.nextAttempt(task, FAILED, null));
+	}
+	
+	@Test
+	public void do_not_retry_task_on_permanent_error() {
+		assertNull(policy.nextAttempt(task, FAILED, 400));
+	}
+	
+	@Test
+	public void do_not_retry_task_in_non_retry_state() {
+		assertNull(policy.nextAttempt(task, COMPLETED, null));
+		assertNull(policy.nextAttempt(task, TIMEOUT, null));
+		properties.setProperty("leitstand.jobs.task.retry.states.deploy", "FAILED,TIMEOUT");
+		assertNotNull(policy.nextAttempt(task, TIMEOUT, null));
+	}
+	
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+	private static final long T0 = 1_000_000L;
+	
+	private TimerWheel<String> wheel;
+	
+	@Before
+	public void initWheel() {
+		wheel = new TimerWheel<>(1000,T0);
+	}
+	
+	@Test
+	public void timer_does_not_expire_before_deadline() {
+		wheel.schedule("a", T0+5000);
+		assertEquals(emptyList(),wheel.advance(T0+5000));
+		assertEquals(asList("a"),wheel.advance(T0+6000));
+		assertTrue(wheel.isEmpty());
+	}
+	
+	@Test
+	public void timer_in_the_past_expires_with_next_tick() {
+		wheel.schedule("a", T0-5000);
+		assertEquals(asList("a"),wheel.advance(T0+1000));
+	}
+	
+	@Test
+	public void expire_timers_in_deadline_order() {
+		wheel.schedule("c", T0+300_000);
+		wheel.schedule("a", T0+10_000);
+		wheel.schedule("b", T0+70_000);
+		assertEquals(asList("a","b","c"),wheel.advance(T0+400_000));
+	}
+	
+	@Test
+	public void cascade_timers_from_upper_levels() {
+		// 64 ticks per level: exercise second, third and fourth level.
+		long[] deadlines = {T0+100_000, T0+5_000_000, T0+300_000_000};
+		for(int i=0; i < deadlines.length; i++) {
+			wheel.schedule("t"+i, deadlines[i]);
+		}
+		for(int i=0; i < deadlines.length; i++) {
+			assertEquals(emptyList(),wheel.advance(deadlines[i]));
+			assertEquals(asList("t"+i),wheel.advance(deadlines[i]+1000));
+		}
+	}
+	
+	@Test
+	public void reschedule_replaces_existing_timer() {
+		wheel.schedule("a", T0+5000);
+		wheel.schedule("a", T0+90_000);
+		assertEquals(1,wheel.size());
+		assertEquals(emptyList(),wheel.advance(T0+60_000));
+		assertEquals(asList("a"),wheel.advance(T0+91_000));
+	}
+	
+	@Test
+	public void cancelled_timer_does_not_expire() {
+		wheel.schedule("a", T0+5000);
+		assertTrue(wheel.cancel("a"));
+		assertFalse(wheel.cancel("a"));
+		assertEquals(emptyList(),wheel.advance(T0+10_000));
+	}
+	
+	@Test
+	public void reject_deadline_beyond_range() {
+		assertFalse(wheel.schedule("a", T0+wheel.getRangeMillis()+1000));
+		assertTrue(wheel.isEmpty());
+	}
+	
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TokenBucketTest {
+
+	@Test
+	public void admit_burst_and_refill_with_configured_rate() {
+		TokenBucket bucket = new TokenBucket(2, 2, 0);
+		assertTrue(bucket.tryAcquire(0));
+		assertTrue(bucket.tryAcquire(0));
+		assertFalse(bucket.tryAcquire(0));
+		assertEquals(MILLISECONDS.toNanos(500),bucket.getDelay(0));
+		
+		assertFalse(bucket.tryAcquire(MILLISECONDS.toNanos(499)));
+		assertTrue(bucket.tryAcquire(MILLISECONDS.toNanos(500)));
+		assertFalse(bucket.tryAcquire(MILLISECONDS.toNanos(500)));
+	}
+	
+	@Test
+	public void do_not_accumulate_more_tokens_than_capacity() {
+		TokenBucket bucket = new TokenBucket(10, 2, 0);
+		long later = MILLISECONDS.toNanos(60_000);
+		assertTrue(bucket.tryAcquire(later));
+		assertTrue(bucket.tryAcquire(later));
+		assertFalse(bucket.tryAcquire(later));
+	}
+	
+	@Test
+	public void admit_at_least_one_token_for_fractional_rates() {
+		TokenBucket bucket = new TokenBucket(0.5, 0.5, 0);
+		assertTrue(bucket.tryAcquire(0));
+		assertFalse(bucket.tryAcquire(MILLISECONDS.toNanos(1999)));
+		assertTrue(bucket.tryAcquire(MILLISECONDS.toNanos(2000)));
+	}
+	
+	@Test
+	public void released_token_is_available_again() {
+		TokenBucket bucket = new TokenBucket(1, 1, 0);
+		assertTrue(bucket.tryAcquire(0));
+		assertFalse(bucket.tryAcquire(0));
+		bucket.release();
+		assertTrue(bucket.tryAcquire(0));
+	}
+	
+	@Test
+	public void unlimited_bucket_never_runs_out_of_tokens() {
+		for(int i=0; i < 1000; i++) {
+			assertTrue(TokenBucket.UNLIMITED.tryAcquire(0));
+		}
+		assertEquals(0,TokenBucket.UNLIMITED.getDelay(0));
+	}
+	
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2020 RtBrick Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package io.leitstand.jobs.model;
+
+import static io.leitstand.jobs.model.VirtualThreads.newVirtualThreadFactory;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+	private static boolean isVirtualThreadSupported() {
+		// Virtual threads are a preview feature before Java 21 and fail without --enable-preview.
+		String version = System.getProperty("java.specification.version");
+		return !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+	}
+	
+	@Test
+	public void create_virtual_thread_factory_if_supported_by_runtime() {
+		ThreadFactory factory = newVirtualThreadFactory("unit-");
+		if(isVirtualThreadSupported()) {
+			assertNotNull(factory);
+		}
+	}
+	
+	@Test
+	public void run_task_on_virtual_thread() throws InterruptedException {
+		ThreadFactory factory = newVirtualThreadFactory("unit-");
+		if(factory == null) {
+			// Virtual threads not supported by the runtime.
+			return;
+		}
+		AtomicBoolean executed = new AtomicBoolean();
+		Thread thread = factory.newThread(() -> executed.set(true));
+		thread.start();
+		thread.join();
+		assertTrue(executed.get());
+		assertTrue(thread.getName().startsWith("unit-"));
+	}
+	
+}